@@ -0,0 +1,179 @@
+package com.github.mwacha.services;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.Random;
+
+/**
+ * Documentos sintéticos dos benchmarks, gerados de forma determinística a partir de uma semente.
+ * <p>
+ * O texto imita a documentação técnica que a aplicação recebe: parágrafos de frases de tamanhos
+ * variados, títulos curtos e, de tempos em tempos, blocos sem pontuação (listagens e tabelas) que
+ * obrigam o chunker a cortar fora de um fim de frase.
+ */
+final class BenchmarkCorpus {
+
+    /** Tamanho dos vetores de embedding do modelo usado pela aplicação. */
+    static final int DIMENSION = 1024;
+
+    private static final String[] WORDS = (
+            "o a os as um uma de do da dos das em no na para por com sem que se é são foi ser " +
+            "serviço serviços controller controllers modelo modelos domínio repositório requisição resposta " +
+            "dados banco consulta índice vetor embedding chunk documento arquivo página parágrafo tabela " +
+            "aplicação sistema módulo camada interface implementação configuração parâmetro valor chave " +
+            "cliente servidor conexão pool lote fila estágio pipeline ingestão extração divisão busca " +
+            "transação operação idempotente assíncrona síncrona cache memória disco latência throughput " +
+            "valida recebe retorna grava lê envia chama processa converte calcula registra atualiza remove"
+    ).split(" ");
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Gera um texto com aproximadamente {@code words} palavras.
+     */
+    static String text(int words, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(words * 8);
+        int written = 0;
+        while (written < words) {
+            if (random.nextInt(6) == 0) {
+                text.append(capitalize(word(random))).append(' ').append(word(random)).append("\n\n");
+                written += 2;
+            }
+            if (random.nextInt(10) == 0) {
+                // Listagem sem pontuação
+                for (int line = 0, lines = 5 + random.nextInt(20); line < lines; line++) {
+                    text.append("  ").append(word(random)).append('_').append(word(random))
+                            .append(" = ").append(random.nextInt(1000)).append('\n');
+                    written += 4;
+                }
+                text.append('\n');
+                continue;
+            }
+            for (int sentence = 0, sentences = 3 + random.nextInt(6); sentence < sentences; sentence++) {
+                int length = 5 + random.nextInt(random.nextInt(8) == 0 ? 60 : 25);
+                text.append(capitalize(word(random)));
+                for (int i = 1; i < length; i++) {
+                    text.append(random.nextInt(12) == 0 ? ", " : " ").append(word(random));
+                }
+                text.append(random.nextInt(15) == 0 ? "? " : ". ");
+                written += length;
+            }
+            text.append("\n\n");
+        }
+        return text.toString();
+    }
+
+    static byte[] txt(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * PDF com uma linha de texto por parágrafo, {@code linesPerPage} linhas por página.
+     */
+    static byte[] pdf(String text, int linesPerPage) {
+        String[] lines = ascii(text).split("\n+");
+        try (PDDocument pdf = new PDDocument(); ByteArrayOutputStream content = new ByteArrayOutputStream()) {
+            for (int start = 0; start < lines.length; start += linesPerPage) {
+                PDPage page = new PDPage();
+                pdf.addPage(page);
+                try (PDPageContentStream stream = new PDPageContentStream(pdf, page)) {
+                    stream.beginText();
+                    stream.setFont(PDType1Font.HELVETICA, 6);
+                    stream.setLeading(7);
+                    stream.newLineAtOffset(20, 770);
+                    for (int i = start; i < Math.min(start + linesPerPage, lines.length); i++) {
+                        stream.showText(lines[i]);
+                        stream.newLine();
+                    }
+                    stream.endText();
+                }
+            }
+            pdf.save(content);
+            return content.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * DOCX com um parágrafo por parágrafo do texto.
+     */
+    static byte[] docx(String text) {
+        try (XWPFDocument docx = new XWPFDocument(); ByteArrayOutputStream content = new ByteArrayOutputStream()) {
+            for (String paragraph : text.split("\n\n")) {
+                docx.createParagraph().createRun().setText(paragraph.replace('\n', ' '));
+            }
+            docx.write(content);
+            return content.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Conteúdo do arquivo no formato pedido. DOC não pode ser gerado com o POI, então é lido do
+     * arquivo indicado na propriedade {@code bench.doc}.
+     */
+    static byte[] document(String format, String text) {
+        return switch (format) {
+            case "txt" -> txt(text);
+            case "pdf" -> pdf(text, 100);
+            case "docx" -> docx(text);
+            case "doc" -> {
+                String path = System.getProperty("bench.doc");
+                if (path == null) {
+                    throw new IllegalStateException("Informe um arquivo .doc com -jvmArgsAppend -Dbench.doc=<caminho>");
+                }
+                try {
+                    yield Files.readAllBytes(Path.of(path));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            default -> throw new IllegalArgumentException("Formato desconhecido: " + format);
+        };
+    }
+
+    /**
+     * Vetores aleatórios normalizados de {@link #DIMENSION} dimensões.
+     */
+    static float[][] vectors(int count, long seed) {
+        Random random = new Random(seed);
+        float[][] vectors = new float[count][DIMENSION];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            vectors[i] = VectorMath.normalize(vectors[i]);
+        }
+        return vectors;
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /** A fonte padrão do PDFBox só codifica WinAnsi; os acentos são removidos para simplificar. */
+    private static String ascii(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+    }
+}
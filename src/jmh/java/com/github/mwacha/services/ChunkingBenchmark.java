@@ -0,0 +1,58 @@
+package com.github.mwacha.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Divisão em chunks ({@link TextChunker}) de documentos de tamanhos típicos, com os limites de
+ * tokens usados pela aplicação.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChunkingBenchmark {
+
+    /** Palavras do documento: uma página, um artigo e um manual. */
+    @Param({"500", "20000", "200000"})
+    int words;
+
+    @Param({"1000", "256"})
+    int maxTokens;
+
+    @Param({"0", "50"})
+    int overlapTokens;
+
+    private String text;
+    private TextChunker chunker;
+
+    @Setup
+    public void setUp() {
+        text = BenchmarkCorpus.text(words, 42);
+        chunker = new TextChunker(new WhitespaceTokenizer(), maxTokens, overlapTokens);
+    }
+
+    @Benchmark
+    public List<TextChunker.Span> split() {
+        return chunker.split(text);
+    }
+
+    @Benchmark
+    public List<String> chunk() {
+        return chunker.chunk(text);
+    }
+}
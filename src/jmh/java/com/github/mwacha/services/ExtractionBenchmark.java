@@ -0,0 +1,63 @@
+package com.github.mwacha.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extração de texto de cada formato aceito, sem chunking nem embedding. Para DOC, que não pode
+ * ser gerado, use {@code -p format=doc -jvmArgsAppend -Dbench.doc=<arquivo.doc>}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractionBenchmark {
+
+    @Param({"txt", "pdf", "docx"})
+    String format;
+
+    @Param({"50000"})
+    int words;
+
+    /** Workers de extração de PDF ({@code ingestion.pdf.extract-concurrency}). */
+    @Param({"1", "4"})
+    int pdfConcurrency;
+
+    private ByteArrayResource document;
+    private String extension;
+    private DocumentStoreService service;
+
+    @Setup
+    public void setUp() {
+        document = new ByteArrayResource(BenchmarkCorpus.document(format, BenchmarkCorpus.text(words, 42)));
+        extension = DocumentStoreService.format("documento." + format);
+        service = new DocumentStoreService(null, null, pdfConcurrency);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public void extract(Blackhole blackhole) throws IOException {
+        service.extractText(extension, document, segment -> blackhole.consume(segment.text()));
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.mwacha.services;
+
+import com.github.mwacha.load.StubChromaServer;
+import com.github.mwacha.load.StubOllamaServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingestão completa de um documento ({@link DocumentStoreService#storeDocument}) contra o Ollama
+ * e o ChromaDB simulados dos testes de carga ({@link StubOllamaServer} e {@link StubChromaServer}).
+ * Mede extração, chunking, serialização dos vetores de 1024 dimensões e o pipeline de estágios;
+ * a latência dos modelos é simulada por {@code ollamaLatencyMs} por lote de embedding.
+ * <p>
+ * Cada chamada usa um nome de documento novo, para que nenhum chunk seja reaproveitado do
+ * ChromaDB simulado, que é esvaziado a cada iteração.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoreDocumentBenchmark {
+
+    @Param({"txt", "pdf"})
+    String format;
+
+    @Param({"20000"})
+    int words;
+
+    @Param({"0", "20"})
+    int ollamaLatencyMs;
+
+    private StubOllamaServer ollama;
+    private StubChromaServer chroma;
+    private ByteArrayResource document;
+    private DocumentStoreService service;
+    private int invocation;
+
+    @Setup
+    public void setUp() {
+        ollama = new StubOllamaServer(new StubOllamaServer.Settings(
+                Duration.ofMillis(ollamaLatencyMs), Duration.ZERO, 1, 1));
+        chroma = new StubChromaServer(Duration.ZERO);
+
+        ChromaClient vectorStore = new ChromaClient(webClient(chroma.baseUrl()), 100, 4, 0);
+        vectorStore.init();
+        // Cache sem capacidade: toda chamada gera os embeddings de novo
+        EmbeddingService embeddingService = new EmbeddingService(webClient(ollama.baseUrl()),
+                new EmbeddingCache(0, (Path) null), 32);
+        IngestionPipeline pipeline = new IngestionPipeline(embeddingService, vectorStore, 16, 2, 2, 32);
+        service = new DocumentStoreService(pipeline, new TextChunker(new WhitespaceTokenizer(), 1000, 0), 0);
+        document = new ByteArrayResource(BenchmarkCorpus.document(format, BenchmarkCorpus.text(words, 42)));
+    }
+
+    @Setup(Level.Iteration)
+    public void clearStore() {
+        chroma.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+        ollama.close();
+        chroma.close();
+    }
+
+    @Benchmark
+    public int storeDocument() throws IOException {
+        return service.storeDocument("documento-" + invocation++ + "." + format, document,
+                IngestionPipeline.Progress.NONE);
+    }
+
+    private static WebClient webClient(String baseUrl) {
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(64 * 1024 * 1024))
+                .build();
+    }
+}
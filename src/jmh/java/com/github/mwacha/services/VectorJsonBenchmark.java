@@ -0,0 +1,76 @@
+package com.github.mwacha.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversão de vetores de 1024 dimensões entre {@code float[]} e JSON, com os mesmos registros e
+ * a mesma configuração do Jackson usados nas chamadas ao Ollama e ao ChromaDB.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VectorJsonBenchmark {
+
+    /** Vetores por requisição: uma pergunta, um lote de embedding e um lote de upsert. */
+    @Param({"1", "32", "100"})
+    int vectors;
+
+    private ObjectMapper mapper;
+    private ChromaClient.UpsertRequest upsert;
+    private byte[] upsertJson;
+    private byte[] embedJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        float[][] embeddings = BenchmarkCorpus.vectors(vectors, 7);
+        List<String> ids = new ArrayList<>();
+        List<String> documents = new ArrayList<>();
+        List<Map<String, Object>> metadatas = new ArrayList<>();
+        for (int i = 0; i < vectors; i++) {
+            ids.add("0123456789abcdef_fedcba9876543210_" + i);
+            documents.add(BenchmarkCorpus.text(200, i));
+            metadatas.add(Map.of("document_id", "0123456789abcdef", "source", "manual.pdf", "chunk_index", i));
+        }
+        upsert = new ChromaClient.UpsertRequest(ids, Arrays.asList(embeddings), documents, metadatas);
+        upsertJson = mapper.writeValueAsBytes(upsert);
+        embedJson = mapper.writeValueAsBytes(Map.of("model", "snowflake-arctic-embed2", "embeddings", embeddings));
+    }
+
+    @Benchmark
+    public byte[] writeUpsertRequest() throws IOException {
+        return mapper.writeValueAsBytes(upsert);
+    }
+
+    @Benchmark
+    public ChromaClient.UpsertRequest readUpsertRequest() throws IOException {
+        return mapper.readValue(upsertJson, ChromaClient.UpsertRequest.class);
+    }
+
+    @Benchmark
+    public EmbeddingService.EmbedResponse readEmbedResponse() throws IOException {
+        return mapper.readValue(embedJson, EmbeddingService.EmbedResponse.class);
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.mwacha.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Busca dos 10 vetores mais próximos entre vetores sintéticos de 1024 dimensões: força bruta
+ * com o produto escalar do {@link VectorMath} (a similaridade de cosseno de vetores normalizados)
+ * e o {@link HnswIndex} em cada modo de quantização.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class VectorSearchBenchmark {
+
+    private static final int K = 10;
+    private static final int QUERIES = 64;
+
+    @State(Scope.Benchmark)
+    public static class Vectors {
+
+        @Param({"10000", "50000"})
+        int size;
+
+        float[][] vectors;
+        float[][] queries;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            vectors = BenchmarkCorpus.vectors(size, 1);
+            queries = BenchmarkCorpus.vectors(QUERIES, 2);
+        }
+
+        float[] nextQuery() {
+            float[] query = queries[next];
+            next = (next + 1) % QUERIES;
+            return query;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Index {
+
+        @Param({"none", "int8", "binary"})
+        String quantization;
+
+        @Param({"100"})
+        int efSearch;
+
+        HnswIndex index;
+        private Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp(Vectors data) throws IOException {
+            directory = Files.createTempDirectory("hnsw-bench-");
+            index = new HnswIndex(directory, BenchmarkCorpus.DIMENSION, 16, 200, 7,
+                    HnswIndex.Quantization.parse(quantization));
+            for (float[] vector : data.vectors) {
+                index.add(vector);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            index.close();
+            try (var files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public int[] bruteForce(Vectors data) {
+        float[] query = data.nextQuery();
+        PriorityQueue<float[]> top = new PriorityQueue<>(K + 1, Comparator.comparingDouble(entry -> entry[0]));
+        for (int i = 0; i < data.vectors.length; i++) {
+            float similarity = VectorMath.dot(query, data.vectors[i]);
+            if (top.size() < K) {
+                top.add(new float[]{similarity, i});
+            } else if (similarity > top.peek()[0]) {
+                top.poll();
+                top.add(new float[]{similarity, i});
+            }
+        }
+        int[] nodes = new int[top.size()];
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            nodes[i] = (int) top.poll()[1];
+        }
+        return nodes;
+    }
+
+    @Benchmark
+    public List<HnswIndex.Result> hnsw(Vectors data, Index index) {
+        return index.index.search(data.nextQuery(), K, index.efSearch);
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.mwacha.config;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Clientes HTTP compartilhados para o Ollama e o ChromaDB. Cada backend tem seu próprio
+ * pool de conexões nomeado, com tamanho, timeouts e limites configurados em
+ * {@code ollama.http.*} e {@code chroma.http.*}.
+ */
+@Configuration
+@Slf4j
+public class HttpClientConfig {
+
+    @Bean
+    @ConfigurationProperties("ollama.http")
+    public HttpClientProperties ollamaHttpProperties() {
+        HttpClientProperties properties = new HttpClientProperties();
+        // A geração pode ficar vários segundos sem emitir tokens
+        properties.setResponseTimeout(Duration.ofMinutes(3));
+        return properties;
+    }
+
+    @Bean
+    @ConfigurationProperties("chroma.http")
+    public HttpClientProperties chromaHttpProperties() {
+        return new HttpClientProperties();
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider ollamaConnectionProvider(
+            @Qualifier("ollamaHttpProperties") HttpClientProperties properties) {
+        return connectionProvider("ollama", properties);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider chromaConnectionProvider(
+            @Qualifier("chromaHttpProperties") HttpClientProperties properties) {
+        return connectionProvider("chroma", properties);
+    }
+
+    @Bean
+    public WebClient ollamaWebClient(WebClient.Builder builder,
+                                     @Value("${ollama.base-url:http://localhost:11434}") String baseUrl,
+                                     @Qualifier("ollamaConnectionProvider") ConnectionProvider connectionProvider,
+                                     @Qualifier("ollamaHttpProperties") HttpClientProperties properties) {
+        return webClient(builder, baseUrl, connectionProvider, properties);
+    }
+
+    @Bean
+    public WebClient chromaWebClient(WebClient.Builder builder,
+                                     @Value("${chroma.base-url:http://localhost:8001}") String baseUrl,
+                                     @Qualifier("chromaConnectionProvider") ConnectionProvider connectionProvider,
+                                     @Qualifier("chromaHttpProperties") HttpClientProperties properties) {
+        return webClient(builder, baseUrl, connectionProvider, properties);
+    }
+
+    static ConnectionProvider connectionProvider(String name, HttpClientProperties properties) {
+        return ConnectionProvider.builder(name)
+                .maxConnections(properties.getMaxConnections())
+                .pendingAcquireMaxCount(properties.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(properties.getPendingAcquireTimeout())
+                .maxIdleTime(properties.getMaxIdleTime())
+                .maxLifeTime(properties.getMaxLifeTime())
+                .evictInBackground(properties.getEvictInBackground())
+                .build();
+    }
+
+    static WebClient webClient(WebClient.Builder builder, String baseUrl, ConnectionProvider connectionProvider,
+                               HttpClientProperties properties) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .protocol(properties.getProtocols().toArray(HttpProtocol[]::new))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.toIntExact(properties.getConnectTimeout().toMillis()))
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(properties.getResponseTimeout())
+                .compress(properties.isCompress());
+        log.info("Cliente HTTP para {} com pool de {} conexões e protocolos {}",
+                baseUrl, properties.getMaxConnections(), properties.getProtocols());
+        return builder.clone()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .codecs(codecs -> codecs.defaultCodecs()
+                        .maxInMemorySize(Math.toIntExact(properties.getMaxInMemorySize().toBytes())))
+                .build();
+    }
+}
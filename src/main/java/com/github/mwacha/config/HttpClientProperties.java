@@ -0,0 +1,49 @@
+package com.github.mwacha.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.util.unit.DataSize;
+import reactor.netty.http.HttpProtocol;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Configuração do cliente HTTP de um backend ({@code ollama.http.*} ou {@code chroma.http.*}).
+ */
+@Getter
+@Setter
+public class HttpClientProperties {
+
+    /** Máximo de conexões abertas no pool. */
+    private int maxConnections = 50;
+
+    /** Máximo de requisições aguardando uma conexão livre (-1 para ilimitado). */
+    private int pendingAcquireMaxCount = 500;
+
+    /** Tempo máximo de espera por uma conexão livre do pool. */
+    private Duration pendingAcquireTimeout = Duration.ofSeconds(45);
+
+    /** Conexões ociosas por mais tempo que isso são fechadas. */
+    private Duration maxIdleTime = Duration.ofSeconds(30);
+
+    /** Tempo máximo de vida de uma conexão, mesmo em uso contínuo. */
+    private Duration maxLifeTime = Duration.ofMinutes(5);
+
+    /** Intervalo da remoção de conexões ociosas/expiradas em segundo plano. */
+    private Duration evictInBackground = Duration.ofSeconds(30);
+
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /** Tempo máximo sem receber dados da resposta. */
+    private Duration responseTimeout = Duration.ofSeconds(30);
+
+    /** Limite de memória para decodificar o corpo de uma resposta. */
+    private DataSize maxInMemorySize = DataSize.ofMegabytes(16);
+
+    /** Solicita respostas compactadas com gzip. */
+    private boolean compress = true;
+
+    /** Protocolos aceitos; {@code H2C} habilita HTTP/2 sem TLS, se o servidor suportar. */
+    private List<HttpProtocol> protocols = List.of(HttpProtocol.HTTP11);
+}
@@ -0,0 +1,30 @@
+package com.github.mwacha.controllers;
+
+import com.github.mwacha.services.AnswerCache;
+import com.github.mwacha.services.EmbeddingCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+
+    private final EmbeddingCache embeddingCache;
+    private final AnswerCache answerCache;
+
+    public CacheController(EmbeddingCache embeddingCache, AnswerCache answerCache) {
+        this.embeddingCache = embeddingCache;
+        this.answerCache = answerCache;
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(Map.of(
+                "embeddings", embeddingCache.stats(),
+                "answers", answerCache.stats()));
+    }
+}
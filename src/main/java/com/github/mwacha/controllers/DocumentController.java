@@ -1,34 +1,119 @@
 package com.github.mwacha.controllers;
 
-import com.github.mwacha.services.DocumentStoreService;
+import com.github.mwacha.services.AnswerEvent;
+import com.github.mwacha.services.IngestionJob;
+import com.github.mwacha.services.IngestionJobService;
 import com.github.mwacha.services.QueryService;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.List;
 
+/**
+ * Endpoints de upload e de perguntas. Cada requisição de {@code /api/upload} e {@code /api/ask}
+ * gera uma observação ({@code rag.upload} ou {@code rag.ask}), registrada como timer e, com uma
+ * ponte de tracing no classpath, como span.
+ * <p>
+ * A observação fica corrente durante o processamento (no contexto do Reactor, propagado para as
+ * threads com {@code spring.reactor.context-propagation=auto}), então as chamadas ao Ollama e ao
+ * ChromaDB aparecem como filhas dela. O {@code rag.upload} mede apenas o recebimento dos arquivos;
+ * a ingestão em segundo plano é o {@code rag.ingest.job}, filho dele.
+ */
 @RestController
 @RequestMapping("/api")
 public class DocumentController {
 
-    private final DocumentStoreService documentStoreService;
+    private final IngestionJobService ingestionJobService;
     private final QueryService queryService;
+    private final ObservationRegistry observationRegistry;
 
-    public DocumentController(DocumentStoreService documentStoreService, QueryService queryService) {
-        this.documentStoreService = documentStoreService;
+    public DocumentController(IngestionJobService ingestionJobService, QueryService queryService,
+                              ObservationRegistry observationRegistry) {
+        this.ingestionJobService = ingestionJobService;
         this.queryService = queryService;
+        this.observationRegistry = observationRegistry;
     }
 
     @PostMapping("/upload")
-    public ResponseEntity<String> upload(@RequestParam("file") MultipartFile file) throws IOException {
-        documentStoreService.storeDocument(file);
-        return ResponseEntity.ok("Documento armazenado com sucesso.");
+    public ResponseEntity<IngestionJob.Status> upload(@RequestParam("file") List<MultipartFile> files) throws IOException {
+        return Observation.createNotStarted("rag.upload", observationRegistry)
+                .contextualName("upload")
+                .highCardinalityKeyValue("files", String.valueOf(files.size()))
+                .observeChecked(() -> {
+                    IngestionJob job;
+                    try {
+                        job = ingestionJobService.submit(files);
+                    } catch (IllegalArgumentException e) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+                    }
+                    URI statusUri = ServletUriComponentsBuilder.fromCurrentRequest()
+                            .path("/{jobId}")
+                            .buildAndExpand(job.getId())
+                            .toUri();
+                    return ResponseEntity.accepted().location(statusUri).body(job.status());
+                });
+    }
+
+    @GetMapping("/upload/{jobId}")
+    public ResponseEntity<IngestionJob.Status> uploadStatus(@PathVariable("jobId") String jobId) {
+        return ingestionJobService.find(jobId)
+                .map(job -> ResponseEntity.ok(job.status()))
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/ask")
-    public ResponseEntity<String> ask(@RequestParam("q") String question) {
-        String answer = queryService.ask(question);
-        return ResponseEntity.ok(answer);
+    public Mono<ResponseEntity<String>> ask(@RequestParam("q") String question) {
+        Observation observation = askObservation("sync");
+        return Mono.defer(() -> {
+                    observation.start();
+                    return queryService.ask(question);
+                })
+                .doOnError(observation::error)
+                .doFinally(signal -> observation.stop())
+                .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, observation))
+                .map(ResponseEntity::ok);
+    }
+
+    @GetMapping(path = "/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> askStream(@RequestParam("q") String question) {
+        if (question == null || question.trim().isEmpty()) {
+            return Flux.just(errorEvent("Por favor, forneça uma pergunta válida."));
+        }
+        Observation observation = askObservation("stream");
+        return Flux.defer(() -> {
+                    observation.start();
+                    return queryService.askStream(question);
+                })
+                .doOnError(observation::error)
+                .doFinally(signal -> observation.stop())
+                .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, observation))
+                .map(event -> switch (event) {
+                    case AnswerEvent.Token token -> ServerSentEvent.<Object>builder(token.text()).event("token").build();
+                    case AnswerEvent.Completed completed -> ServerSentEvent.<Object>builder(completed).event("done").build();
+                })
+                .onErrorResume(e -> Flux.just(errorEvent("Ocorreu um erro ao processar a pergunta: " + e.getMessage())));
+    }
+
+    private Observation askObservation(String mode) {
+        return Observation.createNotStarted("rag.ask", observationRegistry)
+                .contextualName("ask")
+                .lowCardinalityKeyValue("mode", mode);
+    }
+
+    private static ServerSentEvent<Object> errorEvent(String message) {
+        return ServerSentEvent.<Object>builder(message).event("error").build();
     }
 }
@@ -0,0 +1,183 @@
+package com.github.mwacha.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache semântico de respostas. Uma pergunta nova reaproveita a resposta de uma pergunta
+ * anterior quando a similaridade de cosseno entre os embeddings das duas é de pelo menos
+ * {@code answer-cache.similarity-threshold} e a coleção não mudou desde que a resposta
+ * foi gerada.
+ * <p>
+ * As entradas expiram após {@code answer-cache.ttl}, o total é limitado a
+ * {@code answer-cache.max-entries} (as menos usadas recentemente saem primeiro) e todo o
+ * cache é descartado quando a versão da coleção do ChromaDB muda.
+ */
+@Component
+@Slf4j
+public class AnswerCache {
+
+    /**
+     * Estatísticas de uso do cache.
+     *
+     * @param savedMillis Soma do tempo que as respostas reaproveitadas levaram para ser geradas.
+     */
+    public record Stats(long hits, long misses, long invalidations, int entries, long savedMillis) {
+    }
+
+    private record Entry(float[] embedding, String answer, long createdAtMillis, long generationMillis) {
+    }
+
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Clock clock;
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long nextId;
+    private long collectionVersion = Long.MIN_VALUE;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong savedMillis = new AtomicLong();
+
+    @Autowired
+    public AnswerCache(@Value("${answer-cache.enabled:true}") boolean enabled,
+                       @Value("${answer-cache.similarity-threshold:0.95}") double similarityThreshold,
+                       @Value("${answer-cache.ttl:PT1H}") Duration ttl,
+                       @Value("${answer-cache.max-entries:500}") int maxEntries) {
+        this(enabled, similarityThreshold, ttl, maxEntries, Clock.systemUTC());
+    }
+
+    AnswerCache(boolean enabled, double similarityThreshold, Duration ttl, int maxEntries, Clock clock) {
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * Procura uma resposta para uma pergunta semelhante.
+     *
+     * @param questionEmbedding Embedding da pergunta.
+     * @param collectionVersion Versão atual da coleção (ver {@link VectorStore#collectionVersion()}).
+     * @return A resposta em cache, se houver uma pergunta suficientemente semelhante.
+     */
+    public Optional<String> lookup(float[] questionEmbedding, long collectionVersion) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        float[] normalized = normalize(questionEmbedding);
+        long now = clock.millis();
+        synchronized (entries) {
+            invalidateIfChanged(collectionVersion);
+
+            Long bestId = null;
+            double bestSimilarity = similarityThreshold;
+            for (Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, Entry> candidate = it.next();
+                if (now - candidate.getValue().createdAtMillis() > ttl.toMillis()) {
+                    it.remove();
+                    continue;
+                }
+                double similarity = dot(normalized, candidate.getValue().embedding());
+                if (similarity >= bestSimilarity) {
+                    bestSimilarity = similarity;
+                    bestId = candidate.getKey();
+                }
+            }
+
+            if (bestId == null) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            Entry hit = entries.get(bestId); // também marca a entrada como usada recentemente
+            hits.incrementAndGet();
+            savedMillis.addAndGet(hit.generationMillis());
+            log.debug("Resposta reaproveitada do cache (similaridade {})", bestSimilarity);
+            return Optional.of(hit.answer());
+        }
+    }
+
+    /**
+     * Armazena a resposta gerada para uma pergunta.
+     *
+     * @param questionEmbedding Embedding da pergunta.
+     * @param answer            Resposta gerada.
+     * @param collectionVersion Versão da coleção usada para gerar a resposta.
+     * @param generationMillis  Tempo gasto para recuperar o contexto e gerar a resposta.
+     */
+    public void put(float[] questionEmbedding, String answer, long collectionVersion, long generationMillis) {
+        if (!enabled || maxEntries <= 0) {
+            return;
+        }
+        Entry entry = new Entry(normalize(questionEmbedding), answer, clock.millis(), generationMillis);
+        synchronized (entries) {
+            invalidateIfChanged(collectionVersion);
+            if (this.collectionVersion != collectionVersion) {
+                return; // A resposta foi gerada com uma versão anterior da coleção
+            }
+            entries.put(nextId++, entry);
+            Iterator<Long> eldest = entries.keySet().iterator();
+            while (entries.size() > maxEntries) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.get(), misses.get(), invalidations.get(), size, savedMillis.get());
+    }
+
+    private void invalidateIfChanged(long version) {
+        if (version > collectionVersion) {
+            if (!entries.isEmpty()) {
+                invalidations.incrementAndGet();
+                log.debug("Coleção alterada (versão {}), descartando {} respostas em cache", version, entries.size());
+            }
+            entries.clear();
+            collectionVersion = version;
+        }
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.mwacha.services;
+
+import java.util.List;
+
+/**
+ * Evento emitido durante a geração de uma resposta em streaming.
+ */
+public sealed interface AnswerEvent {
+
+    /**
+     * Fragmento da resposta, emitido assim que o Ollama o produz.
+     */
+    record Token(String text) implements AnswerEvent {
+    }
+
+    /**
+     * Evento final, com os chunks usados como contexto e o tempo gasto em cada etapa.
+     */
+    record Completed(List<RetrievedChunk> sources, Timings timings) implements AnswerEvent {
+    }
+
+    /**
+     * Tempos, em milissegundos, medidos a partir do recebimento da pergunta.
+     *
+     * @param embedMs      Geração do embedding da pergunta.
+     * @param retrievalMs  Consulta dos chunks relevantes no ChromaDB.
+     * @param firstTokenMs Tempo até o primeiro fragmento da resposta (-1 se nenhum foi gerado).
+     * @param totalMs      Tempo total até o fim da geração.
+     */
+    record Timings(long embedMs, long retrievalMs, long firstTokenMs, long totalMs) {
+    }
+}
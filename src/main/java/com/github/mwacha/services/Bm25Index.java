@@ -0,0 +1,473 @@
+package com.github.mwacha.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido dos textos dos chunks para busca lexical com BM25, usado junto com a
+ * busca vetorial pelo {@link HybridRetriever}.
+ * <p>
+ * Os termos são as palavras do texto em minúsculas e sem acentos. A lista de ocorrências de
+ * cada termo fica comprimida em um {@code byte[]}: para cada chunk, a diferença em relação ao
+ * chunk anterior e a frequência do termo, ambas em varint (em geral, dois bytes por ocorrência).
+ * <p>
+ * Remoções apenas marcam o chunk; as ocorrências são descartadas quando o índice é salvo e os
+ * chunks removidos passam de um quarto do total. O índice é salvo em
+ * {@code retrieval.lexical.path} ao fim de cada ingestão e carregado na inicialização; com o
+ * caminho vazio, fica apenas em memória.
+ */
+@Component
+@Slf4j
+public class Bm25Index {
+
+    private static final int MAGIC = 0x424D3235; // "BM25"
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "index.bin";
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double COMPACTION_RATIO = 0.25;
+
+    /**
+     * Chunk encontrado pela busca lexical.
+     */
+    public record Hit(String id, double score) {
+    }
+
+    /**
+     * Cópia do estado a salvar. As listas de ocorrências só crescem depois de {@code size}
+     * (ou são trocadas por novas na compactação), então o prefixo referenciado não muda.
+     */
+    private record Snapshot(List<String> ids, int[] lengths, BitSet deleted, List<TermSnapshot> terms) {
+    }
+
+    private record TermSnapshot(String term, byte[] bytes, int size, int count, int last) {
+    }
+
+    private final Path file; // null: apenas em memória
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object flushMutex = new Object(); // uma gravação por vez, na ordem das fotografias
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> documents = new HashMap<>(); // id do chunk -> documento interno
+    private final List<String> ids = new ArrayList<>(); // documento interno -> id do chunk
+    private int[] lengths = new int[1024];
+    private final BitSet deleted = new BitSet();
+    private long totalLength;
+    private boolean dirty;
+
+    @Autowired
+    public Bm25Index(@Value("${retrieval.lexical.path:data/bm25}") String path) {
+        this(path == null || path.isBlank() ? null : Path.of(path).resolve(FILE_NAME));
+    }
+
+    /**
+     * @param file Arquivo do índice, ou {@code null} para manter o índice apenas em memória.
+     */
+    Bm25Index(Path file) {
+        this.file = file;
+        if (file != null && Files.exists(file)) {
+            long startNanos = System.nanoTime();
+            try {
+                load();
+                log.info("Índice BM25 carregado de {} com {} chunks e {} termos em {} ms", file, size(),
+                        postings.size(), (System.nanoTime() - startNanos) / 1_000_000);
+            } catch (IOException | RuntimeException e) {
+                // O índice é reconstruído ao reenviar os documentos
+                log.warn("Não foi possível carregar o índice BM25 de {}, iniciando vazio: {}", file, e.getMessage());
+                clear();
+            }
+        }
+    }
+
+    /**
+     * Adiciona (ou substitui) os textos de vários chunks.
+     *
+     * @param ids   Os identificadores dos chunks.
+     * @param texts Os textos, na mesma ordem dos identificadores.
+     */
+    public void add(List<String> ids, List<String> texts) {
+        if (ids == null || texts == null || ids.size() != texts.size()) {
+            throw new IllegalArgumentException("Identificadores e textos devem ser não nulos e ter o mesmo tamanho.");
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                remove(ids.get(i));
+                List<String> terms = terms(texts.get(i));
+                Map<String, Integer> frequencies = new LinkedHashMap<>();
+                for (String term : terms) {
+                    frequencies.merge(term, 1, Integer::sum);
+                }
+                int document = this.ids.size();
+                this.ids.add(ids.get(i));
+                documents.put(ids.get(i), document);
+                if (document == lengths.length) {
+                    lengths = Arrays.copyOf(lengths, document * 2);
+                }
+                lengths[document] = terms.size();
+                totalLength += terms.size();
+                frequencies.forEach((term, frequency) ->
+                        postings.computeIfAbsent(term, key -> new Postings()).add(document, frequency));
+            }
+            dirty |= !ids.isEmpty();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove chunks. Identificadores inexistentes são ignorados.
+     */
+    public void delete(List<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                dirty |= remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indica se o chunk está no índice.
+     */
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return documents.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Quantidade de chunks no índice.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca os chunks com maior pontuação BM25 para o texto da consulta.
+     *
+     * @param query O texto da consulta.
+     * @param k     Quantidade máxima de chunks retornados.
+     * @return Chunks com pontuação positiva, em ordem decrescente de pontuação.
+     */
+    public List<Hit> search(String query, int k) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(terms(query)));
+        lock.readLock().lock();
+        try {
+            int count = ids.size();
+            if (count == 0 || terms.isEmpty()) {
+                return List.of();
+            }
+            // Documentos removidos ainda contam na estatística até a próxima compactação
+            double averageLength = Math.max(1, (double) totalLength / count);
+            double[] scores = new double[count];
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (count - list.count + 0.5) / (list.count + 0.5));
+                list.forEach((document, frequency) -> {
+                    if (!deleted.get(document)) {
+                        double norm = K1 * (1 - B + B * lengths[document] / averageLength);
+                        scores[document] += idf * frequency * (K1 + 1) / (frequency + norm);
+                    }
+                });
+            }
+
+            PriorityQueue<Integer> top = new PriorityQueue<>(k + 1,
+                    (a, b) -> Double.compare(scores[a], scores[b]));
+            for (int document = 0; document < count; document++) {
+                if (scores[document] > 0 && (top.size() < k || scores[document] > scores[top.peek()])) {
+                    top.add(document);
+                    if (top.size() > k) {
+                        top.poll();
+                    }
+                }
+            }
+            Hit[] hits = new Hit[top.size()];
+            for (int i = hits.length - 1; i >= 0; i--) {
+                int document = top.poll();
+                hits[i] = new Hit(ids.get(document), scores[document]);
+            }
+            return List.of(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Salva o índice se ele mudou desde a última gravação, compactando-o antes se houver
+     * muitos chunks removidos. O arquivo é substituído de forma atômica.
+     * <p>
+     * Só a compactação e a cópia do estado acontecem sob o lock de escrita; o arquivo é
+     * gravado depois, sem bloquear buscas nem outras ingestões.
+     */
+    public void flush() {
+        synchronized (flushMutex) {
+            Snapshot snapshot;
+            lock.writeLock().lock();
+            try {
+                if (!dirty) {
+                    return;
+                }
+                if (deleted.cardinality() > ids.size() * COMPACTION_RATIO) {
+                    compact();
+                }
+                snapshot = file == null ? null : snapshot();
+                dirty = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (snapshot == null) {
+                return;
+            }
+            try {
+                save(snapshot);
+            } catch (IOException | RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    dirty = true; // tenta de novo no próximo flush
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (e instanceof IOException io) {
+                    throw new UncheckedIOException("Não foi possível salvar o índice BM25 em " + file, io);
+                }
+                throw (RuntimeException) e;
+            }
+        }
+    }
+
+    /**
+     * Divide o texto em termos: sequências de letras e dígitos, em minúsculas e sem acentos.
+     * Termos de uma única letra são descartados.
+     */
+    static List<String> terms(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+        List<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= normalized.length(); i++) {
+            char c = i < normalized.length() ? normalized.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                term.append(Character.toLowerCase(c));
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK && !term.isEmpty()) {
+                if (term.length() > 1 || Character.isDigit(term.charAt(0))) {
+                    terms.add(term.toString());
+                }
+                term.setLength(0);
+            }
+        }
+        return terms;
+    }
+
+    private boolean remove(String id) {
+        Integer document = documents.remove(id);
+        if (document == null) {
+            return false;
+        }
+        deleted.set(document);
+        return true;
+    }
+
+    /**
+     * Renumera os chunks ativos e regrava as listas de ocorrências sem os removidos.
+     */
+    private void compact() {
+        int[] renumbered = new int[ids.size()];
+        List<String> liveIds = new ArrayList<>(documents.size());
+        int[] liveLengths = new int[Math.max(1024, documents.size())];
+        totalLength = 0;
+        for (int document = 0; document < ids.size(); document++) {
+            if (deleted.get(document)) {
+                renumbered[document] = -1;
+                continue;
+            }
+            renumbered[document] = liveIds.size();
+            liveLengths[liveIds.size()] = lengths[document];
+            totalLength += lengths[document];
+            documents.put(ids.get(document), liveIds.size());
+            liveIds.add(ids.get(document));
+        }
+        postings.replaceAll((term, list) -> list.renumber(renumbered));
+        postings.values().removeIf(list -> list.count == 0);
+        ids.clear();
+        ids.addAll(liveIds);
+        lengths = liveLengths;
+        deleted.clear();
+    }
+
+    private void clear() {
+        postings.clear();
+        documents.clear();
+        ids.clear();
+        deleted.clear();
+        totalLength = 0;
+    }
+
+    /**
+     * Copia o estado a salvar; chamado sob o lock de escrita.
+     */
+    private Snapshot snapshot() {
+        List<TermSnapshot> terms = new ArrayList<>(postings.size());
+        postings.forEach((term, list) -> terms.add(new TermSnapshot(term, list.bytes, list.size, list.count, list.last)));
+        return new Snapshot(List.copyOf(ids), Arrays.copyOf(lengths, ids.size()), (BitSet) deleted.clone(), terms);
+    }
+
+    private void save(Snapshot snapshot) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        List<String> savedIds = snapshot.ids();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(savedIds.size());
+            for (int document = 0; document < savedIds.size(); document++) {
+                out.writeUTF(savedIds.get(document));
+                out.writeInt(snapshot.lengths()[document]);
+                out.writeBoolean(snapshot.deleted().get(document));
+            }
+            out.writeInt(snapshot.terms().size());
+            for (TermSnapshot term : snapshot.terms()) {
+                out.writeUTF(term.term());
+                out.writeInt(term.count());
+                out.writeInt(term.last());
+                out.writeInt(term.size());
+                out.write(term.bytes(), 0, term.size());
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Índice BM25 salvo em {}: {} chunks, {} termos", file,
+                savedIds.size() - snapshot.deleted().cardinality(), snapshot.terms().size());
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Formato de arquivo desconhecido");
+            }
+            int count = in.readInt();
+            lengths = new int[Math.max(1024, count)];
+            for (int document = 0; document < count; document++) {
+                String id = in.readUTF();
+                ids.add(id);
+                lengths[document] = in.readInt();
+                totalLength += lengths[document];
+                if (in.readBoolean()) {
+                    deleted.set(document);
+                } else {
+                    documents.put(id, document);
+                }
+            }
+            int terms = in.readInt();
+            for (int i = 0; i < terms; i++) {
+                String term = in.readUTF();
+                Postings list = new Postings();
+                list.count = in.readInt();
+                list.last = in.readInt();
+                list.size = in.readInt();
+                list.bytes = in.readNBytes(list.size);
+                if (list.bytes.length != list.size) {
+                    throw new IOException("Arquivo truncado");
+                }
+                postings.put(term, list);
+            }
+        }
+    }
+
+    /**
+     * Lista de ocorrências de um termo: pares (diferença do documento, frequência) em varint.
+     */
+    private static final class Postings {
+
+        interface Visitor {
+            void accept(int document, int frequency);
+        }
+
+        byte[] bytes = new byte[8];
+        int size;
+        int count; // documentos com o termo, incluindo os removidos
+        int last;
+
+        void add(int document, int frequency) {
+            if (size + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + 10));
+            }
+            writeVarint(document - last);
+            writeVarint(frequency);
+            last = document;
+            count++;
+        }
+
+        Postings renumber(int[] renumbered) {
+            Postings compacted = new Postings();
+            forEach((document, frequency) -> {
+                if (renumbered[document] >= 0) {
+                    compacted.add(renumbered[document], frequency);
+                }
+            });
+            return compacted;
+        }
+
+        /**
+         * Decodifica as ocorrências em ordem crescente de documento.
+         */
+        void forEach(Visitor visitor) {
+            int position = 0;
+            int document = 0;
+            while (position < size) {
+                int delta = bytes[position] & 0x7F;
+                for (int shift = 7; bytes[position++] < 0; shift += 7) {
+                    delta |= (bytes[position] & 0x7F) << shift;
+                }
+                int frequency = bytes[position] & 0x7F;
+                for (int shift = 7; bytes[position++] < 0; shift += 7) {
+                    frequency |= (bytes[position] & 0x7F) << shift;
+                }
+                document += delta;
+                visitor.accept(document, frequency);
+            }
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+    }
+}
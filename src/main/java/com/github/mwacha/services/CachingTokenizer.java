@@ -0,0 +1,45 @@
+package com.github.mwacha.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decora um {@link Tokenizer} com um cache LRU das contagens de tokens. Documentos técnicos
+ * repetem muito as mesmas palavras, então a maior parte das contagens vem do cache.
+ */
+public class CachingTokenizer implements Tokenizer {
+
+    private final Tokenizer delegate;
+    private final Map<String, Integer> counts;
+
+    public CachingTokenizer(Tokenizer delegate, int maxEntries) {
+        this.delegate = delegate;
+        this.counts = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public int countTokens(CharSequence text, int start, int end) {
+        String word = text.subSequence(start, end).toString();
+        synchronized (counts) {
+            Integer cached = counts.get(word);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        int count = delegate.countTokens(word, 0, word.length());
+        synchronized (counts) {
+            counts.put(word, count);
+        }
+        return count;
+    }
+
+    @Override
+    public int specialTokens() {
+        return delegate.specialTokens();
+    }
+}
@@ -1,38 +1,70 @@
 package com.github.mwacha.services;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 import javax.annotation.PostConstruct;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 
 /**
  * Serviço para interação com a API REST do ChromaDB, permitindo criar coleções,
  * adicionar documentos com embeddings e consultar documentos relevantes.
+ * <p>
+ * É o {@link VectorStore} padrão ({@code vector-store.type=chroma}).
  */
 @Service
+@ConditionalOnProperty(name = "vector-store.type", havingValue = "chroma", matchIfMissing = true)
 @Slf4j
-public class ChromaClient {
+public class ChromaClient implements VectorStore {
 
-    private static final String BASE_URL = "http://localhost:8001";
     private static final String COLLECTION_NAME = "my_collection";
     private static final String API_PATH = "/api/v1";
     private static final int EXPECTED_EMBEDDING_SIZE = 1024;
+    private static final int GET_PAGE_SIZE = 1000;
 
     private final WebClient webClient;
+    private final int upsertBatchSize;
+    private final int upsertConcurrency;
+    private final int upsertMaxRetries;
     private String collectionUuid; // Armazena o UUID da coleção
+    private final AtomicLong collectionVersion = new AtomicLong(); // Incrementada a cada alteração da coleção
 
-    public ChromaClient() {
-        this.webClient = WebClient.builder()
-                .baseUrl(BASE_URL)
-                .build();
+    @Autowired
+    public ChromaClient(@Qualifier("chromaWebClient") WebClient webClient,
+                        @Value("${chroma.upsert.batch-size:100}") int upsertBatchSize,
+                        @Value("${chroma.upsert.concurrency:4}") int upsertConcurrency,
+                        @Value("${chroma.upsert.max-retries:3}") int upsertMaxRetries) {
+        if (upsertBatchSize <= 0 || upsertConcurrency <= 0 || upsertMaxRetries < 0) {
+            throw new IllegalArgumentException("Configuração de upsert inválida: batch-size=" + upsertBatchSize +
+                    ", concurrency=" + upsertConcurrency + ", max-retries=" + upsertMaxRetries);
+        }
+        this.webClient = webClient;
+        this.upsertBatchSize = upsertBatchSize;
+        this.upsertConcurrency = upsertConcurrency;
+        this.upsertMaxRetries = upsertMaxRetries;
     }
 
     @PostConstruct
@@ -53,35 +85,19 @@ public class ChromaClient {
      * @throws IllegalArgumentException se o texto ou embedding for inválido.
      */
     public void addDocument(String text, float[] embedding) {
-        if (text == null || text.trim().isEmpty()) {
-            throw new IllegalArgumentException("O texto do documento não pode ser nulo ou vazio.");
-        }
-        if (embedding == null || embedding.length == 0) {
-            throw new IllegalArgumentException("O embedding não pode ser nulo ou vazio.");
-        }
-        if (embedding.length != EXPECTED_EMBEDDING_SIZE) {
-            throw new IllegalArgumentException(
-                    "O embedding deve ter " + EXPECTED_EMBEDDING_SIZE + " dimensões, mas tem " + embedding.length);
-        }
+        validateDocument(text, embedding);
         if (collectionUuid == null) {
             throw new IllegalStateException("UUID da coleção não foi inicializado.");
         }
 
-        List<Float> embeddingList = new ArrayList<>();
-        for (float value : embedding) {
-            embeddingList.add(value);
-        }
-
-        Map<String, Object> doc = Map.of(
-                "documents", List.of(text),
-                "embeddings", List.of(embeddingList),
-                "metadatas", List.of(Map.of("source", "upload")),
-                "ids", List.of("doc_" + System.currentTimeMillis())
-        );
+        UpsertRequest doc = new UpsertRequest(
+                List.of(contentId(text)),
+                List.of(embedding),
+                List.of(text),
+                List.of(Map.of("source", "upload")));
 
-        // Logar o corpo da requisição para depuração
-        log.debug("Enviando requisição para upsert: {}", doc);
-        log.debug("Tamanho do embedding enviado: {}", embeddingList.size());
+        log.debug("Enviando requisição para upsert do documento {} (embedding com {} dimensões)",
+                doc.ids().get(0), embedding.length);
 
         try {
             webClient.post()
@@ -90,6 +106,7 @@ public class ChromaClient {
                     .retrieve()
                     .bodyToMono(Void.class)
                     .block();
+            collectionVersion.incrementAndGet();
             log.info("Documento adicionado com sucesso à coleção {}", COLLECTION_NAME);
         } catch (WebClientResponseException e) {
             log.error("Erro ao adicionar documento: Status {}, Resposta: {}",
@@ -99,14 +116,261 @@ public class ChromaClient {
     }
 
     /**
-     * Consulta documentos relevantes com base em um embedding de consulta.
+     * Adiciona vários documentos à coleção no ChromaDB, usando como identificador de cada
+     * documento o hash do seu conteúdo.
+     *
+     * @param texts      Os textos dos documentos.
+     * @param embeddings Os vetores de embedding, na mesma ordem dos textos.
+     * @param metadatas  Os metadados de cada documento, ou {@code null} para usar o metadado padrão.
+     * @throws IllegalArgumentException se as listas tiverem tamanhos diferentes ou algum item for inválido.
+     * @see #addDocuments(List, List, List, List)
+     */
+    public void addDocuments(List<String> texts, List<float[]> embeddings, List<Map<String, Object>> metadatas) {
+        if (texts == null) {
+            throw new IllegalArgumentException("Textos e embeddings devem ser não nulos e ter o mesmo tamanho.");
+        }
+        addDocuments(texts.stream().map(ChromaClient::contentId).toList(), texts, embeddings, metadatas);
+    }
+
+    /**
+     * Adiciona (ou substitui) vários documentos na coleção no ChromaDB. Os documentos são
+     * divididos em lotes de {@code chroma.upsert.batch-size} itens, enviados em paralelo até
+     * o limite de {@code chroma.upsert.concurrency} requisições simultâneas. Lotes que falham
+     * por erro de conexão ou erro 5xx/429 são reenviados até {@code chroma.upsert.max-retries} vezes.
+     *
+     * @param ids        Os identificadores dos documentos.
+     * @param texts      Os textos dos documentos.
+     * @param embeddings Os vetores de embedding, na mesma ordem dos textos.
+     * @param metadatas  Os metadados de cada documento, ou {@code null} para usar o metadado padrão.
+     * @throws IllegalArgumentException se as listas tiverem tamanhos diferentes ou algum item for inválido.
+     */
+    @Override
+    public void addDocuments(List<String> ids, List<String> texts, List<float[]> embeddings,
+                             List<Map<String, Object>> metadatas) {
+        if (texts == null || embeddings == null || texts.size() != embeddings.size()) {
+            throw new IllegalArgumentException("Textos e embeddings devem ser não nulos e ter o mesmo tamanho.");
+        }
+        if (ids == null || ids.size() != texts.size()) {
+            throw new IllegalArgumentException("Os identificadores devem ter o mesmo tamanho da lista de textos.");
+        }
+        if (metadatas != null && metadatas.size() != texts.size()) {
+            throw new IllegalArgumentException("Os metadados devem ter o mesmo tamanho da lista de textos.");
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            validateDocument(texts.get(i), embeddings.get(i));
+        }
+        if (collectionUuid == null) {
+            throw new IllegalStateException("UUID da coleção não foi inicializado.");
+        }
+        if (texts.isEmpty()) {
+            return;
+        }
+
+        int batchCount = sendInBatches(texts.size(), (from, to) ->
+                postBatch("upsert", buildUpsertBody(ids, texts, embeddings, metadatas, from, to), to - from));
+        log.info("{} documentos adicionados com sucesso à coleção {} em {} lotes",
+                texts.size(), COLLECTION_NAME, batchCount);
+    }
+
+    /**
+     * Lista os chunks já armazenados de um documento.
+     *
+     * @param documentId O identificador do documento (metadado {@code document_id}).
+     * @return Metadados de cada chunk, indexados pelo identificador do chunk.
+     */
+    @Override
+    public Map<String, Map<String, Object>> getDocumentChunks(String documentId) {
+        if (collectionUuid == null) {
+            throw new IllegalStateException("UUID da coleção não foi inicializado.");
+        }
+
+        Map<String, Map<String, Object>> chunks = new LinkedHashMap<>();
+        for (int offset = 0; ; offset += GET_PAGE_SIZE) {
+            GetRequest body = new GetRequest(Map.of("document_id", documentId), List.of("metadatas"),
+                    GET_PAGE_SIZE, offset);
+            try {
+                GetResponse response = webClient.post()
+                        .uri(API_PATH + "/collections/" + collectionUuid + "/get")
+                        .bodyValue(body)
+                        .retrieve()
+                        .bodyToMono(GetResponse.class)
+                        .block();
+                List<String> ids = response == null ? null : response.ids();
+                if (ids == null || ids.isEmpty()) {
+                    break;
+                }
+                List<Map<String, Object>> metadatas = response.metadatas();
+                for (int i = 0; i < ids.size(); i++) {
+                    Map<String, Object> metadata = metadatas == null ? null : metadatas.get(i);
+                    chunks.put(ids.get(i), metadata == null ? Map.of() : metadata);
+                }
+                if (ids.size() < GET_PAGE_SIZE) {
+                    break;
+                }
+            } catch (WebClientResponseException e) {
+                log.error("Erro ao listar chunks do documento {}: Status {}, Resposta: {}",
+                        documentId, e.getStatusCode(), e.getResponseBodyAsString());
+                throw e;
+            }
+        }
+        log.debug("Documento {} possui {} chunks armazenados", documentId, chunks.size());
+        return chunks;
+    }
+
+    /**
+     * Lê chunks pelos identificadores, na ordem pedida.
+     *
+     * @param ids Os identificadores dos chunks.
+     * @return Os chunks encontrados, com distância {@code NaN}; identificadores inexistentes são ignorados.
+     */
+    @Override
+    public List<RetrievedChunk> getChunks(List<String> ids) {
+        if (collectionUuid == null) {
+            throw new IllegalStateException("UUID da coleção não foi inicializado.");
+        }
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            GetResponse response = webClient.post()
+                    .uri(API_PATH + "/collections/" + collectionUuid + "/get")
+                    .bodyValue(new GetByIdsRequest(List.copyOf(ids), List.of("documents", "metadatas", "embeddings")))
+                    .retrieve()
+                    .bodyToMono(GetResponse.class)
+                    .block();
+            if (response == null || response.ids() == null || response.documents() == null) {
+                return List.of();
+            }
+            Map<String, RetrievedChunk> found = new HashMap<>();
+            for (int i = 0; i < response.ids().size(); i++) {
+                Map<String, Object> metadata = response.metadatas() == null ? null : response.metadatas().get(i);
+                float[] embedding = response.embeddings() == null ? null : response.embeddings().get(i);
+                found.put(response.ids().get(i), new RetrievedChunk(response.ids().get(i),
+                        response.documents().get(i), metadata == null ? Map.of() : metadata, Double.NaN, embedding));
+            }
+            // O ChromaDB não garante a ordem dos identificadores pedidos
+            return ids.stream().map(found::get).filter(Objects::nonNull).toList();
+        } catch (WebClientResponseException e) {
+            log.error("Erro ao ler chunks por identificador: Status {}, Resposta: {}",
+                    e.getStatusCode(), e.getResponseBodyAsString());
+            throw e;
+        }
+    }
+
+    /**
+     * Lê os embeddings armazenados de chunks.
+     *
+     * @param ids Os identificadores dos chunks.
+     * @return Os embeddings encontrados, indexados pelo identificador.
+     */
+    @Override
+    public Map<String, float[]> getEmbeddings(List<String> ids) {
+        if (collectionUuid == null) {
+            throw new IllegalStateException("UUID da coleção não foi inicializado.");
+        }
+        if (ids == null || ids.isEmpty()) {
+            return Map.of();
+        }
+
+        try {
+            GetResponse response = webClient.post()
+                    .uri(API_PATH + "/collections/" + collectionUuid + "/get")
+                    .bodyValue(new GetByIdsRequest(List.copyOf(ids), List.of("embeddings")))
+                    .retrieve()
+                    .bodyToMono(GetResponse.class)
+                    .block();
+            if (response == null || response.ids() == null || response.embeddings() == null) {
+                return Map.of();
+            }
+            Map<String, float[]> embeddings = new HashMap<>();
+            for (int i = 0; i < response.ids().size(); i++) {
+                if (response.embeddings().get(i) != null) {
+                    embeddings.put(response.ids().get(i), response.embeddings().get(i));
+                }
+            }
+            return embeddings;
+        } catch (WebClientResponseException e) {
+            log.error("Erro ao ler embeddings por identificador: Status {}, Resposta: {}",
+                    e.getStatusCode(), e.getResponseBodyAsString());
+            throw e;
+        }
+    }
+
+    /**
+     * Remove documentos da coleção, em lotes de {@code chroma.upsert.batch-size} identificadores.
+     *
+     * @param ids Os identificadores dos documentos a remover.
+     */
+    @Override
+    public void deleteDocuments(List<String> ids) {
+        if (collectionUuid == null) {
+            throw new IllegalStateException("UUID da coleção não foi inicializado.");
+        }
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        sendInBatches(ids.size(), (from, to) ->
+                postBatch("delete", Map.of("ids", List.copyOf(ids.subList(from, to))), to - from));
+        log.info("{} documentos removidos da coleção {}", ids.size(), COLLECTION_NAME);
+    }
+
+    /**
+     * Atualiza apenas os metadados de documentos existentes, sem reenviar textos e embeddings.
+     *
+     * @param ids       Os identificadores dos documentos.
+     * @param metadatas Os novos metadados, na mesma ordem dos identificadores.
+     */
+    @Override
+    public void updateMetadatas(List<String> ids, List<Map<String, Object>> metadatas) {
+        if (ids == null || metadatas == null || ids.size() != metadatas.size()) {
+            throw new IllegalArgumentException("Identificadores e metadados devem ser não nulos e ter o mesmo tamanho.");
+        }
+        if (collectionUuid == null) {
+            throw new IllegalStateException("UUID da coleção não foi inicializado.");
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        sendInBatches(ids.size(), (from, to) -> postBatch("update", Map.of(
+                "ids", List.copyOf(ids.subList(from, to)),
+                "metadatas", List.copyOf(metadatas.subList(from, to))), to - from));
+        log.debug("Metadados de {} documentos atualizados na coleção {}", ids.size(), COLLECTION_NAME);
+    }
+
+    /**
+     * Gera o identificador de um chunk a partir do hash do seu conteúdo.
+     */
+    static String contentId(String text) {
+        return "chunk_" + ContentHash.sha256Hex(text);
+    }
+
+    /**
+     * Retorna a versão atual da coleção. O valor aumenta sempre que documentos são
+     * gravados por esta instância, permitindo que caches derivados da coleção saibam
+     * quando ficaram desatualizados.
+     */
+    @Override
+    public long collectionVersion() {
+        return collectionVersion.get();
+    }
+
+    /**
+     * Consulta os chunks relevantes com base em um embedding de consulta, incluindo
+     * identificador, metadados e distância de cada um.
      *
-     * @param query     O texto da consulta (para logging, não usado diretamente).
-     * @param embedding O vetor de embedding da consulta.
-     * @return Lista de textos dos documentos relevantes ou lista vazia se nenhum for encontrado.
-     * @throws IllegalArgumentException se o embedding for inválido.
+     * @param query          O texto da consulta (para logging, não usado diretamente).
+     * @param embedding      O vetor de embedding da consulta.
+     * @param limit          Quantidade máxima de chunks ({@code n_results}).
+     * @param withEmbeddings Se o {@code include} da consulta pede os embeddings armazenados.
+     * @return Chunks relevantes em ordem crescente de distância, ou lista vazia se nenhum for encontrado.
+     * @throws IllegalArgumentException se o embedding ou o limite forem inválidos.
      */
-    public List<String> queryRelevant(String query, float[] embedding) {
+    @Override
+    public List<RetrievedChunk> queryChunks(String query, float[] embedding, int limit, boolean withEmbeddings) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("O limite da consulta deve ser positivo: " + limit);
+        }
         if (embedding == null || embedding.length == 0) {
             throw new IllegalArgumentException("O embedding da consulta não pode ser nulo ou vazio.");
         }
@@ -118,35 +382,45 @@ public class ChromaClient {
             throw new IllegalStateException("UUID da coleção não foi inicializado.");
         }
 
-        List<Float> embeddingList = new ArrayList<>();
-        for (float value : embedding) {
-            embeddingList.add(value);
-        }
-
-        Map<String, Object> body = Map.of(
-                "query_embeddings", List.of(embeddingList),
-                "n_results", 20, // Aumentado para 20
-                "include", List.of("documents", "metadatas", "distances")
-        );
+        QueryRequest body = new QueryRequest(
+                List.of(embedding),
+                limit,
+                withEmbeddings ? List.of("documents", "metadatas", "distances", "embeddings")
+                        : List.of("documents", "metadatas", "distances"));
 
-        log.debug("Enviando requisição para query: {}", body);
+        log.debug("Enviando requisição para query {}", PayloadLog.describe(query));
 
         try {
-            Map<String, Object> response = webClient.post()
+            QueryResponse response = webClient.post()
                     .uri(API_PATH + "/collections/" + collectionUuid + "/query")
                     .bodyValue(body)
                     .retrieve()
-                    .bodyToMono(Map.class)
+                    .bodyToMono(QueryResponse.class)
                     .block();
 
-            if (response == null || !response.containsKey("documents")) {
-                log.warn("Nenhum documento encontrado para a consulta: {}", query);
+            if (response == null || response.documents() == null) {
+                log.warn("Nenhum documento encontrado para a consulta {}", PayloadLog.describe(query));
                 return Collections.emptyList();
             }
 
-            List<List<String>> documents = (List<List<String>>) response.get("documents");
-            log.debug("Documentos retornados: {}", documents);
-            return documents.isEmpty() ? Collections.emptyList() : documents.get(0);
+            List<String> documents = firstResult(response.documents());
+            List<String> ids = firstResult(response.ids());
+            List<Map<String, Object>> metadatas = firstResult(response.metadatas());
+            List<float[]> embeddings = firstResult(response.embeddings());
+            double[] distances = response.distances() == null || response.distances().length == 0
+                    || response.distances()[0] == null ? new double[0] : response.distances()[0];
+            log.debug("{} documentos retornados", documents.size());
+
+            List<RetrievedChunk> chunks = new ArrayList<>(documents.size());
+            for (int i = 0; i < documents.size(); i++) {
+                chunks.add(new RetrievedChunk(
+                        i < ids.size() ? ids.get(i) : null,
+                        documents.get(i),
+                        i < metadatas.size() && metadatas.get(i) != null ? metadatas.get(i) : Map.of(),
+                        i < distances.length ? distances[i] : Double.NaN,
+                        i < embeddings.size() ? embeddings.get(i) : null));
+            }
+            return chunks;
         } catch (WebClientResponseException e) {
             log.error("Erro ao consultar documentos: Status {}, Resposta: {}",
                     e.getStatusCode(), e.getResponseBodyAsString());
@@ -154,6 +428,14 @@ public class ChromaClient {
         }
     }
 
+    /**
+     * O endpoint de query responde uma lista por embedding de consulta; como enviamos
+     * apenas um embedding, interessa somente a primeira lista de cada campo.
+     */
+    private static <T> List<T> firstResult(List<List<T>> values) {
+        return values == null || values.isEmpty() || values.get(0) == null ? List.of() : values.get(0);
+    }
+
     /**
      * Cria a coleção se ela não existir, ou verifica sua existência.
      * Armazena o UUID da coleção para uso nos endpoints.
@@ -161,14 +443,14 @@ public class ChromaClient {
      */
     private void criarOuObterColecao() {
         try {
-            Map<String, Object> existingCollection = webClient.get()
+            Collection existingCollection = webClient.get()
                     .uri(API_PATH + "/collections/" + COLLECTION_NAME)
                     .retrieve()
-                    .bodyToMono(Map.class)
+                    .bodyToMono(Collection.class)
                     .block();
 
-            if (existingCollection != null && existingCollection.containsKey("name")) {
-                collectionUuid = (String) existingCollection.get("id");
+            if (existingCollection != null && existingCollection.name() != null) {
+                collectionUuid = existingCollection.id();
                 log.info("Coleção {} já existe com UUID {}.", COLLECTION_NAME, collectionUuid);
                 return;
             }
@@ -187,14 +469,14 @@ public class ChromaClient {
         Map<String, Object> request = Map.of("name", COLLECTION_NAME);
 
         try {
-            Map<String, Object> response = webClient.post()
+            Collection response = webClient.post()
                     .uri(API_PATH + "/collections")
                     .bodyValue(request)
                     .retrieve()
-                    .bodyToMono(Map.class)
+                    .bodyToMono(Collection.class)
                     .block();
-            if (response != null && response.containsKey("id")) {
-                collectionUuid = (String) response.get("id");
+            if (response != null && response.id() != null) {
+                collectionUuid = response.id();
                 log.info("Coleção {} criada com sucesso com UUID {}.", COLLECTION_NAME, collectionUuid);
             } else {
                 throw new IllegalStateException("Falha ao obter UUID da coleção criada.");
@@ -205,4 +487,109 @@ public class ChromaClient {
             throw e;
         }
     }
+
+    private void validateDocument(String text, float[] embedding) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("O texto do documento não pode ser nulo ou vazio.");
+        }
+        if (embedding == null || embedding.length == 0) {
+            throw new IllegalArgumentException("O embedding não pode ser nulo ou vazio.");
+        }
+        if (embedding.length != EXPECTED_EMBEDDING_SIZE) {
+            throw new IllegalArgumentException(
+                    "O embedding deve ter " + EXPECTED_EMBEDDING_SIZE + " dimensões, mas tem " + embedding.length);
+        }
+    }
+
+    private UpsertRequest buildUpsertBody(List<String> ids, List<String> texts, List<float[]> embeddings,
+                                          List<Map<String, Object>> metadatas, int from, int to) {
+        List<Map<String, Object>> metadataList = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            metadataList.add(metadatas == null ? Map.of("source", "upload") : metadatas.get(i));
+        }
+        return new UpsertRequest(
+                List.copyOf(ids.subList(from, to)),
+                List.copyOf(embeddings.subList(from, to)),
+                List.copyOf(texts.subList(from, to)),
+                metadataList);
+    }
+
+    /**
+     * Divide {@code total} itens em lotes de {@code chroma.upsert.batch-size} e envia até
+     * {@code chroma.upsert.concurrency} lotes em paralelo, aguardando o término de todos.
+     *
+     * @return A quantidade de lotes enviados.
+     */
+    private int sendInBatches(int total, BiFunction<Integer, Integer, Mono<Void>> batchSender) {
+        int batchCount = (total + upsertBatchSize - 1) / upsertBatchSize;
+        Flux.range(0, batchCount)
+                .flatMap(batch -> {
+                    int from = batch * upsertBatchSize;
+                    return batchSender.apply(from, Math.min(from + upsertBatchSize, total));
+                }, upsertConcurrency)
+                .then()
+                .doFinally(signal -> collectionVersion.incrementAndGet()) // mesmo em falha, alguns lotes podem ter sido gravados
+                .block();
+        return batchCount;
+    }
+
+    private Mono<Void> postBatch(String operation, Object body, int size) {
+        return webClient.post()
+                .uri(API_PATH + "/collections/" + collectionUuid + "/" + operation)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .retryWhen(Retry.backoff(upsertMaxRetries, Duration.ofMillis(200))
+                        .filter(ChromaClient::isRetryable)
+                        .doBeforeRetry(signal -> log.warn("Repetindo {} de lote com {} documentos (tentativa {}): {}",
+                                operation, size, signal.totalRetries() + 1, signal.failure().getMessage()))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .doOnSuccess(ignored -> log.debug("Lote com {} documentos enviado para {}", size, operation))
+                .doOnError(WebClientResponseException.class, e -> log.error(
+                        "Erro ao executar {} de lote de documentos: Status {}, Resposta: {}",
+                        operation, e.getStatusCode(), e.getResponseBodyAsString()));
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof WebClientRequestException) {
+            return true;
+        }
+        if (error instanceof WebClientResponseException e) {
+            return e.getStatusCode().is5xxServerError() || e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS;
+        }
+        return false;
+    }
+
+    // Corpos das requisições e respostas da API do ChromaDB. Os embeddings são lidos e
+    // escritos direto de float[] pelo Jackson, sem passar por listas de Float.
+
+    record UpsertRequest(List<String> ids, List<float[]> embeddings, List<String> documents,
+                         List<Map<String, Object>> metadatas) {
+    }
+
+    record QueryRequest(@JsonProperty("query_embeddings") List<float[]> queryEmbeddings,
+                        @JsonProperty("n_results") int nResults,
+                        List<String> include) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record QueryResponse(List<List<String>> ids, List<List<String>> documents,
+                         List<List<Map<String, Object>>> metadatas, double[][] distances,
+                         List<List<float[]>> embeddings) {
+    }
+
+    record GetRequest(Map<String, Object> where, List<String> include, int limit, int offset) {
+    }
+
+    record GetByIdsRequest(List<String> ids, List<String> include) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record GetResponse(List<String> ids, List<String> documents, List<Map<String, Object>> metadatas,
+                       List<float[]> embeddings) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Collection(String id, String name) {
+    }
 }
\ No newline at end of file
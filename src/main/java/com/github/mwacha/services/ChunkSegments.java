@@ -0,0 +1,375 @@
+package com.github.mwacha.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Textos e metadados dos chunks de um {@link HnswVectorStore}, em segmentos só de acréscimo
+ * mapeados em memória.
+ * <p>
+ * Cada segmento ({@code segment-NNNNNN.seg}) tem um cabeçalho com CRC e uma sequência de
+ * registros {@code [tamanho][CRC32C][nó][id][document_id][texto][metadados em JSON]}. A tabela
+ * {@code chunks.bin}, com um registro de tamanho fixo por nó do {@link HnswIndex}, aponta para
+ * o registro atual de cada chunk e é a fonte da verdade sobre quais chunks estão ativos.
+ * Alterar metadados acrescenta um novo registro; remover apenas desmarca o nó na tabela. O
+ * espaço dos registros antigos é recuperado pela compactação do {@link HnswVectorStore}.
+ * <p>
+ * Abrir os arquivos apenas os mapeia: o conteúdo de um registro só é lido (e seu CRC
+ * conferido) quando o chunk é consultado.
+ * <p>
+ * Leituras concorrentes são seguras; gravações devem ser serializadas pelo chamador.
+ */
+final class ChunkSegments implements Closeable {
+
+    /**
+     * Chunk armazenado.
+     */
+    record StoredChunk(String id, String text, Map<String, Object> metadata) {
+
+        String documentId() {
+            Object documentId = metadata.get("document_id");
+            return documentId == null ? null : documentId.toString();
+        }
+
+        StoredChunk withMetadata(Map<String, Object> metadata) {
+            return new StoredChunk(id, text, metadata);
+        }
+    }
+
+    private static final int SEGMENT_MAGIC = 0x53454731; // "SEG1"
+    private static final int TABLE_MAGIC = 0x43484B31; // "CHK1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int RECORDS_PER_CHUNK = 65536;
+
+    // Cabeçalho do segmento (posições em bytes): magic, versão, número, CRC dos três, bytes usados
+    private static final int S_MAGIC = 0;
+    private static final int S_VERSION = 4;
+    private static final int S_NUMBER = 8;
+    private static final int S_HEADER_CRC = 12;
+    private static final int S_USED = 16;
+    private static final int SEGMENT_HEADER_BYTES = 24;
+    private static final int RECORD_PREFIX_BYTES = 8; // tamanho + CRC
+
+    // Tabela de chunks: cabeçalho (magic, versão, quantidade) e um registro por nó
+    private static final int T_MAGIC = 0;
+    private static final int T_VERSION = 4;
+    private static final int T_COUNT = 8;
+    private static final int E_SEGMENT = 0;
+    private static final int E_OFFSET = 1;
+    private static final int E_LENGTH = 2;
+    private static final int E_LIVE = 3;
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final MappedRecords table;
+    private final List<Segment> segments = new ArrayList<>();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ThreadLocal<CRC32C> checksums = ThreadLocal.withInitial(CRC32C::new);
+    private int count;
+
+    /**
+     * Abre (ou cria) os segmentos do diretório.
+     *
+     * @param segmentBytes Capacidade de cada segmento; um registro maior ganha um segmento do seu tamanho.
+     */
+    ChunkSegments(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.table = new MappedRecords(directory.resolve("chunks.bin"), 16, 4 * Integer.BYTES, RECORDS_PER_CHUNK);
+        ByteBuffer header = table.header();
+        if (header.getInt(T_MAGIC) == 0) {
+            header.putInt(T_MAGIC, TABLE_MAGIC).putInt(T_VERSION, FORMAT_VERSION).putInt(T_COUNT, 0);
+        } else if (header.getInt(T_MAGIC) != TABLE_MAGIC || header.getInt(T_VERSION) != FORMAT_VERSION) {
+            throw new IllegalStateException("Tabela de chunks inválida em " + directory);
+        }
+        this.count = header.getInt(T_COUNT);
+        try {
+            for (int number = 0; Files.exists(segmentPath(number)); number++) {
+                segments.add(Segment.open(segmentPath(number), number));
+            }
+        } catch (IOException e) {
+            try {
+                close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException("Não foi possível abrir os segmentos em " + directory, e);
+        }
+    }
+
+    /**
+     * Quantidade de nós na tabela, incluindo os removidos.
+     */
+    int size() {
+        return count;
+    }
+
+    boolean isLive(int node) {
+        return node < count && table.getInt(node, E_LIVE) != 0;
+    }
+
+    /**
+     * Grava o chunk do nó, substituindo o registro atual se já houver um. Nós entre o último
+     * da tabela e {@code node} ficam removidos.
+     */
+    void put(int node, StoredChunk chunk) {
+        if (node < 0) {
+            throw new IllegalArgumentException("Nó inválido na tabela de chunks: " + node);
+        }
+        byte[] record = encode(node, chunk);
+        Segment segment = segmentFor(record.length);
+        int offset = segment.append(record, checksum(record));
+
+        table.ensureCapacity(node + 1);
+        table.putInt(node, E_SEGMENT, segment.number);
+        table.putInt(node, E_OFFSET, offset);
+        table.putInt(node, E_LENGTH, record.length);
+        table.putInt(node, E_LIVE, 1);
+        if (node >= count) {
+            count = node + 1;
+            table.header().putInt(T_COUNT, count);
+        }
+    }
+
+    /**
+     * Desmarca o nó na tabela.
+     */
+    void delete(int node) {
+        if (node < count) {
+            table.putInt(node, E_LIVE, 0);
+        }
+    }
+
+    /**
+     * Lê o identificador do chunk sem decodificar texto e metadados.
+     */
+    String id(int node) {
+        ByteBuffer record = record(node);
+        record.position(Integer.BYTES);
+        return readString(record);
+    }
+
+    /**
+     * Lê o chunk do nó, conferindo o CRC do registro.
+     *
+     * @throws IllegalStateException se o registro estiver corrompido.
+     */
+    StoredChunk read(int node) {
+        ByteBuffer record = record(node);
+        Segment segment = segments.get(table.getInt(node, E_SEGMENT));
+        int offset = table.getInt(node, E_OFFSET);
+        CRC32C crc = checksums.get();
+        crc.reset();
+        crc.update(record.duplicate());
+        if ((int) crc.getValue() != segment.buffer.getInt(offset - Integer.BYTES)) {
+            throw new IllegalStateException("Registro corrompido do nó " + node + " no segmento " + segment.number +
+                    " de " + directory);
+        }
+
+        int storedNode = record.getInt();
+        if (storedNode != node) {
+            throw new IllegalStateException("Registro do nó " + storedNode + " apontado pelo nó " + node);
+        }
+        String id = readString(record);
+        readString(record); // document_id, repetido nos metadados
+        String text = readString(record);
+        byte[] metadata = new byte[checkedLength(record)];
+        record.get(metadata);
+        try {
+            return new StoredChunk(id, text, mapper.readValue(metadata, METADATA_TYPE));
+        } catch (IOException e) {
+            throw new IllegalStateException("Metadados inválidos do nó " + node + " em " + directory, e);
+        }
+    }
+
+    /**
+     * Lê o {@code document_id} do chunk sem decodificar texto e metadados.
+     */
+    String documentId(int node) {
+        ByteBuffer record = record(node);
+        record.position(Integer.BYTES);
+        skipString(record);
+        String documentId = readString(record);
+        return documentId.isEmpty() ? null : documentId;
+    }
+
+    void force() {
+        table.force();
+        segments.forEach(segment -> segment.buffer.force());
+    }
+
+    @Override
+    public void close() throws IOException {
+        table.close();
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+    }
+
+    private ByteBuffer record(int node) {
+        if (node < 0 || node >= count) {
+            throw new IllegalArgumentException("Nó inexistente na tabela de chunks: " + node);
+        }
+        int number = table.getInt(node, E_SEGMENT);
+        int offset = table.getInt(node, E_OFFSET);
+        int length = table.getInt(node, E_LENGTH);
+        if (number < 0 || number >= segments.size() || offset < SEGMENT_HEADER_BYTES + RECORD_PREFIX_BYTES
+                || length < 0 || (long) offset + length > segments.get(number).buffer.capacity()) {
+            throw new IllegalStateException("Posição inválida do registro do nó " + node + " em " + directory);
+        }
+        return segments.get(number).buffer.slice(offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private Segment segmentFor(int recordLength) {
+        int needed = RECORD_PREFIX_BYTES + recordLength;
+        Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last != null && last.remaining() >= needed) {
+            return last;
+        }
+        int number = segments.size();
+        try {
+            Segment segment = Segment.create(segmentPath(number), number,
+                    Math.max(segmentBytes, SEGMENT_HEADER_BYTES + needed));
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível criar o segmento " + segmentPath(number), e);
+        }
+    }
+
+    private byte[] encode(int node, StoredChunk chunk) {
+        byte[] id = chunk.id().getBytes(StandardCharsets.UTF_8);
+        String documentId = chunk.documentId();
+        byte[] document = documentId == null ? new byte[0] : documentId.getBytes(StandardCharsets.UTF_8);
+        byte[] text = chunk.text().getBytes(StandardCharsets.UTF_8);
+        byte[] metadata;
+        try {
+            metadata = mapper.writeValueAsBytes(chunk.metadata());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Metadados não serializáveis para o chunk " + chunk.id(), e);
+        }
+        ByteBuffer record = ByteBuffer.allocate(5 * Integer.BYTES + id.length + document.length + text.length + metadata.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(node)
+                .putInt(id.length).put(id)
+                .putInt(document.length).put(document)
+                .putInt(text.length).put(text)
+                .putInt(metadata.length).put(metadata);
+        return record.array();
+    }
+
+    private int checksum(byte[] record) {
+        CRC32C crc = checksums.get();
+        crc.reset();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("segment-%06d.seg", number));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[checkedLength(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = checkedLength(buffer);
+        buffer.position(buffer.position() + length);
+    }
+
+    private static int checkedLength(ByteBuffer buffer) {
+        int length = buffer.remaining() < Integer.BYTES ? -1 : buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("Registro de chunk corrompido: campo com " + length + " bytes");
+        }
+        return length;
+    }
+
+    /**
+     * Arquivo de segmento mapeado por inteiro.
+     */
+    private static final class Segment {
+
+        final int number;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        private Segment(int number, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, int number, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = map(channel, capacity);
+            buffer.putInt(S_MAGIC, SEGMENT_MAGIC).putInt(S_VERSION, FORMAT_VERSION).putInt(S_NUMBER, number)
+                    .putInt(S_HEADER_CRC, headerChecksum(buffer)).putInt(S_USED, SEGMENT_HEADER_BYTES);
+            return new Segment(number, channel, buffer);
+        }
+
+        static Segment open(Path path, int number) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = map(channel, (int) channel.size());
+            if (buffer.capacity() < SEGMENT_HEADER_BYTES || buffer.getInt(S_MAGIC) != SEGMENT_MAGIC
+                    || buffer.getInt(S_VERSION) != FORMAT_VERSION || buffer.getInt(S_NUMBER) != number
+                    || buffer.getInt(S_HEADER_CRC) != headerChecksum(buffer)) {
+                channel.close();
+                throw new IOException("Cabeçalho inválido no segmento " + path);
+            }
+            return new Segment(number, channel, buffer);
+        }
+
+        int remaining() {
+            return buffer.capacity() - buffer.getInt(S_USED);
+        }
+
+        /**
+         * Acrescenta o registro e retorna a posição do seu conteúdo (depois de tamanho e CRC).
+         */
+        int append(byte[] record, int checksum) {
+            int used = buffer.getInt(S_USED);
+            buffer.putInt(used, record.length).putInt(used + Integer.BYTES, checksum)
+                    .put(used + RECORD_PREFIX_BYTES, record);
+            buffer.putInt(S_USED, used + RECORD_PREFIX_BYTES + record.length);
+            return used + RECORD_PREFIX_BYTES;
+        }
+
+        private static MappedByteBuffer map(FileChannel channel, int capacity) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+
+        private static int headerChecksum(ByteBuffer buffer) {
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, S_HEADER_CRC));
+            return (int) crc.getValue();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.mwacha.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Monta o contexto do prompt a partir dos chunks recuperados, limitado a
+ * {@code context.max-tokens} tokens.
+ * <p>
+ * Os chunks são considerados na ordem de relevância recebida. Um chunk quase idêntico a outro
+ * já escolhido (similaridade de Jaccard dos pares de palavras de pelo menos
+ * {@code context.duplicate-similarity}) é descartado. O primeiro chunk que não cabe inteiro é
+ * cortado no último fim de frase que cabe no orçamento, e os seguintes são ignorados.
+ * <p>
+ * Os tokens são estimados por palavra, com {@code context.chars-per-token} caracteres por
+ * token, já que o tokenizer do modelo de geração não está disponível na aplicação.
+ */
+@Component
+@Slf4j
+public class ContextAssembler {
+
+    private final Tokenizer tokenizer;
+    private final int maxTokens;
+    private final double duplicateSimilarity;
+
+    @Autowired
+    public ContextAssembler(@Value("${context.max-tokens:3000}") int maxTokens,
+                            @Value("${context.chars-per-token:4}") int charsPerToken,
+                            @Value("${context.duplicate-similarity:0.9}") double duplicateSimilarity) {
+        this(estimator(charsPerToken), maxTokens, duplicateSimilarity);
+    }
+
+    ContextAssembler(Tokenizer tokenizer, int maxTokens, double duplicateSimilarity) {
+        if (maxTokens <= 0 || duplicateSimilarity <= 0 || duplicateSimilarity > 1) {
+            throw new IllegalArgumentException("Configuração do contexto inválida: max-tokens=" + maxTokens +
+                    ", duplicate-similarity=" + duplicateSimilarity);
+        }
+        this.tokenizer = tokenizer;
+        this.maxTokens = maxTokens;
+        this.duplicateSimilarity = duplicateSimilarity;
+    }
+
+    /**
+     * Seleciona os chunks (ou o início deles) que formam o contexto.
+     *
+     * @param chunks Chunks recuperados, do mais para o menos relevante.
+     * @return Os chunks escolhidos, na mesma ordem; o último pode ter o texto cortado em um fim de frase.
+     */
+    public List<RetrievedChunk> assemble(List<RetrievedChunk> chunks) {
+        List<RetrievedChunk> selected = new ArrayList<>();
+        List<Set<String>> selectedShingles = new ArrayList<>();
+        int used = 0;
+        int original = 0;
+        int duplicates = 0;
+        boolean full = false;
+        for (RetrievedChunk chunk : chunks) {
+            Measure measure = measure(chunk.text(), maxTokens - used);
+            original += measure.tokens();
+            if (full) {
+                continue;
+            }
+            Set<String> shingles = shingles(chunk.text());
+            if (isDuplicate(shingles, selectedShingles)) {
+                duplicates++;
+                continue;
+            }
+            if (used + measure.tokens() <= maxTokens) {
+                selected.add(chunk);
+                selectedShingles.add(shingles);
+                used += measure.tokens();
+                continue;
+            }
+            if (measure.sentenceEnd() > 0) {
+                selected.add(new RetrievedChunk(chunk.id(), chunk.text().substring(0, measure.sentenceEnd()),
+                        chunk.metadata(), chunk.distance(), chunk.embedding()));
+                used += measure.sentenceTokens();
+            }
+            full = true;
+        }
+        log.info("Contexto com {} de {} chunks e ~{} tokens (~{} tokens economizados, {} chunks duplicados)",
+                selected.size(), chunks.size(), used, original - used, duplicates);
+        return selected;
+    }
+
+    /**
+     * Conta os tokens do texto e encontra o maior prefixo terminado em fim de frase
+     * ({@code .}, {@code !} ou {@code ?}) com até {@code budget} tokens.
+     */
+    private Measure measure(String text, int budget) {
+        int tokens = 0;
+        int sentenceEnd = 0;
+        int sentenceTokens = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            tokens += tokenizer.countTokens(text, start, i);
+            char last = text.charAt(i - 1);
+            if (tokens <= budget && (last == '.' || last == '!' || last == '?')) {
+                sentenceEnd = i;
+                sentenceTokens = tokens;
+            }
+        }
+        return new Measure(tokens, sentenceEnd, sentenceTokens);
+    }
+
+    private boolean isDuplicate(Set<String> shingles, List<Set<String>> selected) {
+        for (Set<String> other : selected) {
+            int common = 0;
+            for (String shingle : shingles) {
+                if (other.contains(shingle)) {
+                    common++;
+                }
+            }
+            int union = shingles.size() + other.size() - common;
+            if (union > 0 && (double) common / union >= duplicateSimilarity) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pares de palavras consecutivas do texto (ou as palavras, se houver só uma), sem
+     * diferenciar maiúsculas e acentos.
+     */
+    private static Set<String> shingles(String text) {
+        List<String> terms = Bm25Index.terms(text);
+        if (terms.size() < 2) {
+            return new HashSet<>(terms);
+        }
+        Set<String> shingles = new HashSet<>();
+        for (int i = 1; i < terms.size(); i++) {
+            shingles.add(terms.get(i - 1) + ' ' + terms.get(i));
+        }
+        return shingles;
+    }
+
+    private static Tokenizer estimator(int charsPerToken) {
+        if (charsPerToken <= 0) {
+            throw new IllegalArgumentException("context.chars-per-token deve ser positivo: " + charsPerToken);
+        }
+        return (text, start, end) -> Math.max(1, (end - start + charsPerToken - 1) / charsPerToken);
+    }
+
+    /**
+     * @param tokens         Tokens do texto inteiro.
+     * @param sentenceEnd    Fim do maior prefixo terminado em fim de frase que cabe no orçamento, ou 0.
+     * @param sentenceTokens Tokens desse prefixo.
+     */
+    private record Measure(int tokens, int sentenceEnd, int sentenceTokens) {
+    }
+}
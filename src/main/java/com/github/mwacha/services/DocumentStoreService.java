@@ -1,78 +1,359 @@
 package com.github.mwacha.services;
 
+import com.github.mwacha.services.IngestionPipeline.Segment;
+import com.github.mwacha.services.IngestionPipeline.TextChunk;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.poi.hwpf.HWPFDocument;
-import org.apache.poi.hwpf.extractor.WordExtractor;
+import org.apache.poi.hwpf.usermodel.Range;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PreDestroy;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @Service
+@Slf4j
 public class DocumentStoreService {
 
-    private final EmbeddingService embeddingService;
-    private final ChromaClient chromaClient;
+    /** Tamanho aproximado, em caracteres, dos segmentos de TXT/DOC/DOCX enviados ao pipeline. */
+    private static final int SEGMENT_CHARS = 64 * 1024;
+    private static final int PDF_PAGES_PER_RANGE = 10;
+    private static final long PDF_MAX_MAIN_MEMORY_BYTES = 32L * 1024 * 1024;
 
-    public DocumentStoreService(EmbeddingService embeddingService, ChromaClient chromaClient) {
-        this.embeddingService = embeddingService;
-        this.chromaClient = chromaClient;
+    private final IngestionPipeline ingestionPipeline;
+    private final TextChunker textChunker;
+    private final int pdfConcurrency;
+    private final ExecutorService pdfExecutor;
+
+    /**
+     * @param pdfConcurrency Máximo de workers de extração por PDF; 0 usa a quantidade de processadores.
+     * @param pdfMaxThreads  Máximo de threads de extração somando todos os PDFs em andamento; 0 usa
+     *                       {@code 2 × pdfConcurrency}, o suficiente para dois documentos com todos os workers.
+     */
+    @Autowired
+    public DocumentStoreService(IngestionPipeline ingestionPipeline, TextChunker textChunker,
+                                @Value("${ingestion.pdf.extract-concurrency:0}") int pdfConcurrency,
+                                @Value("${ingestion.pdf.max-threads:0}") int pdfMaxThreads) {
+        this.ingestionPipeline = ingestionPipeline;
+        this.textChunker = textChunker;
+        this.pdfConcurrency = pdfConcurrency > 0 ? pdfConcurrency : Runtime.getRuntime().availableProcessors();
+        int threads = pdfMaxThreads > 0 ? pdfMaxThreads : 2 * this.pdfConcurrency;
+        // Workers além do limite esperam na fila; enquanto isso, os intervalos do documento são
+        // extraídos pelos workers dele que já estão rodando.
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+        this.pdfExecutor = executor;
+    }
+
+    /**
+     * Serviço com o limite padrão de threads de extração.
+     */
+    DocumentStoreService(IngestionPipeline ingestionPipeline, TextChunker textChunker, int pdfConcurrency) {
+        this(ingestionPipeline, textChunker, pdfConcurrency, 0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pdfExecutor.shutdownNow();
     }
 
     public void storeDocument(MultipartFile file) throws IOException {
-        String text = extractText(file);
-        List<String> chunks = chunkText(text, 1000);
+        storeDocument(file.getOriginalFilename(), file, IngestionPipeline.Progress.NONE);
+    }
 
-        for (String chunk : chunks) {
-            float[] embedding = embeddingService.embed(chunk);
-            chromaClient.addDocument(chunk, embedding);
+    /**
+     * Extrai, divide e armazena um documento lido de {@code source}.
+     *
+     * @param filename Nome original do arquivo, usado para identificar o formato.
+     * @param source   Origem do conteúdo do arquivo.
+     * @param progress Receptor do andamento da ingestão.
+     * @return Quantidade de chunks armazenados.
+     */
+    public int storeDocument(String filename, InputStreamSource source, IngestionPipeline.Progress progress)
+            throws IOException {
+        String format = format(filename);
+        return ingestionPipeline.ingest(filename, sink -> extractText(format, source, sink),
+                new CarryOverChunker(), progress);
+    }
+
+    /**
+     * Extensão que identifica o formato do arquivo ({@code .pdf}, {@code .txt}, {@code .docx} ou {@code .doc}).
+     */
+    static String format(String filename) {
+        String lower = filename.toLowerCase();
+        for (String extension : List.of(".pdf", ".txt", ".docx", ".doc")) {
+            if (lower.endsWith(extension)) {
+                return extension;
+            }
         }
+        throw new IllegalArgumentException("Tipo de arquivo não suportado: " + lower);
     }
 
-    private String extractText(MultipartFile file) throws IOException {
-        String filename = file.getOriginalFilename().toLowerCase();
+    /**
+     * Extrai o texto do documento de forma incremental: páginas para PDF, parágrafos para
+     * DOC/DOCX e leitura bufferizada para TXT. Os segmentos emitidos sempre terminam em uma
+     * quebra de linha, página ou parágrafo. Visível no pacote para os benchmarks de extração.
+     */
+    void extractText(String format, InputStreamSource source, Consumer<Segment> sink) throws IOException {
+        switch (format) {
+            case ".pdf" -> extractPdf(source, sink);
+            case ".txt" -> {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(source.getInputStream(), StandardCharsets.UTF_8))) {
+                    SegmentBuffer segment = new SegmentBuffer(sink);
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        segment.append(line);
+                    }
+                    segment.flush();
+                }
+            }
+            case ".doc" -> {
+                try (HWPFDocument doc = new HWPFDocument(source.getInputStream())) {
+                    SegmentBuffer segment = new SegmentBuffer(sink);
+                    Range range = doc.getRange();
+                    for (int i = 0; i < range.numParagraphs(); i++) {
+                        segment.append(range.getParagraph(i).text());
+                    }
+                    segment.flush();
+                }
+            }
+            case ".docx" -> {
+                try (XWPFDocument docx = new XWPFDocument(source.getInputStream())) {
+                    SegmentBuffer segment = new SegmentBuffer(sink);
+                    for (IBodyElement element : docx.getBodyElements()) {
+                        if (element instanceof XWPFParagraph paragraph) {
+                            segment.append(paragraph.getText());
+                        } else if (element instanceof XWPFTable table) {
+                            segment.append(table.getText());
+                        }
+                    }
+                    segment.flush();
+                }
+            }
+            default -> throw new IllegalArgumentException("Tipo de arquivo não suportado: " + format);
+        }
+    }
+
+    /**
+     * Extrai o PDF em intervalos de {@link #PDF_PAGES_PER_RANGE} páginas, processados em
+     * paralelo por até {@code ingestion.pdf.extract-concurrency} workers deste documento, dentro do
+     * limite de {@code ingestion.pdf.max-threads} threads de todos os documentos.
+     * Cada worker usa sua própria instância do documento (o {@link PDDocument} não é
+     * thread-safe) e seu próprio {@link PDFTextStripper}; a instância aberta para contar as
+     * páginas é entregue ao primeiro worker, e só os demais leem o PDF de novo. As páginas
+     * são emitidas em ordem, uma por segmento; os workers ficam no máximo {@code 2 × workers}
+     * intervalos à frente da emissão, o que limita o texto extraído em memória.
+     */
+    private void extractPdf(InputStreamSource source, Consumer<Segment> sink) throws IOException {
+        PDDocument counted = loadPdf(source);
+        int pages = counted.getNumberOfPages();
+        int ranges = (pages + PDF_PAGES_PER_RANGE - 1) / PDF_PAGES_PER_RANGE;
+        int workers = Math.min(pdfConcurrency, ranges);
+        AtomicReference<PDDocument> loaded = new AtomicReference<>(counted);
+        List<CompletableFuture<List<String>>> results = new ArrayList<>(ranges);
+        for (int i = 0; i < ranges; i++) {
+            results.add(new CompletableFuture<>());
+        }
+        AtomicInteger nextRange = new AtomicInteger();
+        Semaphore window = new Semaphore(2 * workers);
 
-        if (filename.endsWith(".pdf")) {
-            try (PDDocument pdf = PDDocument.load(file.getInputStream())) {
-                return new PDFTextStripper().getText(pdf);
+        List<Future<?>> tasks = new ArrayList<>(workers);
+        long startNanos = System.nanoTime();
+        try {
+            for (int i = 0; i < workers; i++) {
+                tasks.add(pdfExecutor.submit(() -> extractPdfRanges(source, loaded, pages, results, nextRange, window)));
+            }
+            for (int range = 0; range < ranges; range++) {
+                List<String> texts = results.get(range).get();
+                for (int i = 0; i < texts.size(); i++) {
+                    sink.accept(new Segment(texts.get(i), range * PDF_PAGES_PER_RANGE + i + 1));
+                }
+                window.release();
+            }
+            log.debug("{} páginas de PDF extraídas com {} workers em {} ms",
+                    pages, workers, (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
             }
-        } else if (filename.endsWith(".txt")) {
-            return new String(file.getBytes(), StandardCharsets.UTF_8);
-        } else if (filename.endsWith(".doc")) {
-            try (HWPFDocument doc = new HWPFDocument(file.getInputStream())) {
-                return new WordExtractor(doc).getText();
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
             }
-        } else if (filename.endsWith(".docx")) {
-            try (XWPFDocument docx = new XWPFDocument(file.getInputStream())) {
-                return new XWPFWordExtractor(docx).getText();
+            throw new IOException("Falha ao extrair o texto do PDF", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Extração do PDF interrompida");
+        } finally {
+            tasks.forEach(task -> task.cancel(true));
+            // Sem páginas, ou cancelado antes de algum worker começar
+            PDDocument unused = loaded.getAndSet(null);
+            if (unused != null) {
+                unused.close();
             }
         }
-        throw new IllegalArgumentException("Tipo de arquivo não suportado: " + filename);
     }
 
-    List<String> chunkText(String text, int maxTokens) {
-        List<String> chunks = new ArrayList<>();
-        String[] sentences = text.split("(?<=[.!?])\s*");
+    /**
+     * Extrai intervalos até acabarem, com a instância de {@code loaded} se ainda estiver livre
+     * ou com uma nova, lida de {@code source}. Um worker que só começa depois de todos os
+     * intervalos terem sido distribuídos (por ter esperado uma thread livre) não lê o PDF.
+     */
+    private void extractPdfRanges(InputStreamSource source, AtomicReference<PDDocument> loaded, int pages,
+                                  List<CompletableFuture<List<String>>> results, AtomicInteger nextRange,
+                                  Semaphore window) {
+        if (nextRange.get() >= results.size()) {
+            return;
+        }
+        PDDocument available = loaded.getAndSet(null);
+        try (PDDocument pdf = available != null ? available : loadPdf(source)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            while (true) {
+                // A permissão é obtida antes do intervalo para que o próximo intervalo a ser
+                // emitido nunca fique esperando atrás de intervalos posteriores
+                window.acquire();
+                int range = nextRange.getAndIncrement();
+                if (range >= results.size()) {
+                    window.release();
+                    return;
+                }
+                int first = range * PDF_PAGES_PER_RANGE + 1;
+                int last = Math.min(first + PDF_PAGES_PER_RANGE - 1, pages);
+                List<String> texts = new ArrayList<>(last - first + 1);
+                for (int page = first; page <= last; page++) {
+                    stripper.setStartPage(page);
+                    stripper.setEndPage(page);
+                    texts.add(stripper.getText(pdf));
+                }
+                results.get(range).complete(texts);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            results.forEach(result -> result.cancel(true));
+        } catch (Exception e) {
+            results.forEach(result -> result.completeExceptionally(e));
+        }
+    }
 
-        StringBuilder chunk = new StringBuilder();
-        int tokenCount = 0;
-        for (String sentence : sentences) {
-            tokenCount += sentence.split("\\s+").length;
-            if (tokenCount > maxTokens) {
-                chunks.add(chunk.toString());
-                chunk.setLength(0);
-                tokenCount = sentence.split("\\s+").length;
+    private static PDDocument loadPdf(InputStreamSource source) throws IOException {
+        // Estruturas do PDF acima do limite vão para arquivo temporário em vez do heap
+        return PDDocument.load(source.getInputStream(), MemoryUsageSetting.setupMixed(PDF_MAX_MAIN_MEMORY_BYTES));
+    }
+
+    /**
+     * Agrupa linhas ou parágrafos em segmentos de aproximadamente {@link #SEGMENT_CHARS}
+     * caracteres, para não enviar ao pipeline um item por parágrafo.
+     */
+    private static final class SegmentBuffer {
+        private final Consumer<Segment> sink;
+        private final StringBuilder text = new StringBuilder();
+
+        SegmentBuffer(Consumer<Segment> sink) {
+            this.sink = sink;
+        }
+
+        void append(String line) {
+            text.append(line).append('\n');
+            if (text.length() >= SEGMENT_CHARS) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!text.isEmpty()) {
+                sink.accept(new Segment(text.toString()));
+                text.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Aplica o {@link TextChunker} ao texto pendente a cada segmento, emitindo todos os
+     * chunks menos o último (que pode estar incompleto); o texto a partir do início desse
+     * último chunk continua pendente e é dividido junto com o segmento seguinte. Assim a
+     * memória usada é limitada a um segmento mais um chunk, e não ao tamanho do arquivo.
+     * A página de origem de cada trecho do texto pendente é mantida para que cada chunk
+     * saiba em quais páginas começa e termina.
+     */
+    private final class CarryOverChunker implements IngestionPipeline.Chunker {
+        private final StringBuilder pending = new StringBuilder();
+        // Posição no texto pendente onde começa cada segmento, e a página correspondente
+        private final List<int[]> pageStarts = new ArrayList<>();
+
+        @Override
+        public List<TextChunk> chunk(Segment segment) {
+            if (!pending.isEmpty()) {
+                pending.append('\n');
+            }
+            pageStarts.add(new int[]{pending.length(), segment.page()});
+            pending.append(segment.text());
+            List<TextChunker.Span> spans = textChunker.split(pending);
+            if (spans.size() <= 1) {
+                return List.of();
             }
-            chunk.append(sentence).append(" ");
+            List<TextChunk> chunks = toChunks(spans.subList(0, spans.size() - 1));
+            discardBefore(spans.get(spans.size() - 1).start());
+            return chunks;
+        }
+
+        @Override
+        public List<TextChunk> finish() {
+            List<TextChunk> chunks = toChunks(textChunker.split(pending));
+            pending.setLength(0);
+            pageStarts.clear();
+            return chunks;
         }
-        if (!chunk.isEmpty()) chunks.add(chunk.toString());
 
-        return chunks;
+        private List<TextChunk> toChunks(List<TextChunker.Span> spans) {
+            List<TextChunk> chunks = new ArrayList<>(spans.size());
+            for (TextChunker.Span span : spans) {
+                chunks.add(new TextChunk(span.of(pending), pageAt(span.start()), pageAt(span.end() - 1)));
+            }
+            return chunks;
+        }
+
+        private int pageAt(int position) {
+            int page = 0;
+            for (int[] start : pageStarts) {
+                if (start[0] > position) {
+                    break;
+                }
+                page = start[1];
+            }
+            return page;
+        }
+
+        private void discardBefore(int position) {
+            int page = pageAt(position);
+            pending.delete(0, position);
+            pageStarts.removeIf(start -> start[0] <= position);
+            pageStarts.replaceAll(start -> new int[]{start[0] - position, start[1]});
+            pageStarts.add(0, new int[]{0, page});
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,286 @@
+package com.github.mwacha.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de embeddings endereçado por conteúdo. A chave é o modelo mais o SHA-256 do texto
+ * normalizado (NFC, sem espaços nas pontas e com espaços em sequência reduzidos a um só).
+ * <p>
+ * A camada em memória é um LRU limitado pelo peso dos vetores
+ * ({@code embedding.cache.max-memory-bytes}). A camada em disco, opcional
+ * ({@code embedding.cache.disk-path}), é um arquivo binário só de acréscimo com os vetores
+ * em float32; na inicialização apenas o índice chave → posição é carregado.
+ * <p>
+ * Os vetores retornados são compartilhados com o cache e não devem ser alterados.
+ */
+@Component
+@Slf4j
+public class EmbeddingCache {
+
+    /**
+     * Estatísticas de uso do cache.
+     */
+    public record Stats(long hits, long diskHits, long misses, long evictions,
+                        int memoryEntries, long memoryBytes, int diskEntries) {
+    }
+
+    private static final int MAGIC = 0x454D4243; // "EMBC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final long maxMemoryBytes;
+    private final LinkedHashMap<String, float[]> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+
+    private final FileChannel disk;
+    private final Map<String, Long> diskIndex = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Autowired
+    public EmbeddingCache(@Value("${embedding.cache.max-memory-bytes:67108864}") long maxMemoryBytes,
+                          @Value("${embedding.cache.disk-path:}") String diskPath) {
+        this(maxMemoryBytes, diskPath == null || diskPath.isBlank() ? null : Path.of(diskPath));
+    }
+
+    EmbeddingCache(long maxMemoryBytes, Path diskPath) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.disk = diskPath == null ? null : openDisk(diskPath);
+    }
+
+    /**
+     * Calcula a chave de cache de um texto para o modelo informado.
+     */
+    public static String key(String model, String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC).strip().replaceAll("\\s+", " ");
+        return model + ":" + ContentHash.sha256Hex(normalized);
+    }
+
+    /**
+     * Busca o embedding associado à chave, primeiro em memória e depois em disco.
+     *
+     * @return O vetor em cache, ou {@code null} se não houver.
+     */
+    public float[] get(String key) {
+        float[] vector;
+        synchronized (memory) {
+            vector = memory.get(key);
+        }
+        if (vector != null) {
+            hits.incrementAndGet();
+            return vector;
+        }
+        vector = readFromDisk(key);
+        if (vector != null) {
+            diskHits.incrementAndGet();
+            putInMemory(key, vector);
+            return vector;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Armazena o embedding nas camadas habilitadas.
+     */
+    public void put(String key, float[] vector) {
+        putInMemory(key, vector);
+        writeToDisk(key, vector);
+    }
+
+    public Stats stats() {
+        int memoryEntries;
+        long bytes;
+        synchronized (memory) {
+            memoryEntries = memory.size();
+            bytes = memoryBytes;
+        }
+        int diskEntries;
+        synchronized (diskIndex) {
+            diskEntries = diskIndex.size();
+        }
+        return new Stats(hits.get(), diskHits.get(), misses.get(), evictions.get(), memoryEntries, bytes, diskEntries);
+    }
+
+    private void putInMemory(String key, float[] vector) {
+        long weight = weight(vector);
+        if (weight > maxMemoryBytes) {
+            return;
+        }
+        synchronized (memory) {
+            float[] previous = memory.put(key, vector);
+            memoryBytes += weight - (previous == null ? 0 : weight(previous));
+            var eldest = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= weight(eldest.next().getValue());
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static long weight(float[] vector) {
+        return (long) vector.length * Float.BYTES + ENTRY_OVERHEAD_BYTES;
+    }
+
+    private float[] readFromDisk(String key) {
+        if (disk == null) {
+            return null;
+        }
+        synchronized (diskIndex) {
+            Long position = diskIndex.get(key);
+            if (position == null) {
+                return null;
+            }
+            try {
+                ByteBuffer dimension = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(dimension, position);
+                float[] vector = new float[dimension.flip().getInt()];
+                ByteBuffer data = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(data, position + Integer.BYTES);
+                data.flip().asFloatBuffer().get(vector);
+                return vector;
+            } catch (IOException e) {
+                log.warn("Falha ao ler embedding do cache em disco: {}", e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    private void writeToDisk(String key, float[] vector) {
+        if (disk == null) {
+            return;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + keyBytes.length + Integer.BYTES + vector.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(keyBytes.length).put(keyBytes).putInt(vector.length);
+        record.asFloatBuffer().put(vector);
+        record.position(record.limit()).flip();
+
+        synchronized (diskIndex) {
+            if (diskIndex.containsKey(key)) {
+                return;
+            }
+            try {
+                long position = disk.size();
+                while (record.hasRemaining()) {
+                    disk.write(record, position + record.position());
+                }
+                diskIndex.put(key, position + Integer.BYTES + keyBytes.length);
+            } catch (IOException e) {
+                log.warn("Falha ao gravar embedding no cache em disco: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Abre o arquivo do cache em disco e carrega o índice. Um registro incompleto no fim do
+     * arquivo (por exemplo, após uma queda do processo) é descartado.
+     */
+    private FileChannel openDisk(Path path) {
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+                channel.write(header, 0);
+            } else {
+                loadIndex(channel, path);
+            }
+            log.info("Cache de embeddings em disco {} aberto com {} entradas", path, diskIndex.size());
+            return channel;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível abrir o cache de embeddings em " + path, e);
+        }
+    }
+
+    private void loadIndex(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+            throw new IOException("Arquivo de cache de embeddings inválido: " + path);
+        }
+
+        long size = channel.size();
+        long position = HEADER_SIZE;
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (position + Integer.BYTES <= size) {
+            readFully(channel, length.clear(), position);
+            int keyLength = length.flip().getInt();
+            long dimensionPosition = position + Integer.BYTES + keyLength;
+            if (keyLength <= 0 || dimensionPosition + Integer.BYTES > size) {
+                break;
+            }
+            ByteBuffer key = ByteBuffer.allocate(keyLength);
+            readFully(channel, key, position + Integer.BYTES);
+            readFully(channel, length.clear(), dimensionPosition);
+            int dimension = length.flip().getInt();
+            long next = dimensionPosition + Integer.BYTES + (long) dimension * Float.BYTES;
+            if (dimension <= 0 || next > size) {
+                break;
+            }
+            diskIndex.put(new String(key.array(), StandardCharsets.UTF_8), dimensionPosition);
+            position = next;
+        }
+        if (position < size) {
+            log.warn("Descartando {} bytes incompletos no fim do cache de embeddings {}", size - position, path);
+            channel.truncate(position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        readFully(disk, buffer, position);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Fim inesperado do arquivo de cache de embeddings");
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (disk == null) {
+            return;
+        }
+        synchronized (diskIndex) {
+            try {
+                disk.force(false);
+                disk.close();
+            } catch (IOException e) {
+                log.warn("Falha ao fechar o cache de embeddings em disco: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package com.github.mwacha.services;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -17,18 +22,34 @@ import java.util.Map;
 public class EmbeddingService {
 
     private static final int EXPECTED_EMBEDDING_SIZE = 1024;
+    private static final String MODEL = "snowflake-arctic-embed2";
 
     private final WebClient webClient;
+    private final EmbeddingCache cache;
+    private final int batchSize;
+    private final RagMetrics metrics;
 
-    public EmbeddingService() {
-        this.webClient = WebClient.builder()
-                .baseUrl("http://localhost:11434")
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .build();
+    @Autowired
+    public EmbeddingService(@Qualifier("ollamaWebClient") WebClient webClient, EmbeddingCache cache,
+                            @Value("${ollama.embedding.batch-size:32}") int batchSize, RagMetrics metrics) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("O tamanho do lote de embeddings deve ser positivo: " + batchSize);
+        }
+        this.webClient = webClient;
+        this.cache = cache;
+        this.batchSize = batchSize;
+        this.metrics = metrics;
     }
 
     /**
-     * Gera um embedding para o texto fornecido.
+     * Serviço de embeddings sem métricas.
+     */
+    EmbeddingService(WebClient webClient, EmbeddingCache cache, int batchSize) {
+        this(webClient, cache, batchSize, RagMetrics.NOOP);
+    }
+
+    /**
+     * Gera um embedding para o texto fornecido, consultando antes o {@link EmbeddingCache}.
      *
      * @param text Texto para gerar o embedding.
      * @return Vetor de embedding como float[].
@@ -39,34 +60,153 @@ public class EmbeddingService {
             throw new IllegalArgumentException("O texto para embedding não pode ser nulo ou vazio.");
         }
 
+        String key = EmbeddingCache.key(MODEL, text);
+        float[] cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
         Map<String, Object> body = Map.of(
-                "model", "snowflake-arctic-embed2",
+                "model", MODEL,
                 "prompt", text
         );
+        long startNanos = System.nanoTime();
         try {
-            Map response = webClient.post()
+            EmbeddingResponse response = webClient.post()
                     .uri("/api/embeddings")
                     .bodyValue(body)
                     .retrieve()
-                    .bodyToMono(Map.class)
+                    .bodyToMono(EmbeddingResponse.class)
                     .block();
 
-            List<Double> embedding = (List<Double>) response.get("embedding");
-            if (embedding == null || embedding.size() != EXPECTED_EMBEDDING_SIZE) {
+            float[] floats = response == null ? null : response.embedding();
+            if (floats == null || floats.length != EXPECTED_EMBEDDING_SIZE) {
                 throw new IllegalStateException(
-                        "Embedding gerado tem " + (embedding == null ? 0 : embedding.size()) +
+                        "Embedding gerado tem " + (floats == null ? 0 : floats.length) +
                                 " dimensões, esperado " + EXPECTED_EMBEDDING_SIZE);
             }
-
-            float[] floats = new float[embedding.size()];
-            for (int i = 0; i < embedding.size(); i++) {
-                floats[i] = embedding.get(i).floatValue();
-            }
-            log.debug("Embedding gerado para texto '{}': tamanho {}", text.substring(0, Math.min(text.length(), 50)), floats.length);
+            metrics.recordEmbedding(MODEL, "query", RagMetrics.NO_FILE_TYPE, 1, System.nanoTime() - startNanos);
+            log.debug("Embedding gerado para texto {}: tamanho {}", PayloadLog.describe(text), floats.length);
+            cache.put(key, floats);
             return floats;
         } catch (Exception e) {
-            log.error("Erro ao gerar embedding para texto '{}': {}", text, e.getMessage());
+            log.error("Erro ao gerar embedding para texto {}: {}", PayloadLog.describe(text), e.getMessage());
             throw new RuntimeException("Erro ao gerar embedding", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Gera embeddings para uma lista de textos usando o endpoint multi-entrada
+     * {@code /api/embed} do Ollama. Os textos são enviados em lotes de tamanho
+     * configurável ({@code ollama.embedding.batch-size}) e os vetores retornados
+     * seguem a mesma ordem da lista de entrada. Textos já presentes no {@link EmbeddingCache}
+     * (ou repetidos na própria lista) não são reenviados ao Ollama.
+     *
+     * @param texts Textos para gerar os embeddings.
+     * @return Lista de vetores de embedding, na ordem dos textos fornecidos.
+     * @throws IllegalArgumentException se algum texto for nulo ou vazio.
+     */
+    public List<float[]> embedAll(List<String> texts) {
+        return embedAll(texts, RagMetrics.NO_FILE_TYPE);
+    }
+
+    /**
+     * Gera embeddings para uma lista de textos, como {@link #embedAll(List)}, registrando as
+     * chamadas ao Ollama com o tipo do documento ingerido.
+     *
+     * @param fileType Tipo do documento ({@link RagMetrics#fileType(String)}), usado só na tag {@code file_type}.
+     */
+    public List<float[]> embedAll(List<String> texts, String fileType) {
+        if (texts == null) {
+            throw new IllegalArgumentException("A lista de textos para embedding não pode ser nula.");
+        }
+        for (String text : texts) {
+            if (text == null || text.trim().isEmpty()) {
+                throw new IllegalArgumentException("O texto para embedding não pode ser nulo ou vazio.");
+            }
+        }
+
+        float[][] embeddings = new float[texts.size()][];
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        List<String> missingTexts = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String key = EmbeddingCache.key(MODEL, texts.get(i));
+            List<Integer> positions = missing.get(key);
+            if (positions != null) {
+                positions.add(i);
+                continue;
+            }
+            embeddings[i] = cache.get(key);
+            if (embeddings[i] == null) {
+                missing.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+                missingTexts.add(texts.get(i));
+            }
+        }
+
+        List<String> missingKeys = new ArrayList<>(missing.keySet());
+        for (int start = 0; start < missingTexts.size(); start += batchSize) {
+            int end = Math.min(start + batchSize, missingTexts.size());
+            List<float[]> batch = embedBatch(missingTexts.subList(start, end), fileType);
+            for (int i = 0; i < batch.size(); i++) {
+                String key = missingKeys.get(start + i);
+                cache.put(key, batch.get(i));
+                for (int position : missing.get(key)) {
+                    embeddings[position] = batch.get(i);
+                }
+            }
+        }
+        if (texts.size() > missingTexts.size()) {
+            log.debug("{} de {} embeddings reaproveitados do cache", texts.size() - missingTexts.size(), texts.size());
+        }
+        return Arrays.asList(embeddings);
+    }
+
+    private List<float[]> embedBatch(List<String> batch, String fileType) {
+        Map<String, Object> body = Map.of(
+                "model", MODEL,
+                "input", batch
+        );
+        long startNanos = System.nanoTime();
+        try {
+            EmbedResponse response = webClient.post()
+                    .uri("/api/embed")
+                    .bodyValue(body)
+                    .retrieve()
+                    .bodyToMono(EmbedResponse.class)
+                    .block();
+
+            float[][] embeddings = response == null ? null : response.embeddings();
+            if (embeddings == null || embeddings.length != batch.size()) {
+                throw new IllegalStateException(
+                        "Ollama retornou " + (embeddings == null ? 0 : embeddings.length) +
+                                " embeddings para um lote de " + batch.size() + " textos");
+            }
+            for (float[] embedding : embeddings) {
+                if (embedding == null || embedding.length != EXPECTED_EMBEDDING_SIZE) {
+                    throw new IllegalStateException(
+                            "Embedding gerado tem " + (embedding == null ? 0 : embedding.length) +
+                                    " dimensões, esperado " + EXPECTED_EMBEDDING_SIZE);
+                }
+            }
+            List<float[]> result = Arrays.asList(embeddings);
+            long elapsedNanos = System.nanoTime() - startNanos;
+            metrics.recordEmbedding(MODEL, "batch", fileType, batch.size(), elapsedNanos);
+            log.debug("Lote de {} embeddings gerado em {} ms", batch.size(), elapsedNanos / 1_000_000);
+            return result;
+        } catch (Exception e) {
+            log.error("Erro ao gerar lote de {} embeddings após {} ms: {}",
+                    batch.size(), (System.nanoTime() - startNanos) / 1_000_000, e.getMessage());
+            throw new RuntimeException("Erro ao gerar embeddings em lote", e);
+        }
+    }
+
+    // Respostas do Ollama; o Jackson lê os vetores direto para float[], sem boxing.
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record EmbeddingResponse(float[] embedding) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record EmbedResponse(float[][] embeddings) {
+    }
+}
@@ -0,0 +1,798 @@
+package com.github.mwacha.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Índice HNSW (Hierarchical Navigable Small World) de vetores por similaridade de cosseno.
+ * <p>
+ * Os vetores são normalizados na inserção e gravados de forma contígua, fora do heap, em
+ * {@code vectors.bin}; o grafo fica em {@code graph.bin} (nível, camada 0 e cabeçalho) e
+ * {@code upper.bin} (camadas superiores). Os três arquivos são mapeados em memória por
+ * {@link MappedRecords}, então o índice é reaberto sem reconstrução.
+ * <p>
+ * Com quantização ({@link Quantization}), uma cópia compacta de cada vetor fica em
+ * {@code codes.bin} e a navegação do grafo nas buscas lê apenas essa cópia; os candidatos
+ * encontrados são reordenados com os vetores completos. A inserção sempre usa os vetores
+ * completos, então a qualidade do grafo não depende da quantização.
+ * <p>
+ * Remoções apenas marcam o nó: ele continua sendo usado na navegação do grafo, mas não
+ * aparece nos resultados.
+ * <p>
+ * Buscas concorrentes são seguras; {@link #add(float[])} e {@link #markDeleted(int)} devem
+ * ser serializados pelo chamador e não podem ocorrer durante uma busca.
+ */
+final class HnswIndex implements Closeable {
+
+    /**
+     * Nó encontrado por uma busca, com a distância de cosseno ({@code 1 - similaridade}) até a consulta.
+     */
+    record Result(int node, float distance) {
+    }
+
+    /**
+     * Representação compacta dos vetores usada na navegação do grafo durante as buscas.
+     */
+    enum Quantization {
+        /** Sem cópia compacta: a busca usa os vetores float32 (4 bytes por dimensão). */
+        NONE,
+        /** Um byte com sinal por dimensão, com escala por vetor (cerca de 4x menos dados). */
+        INT8,
+        /** Um bit por dimensão, o sinal do componente; a distância é a de Hamming (32x menos dados). */
+        BINARY;
+
+        static Quantization parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Quantização desconhecida: " + value + " (use none, int8 ou binary)");
+            }
+        }
+
+        /**
+         * Tamanho do código de um vetor, em bytes.
+         */
+        int codeBytes(int dimension) {
+            return switch (this) {
+                case NONE -> 0;
+                case INT8 -> Float.BYTES + (dimension + 3) / 4 * 4;
+                case BINARY -> (dimension + 63) / 64 * Long.BYTES;
+            };
+        }
+    }
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int FORMAT_VERSION = 1;
+    private static final int RECORDS_PER_CHUNK = 16384;
+    private static final int MAX_LEVEL = 16;
+    private static final int CODES_MAGIC = 0x51434F44; // "QCOD"
+
+    // Cabeçalho de graph.bin (posições em bytes)
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_DIMENSION = 8;
+    private static final int H_M = 12;
+    private static final int H_COUNT = 16;
+    private static final int H_ENTRY_POINT = 20;
+    private static final int H_MAX_LEVEL = 24;
+    private static final int H_UPPER_COUNT = 28;
+    private static final int HEADER_BYTES = 32;
+
+    // Registro de cada nó em graph.bin (posições em ints)
+    private static final int N_LEVEL = 0;
+    private static final int N_UPPER_START = 1;
+    private static final int N_DELETED = 2;
+    private static final int N_LINK_COUNT = 3;
+    private static final int N_LINKS = 4;
+
+    private final int dimension;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+
+    private final MappedRecords vectors;
+    private final MappedRecords graph;
+    private final MappedRecords upper;
+    private final Quantization quantization;
+    private final MappedRecords codes; // null sem quantização
+
+    private int count;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int upperCount;
+
+    private final ThreadLocal<SearchContext> contexts;
+
+    /**
+     * Abre o índice no diretório informado, criando os arquivos se ainda não existirem.
+     *
+     * @param m              Número de vizinhos por nó nas camadas superiores (o dobro na camada 0).
+     * @param efConstruction Tamanho da lista de candidatos durante a inserção.
+     * @param seed           Semente do sorteio dos níveis dos nós.
+     * @throws IllegalStateException se o índice existente tiver outra dimensão ou outro {@code m}.
+     */
+    HnswIndex(Path directory, int dimension, int m, int efConstruction, long seed) {
+        this(directory, dimension, m, efConstruction, seed, Quantization.NONE);
+    }
+
+    /**
+     * Abre o índice com a quantização informada. Se os códigos existentes tiverem sido
+     * gerados com outra quantização (ou estiverem incompletos), eles são recalculados a
+     * partir dos vetores completos.
+     */
+    HnswIndex(Path directory, int dimension, int m, int efConstruction, long seed, Quantization quantization) {
+        if (dimension <= 0 || m < 2 || efConstruction < m) {
+            throw new IllegalArgumentException("Configuração HNSW inválida: dimension=" + dimension +
+                    ", m=" + m + ", ef-construction=" + efConstruction);
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new Random(seed);
+
+        this.vectors = new MappedRecords(directory.resolve("vectors.bin"), 16, dimension * Float.BYTES, RECORDS_PER_CHUNK);
+        this.graph = new MappedRecords(directory.resolve("graph.bin"), HEADER_BYTES,
+                (N_LINKS + 2 * m) * Integer.BYTES, RECORDS_PER_CHUNK);
+        this.upper = new MappedRecords(directory.resolve("upper.bin"), 16, (1 + m) * Integer.BYTES, RECORDS_PER_CHUNK);
+        readHeader(directory);
+        this.quantization = quantization;
+        this.codes = quantization == Quantization.NONE ? null
+                : new MappedRecords(directory.resolve("codes.bin"), 16, quantization.codeBytes(dimension), RECORDS_PER_CHUNK);
+        this.contexts = ThreadLocal.withInitial(() -> new SearchContext(dimension, efConstruction, quantization));
+        if (codes != null) {
+            checkCodes();
+        }
+    }
+
+    /**
+     * Quantidade de nós no índice, incluindo os marcados como removidos.
+     */
+    int size() {
+        return count;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Insere um vetor no índice.
+     *
+     * @return O identificador do novo nó (sequencial, a partir de zero).
+     */
+    int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("O vetor deve ter " + dimension + " dimensões, mas tem " + vector.length);
+        }
+        float[] normalized = VectorMath.normalize(vector);
+        int node = count;
+        int level = randomLevel();
+
+        vectors.ensureCapacity(node + 1);
+        graph.ensureCapacity(node + 1);
+        vectors.writeFloats(node, 0, normalized);
+        if (codes != null) {
+            writeCode(node, normalized, contexts.get());
+        }
+        graph.putInt(node, N_LEVEL, level);
+        graph.putInt(node, N_UPPER_START, upperCount);
+        graph.putInt(node, N_DELETED, 0);
+        graph.putInt(node, N_LINK_COUNT, 0);
+        if (level > 0) {
+            upper.ensureCapacity(upperCount + level);
+            for (int l = 0; l < level; l++) {
+                upper.putInt(upperCount + l, 0, 0);
+            }
+            upperCount += level;
+        }
+
+        if (entryPoint >= 0) {
+            SearchContext context = contexts.get();
+            context.approximate = false;
+            int current = entryPoint;
+            float currentDistance = distance(normalized, current, context);
+            for (int l = maxLevel; l > level; l--) {
+                current = greedy(normalized, current, currentDistance, l, context);
+                currentDistance = distance(normalized, current, context);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                NodeQueue candidates = searchLayer(normalized, current, efConstruction, l, false, context);
+                int[] sorted = candidates.drainAscending();
+                float[] distances = candidates.drainedDistances();
+                current = sorted[0];
+                int selected = selectNeighbors(sorted, distances, sorted.length, m, context);
+                setLinks(node, l, sorted, selected);
+                for (int i = 0; i < selected; i++) {
+                    connect(sorted[i], node, distances[i], l, context);
+                }
+            }
+        }
+
+        count = node + 1;
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        writeHeader();
+        if (codes != null) {
+            codes.header().putInt(12, count);
+        }
+        return node;
+    }
+
+    /**
+     * Marca o nó como removido: ele deixa de aparecer nos resultados das buscas.
+     */
+    void markDeleted(int node) {
+        checkNode(node);
+        graph.putInt(node, N_DELETED, 1);
+    }
+
+    boolean isDeleted(int node) {
+        checkNode(node);
+        return graph.getInt(node, N_DELETED) != 0;
+    }
+
+    /**
+     * Copia o vetor (normalizado) do nó para {@code target}.
+     */
+    void readVector(int node, float[] target) {
+        checkNode(node);
+        vectors.readFloats(node, 0, target);
+    }
+
+    /**
+     * Busca os {@code k} nós não removidos mais próximos da consulta.
+     *
+     * @param ef Tamanho da lista de candidatos na camada 0 (maior é mais preciso e mais lento).
+     *           Com quantização, os {@code ef} candidatos são reordenados pela distância exata.
+     * @return Os nós encontrados em ordem crescente de distância exata.
+     */
+    List<Result> search(float[] query, int k, int ef) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("A consulta deve ter " + dimension + " dimensões, mas tem " + query.length);
+        }
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+        float[] normalized = VectorMath.normalize(query);
+        SearchContext context = contexts.get();
+        context.approximate = codes != null;
+        if (context.approximate) {
+            encode(normalized, context.queryCode, context.queryBits);
+        }
+        int current = entryPoint;
+        float currentDistance = traversalDistance(normalized, current, context);
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedy(normalized, current, currentDistance, l, context);
+            currentDistance = traversalDistance(normalized, current, context);
+        }
+        NodeQueue found = searchLayer(normalized, current, Math.max(ef, k), 0, true, context);
+        int[] nodes = found.drainAscending();
+        float[] distances = found.drainedDistances();
+        if (context.approximate) {
+            // Reordena os candidatos pela distância exata, lendo os vetores completos só deles
+            for (int i = 0; i < nodes.length; i++) {
+                distances[i] = distance(normalized, nodes[i], context);
+            }
+            sortByDistance(nodes, distances);
+        }
+        List<Result> results = new ArrayList<>(Math.min(k, nodes.length));
+        for (int i = 0; i < nodes.length && results.size() < k; i++) {
+            results.add(new Result(nodes[i], distances[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Grava no disco as alterações pendentes.
+     */
+    void force() {
+        vectors.force();
+        graph.force();
+        upper.force();
+        if (codes != null) {
+            codes.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        vectors.close();
+        graph.close();
+        upper.close();
+        if (codes != null) {
+            codes.close();
+        }
+    }
+
+    /**
+     * Desce pela camada seguindo sempre o vizinho mais próximo da consulta.
+     */
+    private int greedy(float[] query, int start, float startDistance, int level, SearchContext context) {
+        int current = start;
+        float currentDistance = startDistance;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int links = linkCount(current, level);
+            for (int i = 0; i < links; i++) {
+                int neighbor = link(current, level, i);
+                float d = traversalDistance(query, neighbor, context);
+                if (d < currentDistance) {
+                    current = neighbor;
+                    currentDistance = d;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Busca em largura guiada pela distância em uma camada.
+     *
+     * @param liveOnly Se {@code true}, nós removidos são percorridos mas não entram no resultado.
+     * @return Fila de máximo com até {@code ef} nós mais próximos.
+     */
+    private NodeQueue searchLayer(float[] query, int start, int ef, int level, boolean liveOnly,
+                                  SearchContext context) {
+        context.visited.clear();
+        NodeQueue candidates = context.candidates.reset(false);
+        NodeQueue results = context.results.reset(true);
+
+        float startDistance = traversalDistance(query, start, context);
+        context.visited.add(start);
+        candidates.push(start, startDistance);
+        if (!liveOnly || graph.getInt(start, N_DELETED) == 0) {
+            results.push(start, startDistance);
+        }
+
+        while (candidates.size() > 0) {
+            float candidateDistance = candidates.topDistance();
+            if (results.size() >= ef && candidateDistance > results.topDistance()) {
+                break;
+            }
+            int candidate = candidates.pop();
+            int links = linkCount(candidate, level);
+            for (int i = 0; i < links; i++) {
+                int neighbor = link(candidate, level, i);
+                if (!context.visited.add(neighbor)) {
+                    continue;
+                }
+                float d = traversalDistance(query, neighbor, context);
+                if (results.size() < ef || d < results.topDistance()) {
+                    candidates.push(neighbor, d);
+                    if (!liveOnly || graph.getInt(neighbor, N_DELETED) == 0) {
+                        results.push(neighbor, d);
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Heurística de seleção de vizinhos do HNSW: um candidato só é escolhido se estiver mais
+     * perto do nó base do que de todos os vizinhos já escolhidos, o que mantém arestas em
+     * direções diferentes. Os escolhidos são movidos para o início de {@code nodes}.
+     *
+     * @param nodes     Candidatos em ordem crescente de distância até o nó base.
+     * @param distances Distâncias correspondentes.
+     * @return A quantidade de vizinhos escolhidos.
+     */
+    private int selectNeighbors(int[] nodes, float[] distances, int size, int limit, SearchContext context) {
+        int selected = 0;
+        for (int i = 0; i < size && selected < limit; i++) {
+            vectors.readFloats(nodes[i], 0, context.other);
+            boolean diverse = true;
+            for (int j = 0; j < selected; j++) {
+                if (distance(context.other, nodes[j], context) < distances[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                nodes[selected] = nodes[i];
+                distances[selected] = distances[i];
+                selected++;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Acrescenta {@code node} aos vizinhos de {@code target}, podando a lista com a
+     * heurística se ela passar do limite da camada.
+     */
+    private void connect(int target, int node, float distance, int level, SearchContext context) {
+        int limit = level == 0 ? 2 * m : m;
+        int links = linkCount(target, level);
+        if (links < limit) {
+            setLink(target, level, links, node);
+            setLinkCount(target, level, links + 1);
+            return;
+        }
+
+        float[] base = context.base;
+        vectors.readFloats(target, 0, base);
+        int[] nodes = new int[links + 1];
+        float[] distances = new float[links + 1];
+        nodes[0] = node;
+        distances[0] = distance;
+        for (int i = 0; i < links; i++) {
+            nodes[i + 1] = link(target, level, i);
+            distances[i + 1] = distance(base, nodes[i + 1], context);
+        }
+        sortByDistance(nodes, distances);
+        int selected = selectNeighbors(nodes, distances, nodes.length, limit, context);
+        setLinks(target, level, nodes, selected);
+    }
+
+    private float distance(float[] query, int node, SearchContext context) {
+        vectors.readFloats(node, 0, context.vector);
+        return 1 - VectorMath.dot(query, context.vector);
+    }
+
+    /**
+     * Distância usada na navegação do grafo: aproximada pelos códigos nas buscas com
+     * quantização, exata nos demais casos.
+     */
+    private float traversalDistance(float[] query, int node, SearchContext context) {
+        if (!context.approximate) {
+            return distance(query, node, context);
+        }
+        if (quantization == Quantization.BINARY) {
+            codes.readLongs(node, 0, context.bits);
+            return (float) VectorMath.hamming(context.queryBits, context.bits) / dimension;
+        }
+        codes.readBytes(node, 0, context.code);
+        return 1 - VectorMath.int8Dot(context.queryCode, context.code);
+    }
+
+    private void writeCode(int node, float[] normalized, SearchContext context) {
+        codes.ensureCapacity(node + 1);
+        encode(normalized, context.code, context.bits);
+        if (quantization == Quantization.BINARY) {
+            codes.writeLongs(node, 0, context.bits);
+        } else {
+            codes.writeBytes(node, 0, context.code);
+        }
+    }
+
+    private void encode(float[] normalized, byte[] code, long[] bits) {
+        if (quantization == Quantization.BINARY) {
+            VectorMath.binarize(normalized, bits);
+        } else {
+            VectorMath.quantizeInt8(normalized, code);
+        }
+    }
+
+    /**
+     * Confere o cabeçalho de {@code codes.bin} e recalcula os códigos se eles não
+     * corresponderem à quantização, à dimensão ou à quantidade de nós atuais.
+     */
+    private void checkCodes() {
+        ByteBuffer header = codes.header();
+        if (header.getInt(0) == CODES_MAGIC && header.getInt(4) == quantization.ordinal()
+                && header.getInt(8) == dimension && header.getInt(12) == count) {
+            return;
+        }
+        SearchContext context = contexts.get();
+        float[] vector = new float[dimension];
+        for (int node = 0; node < count; node++) {
+            vectors.readFloats(node, 0, vector);
+            writeCode(node, vector, context);
+        }
+        header.putInt(0, CODES_MAGIC).putInt(4, quantization.ordinal()).putInt(8, dimension).putInt(12, count);
+    }
+
+    private int linkCount(int node, int level) {
+        return level == 0
+                ? graph.getInt(node, N_LINK_COUNT)
+                : upper.getInt(upperRecord(node, level), 0);
+    }
+
+    private int link(int node, int level, int i) {
+        return level == 0
+                ? graph.getInt(node, N_LINKS + i)
+                : upper.getInt(upperRecord(node, level), 1 + i);
+    }
+
+    private void setLink(int node, int level, int i, int neighbor) {
+        if (level == 0) {
+            graph.putInt(node, N_LINKS + i, neighbor);
+        } else {
+            upper.putInt(upperRecord(node, level), 1 + i, neighbor);
+        }
+    }
+
+    private void setLinkCount(int node, int level, int links) {
+        if (level == 0) {
+            graph.putInt(node, N_LINK_COUNT, links);
+        } else {
+            upper.putInt(upperRecord(node, level), 0, links);
+        }
+    }
+
+    private void setLinks(int node, int level, int[] neighbors, int size) {
+        for (int i = 0; i < size; i++) {
+            setLink(node, level, i, neighbors[i]);
+        }
+        setLinkCount(node, level, size);
+    }
+
+    private int upperRecord(int node, int level) {
+        return graph.getInt(node, N_UPPER_START) + level - 1;
+    }
+
+    private int randomLevel() {
+        double r = 1 - random.nextDouble(); // (0, 1]
+        return Math.min((int) (-Math.log(r) * levelMultiplier), MAX_LEVEL);
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= count) {
+            throw new IllegalArgumentException("Nó inexistente no índice HNSW: " + node);
+        }
+    }
+
+    private void readHeader(Path directory) {
+        ByteBuffer header = graph.header();
+        if (header.getInt(H_MAGIC) == 0) {
+            header.putInt(H_MAGIC, MAGIC).putInt(H_VERSION, FORMAT_VERSION)
+                    .putInt(H_DIMENSION, dimension).putInt(H_M, m);
+            writeHeader();
+            return;
+        }
+        if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != FORMAT_VERSION) {
+            throw new IllegalStateException("Arquivo de índice HNSW inválido em " + directory);
+        }
+        if (header.getInt(H_DIMENSION) != dimension || header.getInt(H_M) != m) {
+            throw new IllegalStateException("O índice HNSW em " + directory + " foi criado com dimension=" +
+                    header.getInt(H_DIMENSION) + " e m=" + header.getInt(H_M) + ", mas a configuração atual é dimension=" +
+                    dimension + " e m=" + m);
+        }
+        count = header.getInt(H_COUNT);
+        entryPoint = header.getInt(H_ENTRY_POINT);
+        maxLevel = header.getInt(H_MAX_LEVEL);
+        upperCount = header.getInt(H_UPPER_COUNT);
+    }
+
+    private void writeHeader() {
+        graph.header().putInt(H_COUNT, count).putInt(H_ENTRY_POINT, entryPoint)
+                .putInt(H_MAX_LEVEL, maxLevel).putInt(H_UPPER_COUNT, upperCount);
+    }
+
+    private static void sortByDistance(int[] nodes, float[] distances) {
+        // Inserção: as listas têm no máximo 2 * m + 1 itens
+        for (int i = 1; i < nodes.length; i++) {
+            int node = nodes[i];
+            float distance = distances[i];
+            int j = i - 1;
+            while (j >= 0 && distances[j] > distance) {
+                nodes[j + 1] = nodes[j];
+                distances[j + 1] = distances[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            distances[j + 1] = distance;
+        }
+    }
+
+    /**
+     * Estado reaproveitado entre buscas da mesma thread, para não alocar a cada consulta. Nenhum
+     * buffer depende da quantidade de nós do índice.
+     */
+    private static final class SearchContext {
+
+        final float[] vector;
+        final float[] other;
+        final float[] base;
+        final byte[] queryCode;
+        final byte[] code;
+        final long[] queryBits;
+        final long[] bits;
+        boolean approximate;
+        final NodeQueue candidates;
+        final NodeQueue results;
+        final VisitedSet visited;
+
+        SearchContext(int dimension, int ef, Quantization quantization) {
+            this.vector = new float[dimension];
+            this.other = new float[dimension];
+            this.base = new float[dimension];
+            int codeBytes = quantization == Quantization.INT8 ? quantization.codeBytes(dimension) : 0;
+            int words = quantization == Quantization.BINARY ? quantization.codeBytes(dimension) / Long.BYTES : 0;
+            this.queryCode = new byte[codeBytes];
+            this.code = new byte[codeBytes];
+            this.queryBits = new long[words];
+            this.bits = new long[words];
+            this.candidates = new NodeQueue(ef);
+            this.results = new NodeQueue(ef);
+            this.visited = new VisitedSet(ef);
+        }
+    }
+
+    /**
+     * Conjunto dos nós visitados em uma busca, com endereçamento aberto. A capacidade acompanha
+     * a quantidade de nós visitados (da ordem de {@code ef} vezes os vizinhos de cada nó), e não o
+     * tamanho do índice; {@link #clear()} apenas avança a época que marca as posições ocupadas.
+     */
+    static final class VisitedSet {
+
+        private int[] nodes;
+        private int[] epochs;
+        private int shift;
+        private int size;
+        private int epoch = 1;
+
+        VisitedSet(int expected) {
+            allocate(Integer.highestOneBit(Math.max(expected, 8) - 1) << 2); // potência de 2 ≥ 2 × expected
+        }
+
+        void clear() {
+            size = 0;
+            if (++epoch == 0) {
+                Arrays.fill(epochs, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * Marca o nó como visitado.
+         *
+         * @return {@code true} se o nó ainda não tinha sido visitado nesta busca.
+         */
+        boolean add(int node) {
+            if (2 * (size + 1) > nodes.length) {
+                grow();
+            }
+            int mask = nodes.length - 1;
+            // Hash multiplicativo: os bits altos do produto escolhem a posição
+            for (int slot = (node * 0x9E3779B9) >>> shift; ; slot = (slot + 1) & mask) {
+                if (epochs[slot] != epoch) {
+                    nodes[slot] = node;
+                    epochs[slot] = epoch;
+                    size++;
+                    return true;
+                }
+                if (nodes[slot] == node) {
+                    return false;
+                }
+            }
+        }
+
+        int capacity() {
+            return nodes.length;
+        }
+
+        private void grow() {
+            int[] oldNodes = nodes;
+            int[] oldEpochs = epochs;
+            allocate(oldNodes.length * 2);
+            size = 0;
+            for (int i = 0; i < oldNodes.length; i++) {
+                if (oldEpochs[i] == epoch) {
+                    add(oldNodes[i]);
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            nodes = new int[capacity];
+            epochs = new int[capacity];
+            shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        }
+    }
+
+    /**
+     * Heap binário de nós por distância, sem boxing. Como fila de mínimo, o topo é o nó mais
+     * próximo; como fila de máximo, o mais distante.
+     */
+    private static final class NodeQueue {
+
+        private int[] nodes;
+        private float[] keys;
+        private int size;
+        private boolean max;
+        private float[] drained;
+
+        NodeQueue(int capacity) {
+            this.nodes = new int[Math.max(capacity, 16)];
+            this.keys = new float[nodes.length];
+        }
+
+        NodeQueue reset(boolean max) {
+            this.max = max;
+            this.size = 0;
+            return this;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topDistance() {
+            return max ? -keys[0] : keys[0];
+        }
+
+        void push(int node, float distance) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            float key = max ? -distance : distance;
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            keys[i] = key;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                int node = nodes[size];
+                float key = keys[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && keys[child + 1] < keys[child]) {
+                        child++;
+                    }
+                    if (keys[child] >= key) {
+                        break;
+                    }
+                    nodes[i] = nodes[child];
+                    keys[i] = keys[child];
+                    i = child;
+                }
+                nodes[i] = node;
+                keys[i] = key;
+            }
+            return top;
+        }
+
+        /**
+         * Esvazia a fila de máximo, devolvendo os nós em ordem crescente de distância. As
+         * distâncias correspondentes ficam em {@link #drainedDistances()}.
+         */
+        int[] drainAscending() {
+            int[] result = new int[size];
+            drained = new float[size];
+            for (int i = size - 1; i >= 0; i--) {
+                drained[i] = topDistance();
+                result[i] = pop();
+            }
+            return result;
+        }
+
+        float[] drainedDistances() {
+            return drained;
+        }
+    }
+}
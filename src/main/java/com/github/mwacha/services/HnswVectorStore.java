@@ -0,0 +1,728 @@
+package com.github.mwacha.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * {@link VectorStore} em processo ({@code vector-store.type=hnsw}), sem chamadas de rede.
+ * <p>
+ * Os dados ficam em uma geração ({@code gen-NNNNNN}) dentro de {@code vector-store.hnsw.path},
+ * indicada pelo arquivo {@code CURRENT}: os embeddings em um {@link HnswIndex} e textos e
+ * metadados em {@link ChunkSegments}, ambos mapeados em memória. Abrir o armazenamento apenas
+ * mapeia os arquivos e lê identificadores e {@code document_id} de cada chunk; textos e
+ * metadados só são decodificados quando retornados por uma consulta.
+ * <p>
+ * Chunks substituídos ou removidos continuam no grafo marcados como removidos. Quando eles
+ * passam de {@code vector-store.hnsw.compaction.deleted-ratio} dos nós, uma compactação em
+ * segundo plano (verificada a cada {@code vector-store.hnsw.compaction.interval}) copia os
+ * chunks ativos para uma nova geração e troca {@code CURRENT} de forma atômica. Consultas e
+ * gravações continuam na geração anterior durante a cópia; as gravações só aguardam enquanto
+ * as feitas durante a cópia são reaplicadas na nova geração, pouco antes da troca.
+ * <p>
+ * Com {@code vector-store.hnsw.quantization} igual a {@code int8} ou {@code binary}, as buscas
+ * navegam o grafo com uma cópia quantizada dos embeddings e reordenam os candidatos com os
+ * vetores completos (veja {@link HnswIndex.Quantization}).
+ */
+@Service
+@ConditionalOnProperty(name = "vector-store.type", havingValue = "hnsw")
+@Slf4j
+public class HnswVectorStore implements VectorStore {
+
+    private static final int EXPECTED_EMBEDDING_SIZE = 1024;
+    private static final long SEED = 42;
+    private static final String CURRENT = "CURRENT";
+    private static final String GENERATION_PREFIX = "gen-";
+    private static final int COMPACTION_BATCH = 1024;
+
+    private final Path directory;
+    private final int dimension;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int segmentBytes;
+    private final double compactionRatio;
+    private final HnswIndex.Quantization quantization;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object writeMutex = new Object(); // serializa gravações e a troca de geração
+    private final Object compactionMutex = new Object(); // uma compactação por vez
+    private Generation generation;
+    private final AtomicLong collectionVersion = new AtomicLong();
+    private final ScheduledExecutorService compactor;
+
+    @Autowired
+    public HnswVectorStore(@Value("${vector-store.hnsw.path:data/hnsw}") String path,
+                           @Value("${vector-store.hnsw.m:16}") int m,
+                           @Value("${vector-store.hnsw.ef-construction:200}") int efConstruction,
+                           @Value("${vector-store.hnsw.ef-search:100}") int efSearch,
+                           @Value("${vector-store.hnsw.segment-bytes:67108864}") int segmentBytes,
+                           @Value("${vector-store.hnsw.compaction.deleted-ratio:0.3}") double compactionRatio,
+                           @Value("${vector-store.hnsw.compaction.interval:PT10M}") Duration compactionInterval,
+                           @Value("${vector-store.hnsw.quantization:none}") String quantization) {
+        this(Path.of(path), EXPECTED_EMBEDDING_SIZE, m, efConstruction, efSearch, segmentBytes,
+                compactionRatio, compactionInterval, HnswIndex.Quantization.parse(quantization));
+    }
+
+    HnswVectorStore(Path directory, int dimension, int m, int efConstruction, int efSearch, int segmentBytes,
+                    double compactionRatio, Duration compactionInterval) {
+        this(directory, dimension, m, efConstruction, efSearch, segmentBytes, compactionRatio, compactionInterval,
+                HnswIndex.Quantization.NONE);
+    }
+
+    /**
+     * @param compactionInterval Intervalo entre verificações de compactação; zero desabilita a compactação automática.
+     */
+    HnswVectorStore(Path directory, int dimension, int m, int efConstruction, int efSearch, int segmentBytes,
+                    double compactionRatio, Duration compactionInterval, HnswIndex.Quantization quantization) {
+        if (efSearch <= 0 || segmentBytes <= 0 || compactionRatio <= 0 || compactionRatio > 1) {
+            throw new IllegalArgumentException("Configuração do índice HNSW inválida: ef-search=" + efSearch +
+                    ", segment-bytes=" + segmentBytes + ", compaction.deleted-ratio=" + compactionRatio);
+        }
+        this.directory = directory;
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.segmentBytes = segmentBytes;
+        this.compactionRatio = compactionRatio;
+        this.quantization = quantization;
+
+        long startNanos = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            Path current = directory.resolve(CURRENT);
+            String name = Files.exists(current)
+                    ? Files.readString(current, StandardCharsets.UTF_8).strip()
+                    : generationName(1);
+            this.generation = openGeneration(name);
+            if (!Files.exists(current)) {
+                writeCurrent(name);
+            }
+            deleteOtherGenerations(name);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível abrir o índice HNSW em " + directory, e);
+        }
+        log.info("Índice HNSW em {} aberto com {} chunks ({} nós) em {} ms", generation.path,
+                generation.nodes.size(), generation.index.size(), (System.nanoTime() - startNanos) / 1_000_000);
+
+        if (compactionInterval.isZero()) {
+            this.compactor = null;
+        } else {
+            this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "hnsw-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compactIfNeeded, compactionInterval.toMillis(),
+                    compactionInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void addDocuments(List<String> ids, List<String> texts, List<float[]> embeddings,
+                             List<Map<String, Object>> metadatas) {
+        if (texts == null || embeddings == null || texts.size() != embeddings.size()) {
+            throw new IllegalArgumentException("Textos e embeddings devem ser não nulos e ter o mesmo tamanho.");
+        }
+        if (ids == null || ids.size() != texts.size()) {
+            throw new IllegalArgumentException("Os identificadores devem ter o mesmo tamanho da lista de textos.");
+        }
+        if (metadatas != null && metadatas.size() != texts.size()) {
+            throw new IllegalArgumentException("Os metadados devem ter o mesmo tamanho da lista de textos.");
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            validateDocument(texts.get(i), embeddings.get(i));
+        }
+        if (texts.isEmpty()) {
+            return;
+        }
+
+        synchronized (writeMutex) {
+            lock.writeLock().lock();
+            try {
+                Generation current = generation;
+                for (int i = 0; i < texts.size(); i++) {
+                    Map<String, Object> metadata = metadatas == null ? Map.of("source", "upload") : metadatas.get(i);
+                    // O nó entra no índice antes da tabela: um nó sem chunk é descartado na abertura
+                    int node = current.index.add(embeddings.get(i));
+                    try {
+                        current.put(node, new ChunkSegments.StoredChunk(ids.get(i), texts.get(i), metadata));
+                    } catch (RuntimeException e) {
+                        // Metadados não serializáveis ou falha ao criar um segmento: o nó não pode
+                        // ficar visível nas buscas sem registro na tabela
+                        current.index.markDeleted(node);
+                        throw e;
+                    }
+                }
+            } finally {
+                collectionVersion.incrementAndGet();
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("{} documentos adicionados ao índice HNSW", texts.size());
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> getDocumentChunks(String documentId) {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            Generation current = generation;
+            for (int node : current.documents.getOrDefault(documentId, Set.of())) {
+                ChunkSegments.StoredChunk chunk = current.read(node);
+                if (chunk != null) {
+                    result.put(chunk.id(), chunk.metadata());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        log.debug("Documento {} possui {} chunks armazenados", documentId, result.size());
+        return result;
+    }
+
+    @Override
+    public List<RetrievedChunk> getChunks(List<String> ids) {
+        List<RetrievedChunk> result = new ArrayList<>(ids.size());
+        lock.readLock().lock();
+        try {
+            Generation current = generation;
+            for (String id : ids) {
+                Integer node = current.nodes.get(id);
+                ChunkSegments.StoredChunk chunk = node == null ? null : current.read(node);
+                if (chunk != null) {
+                    result.add(new RetrievedChunk(chunk.id(), chunk.text(), chunk.metadata(), Double.NaN,
+                            current.vector(node)));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Os embeddings são devolvidos normalizados, como estão no índice.
+     */
+    @Override
+    public Map<String, float[]> getEmbeddings(List<String> ids) {
+        Map<String, float[]> result = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            Generation current = generation;
+            for (String id : ids) {
+                Integer node = current.nodes.get(id);
+                if (node != null) {
+                    result.put(id, current.vector(node));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public void deleteDocuments(List<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        synchronized (writeMutex) {
+            lock.writeLock().lock();
+            try {
+                Generation current = generation;
+                for (String id : ids) {
+                    Integer node = current.nodes.get(id);
+                    if (node != null) {
+                        current.delete(node, id);
+                    }
+                }
+            } finally {
+                collectionVersion.incrementAndGet();
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("{} documentos removidos do índice HNSW", ids.size());
+    }
+
+    @Override
+    public void updateMetadatas(List<String> ids, List<Map<String, Object>> metadatas) {
+        if (ids == null || metadatas == null || ids.size() != metadatas.size()) {
+            throw new IllegalArgumentException("Identificadores e metadados devem ser não nulos e ter o mesmo tamanho.");
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        synchronized (writeMutex) {
+            lock.writeLock().lock();
+            try {
+                Generation current = generation;
+                for (int i = 0; i < ids.size(); i++) {
+                    Integer node = current.nodes.get(ids.get(i));
+                    ChunkSegments.StoredChunk chunk = node == null ? null : current.read(node);
+                    if (chunk != null) {
+                        current.put(node, chunk.withMetadata(metadatas.get(i)));
+                    }
+                }
+            } finally {
+                collectionVersion.incrementAndGet();
+                lock.writeLock().unlock();
+            }
+        }
+        log.debug("Metadados de {} documentos atualizados no índice HNSW", ids.size());
+    }
+
+    @Override
+    public long collectionVersion() {
+        return collectionVersion.get();
+    }
+
+    @Override
+    public List<RetrievedChunk> queryChunks(String query, float[] embedding, int limit, boolean withEmbeddings) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("O limite da consulta deve ser positivo: " + limit);
+        }
+        if (embedding == null || embedding.length == 0) {
+            throw new IllegalArgumentException("O embedding da consulta não pode ser nulo ou vazio.");
+        }
+        if (embedding.length != dimension) {
+            throw new IllegalArgumentException(
+                    "O embedding deve ter " + dimension + " dimensões, mas tem " + embedding.length);
+        }
+
+        long startNanos = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            Generation current = generation;
+            List<HnswIndex.Result> results = current.index.search(embedding, limit, efSearch);
+            List<RetrievedChunk> retrieved = new ArrayList<>(results.size());
+            for (HnswIndex.Result result : results) {
+                ChunkSegments.StoredChunk chunk = current.read(result.node());
+                if (chunk != null) {
+                    retrieved.add(new RetrievedChunk(chunk.id(), chunk.text(), chunk.metadata(), result.distance(),
+                            withEmbeddings ? current.vector(result.node()) : null));
+                }
+            }
+            log.debug("Busca HNSW para {} retornou {} chunks em {} µs",
+                    PayloadLog.describe(query), retrieved.size(), (System.nanoTime() - startNanos) / 1_000);
+            return retrieved;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copia os chunks ativos para uma nova geração, descartando nós removidos e registros
+     * antigos, e passa a usá-la.
+     * <p>
+     * A cópia é feita em lotes de {@link #COMPACTION_BATCH} nós sob o lock de leitura, sem
+     * bloquear consultas nem gravações por mais que um lote. As gravações feitas durante a
+     * cópia são registradas na geração atual ({@link Generation#touched}); só a reaplicação
+     * delas na nova geração e a troca acontecem com as gravações bloqueadas. Se a compactação
+     * falhar, a geração parcial é fechada e removida.
+     */
+    public void compact() {
+        compact(() -> {
+        });
+    }
+
+    /**
+     * @param beforeReplay Executado depois da cópia, antes de bloquear as gravações; usado nos testes.
+     */
+    void compact(Runnable beforeReplay) {
+        synchronized (compactionMutex) {
+            Generation current;
+            int snapshotNodes;
+            lock.writeLock().lock();
+            try {
+                current = generation;
+                snapshotNodes = current.index.size();
+                current.touched = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            long startNanos = System.nanoTime();
+            String name = generationName(generationNumber(current.name) + 1);
+            Generation compacted = null;
+            boolean swapped = false;
+            try {
+                deleteRecursively(directory.resolve(name)); // restos de uma compactação interrompida
+                compacted = openGeneration(name);
+                int[] copied = new int[snapshotNodes];
+                Arrays.fill(copied, -1);
+                for (int first = 0; first < snapshotNodes; first += COMPACTION_BATCH) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new CancellationException("Compactação do índice HNSW interrompida");
+                    }
+                    lock.readLock().lock();
+                    try {
+                        copy(current, compacted, first, Math.min(first + COMPACTION_BATCH, snapshotNodes), copied);
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                }
+                compacted.index.force();
+                compacted.segments.force();
+                beforeReplay.run();
+
+                synchronized (writeMutex) {
+                    int replayed = replay(current, compacted, copied);
+                    int appended = current.index.size() - snapshotNodes;
+                    copy(current, compacted, snapshotNodes, current.index.size(), null);
+                    compacted.index.force();
+                    compacted.segments.force();
+                    writeCurrent(name);
+                    lock.writeLock().lock();
+                    try {
+                        generation = compacted;
+                        current.touched = null;
+                        swapped = true;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    log.info("Índice HNSW compactado de {} para {} nós em {} ms ({} nós alterados e {} " +
+                                    "adicionados durante a cópia)", current.index.size(), compacted.index.size(),
+                            (System.nanoTime() - startNanos) / 1_000_000, replayed, appended);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Falha ao compactar o índice HNSW em " + directory, e);
+            } finally {
+                if (!swapped) {
+                    abandon(current, compacted);
+                }
+            }
+            try {
+                current.close();
+                deleteRecursively(current.path);
+            } catch (IOException e) {
+                log.warn("Falha ao remover a geração anterior {}: {}", current.path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Copia os nós ativos de {@code [first, last)}; com {@code copied}, registra o nó de destino
+     * de cada nó copiado.
+     */
+    private void copy(Generation source, Generation target, int first, int last, int[] copied) {
+        float[] vector = new float[dimension];
+        for (int node = first; node < last; node++) {
+            ChunkSegments.StoredChunk chunk = source.read(node);
+            if (chunk == null) {
+                continue;
+            }
+            source.index.readVector(node, vector);
+            int copy = target.index.add(vector);
+            target.put(copy, chunk);
+            if (copied != null) {
+                copied[node] = copy;
+            }
+        }
+    }
+
+    /**
+     * Reaplica na nova geração as remoções e atualizações de metadados feitas, durante a cópia,
+     * em nós que já tinham sido copiados. Chamado com as gravações bloqueadas.
+     *
+     * @return Quantidade de nós reaplicados.
+     */
+    private int replay(Generation source, Generation target, int[] copied) {
+        int replayed = 0;
+        for (int node : source.touched) {
+            int copy = node < copied.length ? copied[node] : -1;
+            if (copy < 0) {
+                continue; // adicionado durante a cópia, ou já removido quando o lote foi copiado
+            }
+            ChunkSegments.StoredChunk chunk = source.read(node);
+            if (chunk != null) {
+                target.put(copy, chunk);
+            } else if (target.segments.isLive(copy)) {
+                target.delete(copy, target.segments.id(copy));
+            }
+            replayed++;
+        }
+        return replayed;
+    }
+
+    /**
+     * Desfaz uma compactação que não chegou à troca: para de registrar gravações e fecha e
+     * remove a geração parcial.
+     */
+    private void abandon(Generation current, Generation compacted) {
+        lock.writeLock().lock();
+        try {
+            current.touched = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (compacted == null) {
+            return;
+        }
+        try {
+            compacted.close();
+            deleteRecursively(compacted.path);
+        } catch (IOException e) {
+            log.warn("Falha ao remover a geração parcial {}: {}", compacted.path, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdownNow(); // interrompe a compactação em andamento no próximo lote
+        }
+        synchronized (compactionMutex) {
+            synchronized (writeMutex) {
+                lock.writeLock().lock();
+                try {
+                    generation.close();
+                } catch (IOException e) {
+                    log.warn("Falha ao fechar o índice HNSW: {}", e.getMessage());
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private void compactIfNeeded() {
+        try {
+            int nodes;
+            int live;
+            lock.readLock().lock();
+            try {
+                nodes = generation.index.size();
+                live = generation.nodes.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (nodes > 0 && nodes - live >= compactionRatio * nodes) {
+                compact();
+            }
+        } catch (RuntimeException e) {
+            log.error("Erro na compactação do índice HNSW: {}", e.getMessage());
+        }
+    }
+
+    private void validateDocument(String text, float[] embedding) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("O texto do documento não pode ser nulo ou vazio.");
+        }
+        if (embedding == null || embedding.length == 0) {
+            throw new IllegalArgumentException("O embedding não pode ser nulo ou vazio.");
+        }
+        if (embedding.length != dimension) {
+            throw new IllegalArgumentException(
+                    "O embedding deve ter " + dimension + " dimensões, mas tem " + embedding.length);
+        }
+    }
+
+    /**
+     * Abre uma geração e monta os mapas de identificadores a partir da tabela de chunks. Nós
+     * do índice sem chunk ativo (gravados antes de uma queda) são marcados como removidos; se
+     * dois nós ativos tiverem o mesmo identificador, fica o mais recente.
+     */
+    private Generation openGeneration(String name) {
+        Path path = directory.resolve(name);
+        HnswIndex index = new HnswIndex(path, dimension, m, efConstruction, SEED, quantization);
+        ChunkSegments segments = new ChunkSegments(path, segmentBytes);
+        Generation opened = new Generation(name, path, index, segments);
+        for (int node = 0; node < index.size(); node++) {
+            if (!segments.isLive(node)) {
+                if (!index.isDeleted(node)) {
+                    index.markDeleted(node);
+                }
+                continue;
+            }
+            String id;
+            String documentId;
+            try {
+                id = segments.id(node);
+                documentId = segments.documentId(node);
+            } catch (IllegalStateException e) {
+                log.error("Descartando chunk ilegível do nó {} em {}: {}", node, path, e.getMessage());
+                segments.delete(node);
+                index.markDeleted(node);
+                continue;
+            }
+            Integer previous = opened.nodes.get(id);
+            if (previous != null) {
+                opened.delete(previous, id);
+            }
+            opened.index(node, id, documentId);
+        }
+        return opened;
+    }
+
+    private void writeCurrent(String name) throws IOException {
+        Path temporary = directory.resolve(CURRENT + ".tmp");
+        Files.writeString(temporary, name, StandardCharsets.UTF_8);
+        Files.move(temporary, directory.resolve(CURRENT), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteOtherGenerations(String name) throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            for (Path entry : entries.toList()) {
+                String fileName = entry.getFileName().toString();
+                if (fileName.startsWith(GENERATION_PREFIX) && !fileName.equals(name)) {
+                    log.info("Removendo geração não usada do índice HNSW: {}", entry);
+                    deleteRecursively(entry);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> entries = Files.walk(path)) {
+            for (Path entry : entries.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(entry);
+            }
+        }
+    }
+
+    private static String generationName(int number) {
+        return String.format(GENERATION_PREFIX + "%06d", number);
+    }
+
+    private static int generationNumber(String name) {
+        return Integer.parseInt(name.substring(GENERATION_PREFIX.length()));
+    }
+
+    /**
+     * Índice, segmentos e mapas em memória de uma geração.
+     */
+    private static final class Generation {
+
+        final String name;
+        final Path path;
+        final HnswIndex index;
+        final ChunkSegments segments;
+        final Map<String, Integer> nodes = new HashMap<>();
+        final Map<String, Set<Integer>> documents = new HashMap<>();
+        /** Nós alterados ou removidos desde o início de uma compactação; {@code null} fora dela. */
+        Set<Integer> touched;
+
+        Generation(String name, Path path, HnswIndex index, ChunkSegments segments) {
+            this.name = name;
+            this.path = path;
+            this.index = index;
+            this.segments = segments;
+        }
+
+        /**
+         * Grava o chunk do nó, substituindo um chunk ativo com o mesmo identificador.
+         */
+        void put(int node, ChunkSegments.StoredChunk chunk) {
+            if (touched != null) {
+                touched.add(node);
+            }
+            Integer previous = nodes.get(chunk.id());
+            if (previous != null && previous != node) {
+                segments.put(node, chunk);
+                delete(previous, chunk.id());
+            } else {
+                if (previous != null) {
+                    unindex(node, chunk.id());
+                }
+                segments.put(node, chunk);
+            }
+            index(node, chunk.id(), chunk.documentId());
+        }
+
+        /**
+         * Remove o nó: primeiro da tabela (a fonte da verdade), depois do índice.
+         */
+        void delete(int node, String id) {
+            if (touched != null) {
+                touched.add(node);
+            }
+            unindex(node, id);
+            segments.delete(node);
+            index.markDeleted(node);
+        }
+
+        /**
+         * Lê o chunk do nó, ou {@code null} se o nó não tiver registro ativo ou o registro estiver corrompido.
+         */
+        ChunkSegments.StoredChunk read(int node) {
+            if (!segments.isLive(node)) {
+                return null;
+            }
+            try {
+                return segments.read(node);
+            } catch (IllegalStateException e) {
+                log.error("Ignorando chunk ilegível do índice HNSW: {}", e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * Cópia do embedding (normalizado) do nó.
+         */
+        float[] vector(int node) {
+            float[] vector = new float[index.dimension()];
+            index.readVector(node, vector);
+            return vector;
+        }
+
+        void index(int node, String id, String documentId) {
+            nodes.put(id, node);
+            if (documentId != null) {
+                documents.computeIfAbsent(documentId, key -> new TreeSet<>()).add(node);
+            }
+        }
+
+        private void unindex(int node, String id) {
+            nodes.remove(id, node);
+            String documentId = segments.documentId(node);
+            Set<Integer> documentNodes = documentId == null ? null : documents.get(documentId);
+            if (documentNodes != null) {
+                documentNodes.remove(node);
+                if (documentNodes.isEmpty()) {
+                    documents.remove(documentId);
+                }
+            }
+        }
+
+        void close() throws IOException {
+            index.close();
+            segments.close();
+        }
+    }
+}
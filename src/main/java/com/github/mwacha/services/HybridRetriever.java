@@ -0,0 +1,124 @@
+package com.github.mwacha.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recupera o contexto de uma pergunta combinando a busca vetorial do {@link VectorStore}
+ * com a busca lexical do {@link Bm25Index}.
+ * <p>
+ * As duas listas são combinadas por reciprocal rank fusion: cada chunk recebe
+ * {@code 1 / (retrieval.rrf-k + posição)} de cada lista em que aparece, e os
+ * {@code retrieval.top-k} chunks de maior soma são os candidatos passados ao {@link Reranker}.
+ * A busca vetorial traz {@code retrieval.dense.top-k} chunks (por padrão, {@code retrieval.top-k}) e
+ * a lexical, {@code retrieval.lexical.top-k}.
+ * Assim, um chunk que contém o termo exato da pergunta sobe para as primeiras posições mesmo
+ * quando sua similaridade vetorial é mediana.
+ */
+@Service
+@Slf4j
+public class HybridRetriever {
+
+    private final VectorStore vectorStore;
+    private final Bm25Index lexicalIndex;
+    private final boolean enabled;
+    private final int denseTopK;
+    private final int lexicalTopK;
+    private final int rrfK;
+    private final int topK;
+    private final RagMetrics metrics;
+    private final String storeName;
+
+    @Autowired
+    public HybridRetriever(VectorStore vectorStore, Bm25Index lexicalIndex,
+                           @Value("${retrieval.hybrid.enabled:true}") boolean enabled,
+                           @Value("${retrieval.dense.top-k:${retrieval.top-k:20}}") int denseTopK,
+                           @Value("${retrieval.lexical.top-k:20}") int lexicalTopK,
+                           @Value("${retrieval.rrf-k:60}") int rrfK,
+                           @Value("${retrieval.top-k:20}") int topK,
+                           RagMetrics metrics) {
+        if (denseTopK <= 0 || lexicalTopK <= 0 || rrfK < 0 || topK <= 0) {
+            throw new IllegalArgumentException("Configuração da busca híbrida inválida: dense.top-k=" + denseTopK +
+                    ", lexical.top-k=" + lexicalTopK + ", rrf-k=" + rrfK + ", top-k=" + topK);
+        }
+        this.vectorStore = vectorStore;
+        this.lexicalIndex = lexicalIndex;
+        this.enabled = enabled;
+        this.denseTopK = denseTopK;
+        this.lexicalTopK = lexicalTopK;
+        this.rrfK = rrfK;
+        this.topK = topK;
+        this.metrics = metrics;
+        this.storeName = RagMetrics.storeName(vectorStore);
+    }
+
+    /**
+     * Busca híbrida sem métricas.
+     */
+    HybridRetriever(VectorStore vectorStore, Bm25Index lexicalIndex, boolean enabled, int denseTopK, int lexicalTopK,
+                    int rrfK, int topK) {
+        this(vectorStore, lexicalIndex, enabled, denseTopK, lexicalTopK, rrfK, topK, RagMetrics.NOOP);
+    }
+
+    /**
+     * Retorna os chunks mais relevantes para a pergunta.
+     *
+     * @param question       O texto da pergunta.
+     * @param embedding      O embedding da pergunta.
+     * @param withEmbeddings Se os chunks da busca vetorial devem trazer os embeddings armazenados
+     *                       (ver {@link Reranker#usesEmbeddings()}).
+     * @return Com a busca híbrida, até {@code retrieval.top-k} chunks em ordem decrescente de
+     *         relevância combinada; os encontrados só pela busca lexical têm distância {@code NaN}.
+     *         Sem ela, o resultado da busca vetorial.
+     */
+    public List<RetrievedChunk> retrieve(String question, float[] embedding, boolean withEmbeddings) {
+        long startNanos = System.nanoTime();
+        List<RetrievedChunk> dense = vectorStore.queryChunks(question, embedding, denseTopK, withEmbeddings);
+        long denseNanos = System.nanoTime();
+        metrics.recordVectorStore(storeName, "query", RagMetrics.NO_FILE_TYPE, denseNanos - startNanos);
+        if (!enabled) {
+            return dense;
+        }
+        List<Bm25Index.Hit> lexical = lexicalIndex.search(question, lexicalTopK);
+        metrics.recordQueryStage("lexical", System.nanoTime() - denseNanos);
+
+        Map<String, Double> scores = new LinkedHashMap<>(); // empates ficam na ordem da busca vetorial
+        Map<String, RetrievedChunk> chunks = new HashMap<>();
+        for (int rank = 0; rank < dense.size(); rank++) {
+            RetrievedChunk chunk = dense.get(rank);
+            scores.merge(chunk.id(), 1.0 / (rrfK + rank + 1), Double::sum);
+            chunks.putIfAbsent(chunk.id(), chunk);
+        }
+        for (int rank = 0; rank < lexical.size(); rank++) {
+            scores.merge(lexical.get(rank).id(), 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+        List<String> fused = scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(topK)
+                .map(Map.Entry::getKey)
+                .toList();
+
+        List<String> missing = fused.stream().filter(id -> !chunks.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            vectorStore.getChunks(missing).forEach(chunk -> chunks.put(chunk.id(), chunk));
+        }
+        List<RetrievedChunk> result = new ArrayList<>(fused.size());
+        for (String id : fused) {
+            RetrievedChunk chunk = chunks.get(id);
+            if (chunk != null) { // o índice lexical pode citar um chunk já removido do VectorStore
+                result.add(chunk);
+            }
+        }
+        log.debug("Busca híbrida para {}: {} vetoriais, {} lexicais, {} no contexto ({} só lexicais)",
+                PayloadLog.describe(question), dense.size(), lexical.size(), result.size(), missing.size());
+        return result;
+    }
+}
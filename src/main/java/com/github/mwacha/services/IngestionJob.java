@@ -0,0 +1,96 @@
+package com.github.mwacha.services;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Acompanha o andamento de uma ingestão executada em segundo plano.
+ */
+public class IngestionJob implements IngestionPipeline.Progress {
+
+    public enum State {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    /**
+     * Fotografia imutável do andamento de um job, usada como resposta do endpoint de status.
+     */
+    public record Status(String jobId,
+                         State state,
+                         List<String> files,
+                         int chunksProcessed,
+                         int chunksTotal,
+                         double chunksPerSecond,
+                         long elapsedMs,
+                         List<String> errors) {
+    }
+
+    private final String id;
+    private final List<String> files;
+    private final AtomicInteger chunksTotal = new AtomicInteger();
+    private final AtomicInteger chunksProcessed = new AtomicInteger();
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+    private volatile State state = State.PENDING;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile Instant finishedAt;
+
+    IngestionJob(String id, List<String> files) {
+        this.id = id;
+        this.files = List.copyOf(files);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Momento em que o job terminou, ou {@code null} enquanto não terminar.
+     */
+    Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED;
+    }
+
+    void start() {
+        startedNanos = System.nanoTime();
+        state = State.RUNNING;
+    }
+
+    void fail(String file, Throwable error) {
+        errors.add(file + ": " + error.getMessage());
+    }
+
+    void finish() {
+        finishedNanos = System.nanoTime();
+        finishedAt = Instant.now();
+        state = errors.isEmpty() ? State.COMPLETED : State.FAILED;
+    }
+
+    @Override
+    public void chunksProduced(int count) {
+        chunksTotal.addAndGet(count);
+    }
+
+    @Override
+    public void chunksStored(int count) {
+        chunksProcessed.addAndGet(count);
+    }
+
+    public Status status() {
+        long elapsedNanos = switch (state) {
+            case PENDING -> 0;
+            case RUNNING -> System.nanoTime() - startedNanos;
+            case COMPLETED, FAILED -> finishedNanos - startedNanos;
+        };
+        int processed = chunksProcessed.get();
+        double chunksPerSecond = elapsedNanos == 0 ? 0 : processed / (elapsedNanos / 1_000_000_000.0);
+        return new Status(id, state, files, processed, chunksTotal.get(), chunksPerSecond,
+                elapsedNanos / 1_000_000, List.copyOf(errors));
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.mwacha.services;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Serviço que executa a ingestão de documentos em segundo plano e mantém o andamento
+ * de cada job para consulta pelo endpoint de status.
+ * <p>
+ * Cada job gera a observação {@code rag.ingest.job}, filha da observação da requisição que o
+ * criou, e cada arquivo uma {@code rag.ingest.document} dentro dela; as chamadas ao Ollama e ao
+ * {@link VectorStore} feitas pela ingestão ficam abaixo do documento no trace. O job inclui a
+ * espera por uma vaga entre os {@code ingestion.jobs.max-concurrent} em execução.
+ */
+@Service
+@Slf4j
+public class IngestionJobService {
+
+    private final DocumentStoreService documentStoreService;
+    private final Semaphore runningJobs;
+    private final Duration retention;
+    private final ObservationRegistry observationRegistry;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public IngestionJobService(DocumentStoreService documentStoreService,
+                               @Value("${ingestion.jobs.max-concurrent:2}") int maxConcurrentJobs,
+                               @Value("${ingestion.jobs.retention:PT1H}") Duration retention,
+                               ObservationRegistry observationRegistry) {
+        if (maxConcurrentJobs <= 0) {
+            throw new IllegalArgumentException("ingestion.jobs.max-concurrent deve ser positivo: " + maxConcurrentJobs);
+        }
+        this.documentStoreService = documentStoreService;
+        this.runningJobs = new Semaphore(maxConcurrentJobs);
+        this.retention = retention;
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * Serviço sem observações.
+     */
+    IngestionJobService(DocumentStoreService documentStoreService, int maxConcurrentJobs, Duration retention) {
+        this(documentStoreService, maxConcurrentJobs, retention, ObservationRegistry.NOOP);
+    }
+
+    /**
+     * Copia os arquivos recebidos para arquivos temporários e agenda a ingestão deles
+     * em segundo plano. Retorna assim que a cópia termina.
+     *
+     * @param files Arquivos enviados na requisição.
+     * @return O job criado, com status {@link IngestionJob.State#PENDING}.
+     * @throws IllegalArgumentException se nenhum arquivo for enviado ou algum vier sem nome ou em um
+     *                                  formato não suportado; nesse caso nada é copiado.
+     */
+    public IngestionJob submit(List<MultipartFile> files) throws IOException {
+        if (files == null || files.isEmpty()) {
+            throw new IllegalArgumentException("Nenhum arquivo enviado.");
+        }
+        List<String> filenames = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            String filename = file.getOriginalFilename();
+            if (filename == null || filename.isBlank()) {
+                throw new IllegalArgumentException("Arquivo enviado sem nome.");
+            }
+            DocumentStoreService.format(filename);
+            filenames.add(filename);
+        }
+        evictFinishedJobs();
+
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), filenames);
+        List<Path> copies = new ArrayList<>(files.size());
+        try {
+            for (MultipartFile file : files) {
+                Path copy = Files.createTempFile("ingestion-", ".upload");
+                copies.add(copy);
+                file.transferTo(copy);
+            }
+            jobs.put(job.getId(), job);
+            Observation observation = Observation.createNotStarted("rag.ingest.job", observationRegistry)
+                    .contextualName("ingest-job")
+                    .parentObservation(observationRegistry.getCurrentObservation()) // a requisição de upload
+                    .highCardinalityKeyValue("job_id", job.getId())
+                    .highCardinalityKeyValue("files", String.valueOf(filenames.size()));
+            executor.submit(() -> observation.observe(() -> run(job, filenames, copies)));
+        } catch (IOException | RuntimeException e) {
+            jobs.remove(job.getId());
+            copies.forEach(IngestionJobService::deleteQuietly);
+            throw e;
+        }
+        log.info("Job de ingestão {} criado para {} arquivo(s)", job.getId(), filenames.size());
+        return job;
+    }
+
+    /**
+     * Retorna o job com o identificador informado, se ainda estiver retido.
+     */
+    public Optional<IngestionJob> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private void run(IngestionJob job, List<String> filenames, List<Path> copies) {
+        try {
+            runningJobs.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            copies.forEach(IngestionJobService::deleteQuietly);
+            return;
+        }
+        try {
+            job.start();
+            for (int i = 0; i < filenames.size(); i++) {
+                String filename = filenames.get(i);
+                Path copy = copies.get(i);
+                try {
+                    Observation.createNotStarted("rag.ingest.document", observationRegistry)
+                            .contextualName("ingest-document")
+                            .lowCardinalityKeyValue("file_type", RagMetrics.fileType(filename))
+                            .observeChecked(() -> documentStoreService.storeDocument(filename,
+                                    new FileSystemResource(copy), job));
+                } catch (Exception e) {
+                    log.error("Erro ao processar o arquivo {} no job {}: {}", filename, job.getId(), e.getMessage());
+                    job.fail(filename, e);
+                } finally {
+                    deleteQuietly(copy);
+                }
+            }
+        } finally {
+            // Cópias de arquivos não processados, se o laço terminar antes do fim
+            copies.forEach(IngestionJobService::deleteQuietly);
+            job.finish();
+            runningJobs.release();
+            IngestionJob.Status status = job.status();
+            log.info("Job de ingestão {} finalizado com estado {}: {} chunks em {} ms",
+                    job.getId(), status.state(), status.chunksProcessed(), status.elapsedMs());
+        }
+    }
+
+    private void evictFinishedJobs() {
+        Instant limit = Instant.now().minus(retention);
+        // A retenção conta a partir do fim do job, para que um job longo não suma logo ao terminar
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(limit));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Não foi possível remover o arquivo temporário {}: {}", path, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,426 @@
+package com.github.mwacha.services;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pipeline de ingestão em estágios (extração → divisão em chunks → embedding → upsert).
+ * <p>
+ * Cada estágio roda em virtual threads e se comunica com o seguinte por filas limitadas
+ * ({@code ingestion.queue-capacity}), de modo que o embedding de um lote se sobrepõe ao
+ * upsert do lote anterior e um extrator rápido fica bloqueado em vez de encher o heap.
+ * A quantidade de workers dos estágios de embedding e upsert é configurável. Os textos
+ * gravados no {@link VectorStore} também são indexados no {@link Bm25Index} para a busca lexical.
+ * Os tempos de extração, divisão e upsert são registrados no {@link RagMetrics}.
+ */
+@Component
+@Slf4j
+public class IngestionPipeline {
+
+    /** Marcador de fim de fluxo da fila de segmentos, comparado por identidade. */
+    private static final Segment END_OF_SEGMENTS = new Segment("", 0);
+
+    /** Marcador de fim de fluxo da fila de lotes de chunks (os lotes enviados nunca são vazios). */
+    private static final List<Chunk> END_OF_BATCHES = Collections.unmodifiableList(new ArrayList<>());
+
+    /** Marcador de fim de fluxo da fila de lotes com embeddings. */
+    private static final EmbeddedBatch END_OF_EMBEDDED = new EmbeddedBatch(List.of(), List.of());
+
+    /** Quantidade de caracteres hexadecimais do SHA-256 usados nos identificadores. */
+    private static final int ID_HASH_LENGTH = 16;
+
+    /** Captura o contexto (observação corrente) da thread que chama a ingestão. */
+    private static final ContextSnapshotFactory CONTEXT_SNAPSHOTS = ContextSnapshotFactory.builder().build();
+
+    private final EmbeddingService embeddingService;
+    private final VectorStore vectorStore;
+    private final Bm25Index lexicalIndex;
+    private final int queueCapacity;
+    private final int embedConcurrency;
+    private final int upsertConcurrency;
+    private final int batchSize;
+    private final RagMetrics metrics;
+    private final String storeName;
+
+    @Autowired
+    public IngestionPipeline(EmbeddingService embeddingService,
+                             VectorStore vectorStore,
+                             Bm25Index lexicalIndex,
+                             @Value("${ingestion.queue-capacity:16}") int queueCapacity,
+                             @Value("${ingestion.embed-concurrency:2}") int embedConcurrency,
+                             @Value("${ingestion.upsert-concurrency:2}") int upsertConcurrency,
+                             @Value("${ingestion.batch-size:32}") int batchSize,
+                             RagMetrics metrics) {
+        if (queueCapacity <= 0 || embedConcurrency <= 0 || upsertConcurrency <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Configuração de ingestão inválida: queue-capacity=" + queueCapacity +
+                    ", embed-concurrency=" + embedConcurrency + ", upsert-concurrency=" + upsertConcurrency +
+                    ", batch-size=" + batchSize);
+        }
+        this.embeddingService = embeddingService;
+        this.vectorStore = vectorStore;
+        this.lexicalIndex = lexicalIndex;
+        this.queueCapacity = queueCapacity;
+        this.embedConcurrency = embedConcurrency;
+        this.upsertConcurrency = upsertConcurrency;
+        this.batchSize = batchSize;
+        this.metrics = metrics;
+        this.storeName = RagMetrics.storeName(vectorStore);
+    }
+
+    /**
+     * Pipeline com índice lexical apenas em memória e sem métricas.
+     */
+    IngestionPipeline(EmbeddingService embeddingService, VectorStore vectorStore, int queueCapacity,
+                      int embedConcurrency, int upsertConcurrency, int batchSize) {
+        this(embeddingService, vectorStore, new Bm25Index((Path) null), queueCapacity, embedConcurrency,
+                upsertConcurrency, batchSize, RagMetrics.NOOP);
+    }
+
+    /**
+     * Fonte de texto de um documento. Emite o texto extraído em um ou mais segmentos, à
+     * medida que é lido, para que o documento inteiro nunca precise estar em memória.
+     */
+    @FunctionalInterface
+    public interface TextSource {
+        void emit(Consumer<Segment> sink) throws IOException;
+    }
+
+    /**
+     * Trecho do texto extraído de um documento.
+     *
+     * @param page Número da página de origem (a partir de 1), ou 0 se o formato não tiver páginas.
+     */
+    public record Segment(String text, int page) {
+
+        public Segment(String text) {
+            this(text, 0);
+        }
+    }
+
+    /**
+     * Chunk produzido pelo {@link Chunker}.
+     *
+     * @param firstPage Primeira página do chunk, ou 0 se o formato não tiver páginas.
+     * @param lastPage  Última página do chunk, ou 0 se o formato não tiver páginas.
+     */
+    public record TextChunk(String text, int firstPage, int lastPage) {
+
+        public TextChunk(String text) {
+            this(text, 0, 0);
+        }
+    }
+
+    /**
+     * Divide os segmentos de texto em chunks. Pode guardar o fim de um segmento (por
+     * exemplo, uma frase incompleta) para juntá-lo ao segmento seguinte.
+     */
+    @FunctionalInterface
+    public interface Chunker {
+
+        /** Retorna os chunks completos disponíveis após receber o segmento. */
+        List<TextChunk> chunk(Segment segment);
+
+        /** Chamado após o último segmento; retorna os chunks que ainda estavam pendentes. */
+        default List<TextChunk> finish() {
+            return List.of();
+        }
+    }
+
+    /**
+     * Recebe o andamento da ingestão. Os métodos são chamados a partir das threads dos estágios.
+     */
+    public interface Progress {
+        Progress NONE = new Progress() {
+        };
+
+        /** Chamado quando o estágio de divisão produz novos chunks. */
+        default void chunksProduced(int count) {
+        }
+
+        /** Chamado quando um lote de chunks é armazenado no {@link VectorStore}. */
+        default void chunksStored(int count) {
+        }
+    }
+
+    /**
+     * Executa a ingestão de um documento e aguarda o término de todos os estágios.
+     *
+     * @param documentName Nome do documento (por exemplo, o nome do arquivo).
+     * @param source       Fonte dos segmentos de texto do documento.
+     * @param chunker      Divide os segmentos de texto em chunks.
+     * @return Quantidade de chunks do documento.
+     * @throws IOException se a extração do texto falhar.
+     * @see #ingest(String, TextSource, Chunker, Progress)
+     */
+    public int ingest(String documentName, TextSource source, Chunker chunker)
+            throws IOException {
+        return ingest(documentName, source, chunker, Progress.NONE);
+    }
+
+    /**
+     * Executa a ingestão de um documento, informando o andamento ao {@code progress}.
+     * <p>
+     * Os identificadores dos chunks são determinísticos: derivam do nome do documento, do
+     * hash do conteúdo do chunk e da ocorrência desse conteúdo no documento. Ao reenviar um
+     * documento, os chunks que já estão no {@link VectorStore} não são reprocessados (apenas os
+     * metadados, como {@code chunk_index} e páginas, são atualizados se tiverem mudado), e os
+     * chunks que deixaram de existir são removidos depois que os novos forem gravados.
+     *
+     * @param documentName Nome do documento (por exemplo, o nome do arquivo).
+     * @param source       Fonte dos segmentos de texto do documento.
+     * @param chunker      Divide os segmentos de texto em chunks.
+     * @param progress     Receptor do andamento da ingestão.
+     * @return Quantidade de chunks do documento.
+     * @throws IOException se a extração do texto falhar.
+     */
+    public int ingest(String documentName, TextSource source, Chunker chunker,
+                      Progress progress) throws IOException {
+        String documentId = documentId(documentName);
+        String fileType = RagMetrics.fileType(documentName);
+        Map<String, Map<String, Object>> existing = vectorStore.getDocumentChunks(documentId);
+        Set<String> unchanged = new HashSet<>();
+        List<String> reindexedIds = new ArrayList<>();
+        List<Map<String, Object>> reindexedMetadatas = new ArrayList<>();
+
+        BlockingQueue<Segment> segments = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<Chunk>> batches = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<EmbeddedBatch> embedded = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger activeEmbedders = new AtomicInteger(embedConcurrency);
+        AtomicInteger stored = new AtomicInteger();
+        long startNanos = System.nanoTime();
+
+        // Os estágios herdam a observação corrente, pai das chamadas HTTP de embedding e upsert
+        try (ExecutorService executor = ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(),
+                CONTEXT_SNAPSHOTS::captureAll)) {
+            CompletionService<Void> stages = new ExecutorCompletionService<>(executor);
+            int tasks = 0;
+
+            stages.submit(() -> {
+                long extractStart = System.nanoTime();
+                long[] blockedNanos = new long[1];
+                source.emit(segment -> {
+                    long putStart = System.nanoTime();
+                    put(segments, segment);
+                    blockedNanos[0] += System.nanoTime() - putStart;
+                });
+                metrics.recordIngestStage("extract", fileType, System.nanoTime() - extractStart - blockedNanos[0]);
+                put(segments, END_OF_SEGMENTS);
+                return null;
+            });
+            tasks++;
+
+            stages.submit(() -> {
+                Map<String, Integer> occurrences = new HashMap<>();
+                int index = 0;
+                List<Chunk> batch = new ArrayList<>(batchSize);
+                long chunkNanos = 0;
+                for (Segment segment = segments.take(); ; segment = segments.take()) {
+                    long chunkStart = System.nanoTime();
+                    List<TextChunk> chunks = segment == END_OF_SEGMENTS ? chunker.finish() : chunker.chunk(segment);
+                    chunkNanos += System.nanoTime() - chunkStart;
+                    for (TextChunk chunk : chunks) {
+                        String text = chunk.text();
+                        if (text.isBlank()) {
+                            continue;
+                        }
+                        String hash = ContentHash.sha256Hex(text).substring(0, ID_HASH_LENGTH);
+                        String id = documentId + "_" + hash + "_" + occurrences.merge(hash, 1, Integer::sum);
+                        Map<String, Object> metadata = new HashMap<>();
+                        metadata.put("document_id", documentId);
+                        metadata.put("source", documentName);
+                        metadata.put("chunk_index", index++);
+                        metadata.put("chunk_hash", hash);
+                        if (chunk.firstPage() > 0) {
+                            metadata.put("page_start", chunk.firstPage());
+                            metadata.put("page_end", chunk.lastPage());
+                        }
+
+                        Map<String, Object> previous = existing.get(id);
+                        if (previous != null) {
+                            unchanged.add(id);
+                            if (!lexicalIndex.contains(id)) {
+                                // Chunk gravado antes do índice lexical existir (ou com o índice perdido)
+                                lexicalIndex.add(List.of(id), List.of(text));
+                            }
+                            if (!sameMetadata(metadata, previous)) {
+                                reindexedIds.add(id);
+                                reindexedMetadatas.add(metadata);
+                            }
+                            stored.incrementAndGet();
+                            progress.chunksProduced(1);
+                            progress.chunksStored(1);
+                            continue;
+                        }
+
+                        batch.add(new Chunk(id, text, metadata));
+                        if (batch.size() == batchSize) {
+                            progress.chunksProduced(batch.size());
+                            put(batches, batch);
+                            batch = new ArrayList<>(batchSize);
+                        }
+                    }
+                    if (segment == END_OF_SEGMENTS) {
+                        break;
+                    }
+                }
+                metrics.recordIngestStage("chunk", fileType, chunkNanos);
+                if (!batch.isEmpty()) {
+                    progress.chunksProduced(batch.size());
+                    put(batches, batch);
+                }
+                for (int i = 0; i < embedConcurrency; i++) {
+                    put(batches, END_OF_BATCHES);
+                }
+                return null;
+            });
+            tasks++;
+
+            for (int i = 0; i < embedConcurrency; i++) {
+                stages.submit(() -> {
+                    for (List<Chunk> batch = batches.take(); batch != END_OF_BATCHES; batch = batches.take()) {
+                        List<String> texts = batch.stream().map(Chunk::text).toList();
+                        put(embedded, new EmbeddedBatch(batch, embeddingService.embedAll(texts, fileType)));
+                    }
+                    if (activeEmbedders.decrementAndGet() == 0) {
+                        for (int j = 0; j < upsertConcurrency; j++) {
+                            put(embedded, END_OF_EMBEDDED);
+                        }
+                    }
+                    return null;
+                });
+                tasks++;
+            }
+
+            for (int i = 0; i < upsertConcurrency; i++) {
+                stages.submit(() -> {
+                    for (EmbeddedBatch batch = embedded.take(); batch != END_OF_EMBEDDED; batch = embedded.take()) {
+                        List<String> ids = batch.chunks().stream().map(Chunk::id).toList();
+                        List<String> texts = batch.chunks().stream().map(Chunk::text).toList();
+                        long upsertStart = System.nanoTime();
+                        vectorStore.addDocuments(ids, texts, batch.embeddings(),
+                                batch.chunks().stream().map(Chunk::metadata).toList());
+                        metrics.recordVectorStore(storeName, "upsert", fileType, System.nanoTime() - upsertStart);
+                        lexicalIndex.add(ids, texts);
+                        stored.addAndGet(batch.chunks().size());
+                        progress.chunksStored(batch.chunks().size());
+                    }
+                    return null;
+                });
+                tasks++;
+            }
+
+            awaitStages(stages, tasks, executor);
+        }
+
+        // Só depois que os chunks novos foram gravados, para que o documento nunca fique sem conteúdo
+        vectorStore.updateMetadatas(reindexedIds, reindexedMetadatas);
+        List<String> stale = existing.keySet().stream().filter(id -> !unchanged.contains(id)).toList();
+        vectorStore.deleteDocuments(stale);
+        lexicalIndex.delete(stale);
+        lexicalIndex.flush();
+        metrics.recordChunks(fileType, "new", stored.get() - unchanged.size());
+        metrics.recordChunks(fileType, "unchanged", unchanged.size());
+
+        log.info("Ingestão de {} concluída: {} chunks ({} novos, {} inalterados, {} removidos) em {} ms",
+                documentName, stored.get(), stored.get() - unchanged.size(), unchanged.size(), stale.size(),
+                (System.nanoTime() - startNanos) / 1_000_000);
+        return stored.get();
+    }
+
+    /**
+     * Calcula o identificador estável de um documento a partir do seu nome.
+     */
+    static String documentId(String documentName) {
+        return ContentHash.sha256Hex(documentName).substring(0, ID_HASH_LENGTH);
+    }
+
+    /**
+     * Compara metadados ignorando o tipo numérico (o ChromaDB pode devolver inteiros como
+     * {@code Long} ou {@code Double}).
+     */
+    private static boolean sameMetadata(Map<String, Object> expected, Map<String, Object> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (Map.Entry<String, Object> entry : expected.entrySet()) {
+            Object value = actual.get(entry.getKey());
+            boolean same = entry.getValue() instanceof Number number && value instanceof Number other
+                    ? number.doubleValue() == other.doubleValue()
+                    : entry.getValue().equals(value);
+            if (!same) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Aguarda os estágios na ordem em que terminam. Na primeira falha, interrompe os demais
+     * estágios (que podem estar bloqueados nas filas) e propaga a causa original.
+     */
+    private static void awaitStages(CompletionService<Void> stages, int tasks, ExecutorService executor)
+            throws IOException {
+        try {
+            for (int i = 0; i < tasks; i++) {
+                stages.take().get();
+            }
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            Throwable cause = e.getCause();
+            log.error("Falha na ingestão do documento: {}", cause.getMessage());
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Falha na ingestão do documento", cause);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Ingestão interrompida");
+        }
+    }
+
+    private static <T> void put(BlockingQueue<T> queue, T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Ingestão interrompida");
+        }
+    }
+
+    private record Chunk(String id, String text, Map<String, Object> metadata) {
+    }
+
+    private record EmbeddedBatch(List<Chunk> chunks, List<float[]> embeddings) {
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.mwacha.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arquivo de registros de tamanho fixo mapeado em memória, fora do heap.
+ * <p>
+ * O arquivo começa com um cabeçalho de {@code headerBytes} bytes, seguido dos registros em
+ * blocos mapeados separadamente (cada bloco tem um número inteiro de registros, então um
+ * registro nunca fica dividido entre dois blocos). Novos blocos são mapeados conforme a
+ * capacidade cresce, o que permite arquivos maiores que o limite de 2 GB de um único mapeamento.
+ * Os valores são gravados em little-endian.
+ * <p>
+ * Leituras concorrentes são seguras; gravações e {@link #ensureCapacity(int)} devem ser
+ * serializadas pelo chamador.
+ */
+final class MappedRecords implements Closeable {
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int headerBytes;
+    private final int recordBytes;
+    private final int recordsPerChunk;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final List<FloatBuffer> floatViews = new ArrayList<>();
+    private final List<IntBuffer> intViews = new ArrayList<>();
+    private final List<LongBuffer> longViews = new ArrayList<>();
+
+    /**
+     * Abre (ou cria) o arquivo.
+     *
+     * @param headerBytes     Tamanho do cabeçalho, múltiplo de 4.
+     * @param recordBytes     Tamanho de cada registro, múltiplo de 4 (de 8 para usar {@link #readLongs}).
+     * @param recordsPerChunk Quantidade de registros por bloco mapeado.
+     */
+    MappedRecords(Path path, int headerBytes, int recordBytes, int recordsPerChunk) {
+        if (headerBytes <= 0 || headerBytes % 4 != 0 || recordBytes <= 0 || recordBytes % 4 != 0
+                || recordsPerChunk <= 0 || (long) recordBytes * recordsPerChunk > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Layout inválido para " + path + ": header=" + headerBytes +
+                    ", record=" + recordBytes + ", recordsPerChunk=" + recordsPerChunk);
+        }
+        this.path = path;
+        this.headerBytes = headerBytes;
+        this.recordBytes = recordBytes;
+        this.recordsPerChunk = recordsPerChunk;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.header = map(0, headerBytes);
+            long existing = Math.max(0, channel.size() - headerBytes);
+            while ((long) chunks.size() * chunkBytes() < existing) {
+                addChunk();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível abrir o arquivo " + path, e);
+        }
+    }
+
+    /**
+     * Retorna o cabeçalho do arquivo (acesso absoluto, little-endian).
+     */
+    ByteBuffer header() {
+        return header;
+    }
+
+    /**
+     * Quantidade de registros que cabem nos blocos já mapeados.
+     */
+    int capacity() {
+        return chunks.size() * recordsPerChunk;
+    }
+
+    /**
+     * Garante espaço para pelo menos {@code records} registros, aumentando o arquivo se necessário.
+     */
+    void ensureCapacity(int records) {
+        try {
+            while (capacity() < records) {
+                addChunk();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível aumentar o arquivo " + path, e);
+        }
+    }
+
+    /**
+     * Copia os floats do registro, a partir do float {@code offset}, para {@code target}.
+     */
+    void readFloats(int record, int offset, float[] target) {
+        floatViews.get(record / recordsPerChunk).get(wordIndex(record, offset), target);
+    }
+
+    /**
+     * Grava {@code source} no registro, a partir do float {@code offset}.
+     */
+    void writeFloats(int record, int offset, float[] source) {
+        floatViews.get(record / recordsPerChunk).put(wordIndex(record, offset), source);
+    }
+
+    /**
+     * Copia os bytes do registro, a partir do byte {@code offset}, para {@code target}.
+     */
+    void readBytes(int record, int offset, byte[] target) {
+        chunks.get(record / recordsPerChunk).get((record % recordsPerChunk) * recordBytes + offset, target);
+    }
+
+    void writeBytes(int record, int offset, byte[] source) {
+        chunks.get(record / recordsPerChunk).put((record % recordsPerChunk) * recordBytes + offset, source);
+    }
+
+    /**
+     * Copia os longs do registro, a partir do long {@code offset}, para {@code target}.
+     */
+    void readLongs(int record, int offset, long[] target) {
+        longViews.get(record / recordsPerChunk).get((record % recordsPerChunk) * (recordBytes / 8) + offset, target);
+    }
+
+    void writeLongs(int record, int offset, long[] source) {
+        longViews.get(record / recordsPerChunk).put((record % recordsPerChunk) * (recordBytes / 8) + offset, source);
+    }
+
+    int getInt(int record, int offset) {
+        return intViews.get(record / recordsPerChunk).get(wordIndex(record, offset));
+    }
+
+    void putInt(int record, int offset, int value) {
+        intViews.get(record / recordsPerChunk).put(wordIndex(record, offset), value);
+    }
+
+    /**
+     * Grava no disco as alterações pendentes.
+     */
+    void force() {
+        header.force();
+        chunks.forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private int wordIndex(int record, int offset) {
+        return (record % recordsPerChunk) * (recordBytes / 4) + offset;
+    }
+
+    private long chunkBytes() {
+        return (long) recordBytes * recordsPerChunk;
+    }
+
+    private void addChunk() throws IOException {
+        MappedByteBuffer chunk = map(headerBytes + chunks.size() * chunkBytes(), chunkBytes());
+        chunks.add(chunk);
+        floatViews.add(chunk.asFloatBuffer());
+        intViews.add(chunk.asIntBuffer());
+        longViews.add(chunk.asLongBuffer());
+    }
+
+    private MappedByteBuffer map(long position, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.mwacha.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Re-ranking por Maximal Marginal Relevance: escolhe, a cada passo, o candidato que maximiza
+ * {@code λ · relevância(chunk) − (1 − λ) · max sim(chunk, escolhido)}, evitando que o
+ * contexto seja ocupado por chunks que repetem a mesma informação.
+ * <p>
+ * A relevância combina a posição do candidato na ordem da recuperação (a fusão vetorial + lexical
+ * do {@link HybridRetriever}) com o cosseno entre a pergunta e o embedding do chunk:
+ * {@code w · (1 − posição / (n − 1)) + (1 − w) · cos}, com {@code w = rerank.mmr.retrieval-weight}.
+ * Assim, um chunk que só a busca lexical encontrou, e que por isso tem cosseno baixo, mantém a
+ * posição que a fusão lhe deu. Com {@code w = 1}, o MMR só diversifica dentro da ordem da
+ * recuperação; com {@code w = 0}, a ordem é refeita apenas pelo cosseno.
+ * <p>
+ * As similaridades são calculadas localmente com {@link VectorMath} (SIMD quando disponível),
+ * com os embeddings que a consulta ao {@link VectorStore} já devolve em cada
+ * {@link RetrievedChunk}; só os que faltarem são lidos com {@link VectorStore#getEmbeddings}.
+ */
+@Component
+@ConditionalOnProperty(name = "rerank.strategy", havingValue = "mmr", matchIfMissing = true)
+@Slf4j
+public class MmrReranker implements Reranker {
+
+    private final VectorStore vectorStore;
+    private final double lambda;
+    private final double retrievalWeight;
+
+    @Autowired
+    public MmrReranker(VectorStore vectorStore, @Value("${rerank.mmr.lambda:0.7}") double lambda,
+                       @Value("${rerank.mmr.retrieval-weight:0.8}") double retrievalWeight) {
+        if (lambda < 0 || lambda > 1) {
+            throw new IllegalArgumentException("rerank.mmr.lambda deve estar entre 0 e 1: " + lambda);
+        }
+        if (retrievalWeight < 0 || retrievalWeight > 1) {
+            throw new IllegalArgumentException("rerank.mmr.retrieval-weight deve estar entre 0 e 1: " + retrievalWeight);
+        }
+        this.vectorStore = vectorStore;
+        this.lambda = lambda;
+        this.retrievalWeight = retrievalWeight;
+    }
+
+    @Override
+    public boolean usesEmbeddings() {
+        return true;
+    }
+
+    @Override
+    public List<RetrievedChunk> rerank(String question, float[] questionEmbedding, List<RetrievedChunk> candidates,
+                                       int topK) {
+        int count = candidates.size();
+        if (count <= 1) {
+            return candidates;
+        }
+        List<String> missing = candidates.stream().filter(chunk -> chunk.embedding() == null)
+                .map(RetrievedChunk::id).toList();
+        Map<String, float[]> stored = missing.isEmpty() ? Map.of() : vectorStore.getEmbeddings(missing);
+        float[] query = VectorMath.normalize(questionEmbedding);
+        float[][] embeddings = new float[count][];
+        double[] relevance = new double[count];
+        double[] redundancy = new double[count]; // maior similaridade com um chunk já escolhido
+        int withoutEmbedding = 0;
+        for (int i = 0; i < count; i++) {
+            RetrievedChunk chunk = candidates.get(i);
+            float[] embedding = chunk.embedding() != null ? chunk.embedding() : stored.get(chunk.id());
+            double similarity = 0;
+            if (embedding != null && embedding.length == query.length) {
+                embeddings[i] = VectorMath.normalize(embedding);
+                similarity = VectorMath.dot(query, embeddings[i]);
+            } else {
+                withoutEmbedding++;
+            }
+            double position = 1 - (double) i / (count - 1);
+            relevance[i] = retrievalWeight * position + (1 - retrievalWeight) * similarity;
+        }
+
+        List<RetrievedChunk> selected = new ArrayList<>(Math.min(topK, count));
+        boolean[] taken = new boolean[count];
+        while (selected.size() < Math.min(topK, count)) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                double score = lambda * relevance[i] - (1 - lambda) * redundancy[i];
+                if (!taken[i] && score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            taken[best] = true;
+            selected.add(candidates.get(best));
+            if (embeddings[best] != null) {
+                for (int i = 0; i < count; i++) {
+                    if (!taken[i] && embeddings[i] != null) {
+                        redundancy[i] = Math.max(redundancy[i], VectorMath.dot(embeddings[i], embeddings[best]));
+                    }
+                }
+            }
+        }
+        log.debug("MMR escolheu {} de {} candidatos para {} ({} sem embedding, {} lidos do VectorStore)",
+                selected.size(), count, PayloadLog.describe(question), withoutEmbedding, stored.size());
+        return selected;
+    }
+}
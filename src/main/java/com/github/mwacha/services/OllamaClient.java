@@ -1,81 +1,163 @@
 package com.github.mwacha.services;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class OllamaClient {
 
+    private static final String MODEL = "gemma2";
+
     private final WebClient webClient;
+    private final Duration firstTokenTimeout;
+    private final Duration tokenTimeout;
+    private final Duration generationTimeout;
+    private final RagMetrics metrics;
+
+    @Autowired
+    public OllamaClient(@Qualifier("ollamaWebClient") WebClient webClient,
+                        @Value("${ollama.generate.first-token-timeout:PT2M}") Duration firstTokenTimeout,
+                        @Value("${ollama.generate.token-timeout:PT30S}") Duration tokenTimeout,
+                        @Value("${ollama.generate.timeout:PT5M}") Duration generationTimeout,
+                        RagMetrics metrics) {
+        this.webClient = webClient;
+        this.firstTokenTimeout = firstTokenTimeout;
+        this.tokenTimeout = tokenTimeout;
+        this.generationTimeout = generationTimeout;
+        this.metrics = metrics;
+    }
 
-    public OllamaClient() {
-        this.webClient = WebClient.builder()
-                .baseUrl("http://localhost:11434")
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .build();
+    /**
+     * Cliente sem métricas.
+     */
+    OllamaClient(WebClient webClient, Duration firstTokenTimeout, Duration tokenTimeout, Duration generationTimeout) {
+        this(webClient, firstTokenTimeout, tokenTimeout, generationTimeout, RagMetrics.NOOP);
     }
 
     /**
-     * Envia um prompt ao Ollama e retorna a resposta gerada.
+     * Envia um prompt ao Ollama e emite os fragmentos da resposta à medida que são gerados.
+     * O fluxo termina quando o Ollama sinaliza {@code "done": true}; cancelar a assinatura
+     * encerra a requisição HTTP. O tempo até o primeiro fragmento e a velocidade de geração
+     * são registrados no {@link RagMetrics}.
      *
      * @param prompt O prompt a ser enviado.
-     * @return A resposta gerada pelo modelo.
-     * @throws RuntimeException se ocorrer um erro na chamada ao Ollama.
+     * @return Fluxo com os fragmentos da resposta, na ordem em que foram gerados.
      */
-    public String ask(String prompt) {
+    public Flux<String> stream(String prompt) {
         Map<String, Object> request = Map.of(
-                "model", "gemma2",
+                "model", MODEL,
                 "prompt", prompt,
                 "max_tokens", 1000,
                 "temperature", 0.7,
                 "stream", true // Explicitamente habilitar streaming
         );
 
-        try {
-            StringBuilder responseBuilder = new StringBuilder();
-            AtomicBoolean isDone = new AtomicBoolean(false);
+        return Flux.defer(() -> {
+                    long startNanos = System.nanoTime();
+                    boolean[] firstToken = {true};
+                    return webClient.post()
+                            .uri("/api/generate")
+                            .bodyValue(request)
+                            .retrieve()
+                            .bodyToFlux(GenerateChunk.class)
+                            .doOnNext(response -> {
+                                if (firstToken[0] && response.response() != null && !response.response().isEmpty()) {
+                                    firstToken[0] = false;
+                                    metrics.recordFirstToken(MODEL, System.nanoTime() - startNanos);
+                                }
+                                if (response.done()) {
+                                    metrics.recordGeneration(MODEL, response.evalCount(), response.evalDuration());
+                                }
+                            });
+                })
+                .<GenerateChunk>handle((response, sink) -> {
+                    if (response.error() != null) {
+                        sink.error(new IllegalStateException("Ollama retornou erro: " + response.error()));
+                    } else {
+                        sink.next(response);
+                    }
+                })
+                .takeUntil(GenerateChunk::done)
+                .timeout(Mono.delay(firstTokenTimeout), response -> Mono.delay(tokenTimeout))
+                .mapNotNull(GenerateChunk::response)
+                .filter(fragment -> !fragment.isEmpty())
+                .onErrorMap(error -> {
+                    log.error("Erro ao processar stream do Ollama: {}", error.toString());
+                    return new RuntimeException("Erro ao chamar Ollama", error);
+                });
+    }
 
-            Flux<Map> responseFlux = webClient.post()
-                    .uri("/api/generate")
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToFlux(Map.class);
+    /**
+     * Envia um prompt ao Ollama e retorna a resposta completa, sem bloquear a thread chamadora.
+     *
+     * @param prompt O prompt a ser enviado.
+     * @return A resposta gerada pelo modelo; termina com erro se a geração falhar
+     * ou exceder {@code ollama.generate.timeout}.
+     */
+    public Mono<String> ask(String prompt) {
+        return stream(prompt)
+                .collect(Collectors.joining())
+                .timeout(generationTimeout)
+                .doOnNext(result -> log.debug("Resposta completa do Ollama com {} caracteres", result.length()));
+    }
+
+    /**
+     * Gera uma resposta curta e determinística (temperatura 0, sem streaming) com o modelo
+     * informado, por exemplo para pontuar a relevância de um trecho.
+     *
+     * @param model     O modelo do Ollama.
+     * @param prompt    O prompt a ser enviado.
+     * @param maxTokens Quantidade máxima de tokens gerados.
+     * @return A resposta gerada; termina com erro se a geração falhar ou exceder {@code ollama.generate.timeout}.
+     */
+    public Mono<String> complete(String model, String prompt, int maxTokens) {
+        Map<String, Object> request = Map.of(
+                "model", model,
+                "prompt", prompt,
+                "stream", false,
+                "options", Map.of("temperature", 0, "num_predict", maxTokens));
 
-            responseFlux.subscribe(
-                    response -> {
-                        String fragment = (String) response.get("response");
-                        if (fragment != null) {
-                            responseBuilder.append(fragment);
-                        }
-                        if (Boolean.TRUE.equals(response.get("done"))) {
-                            isDone.set(true);
-                        }
-                    },
-                    error -> {
-                        log.error("Erro ao processar stream do Ollama: {}", error.getMessage());
-                        throw new RuntimeException("Erro ao processar stream do Ollama", error);
+        return Mono.defer(() -> webClient.post()
+                        .uri("/api/generate")
+                        .bodyValue(request)
+                        .retrieve()
+                        .bodyToMono(GenerateChunk.class))
+                .<String>handle((response, sink) -> {
+                    if (response.error() != null) {
+                        sink.error(new IllegalStateException("Ollama retornou erro: " + response.error()));
+                    } else if (response.response() != null) {
+                        metrics.recordGeneration(model, response.evalCount(), response.evalDuration());
+                        sink.next(response.response());
                     }
-            );
+                })
+                .timeout(generationTimeout);
+    }
 
-            // Aguardar até que a resposta esteja completa
-            while (!isDone.get()) {
-                Thread.sleep(10); // Pequena espera para evitar consumo excessivo de CPU
-            }
+    /**
+     * Fragmento da resposta em streaming do {@code /api/generate}. O último fragmento traz a
+     * quantidade de tokens gerados e o tempo de geração, em nanossegundos. Os demais campos (como o
+     * {@code context}, com milhares de inteiros) são ignorados sem serem materializados.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record GenerateChunk(String response, boolean done, String error,
+                         @JsonProperty("eval_count") long evalCount,
+                         @JsonProperty("eval_duration") long evalDuration) {
 
-            String result = responseBuilder.toString();
-            log.debug("Resposta completa do Ollama: {}", result);
-            return result;
-        } catch (Exception e) {
-            log.error("Erro ao chamar Ollama: {}", e.getMessage());
-            throw new RuntimeException("Erro ao chamar Ollama", e);
+        GenerateChunk(String response, boolean done, String error) {
+            this(response, done, error, 0, 0);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,96 @@
+package com.github.mwacha.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Re-ranking com um modelo do Ollama ({@code rerank.ollama.model}): cada candidato recebe
+ * uma nota de 0 a 10 para a relevância em relação à pergunta, e os de maior nota formam o
+ * contexto. As chamadas são feitas em paralelo, até {@code rerank.ollama.concurrency} por vez.
+ * <p>
+ * Se o modelo falhar, os candidatos são usados na ordem da recuperação.
+ */
+@Component
+@ConditionalOnProperty(name = "rerank.strategy", havingValue = "ollama")
+@Slf4j
+public class OllamaReranker implements Reranker {
+
+    private static final Pattern SCORE = Pattern.compile("\\d+(?:[.,]\\d+)?");
+    private static final int SCORE_TOKENS = 4;
+
+    private final OllamaClient ollamaClient;
+    private final String model;
+    private final int concurrency;
+    private final int maxChars;
+
+    @Autowired
+    public OllamaReranker(OllamaClient ollamaClient,
+                          @Value("${rerank.ollama.model:gemma2:2b}") String model,
+                          @Value("${rerank.ollama.concurrency:4}") int concurrency,
+                          @Value("${rerank.ollama.max-chars:2000}") int maxChars) {
+        if (concurrency <= 0 || maxChars <= 0) {
+            throw new IllegalArgumentException("Configuração do re-ranking inválida: concurrency=" + concurrency +
+                    ", max-chars=" + maxChars);
+        }
+        this.ollamaClient = ollamaClient;
+        this.model = model;
+        this.concurrency = concurrency;
+        this.maxChars = maxChars;
+    }
+
+    @Override
+    public List<RetrievedChunk> rerank(String question, float[] questionEmbedding, List<RetrievedChunk> candidates,
+                                       int topK) {
+        long startNanos = System.nanoTime();
+        List<Double> scores;
+        try {
+            scores = Flux.fromIterable(candidates)
+                    .flatMapSequential(chunk -> ollamaClient.complete(model, prompt(question, chunk.text()), SCORE_TOKENS)
+                            .map(OllamaReranker::parseScore)
+                            .defaultIfEmpty(0.0), concurrency)
+                    .collectList()
+                    .block();
+        } catch (RuntimeException e) {
+            log.warn("Falha no re-ranking com o modelo {}, mantendo a ordem da recuperação: {}", model, e.getMessage());
+            return candidates.subList(0, Math.min(topK, candidates.size()));
+        }
+        List<RetrievedChunk> selected = IntStream.range(0, candidates.size()).boxed()
+                .sorted(Comparator.comparingDouble(i -> -scores.get(i)))
+                .limit(topK)
+                .map(candidates::get)
+                .toList();
+        log.debug("Re-ranking com {} de {} candidatos para {} em {} ms", model, candidates.size(),
+                PayloadLog.describe(question), (System.nanoTime() - startNanos) / 1_000_000);
+        return selected;
+    }
+
+    private String prompt(String question, String text) {
+        String passage = text.length() > maxChars ? text.substring(0, maxChars) : text;
+        return "Avalie de 0 a 10 o quanto o trecho abaixo ajuda a responder à pergunta. " +
+                "Responda apenas com o número.\n\n" +
+                "Pergunta: " + question + "\n\n" +
+                "Trecho: " + passage + "\n\n" +
+                "Nota: ";
+    }
+
+    /**
+     * Lê a primeira nota da resposta do modelo, limitada a [0, 10]; 0 se não houver número.
+     */
+    static double parseScore(String response) {
+        Matcher matcher = SCORE.matcher(response);
+        if (!matcher.find()) {
+            return 0;
+        }
+        return Math.min(10, Double.parseDouble(matcher.group().replace(',', '.')));
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.mwacha.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Log de diagnóstico de conteúdo (perguntas, contexto, prompts e respostas), separado do log
+ * das classes no logger {@code com.github.mwacha.payload}.
+ * <p>
+ * O conteúdo só é registrado com esse logger em DEBUG e apenas para uma fração das requisições
+ * ({@code logging.payload.sample-rate}), sorteada uma vez por requisição em {@link #sample()}.
+ * Cada linha tem o formato {@code payload request=... field=... chars=... sha256=... text="..."},
+ * com o texto em uma linha só e cortado em {@code logging.payload.max-chars} caracteres. Fora
+ * das requisições sorteadas nenhum texto é montado.
+ * <p>
+ * Nos demais logs, o conteúdo aparece apenas como {@link #describe(String)}: tamanho e hash,
+ * calculados só se a mensagem for de fato registrada.
+ */
+@Component
+public class PayloadLog {
+
+    /** Quantidade de caracteres hexadecimais do SHA-256 registrados. */
+    private static final int HASH_LENGTH = 16;
+
+    private final double sampleRate;
+    private final int maxChars;
+    private final Logger logger;
+
+    @Autowired
+    public PayloadLog(@Value("${logging.payload.sample-rate:0.01}") double sampleRate,
+                      @Value("${logging.payload.max-chars:500}") int maxChars) {
+        this(sampleRate, maxChars, LoggerFactory.getLogger("com.github.mwacha.payload"));
+    }
+
+    PayloadLog(double sampleRate, int maxChars, Logger logger) {
+        if (sampleRate < 0 || sampleRate > 1 || maxChars <= 0) {
+            throw new IllegalArgumentException("Configuração do log de conteúdo inválida: sample-rate=" + sampleRate +
+                    ", max-chars=" + maxChars);
+        }
+        this.sampleRate = sampleRate;
+        this.maxChars = maxChars;
+        this.logger = logger;
+    }
+
+    /**
+     * Sorteia se o conteúdo de uma requisição será registrado.
+     *
+     * @return Amostra da requisição; inativa se o logger não estiver em DEBUG ou a requisição não for sorteada.
+     */
+    public Sample sample() {
+        if (sampleRate == 0 || !logger.isDebugEnabled()
+                || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return Sample.OFF;
+        }
+        return new Sample(this, Long.toHexString(ThreadLocalRandom.current().nextLong()));
+    }
+
+    /**
+     * Descrição do conteúdo para logs comuns, sem o texto: {@code [42 caracteres, sha256 ...]}.
+     * A descrição só é calculada quando a mensagem é formatada.
+     */
+    public static Object describe(String payload) {
+        return new Object() {
+            @Override
+            public String toString() {
+                if (payload == null) {
+                    return "[nulo]";
+                }
+                return "[" + payload.length() + " caracteres, sha256 " + hash(payload) + "]";
+            }
+        };
+    }
+
+    String render(String requestId, String field, String payload) {
+        StringBuilder line = new StringBuilder(Math.min(payload.length(), maxChars) + 96)
+                .append("payload request=").append(requestId)
+                .append(" field=").append(field)
+                .append(" chars=").append(payload.length())
+                .append(" sha256=").append(hash(payload));
+        if (payload.length() > maxChars) {
+            line.append(" truncated=true");
+        }
+        line.append(" text=\"");
+        int end = Math.min(payload.length(), maxChars);
+        for (int i = 0; i < end; i++) {
+            char c = payload.charAt(i);
+            switch (c) {
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                default -> line.append(c);
+            }
+        }
+        return line.append('"').toString();
+    }
+
+    private static String hash(String payload) {
+        return ContentHash.sha256Hex(payload).substring(0, HASH_LENGTH);
+    }
+
+    /**
+     * Conteúdo de uma requisição. Todas as linhas da mesma requisição têm o mesmo {@code request}.
+     */
+    public static final class Sample {
+
+        /** Amostra que não registra nada. */
+        public static final Sample OFF = new Sample(null, null);
+
+        private final PayloadLog owner;
+        private final String requestId;
+
+        private Sample(PayloadLog owner, String requestId) {
+            this.owner = owner;
+            this.requestId = requestId;
+        }
+
+        public boolean isActive() {
+            return owner != null;
+        }
+
+        /**
+         * Registra um texto da requisição, se ela foi sorteada.
+         */
+        public void log(String field, String payload) {
+            if (owner != null && payload != null) {
+                owner.logger.debug(owner.render(requestId, field, payload));
+            }
+        }
+
+        /**
+         * Registra cada texto da lista como {@code field[i]}, se a requisição foi sorteada.
+         */
+        public void log(String field, Collection<String> payloads) {
+            if (owner == null) {
+                return;
+            }
+            int i = 0;
+            for (String payload : payloads) {
+                log(field + "[" + i++ + "]", payload);
+            }
+        }
+    }
+}
@@ -1,78 +1,206 @@
 package com.github.mwacha.services;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Serviço para realizar consultas no ChromaDB com base em perguntas do usuário.
+ * Serviço para responder perguntas do usuário. Os candidatos recuperados pelo
+ * {@link HybridRetriever} são reduzidos pelo {@link Reranker} a {@code rerank.top-k} chunks e
+ * limitados ao orçamento de tokens do {@link ContextAssembler} antes de irem ao prompt. O tempo de
+ * cada etapa é registrado no {@link RagMetrics}; pergunta, contexto, prompt e resposta só vão para o
+ * log pelo {@link PayloadLog}.
  */
 @Service
 @Slf4j
 public class QueryService {
 
     private final EmbeddingService embeddingService;
-    private final ChromaClient chromaClient;
+    private final VectorStore vectorStore;
+    private final HybridRetriever retriever;
+    private final Reranker reranker;
+    private final int rerankTopK;
+    private final ContextAssembler contextAssembler;
     private final OllamaClient ollamaClient;
+    private final AnswerCache answerCache;
+    private final RagMetrics metrics;
+    private final PayloadLog payloadLog;
 
-    public QueryService(EmbeddingService embeddingService, ChromaClient chromaClient, OllamaClient ollamaClient) {
+    public QueryService(EmbeddingService embeddingService, VectorStore vectorStore, HybridRetriever retriever,
+                        Reranker reranker, @Value("${rerank.top-k:5}") int rerankTopK,
+                        ContextAssembler contextAssembler, OllamaClient ollamaClient, AnswerCache answerCache,
+                        RagMetrics metrics, PayloadLog payloadLog) {
+        if (rerankTopK <= 0) {
+            throw new IllegalArgumentException("rerank.top-k deve ser positivo: " + rerankTopK);
+        }
         this.embeddingService = embeddingService;
-        this.chromaClient = chromaClient;
+        this.vectorStore = vectorStore;
+        this.retriever = retriever;
+        this.reranker = reranker;
+        this.rerankTopK = rerankTopK;
+        this.contextAssembler = contextAssembler;
         this.ollamaClient = ollamaClient;
+        this.answerCache = answerCache;
+        this.metrics = metrics;
+        this.payloadLog = payloadLog;
     }
 
     /**
      * Realiza uma consulta com base na pergunta do usuário e retorna uma resposta.
+     * A recuperação do contexto acontece na assinatura; a geração da resposta não
+     * ocupa a thread chamadora enquanto o Ollama produz os tokens.
      *
      * @param question A pergunta do usuário.
      * @return Resposta baseada nos documentos encontrados ou mensagem informativa se nenhum documento for encontrado.
      */
-    public String ask(String question) {
+    public Mono<String> ask(String question) {
         if (question == null || question.trim().isEmpty()) {
             log.warn("Pergunta vazia ou nula recebida.");
-            return "Por favor, forneça uma pergunta válida.";
+            return Mono.just("Por favor, forneça uma pergunta válida.");
+        }
+
+        PayloadLog.Sample payloads = payloadLog.sample();
+        payloads.log("question", question);
+        return Mono.fromCallable(() -> {
+                    long startNanos = System.nanoTime();
+                    // Gerar embedding para a pergunta
+                    float[] questionEmbedding = embeddingService.embed(question);
+                    metrics.recordQueryStage("embed", System.nanoTime() - startNanos);
+                    log.debug("Embedding gerado para a pergunta: tamanho {}", questionEmbedding.length);
+                    long collectionVersion = vectorStore.collectionVersion();
+                    return new PreparedQuestion(startNanos, questionEmbedding, collectionVersion,
+                            answerCache.lookup(questionEmbedding, collectionVersion).orElse(null));
+                })
+                .flatMap(prepared -> prepared.cachedAnswer() != null
+                        ? Mono.just(prepared.cachedAnswer())
+                        : generate(question, prepared, payloads))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    log.info("Resposta inadequada do Ollama para a pergunta {}", PayloadLog.describe(question));
+                    return "Nenhuma informação relevante foi encontrada para a pergunta: \"" + question + "\".";
+                }))
+                .onErrorResume(e -> {
+                    log.error("Erro ao processar a pergunta {}: {}", PayloadLog.describe(question), e.getMessage());
+                    return Mono.just("Ocorreu um erro ao processar a pergunta: " + e.getMessage());
+                });
+    }
+
+    private Mono<String> generate(String question, PreparedQuestion prepared, PayloadLog.Sample payloads) {
+        // Consultar documentos relevantes (busca vetorial + lexical) dentro do orçamento de tokens
+        List<String> contextChunks = retrieveContext(question, prepared.embedding()).stream()
+                .map(RetrievedChunk::text)
+                .toList();
+        log.debug("{} chunks relevantes encontrados", contextChunks.size());
+        payloads.log("context", contextChunks);
+
+        // Enviar o prompt ao Ollama
+        String prompt = buildPrompt(question, contextChunks);
+        payloads.log("prompt", prompt);
+        return ollamaClient.ask(prompt)
+                .doOnNext(response -> payloads.log("response", response))
+                // Verificar se a resposta é válida
+                .filter(response -> !response.trim().isEmpty())
+                .doOnNext(response -> answerCache.put(prepared.embedding(), response, prepared.collectionVersion(),
+                        toMillis(System.nanoTime() - prepared.startNanos())));
+    }
+
+    /**
+     * Realiza uma consulta e emite a resposta em streaming: um {@link AnswerEvent.Token} para
+     * cada fragmento gerado pelo Ollama e, ao final, um {@link AnswerEvent.Completed} com os
+     * chunks usados como contexto e os tempos de cada etapa.
+     *
+     * @param question A pergunta do usuário.
+     * @return Fluxo de eventos da resposta; termina com erro se a recuperação ou a geração falharem.
+     * @throws IllegalArgumentException se a pergunta for nula ou vazia.
+     */
+    public Flux<AnswerEvent> askStream(String question) {
+        if (question == null || question.trim().isEmpty()) {
+            throw new IllegalArgumentException("Por favor, forneça uma pergunta válida.");
         }
 
-        try {
-            // Gerar embedding para a pergunta
+        PayloadLog.Sample payloads = payloadLog.sample();
+        payloads.log("question", question);
+        return Flux.defer(() -> {
+            long startNanos = System.nanoTime();
+
             float[] questionEmbedding = embeddingService.embed(question);
-            log.debug("Embedding gerado para a pergunta: tamanho {}", questionEmbedding.length);
-
-            // Consultar documentos relevantes no ChromaDB
-            List<String> contextChunks = chromaClient.queryRelevant(question, questionEmbedding);
-            log.debug("Documentos relevantes encontrados (tamanho: {}): {}", contextChunks.size(), contextChunks);
-
-            // Construir o prompt com instruções claras
-            StringBuilder prompt = new StringBuilder();
-            prompt.append("Você é um assistente especializado em responder perguntas com base em documentos técnicos. Sua tarefa é extrair a definição exata do termo perguntado a partir do contexto fornecido. Responda de forma concisa, usando a definição exata do contexto, sem adicionar informações externas. Se o termo não estiver no contexto, responda: 'O termo não foi encontrado no contexto fornecido.'\n\n");
-            prompt.append("Contexto:\n");
-            if (contextChunks.isEmpty()) {
-                prompt.append("Nenhum contexto relevante encontrado.\n");
-                log.warn("Nenhum documento relevante retornado para a pergunta: {}", question);
-            } else {
-                contextChunks.forEach(chunk -> prompt.append(chunk).append("\n\n"));
-            }
-            prompt.append("Pergunta: ").append(question).append("\n");
-            prompt.append("Resposta: ");
-
-            // Logar o prompt para depuração
-            log.debug("Prompt enviado ao Ollama: {}", prompt.toString());
-
-            // Enviar o prompt ao Ollama
-            String response = ollamaClient.ask(prompt.toString());
-            log.debug("Resposta bruta do Ollama: {}", response);
-
-            // Verificar se a resposta é válida
-            if (response == null || response.trim().isEmpty()) {
-                log.info("Resposta inadequada do Ollama para a pergunta: {}", question);
-                return "Nenhuma informação relevante foi encontrada para a pergunta: \"" + question + "\".";
-            }
-
-            return response;
-        } catch (Exception e) {
-            log.error("Erro ao processar a pergunta '{}': {}", question, e.getMessage());
-            return "Ocorreu um erro ao processar a pergunta: " + e.getMessage();
+            long embedNanos = System.nanoTime();
+            metrics.recordQueryStage("embed", embedNanos - startNanos);
+
+            List<RetrievedChunk> sources = retrieveContext(question, questionEmbedding);
+            long retrievalNanos = System.nanoTime();
+
+            List<String> contextChunks = sources.stream().map(RetrievedChunk::text).toList();
+            payloads.log("context", contextChunks);
+            String prompt = buildPrompt(question, contextChunks);
+            payloads.log("prompt", prompt);
+            AtomicLong firstTokenNanos = new AtomicLong();
+            StringBuilder response = payloads.isActive() ? new StringBuilder() : null;
+
+            return ollamaClient.stream(prompt)
+                    .doOnNext(fragment -> {
+                        firstTokenNanos.compareAndSet(0, System.nanoTime());
+                        if (response != null) {
+                            response.append(fragment);
+                        }
+                    })
+                    .<AnswerEvent>map(AnswerEvent.Token::new)
+                    .concatWith(Mono.fromSupplier(() -> {
+                        long endNanos = System.nanoTime();
+                        AnswerEvent.Timings timings = new AnswerEvent.Timings(
+                                toMillis(embedNanos - startNanos),
+                                toMillis(retrievalNanos - embedNanos),
+                                firstTokenNanos.get() == 0 ? -1 : toMillis(firstTokenNanos.get() - startNanos),
+                                toMillis(endNanos - startNanos));
+                        log.info("Resposta em streaming concluída: {}", timings);
+                        if (response != null) {
+                            payloads.log("response", response.toString());
+                        }
+                        return new AnswerEvent.Completed(sources, timings);
+                    }));
+        });
+    }
+
+    private List<RetrievedChunk> retrieveContext(String question, float[] embedding) {
+        long startNanos = System.nanoTime();
+        List<RetrievedChunk> candidates = retriever.retrieve(question, embedding, reranker.usesEmbeddings());
+        long retrievedNanos = System.nanoTime();
+        metrics.recordQueryStage("retrieve", retrievedNanos - startNanos);
+        List<RetrievedChunk> reranked = reranker.rerank(question, embedding, candidates, rerankTopK);
+        long rerankedNanos = System.nanoTime();
+        metrics.recordQueryStage("rerank", rerankedNanos - retrievedNanos);
+        List<RetrievedChunk> context = contextAssembler.assemble(reranked);
+        metrics.recordQueryStage("assemble", System.nanoTime() - rerankedNanos);
+        return context;
+    }
+
+    private String buildPrompt(String question, List<String> contextChunks) {
+        long startNanos = System.nanoTime();
+        // Construir o prompt com instruções claras
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("Você é um assistente especializado em responder perguntas com base em documentos técnicos. Sua tarefa é extrair a definição exata do termo perguntado a partir do contexto fornecido. Responda de forma concisa, usando a definição exata do contexto, sem adicionar informações externas. Se o termo não estiver no contexto, responda: 'O termo não foi encontrado no contexto fornecido.'\n\n");
+        prompt.append("Contexto:\n");
+        if (contextChunks.isEmpty()) {
+            prompt.append("Nenhum contexto relevante encontrado.\n");
+            log.warn("Nenhum documento relevante retornado para a pergunta {}", PayloadLog.describe(question));
+        } else {
+            contextChunks.forEach(chunk -> prompt.append(chunk).append("\n\n"));
         }
+        prompt.append("Pergunta: ").append(question).append("\n");
+        prompt.append("Resposta: ");
+
+        metrics.recordQueryStage("prompt", System.nanoTime() - startNanos);
+        return prompt.toString();
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private record PreparedQuestion(long startNanos, float[] embedding, long collectionVersion, String cachedAnswer) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,243 @@
+package com.github.mwacha.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Métricas do pipeline de RAG, registradas no {@link MeterRegistry} e expostas pelo Actuator
+ * (por exemplo, em {@code /actuator/prometheus}).
+ * <p>
+ * Os nomes e tags ficam concentrados aqui para que os painéis não dependam de onde cada etapa é
+ * medida. As tags têm cardinalidade baixa: modelo, tipo de arquivo, etapa e implementação do
+ * {@link VectorStore}; nunca perguntas, prompts ou nomes de arquivo.
+ * <p>
+ * Os contadores do {@link EmbeddingCache} e do {@link AnswerCache} também são expostos aqui
+ * ({@code rag.cache.*}), além do JSON de {@code /api/cache/stats}.
+ */
+@Component
+public class RagMetrics {
+
+    /** Métricas descartadas, para os construtores usados nos testes. */
+    static final RagMetrics NOOP = new RagMetrics(new CompositeMeterRegistry());
+
+    /** Valores possíveis da tag {@code file_type}, além de {@code other}. */
+    private static final Set<String> FILE_TYPES = Set.of("pdf", "docx", "doc", "txt");
+
+    /** Tag {@code file_type} das medições feitas fora da ingestão, como as de uma pergunta. */
+    static final String NO_FILE_TYPE = "none";
+
+    private final MeterRegistry registry;
+
+    public RagMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Autowired
+    public RagMetrics(MeterRegistry registry, EmbeddingCache embeddingCache, AnswerCache answerCache) {
+        this(registry);
+        bindEmbeddingCache(embeddingCache);
+        bindAnswerCache(answerCache);
+    }
+
+    /**
+     * Expõe os contadores do {@link EmbeddingCache}, lidos de {@link EmbeddingCache#stats()} a
+     * cada coleta: {@code rag.cache.gets} por {@code result} ({@code hit}, {@code disk_hit} ou
+     * {@code miss}), {@code rag.cache.evictions}, {@code rag.cache.entries} por {@code tier} e
+     * {@code rag.cache.memory}.
+     */
+    void bindEmbeddingCache(EmbeddingCache cache) {
+        cacheGets(cache, "embedding", "hit", c -> c.stats().hits());
+        cacheGets(cache, "embedding", "disk_hit", c -> c.stats().diskHits());
+        cacheGets(cache, "embedding", "miss", c -> c.stats().misses());
+        FunctionCounter.builder("rag.cache.evictions", cache, c -> c.stats().evictions())
+                .description("Entradas removidas da memória do cache")
+                .tag("cache", "embedding")
+                .register(registry);
+        Gauge.builder("rag.cache.entries", cache, c -> c.stats().memoryEntries())
+                .description("Entradas no cache")
+                .tag("cache", "embedding")
+                .tag("tier", "memory")
+                .register(registry);
+        Gauge.builder("rag.cache.entries", cache, c -> c.stats().diskEntries())
+                .description("Entradas no cache")
+                .tag("cache", "embedding")
+                .tag("tier", "disk")
+                .register(registry);
+        Gauge.builder("rag.cache.memory", cache, c -> c.stats().memoryBytes())
+                .description("Memória estimada ocupada pelo cache")
+                .baseUnit(BaseUnits.BYTES)
+                .tag("cache", "embedding")
+                .register(registry);
+    }
+
+    /**
+     * Expõe os contadores do {@link AnswerCache}: {@code rag.cache.gets} por {@code result}
+     * ({@code hit} ou {@code miss}), {@code rag.cache.invalidations}, {@code rag.cache.entries}
+     * e {@code rag.cache.saved}, o tempo de geração que as respostas reaproveitadas evitaram.
+     */
+    void bindAnswerCache(AnswerCache cache) {
+        cacheGets(cache, "answer", "hit", c -> c.stats().hits());
+        cacheGets(cache, "answer", "miss", c -> c.stats().misses());
+        FunctionCounter.builder("rag.cache.invalidations", cache, c -> c.stats().invalidations())
+                .description("Esvaziamentos do cache por mudança na coleção")
+                .tag("cache", "answer")
+                .register(registry);
+        Gauge.builder("rag.cache.entries", cache, c -> c.stats().entries())
+                .description("Entradas no cache")
+                .tag("cache", "answer")
+                .tag("tier", "memory")
+                .register(registry);
+        FunctionCounter.builder("rag.cache.saved", cache, c -> c.stats().savedMillis() / 1000.0)
+                .description("Tempo de geração evitado pelas respostas do cache")
+                .baseUnit("seconds")
+                .tag("cache", "answer")
+                .register(registry);
+    }
+
+    private <T> void cacheGets(T cache, String name, String result, ToDoubleFunction<T> count) {
+        FunctionCounter.builder("rag.cache.gets", cache, count)
+                .description("Consultas ao cache")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Tempo de uma etapa da ingestão de um documento ({@code extract} ou {@code chunk}), sem o
+     * tempo em que a etapa ficou bloqueada esperando a seguinte.
+     */
+    public void recordIngestStage(String stage, String fileType, long nanos) {
+        Timer.builder("rag.ingest.stage")
+                .description("Tempo das etapas de ingestão por documento")
+                .tag("stage", stage)
+                .tag("file_type", fileType)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Chunks de um documento; {@code state} é {@code new} (embedding e upsert) ou
+     * {@code unchanged} (já estavam no {@link VectorStore}).
+     */
+    public void recordChunks(String fileType, String state, int count) {
+        Counter.builder("rag.ingest.chunks")
+                .description("Chunks produzidos pela ingestão")
+                .tag("file_type", fileType)
+                .tag("state", state)
+                .register(registry)
+                .increment(count);
+    }
+
+    /**
+     * Chamada de embedding ao Ollama; {@code operation} é {@code batch} (ingestão) ou
+     * {@code query} (pergunta). Respostas vindas do {@link EmbeddingCache} não são medidas.
+     *
+     * @param fileType Tipo do documento ingerido ({@link #fileType(String)}), ou {@link #NO_FILE_TYPE}.
+     */
+    public void recordEmbedding(String model, String operation, String fileType, int texts, long nanos) {
+        Timer.builder("rag.embed")
+                .description("Tempo das chamadas de embedding ao Ollama")
+                .tag("model", model)
+                .tag("operation", operation)
+                .tag("file_type", fileType)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("rag.embed.texts")
+                .description("Textos por chamada de embedding")
+                .tag("model", model)
+                .tag("operation", operation)
+                .tag("file_type", fileType)
+                .register(registry)
+                .record(texts);
+    }
+
+    /**
+     * Operação no {@link VectorStore} ({@code upsert} ou {@code query}).
+     *
+     * @param fileType Tipo do documento ingerido ({@link #fileType(String)}), ou {@link #NO_FILE_TYPE}.
+     */
+    public void recordVectorStore(String store, String operation, String fileType, long nanos) {
+        Timer.builder("rag.vector_store")
+                .description("Tempo das operações no armazenamento de vetores")
+                .tag("store", store)
+                .tag("operation", operation)
+                .tag("file_type", fileType)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Tempo de uma etapa da resposta a uma pergunta ({@code embed}, {@code retrieve},
+     * {@code lexical}, {@code rerank}, {@code assemble} ou {@code prompt}).
+     */
+    public void recordQueryStage(String stage, long nanos) {
+        Timer.builder("rag.query.stage")
+                .description("Tempo das etapas de resposta a uma pergunta")
+                .tag("stage", stage)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Tempo entre o envio do prompt e o primeiro fragmento da resposta do Ollama.
+     */
+    public void recordFirstToken(String model, long nanos) {
+        Timer.builder("rag.generate.first_token")
+                .description("Tempo até o primeiro token gerado pelo Ollama")
+                .tag("model", model)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Tokens gerados e velocidade de geração informados pelo Ollama ao fim de uma resposta
+     * ({@code eval_count} e {@code eval_duration}).
+     */
+    public void recordGeneration(String model, long tokens, long evalNanos) {
+        if (tokens <= 0 || evalNanos <= 0) {
+            return;
+        }
+        Counter.builder("rag.generate.tokens")
+                .description("Tokens gerados pelo Ollama")
+                .tag("model", model)
+                .register(registry)
+                .increment(tokens);
+        DistributionSummary.builder("rag.generate.tokens_per_second")
+                .description("Velocidade de geração do Ollama")
+                .baseUnit("tokens/s")
+                .tag("model", model)
+                .register(registry)
+                .record(tokens * 1e9 / evalNanos);
+    }
+
+    /**
+     * Tag de tipo de arquivo de um documento: {@code pdf}, {@code docx}, {@code doc} ou
+     * {@code txt} pela extensão, ou {@code other} para qualquer outro nome. O conjunto é fixo
+     * porque o nome vem do cliente, e cada extensão nova criaria uma série nova.
+     */
+    static String fileType(String documentName) {
+        int dot = documentName == null ? -1 : documentName.lastIndexOf('.');
+        String extension = dot < 0 ? "" : documentName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return FILE_TYPES.contains(extension) ? extension : "other";
+    }
+
+    /**
+     * Tag da implementação do {@link VectorStore} (por exemplo, {@code ChromaClient}).
+     */
+    static String storeName(VectorStore vectorStore) {
+        return vectorStore.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.mwacha.services;
+
+import java.util.List;
+
+/**
+ * Reordena os candidatos recuperados e escolhe os que formam o contexto da resposta.
+ * <p>
+ * A implementação é escolhida por {@code rerank.strategy}: {@code mmr} (padrão) usa o
+ * {@link MmrReranker}, calculado localmente; {@code ollama} usa o {@link OllamaReranker}, que
+ * pontua cada candidato com um modelo do Ollama.
+ */
+public interface Reranker {
+
+    /**
+     * Escolhe até {@code topK} candidatos.
+     *
+     * @param question          O texto da pergunta.
+     * @param questionEmbedding O embedding da pergunta.
+     * @param candidates        Os candidatos, do mais para o menos relevante segundo a recuperação.
+     * @param topK              Quantidade máxima de chunks escolhidos.
+     * @return Os chunks escolhidos, na ordem em que devem aparecer no contexto.
+     */
+    List<RetrievedChunk> rerank(String question, float[] questionEmbedding, List<RetrievedChunk> candidates, int topK);
+
+    /**
+     * Indica se o re-ranking usa os embeddings dos candidatos. Só nesse caso a busca vetorial os
+     * pede ao {@link VectorStore}.
+     */
+    default boolean usesEmbeddings() {
+        return false;
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.mwacha.services;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Map;
+
+/**
+ * Chunk retornado por uma consulta ao {@link VectorStore}.
+ *
+ * @param id       Identificador do chunk na coleção.
+ * @param text     Texto do chunk.
+ * @param metadata Metadados armazenados com o chunk.
+ * @param distance Distância entre o chunk e o embedding da consulta (menor é mais relevante). A métrica
+ *                 depende da implementação: L2 no ChromaDB e cosseno no {@link HnswVectorStore}. É
+ *                 {@code NaN} para chunks lidos por identificador (por exemplo, os encontrados apenas
+ *                 pela busca lexical do {@link HybridRetriever}).
+ * @param embedding Embedding armazenado do chunk, quando a consulta o retorna (usado pelo
+ *                  {@link MmrReranker} sem uma segunda ida ao {@link VectorStore}); senão {@code null}.
+ *                  Não é serializado: os chunks vão para o cliente como fontes da resposta.
+ */
+public record RetrievedChunk(String id, String text, Map<String, Object> metadata, double distance,
+                             @JsonIgnore float[] embedding) {
+
+    /**
+     * Chunk sem o embedding.
+     */
+    public RetrievedChunk(String id, String text, Map<String, Object> metadata, double distance) {
+        this(id, text, metadata, distance, null);
+    }
+}
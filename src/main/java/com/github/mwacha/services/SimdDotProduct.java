@@ -0,0 +1,36 @@
+package com.github.mwacha.services;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Produto interno com a Java Vector API, na largura SIMD preferida da CPU. Só é carregada
+ * por {@link VectorMath} quando o módulo {@code jdk.incubator.vector} está presente.
+ */
+final class SimdDotProduct implements VectorMath.DotProduct {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(a.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector y = FloatVector.fromArray(SPECIES, b, i);
+            sum = x.fma(y, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SIMD de " + SPECIES.vectorBitSize() + " bits";
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.mwacha.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Divide textos em chunks de até {@code chunking.max-tokens} tokens do modelo de embedding,
+ * preferindo cortar no fim de uma frase ({@code .}, {@code !} ou {@code ?}). Uma frase maior
+ * que o limite é cortada entre palavras. Cada chunk pode repetir as últimas palavras do chunk
+ * anterior, somando até {@code chunking.overlap-tokens} tokens.
+ * <p>
+ * Os tokens são contados pelo {@link Tokenizer} configurado: com
+ * {@code chunking.tokenizer.vocab-path} definido, um {@link WordPieceTokenizer} com o
+ * vocabulário do modelo (e cache LRU de {@code chunking.tokenizer.cache-size} palavras);
+ * caso contrário, cada palavra conta como um token. Os tokens especiais que o modelo acrescenta
+ * a cada texto ({@link Tokenizer#specialTokens()}) são descontados do limite.
+ * <p>
+ * O texto é percorrido uma única vez, sem expressões regulares nem cópias intermediárias:
+ * os chunks são devolvidos como intervalos ({@link Span}) do texto original.
+ */
+@Component
+public class TextChunker {
+
+    /**
+     * Intervalo {@code [start, end)} de um chunk no texto original.
+     */
+    public record Span(int start, int end) {
+
+        public String of(CharSequence text) {
+            return text.subSequence(start, end).toString();
+        }
+    }
+
+    private final Tokenizer tokenizer;
+    private final int maxTokens;
+    private final int overlapTokens;
+
+    @Autowired
+    public TextChunker(@Value("${chunking.max-tokens:1000}") int maxTokens,
+                       @Value("${chunking.overlap-tokens:0}") int overlapTokens,
+                       @Value("${chunking.tokenizer.vocab-path:}") String vocabularyPath,
+                       @Value("${chunking.tokenizer.cache-size:10000}") int cacheSize) {
+        this(vocabularyPath == null || vocabularyPath.isBlank()
+                ? new WhitespaceTokenizer()
+                : new CachingTokenizer(WordPieceTokenizer.load(Path.of(vocabularyPath)), cacheSize),
+                maxTokens, overlapTokens);
+    }
+
+    TextChunker(Tokenizer tokenizer, int maxTokens, int overlapTokens) {
+        int budget = maxTokens - tokenizer.specialTokens();
+        if (budget <= 0 || overlapTokens < 0 || overlapTokens >= budget) {
+            throw new IllegalArgumentException("Configuração de chunking inválida: max-tokens=" + maxTokens +
+                    " (" + tokenizer.specialTokens() + " tokens especiais), overlap-tokens=" + overlapTokens);
+        }
+        this.tokenizer = tokenizer;
+        this.maxTokens = budget;
+        this.overlapTokens = overlapTokens;
+    }
+
+    /**
+     * Divide o texto em chunks.
+     *
+     * @param text Texto a ser dividido.
+     * @return Os intervalos dos chunks, na ordem do texto. Nenhum chunk é vazio.
+     */
+    public List<Span> split(CharSequence text) {
+        List<Span> spans = new ArrayList<>();
+        // Início, fim e quantidade de tokens de cada palavra do chunk atual
+        int[] starts = new int[maxTokens];
+        int[] ends = new int[maxTokens];
+        int[] weights = new int[maxTokens];
+        int count = 0;
+        int tokens = 0;
+        int fresh = 0; // palavras ainda não emitidas em nenhum chunk
+        int sentenceBreak = 0; // quantidade de palavras até o último fim de frase do chunk atual
+
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            int wordStart = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int weight = Math.max(tokenizer.countTokens(text, wordStart, i), 1);
+
+            while (count > 0 && tokens + weight > maxTokens) {
+                if (fresh == 0) {
+                    // Só restou a sobreposição, que não cabe junto com a próxima palavra
+                    count = 0;
+                    tokens = 0;
+                    sentenceBreak = 0;
+                    break;
+                }
+                int cut = sentenceBreak > 0 ? sentenceBreak : count;
+                spans.add(new Span(starts[0], ends[cut - 1]));
+
+                int keep = cut;
+                int overlap = 0;
+                while (keep > 1 && overlap + weights[keep - 1] <= overlapTokens) {
+                    keep--;
+                    overlap += weights[keep];
+                }
+                for (int w = 0; w < keep; w++) {
+                    tokens -= weights[w];
+                }
+                System.arraycopy(starts, keep, starts, 0, count - keep);
+                System.arraycopy(ends, keep, ends, 0, count - keep);
+                System.arraycopy(weights, keep, weights, 0, count - keep);
+                count -= keep;
+                fresh = count - (cut - keep);
+                sentenceBreak = 0;
+            }
+
+            starts[count] = wordStart;
+            ends[count] = i;
+            weights[count] = weight;
+            count++;
+            tokens += weight;
+            fresh++;
+            if (isSentenceEnd(text.charAt(i - 1))) {
+                sentenceBreak = count;
+            }
+        }
+        if (fresh > 0) {
+            spans.add(new Span(starts[0], ends[count - 1]));
+        }
+        return spans;
+    }
+
+    /**
+     * Divide o texto em chunks e devolve o conteúdo de cada um.
+     */
+    public List<String> chunk(CharSequence text) {
+        return split(text).stream().map(span -> span.of(text)).toList();
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.mwacha.services;
+
+/**
+ * Conta tokens do modelo de embedding. O {@link TextChunker} chama o tokenizer para cada
+ * palavra (sequência sem espaços) do texto.
+ */
+public interface Tokenizer {
+
+    /**
+     * Conta os tokens da palavra {@code text[start, end)}.
+     *
+     * @return A quantidade de tokens, no mínimo 1.
+     */
+    int countTokens(CharSequence text, int start, int end);
+
+    /**
+     * Tokens especiais que o modelo acrescenta a cada texto (por exemplo, {@code [CLS]} e
+     * {@code [SEP]}) e que ocupam o limite de tokens do chunk.
+     */
+    default int specialTokens() {
+        return 0;
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.mwacha.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+
+/**
+ * Operações sobre vetores de embedding usadas pelo {@link HnswIndex}.
+ * <p>
+ * O produto interno usa a Java Vector API (SIMD) quando o módulo {@code jdk.incubator.vector}
+ * está presente na JVM ({@code --add-modules jdk.incubator.vector}); caso contrário, usa um
+ * laço escalar com quatro acumuladores. Também reúne a quantização int8 e binária usada
+ * na navegação do índice.
+ */
+@Slf4j
+final class VectorMath {
+
+    /**
+     * Implementação do produto interno escolhida na inicialização.
+     */
+    interface DotProduct {
+
+        float dot(float[] a, float[] b);
+    }
+
+    static final DotProduct SCALAR = VectorMath::scalarDot;
+
+    private static final DotProduct DOT = select();
+
+    private VectorMath() {
+    }
+
+    /**
+     * Produto interno entre dois vetores de mesmo tamanho.
+     */
+    static float dot(float[] a, float[] b) {
+        return DOT.dot(a, b);
+    }
+
+    /**
+     * Indica se o produto interno está usando a Vector API.
+     */
+    static boolean simd() {
+        return DOT != SCALAR;
+    }
+
+    /**
+     * Retorna uma cópia do vetor com norma 1 (ou o vetor nulo, se a norma for zero).
+     */
+    static float[] normalize(float[] vector) {
+        float norm = (float) Math.sqrt(dot(vector, vector));
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] / norm;
+        }
+        return normalized;
+    }
+
+    /**
+     * Quantiza um vetor normalizado em int8 simétrico: os quatro primeiros bytes guardam a
+     * escala ({@code max|x| / 127}, little-endian) e os seguintes, {@code round(x / escala)}.
+     * Bytes além da dimensão ficam zerados.
+     */
+    static void quantizeInt8(float[] vector, byte[] code) {
+        float max = 0;
+        for (float x : vector) {
+            max = Math.max(max, Math.abs(x));
+        }
+        float scale = max == 0 ? 0 : max / 127;
+        int bits = Float.floatToIntBits(scale);
+        code[0] = (byte) bits;
+        code[1] = (byte) (bits >>> 8);
+        code[2] = (byte) (bits >>> 16);
+        code[3] = (byte) (bits >>> 24);
+        for (int i = 0; i < vector.length; i++) {
+            code[Float.BYTES + i] = scale == 0 ? 0 : (byte) Math.round(vector[i] / scale);
+        }
+    }
+
+    /**
+     * Produto interno aproximado entre dois códigos gerados por {@link #quantizeInt8}.
+     */
+    static float int8Dot(byte[] a, byte[] b) {
+        // O tamanho do código é múltiplo de 4 (veja HnswIndex.Quantization#codeBytes)
+        int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        for (int i = Float.BYTES; i < a.length; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        return scale(a) * scale(b) * ((s0 + s1) + (s2 + s3));
+    }
+
+    /**
+     * Guarda o sinal de cada componente em um bit (1 para positivo).
+     */
+    static void binarize(float[] vector, long[] bits) {
+        Arrays.fill(bits, 0);
+        for (int i = 0; i < vector.length; i++) {
+            if (vector[i] > 0) {
+                bits[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Número de bits diferentes entre dois códigos gerados por {@link #binarize}.
+     */
+    static int hamming(long[] a, long[] b) {
+        int distance = 0;
+        for (int i = 0; i < a.length; i++) {
+            distance += Long.bitCount(a[i] ^ b[i]);
+        }
+        return distance;
+    }
+
+    private static float scale(byte[] code) {
+        return Float.intBitsToFloat((code[0] & 0xFF) | (code[1] & 0xFF) << 8 | (code[2] & 0xFF) << 16 | (code[3] & 0xFF) << 24);
+    }
+
+    static float scalarDot(float[] a, float[] b) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        int bound = a.length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static DotProduct select() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // Carregada por reflexão para não exigir o módulo quando ele não está presente
+                DotProduct simd = (DotProduct) Class.forName(VectorMath.class.getPackageName() + ".SimdDotProduct")
+                        .getDeclaredConstructor().newInstance();
+                log.info("Produto interno usando a Vector API: {}", simd);
+                return simd;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.warn("Vector API indisponível, usando produto interno escalar: {}", e.getMessage());
+                return SCALAR;
+            }
+        }
+        log.info("Módulo jdk.incubator.vector ausente, usando produto interno escalar");
+        return SCALAR;
+    }
+}
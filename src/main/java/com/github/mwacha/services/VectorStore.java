@@ -0,0 +1,108 @@
+package com.github.mwacha.services;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Armazenamento de chunks com seus embeddings, consultado por similaridade.
+ * <p>
+ * A implementação é escolhida por {@code vector-store.type}: {@code chroma} (padrão) usa o
+ * {@link ChromaClient}; {@code hnsw} usa o índice em processo {@link HnswVectorStore}.
+ */
+public interface VectorStore {
+
+    /**
+     * Adiciona (ou substitui) vários chunks.
+     *
+     * @param ids        Os identificadores dos chunks.
+     * @param texts      Os textos dos chunks.
+     * @param embeddings Os vetores de embedding, na mesma ordem dos textos.
+     * @param metadatas  Os metadados de cada chunk, ou {@code null} para usar o metadado padrão.
+     * @throws IllegalArgumentException se as listas tiverem tamanhos diferentes ou algum item for inválido.
+     */
+    void addDocuments(List<String> ids, List<String> texts, List<float[]> embeddings,
+                      List<Map<String, Object>> metadatas);
+
+    /**
+     * Lista os chunks já armazenados de um documento.
+     *
+     * @param documentId O identificador do documento (metadado {@code document_id}).
+     * @return Metadados de cada chunk, indexados pelo identificador do chunk.
+     */
+    Map<String, Map<String, Object>> getDocumentChunks(String documentId);
+
+    /**
+     * Lê chunks pelos identificadores, por exemplo os encontrados apenas pela busca lexical.
+     *
+     * @param ids Os identificadores dos chunks.
+     * @return Os chunks encontrados, na ordem dos identificadores, com distância {@code NaN};
+     *         identificadores inexistentes são ignorados.
+     */
+    List<RetrievedChunk> getChunks(List<String> ids);
+
+    /**
+     * Lê os embeddings armazenados de chunks, por exemplo para o re-ranking dos candidatos.
+     *
+     * @param ids Os identificadores dos chunks.
+     * @return Os embeddings encontrados, indexados pelo identificador; identificadores inexistentes são ignorados.
+     */
+    Map<String, float[]> getEmbeddings(List<String> ids);
+
+    /**
+     * Remove chunks. Identificadores inexistentes são ignorados.
+     */
+    void deleteDocuments(List<String> ids);
+
+    /**
+     * Atualiza apenas os metadados de chunks existentes, sem reenviar textos e embeddings.
+     *
+     * @param ids       Os identificadores dos chunks.
+     * @param metadatas Os novos metadados, na mesma ordem dos identificadores.
+     */
+    void updateMetadatas(List<String> ids, List<Map<String, Object>> metadatas);
+
+    /**
+     * Retorna a versão atual da coleção. O valor aumenta sempre que chunks são gravados por
+     * esta instância, permitindo que caches derivados da coleção saibam quando ficaram desatualizados.
+     */
+    long collectionVersion();
+
+    /**
+     * Quantidade de chunks devolvida pelas consultas que não informam um limite.
+     */
+    int DEFAULT_QUERY_LIMIT = 20;
+
+    /**
+     * Consulta os chunks relevantes com base em um embedding de consulta, incluindo
+     * identificador, metadados e distância de cada um.
+     *
+     * @param query          O texto da consulta (para logging, não usado diretamente).
+     * @param embedding      O vetor de embedding da consulta.
+     * @param limit          Quantidade máxima de chunks devolvidos.
+     * @param withEmbeddings Se os embeddings armazenados devem vir em cada {@link RetrievedChunk}; sem
+     *                       eles, a resposta do ChromaDB fica bem menor.
+     * @return Chunks relevantes em ordem crescente de distância, ou lista vazia se nenhum for encontrado.
+     * @throws IllegalArgumentException se o embedding ou o limite forem inválidos.
+     */
+    List<RetrievedChunk> queryChunks(String query, float[] embedding, int limit, boolean withEmbeddings);
+
+    /**
+     * Consulta até {@link #DEFAULT_QUERY_LIMIT} chunks relevantes, sem os embeddings.
+     *
+     * @see #queryChunks(String, float[], int, boolean)
+     */
+    default List<RetrievedChunk> queryChunks(String query, float[] embedding) {
+        return queryChunks(query, embedding, DEFAULT_QUERY_LIMIT, false);
+    }
+
+    /**
+     * Consulta os textos dos chunks relevantes com base em um embedding de consulta.
+     *
+     * @see #queryChunks(String, float[])
+     */
+    default List<String> queryRelevant(String query, float[] embedding) {
+        return queryChunks(query, embedding).stream()
+                .map(RetrievedChunk::text)
+                .toList();
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.mwacha.services;
+
+/**
+ * Tokenizer aproximado que conta cada palavra como um token. Usado quando nenhum
+ * vocabulário do modelo é configurado.
+ */
+public class WhitespaceTokenizer implements Tokenizer {
+
+    @Override
+    public int countTokens(CharSequence text, int start, int end) {
+        return 1;
+    }
+}
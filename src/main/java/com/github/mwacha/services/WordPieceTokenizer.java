@@ -0,0 +1,134 @@
+package com.github.mwacha.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Tokenizer WordPiece carregado de um arquivo de vocabulário (um token por linha, com
+ * continuações prefixadas por {@code ##}). Como o {@code BasicTokenizer} do BERT sem
+ * distinção de caixa, cada palavra é passada para minúsculas e tem os acentos removidos;
+ * depois é separada em pontuação e o restante é dividido pelo casamento mais longo no
+ * vocabulário. Partes sem casamento contam como um único token desconhecido. Cada texto
+ * recebe ainda {@code [CLS]} e {@code [SEP]} ({@link #specialTokens()}).
+ * <p>
+ * A contagem é exata apenas para modelos WordPiece sem distinção de caixa (a família BERT).
+ * Para outros modelos ela é uma aproximação: o {@code snowflake-arctic-embed2}, por exemplo,
+ * usa o vocabulário SentencePiece do XLM-R, que separa as palavras de outra forma e mantém
+ * maiúsculas e acentos. Nesse caso, deixe uma folga em {@code chunking.max-tokens}.
+ */
+@Slf4j
+public class WordPieceTokenizer implements Tokenizer {
+
+    private static final String CONTINUATION = "##";
+    private static final int MAX_CHARS_PER_PIECE = 100;
+    private static final int SPECIAL_TOKENS = 2; // [CLS] e [SEP]
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{Mn}+");
+
+    private final Set<String> vocabulary;
+
+    WordPieceTokenizer(Set<String> vocabulary) {
+        this.vocabulary = vocabulary;
+    }
+
+    /**
+     * Carrega o vocabulário do arquivo informado.
+     */
+    public static WordPieceTokenizer load(Path vocabularyPath) {
+        try {
+            Set<String> vocabulary = new HashSet<>();
+            for (String line : Files.readAllLines(vocabularyPath, StandardCharsets.UTF_8)) {
+                if (!line.isEmpty()) {
+                    vocabulary.add(line);
+                }
+            }
+            log.info("Vocabulário WordPiece {} carregado com {} tokens", vocabularyPath, vocabulary.size());
+            return new WordPieceTokenizer(vocabulary);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível carregar o vocabulário " + vocabularyPath, e);
+        }
+    }
+
+    @Override
+    public int countTokens(CharSequence text, int start, int end) {
+        return countNormalized(normalize(text, start, end));
+    }
+
+    @Override
+    public int specialTokens() {
+        return SPECIAL_TOKENS;
+    }
+
+    /**
+     * Minúsculas e remoção de acentos (decomposição NFD sem as marcas combinantes), como no
+     * {@code BasicTokenizer} do BERT com {@code do_lower_case}.
+     */
+    static String normalize(CharSequence text, int start, int end) {
+        String word = text.subSequence(start, end).toString();
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) > 127) {
+                String decomposed = Normalizer.normalize(word, Normalizer.Form.NFD);
+                return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+            }
+        }
+        return word.toLowerCase(Locale.ROOT);
+    }
+
+    private int countNormalized(String word) {
+        int tokens = 0;
+        int pieceStart = 0;
+        for (int i = 0; i < word.length(); i++) {
+            if (isPunctuation(word.charAt(i))) {
+                tokens += countPiece(word, pieceStart, i) + 1;
+                pieceStart = i + 1;
+            }
+        }
+        tokens += countPiece(word, pieceStart, word.length());
+        return Math.max(tokens, 1);
+    }
+
+    private int countPiece(CharSequence text, int start, int end) {
+        if (start == end) {
+            return 0;
+        }
+        if (end - start > MAX_CHARS_PER_PIECE) {
+            return 1;
+        }
+        String piece = text.subSequence(start, end).toString();
+        int tokens = 0;
+        int from = 0;
+        while (from < piece.length()) {
+            int to = piece.length();
+            while (to > from && !vocabulary.contains(from == 0 ? piece.substring(from, to)
+                    : CONTINUATION + piece.substring(from, to))) {
+                to--;
+            }
+            if (to == from) {
+                return 1; // A parte inteira vira um token desconhecido
+            }
+            tokens++;
+            from = to;
+        }
+        return tokens;
+    }
+
+    private static boolean isPunctuation(char c) {
+        return (c >= 33 && c <= 47) || (c >= 58 && c <= 64) || (c >= 91 && c <= 96) || (c >= 123 && c <= 126)
+                || Character.getType(c) == Character.CONNECTOR_PUNCTUATION
+                || Character.getType(c) == Character.DASH_PUNCTUATION
+                || Character.getType(c) == Character.START_PUNCTUATION
+                || Character.getType(c) == Character.END_PUNCTUATION
+                || Character.getType(c) == Character.INITIAL_QUOTE_PUNCTUATION
+                || Character.getType(c) == Character.FINAL_QUOTE_PUNCTUATION
+                || Character.getType(c) == Character.OTHER_PUNCTUATION;
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.mwacha.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpClientConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(
+                    ConfigurationPropertiesAutoConfiguration.class, WebClientAutoConfiguration.class))
+            .withUserConfiguration(HttpClientConfig.class);
+
+    @Test
+    void testBindsPropertiesPerBackend() {
+        contextRunner
+                .withPropertyValues(
+                        "chroma.http.max-connections=7",
+                        "chroma.http.max-in-memory-size=32MB",
+                        "chroma.http.protocols=H2C,HTTP11",
+                        "ollama.http.response-timeout=PT10M")
+                .run(context -> {
+                    // Assert
+                    HttpClientProperties chroma = context.getBean("chromaHttpProperties", HttpClientProperties.class);
+                    HttpClientProperties ollama = context.getBean("ollamaHttpProperties", HttpClientProperties.class);
+                    assertEquals(7, chroma.getMaxConnections());
+                    assertEquals(DataSize.ofMegabytes(32), chroma.getMaxInMemorySize());
+                    assertEquals(List.of(HttpProtocol.H2C, HttpProtocol.HTTP11), chroma.getProtocols());
+                    assertEquals(50, ollama.getMaxConnections());
+                    assertEquals(Duration.ofMinutes(10), ollama.getResponseTimeout());
+                });
+    }
+
+    @Test
+    void testCreatesNamedPoolsAndClients() {
+        contextRunner.run(context -> {
+            // Assert
+            assertEquals("ollama", context.getBean("ollamaConnectionProvider", ConnectionProvider.class).name());
+            assertEquals("chroma", context.getBean("chromaConnectionProvider", ConnectionProvider.class).name());
+            assertEquals(2, context.getBeansOfType(WebClient.class).size());
+            assertEquals(Duration.ofMinutes(3),
+                    context.getBean("ollamaHttpProperties", HttpClientProperties.class).getResponseTimeout());
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.mwacha.controllers;
+
+import com.github.mwacha.services.AnswerEvent;
+import com.github.mwacha.services.IngestionJobService;
+import com.github.mwacha.services.QueryService;
+import com.github.mwacha.services.RetrievedChunk;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentControllerTest {
+
+    @Mock
+    private IngestionJobService ingestionJobService;
+
+    @Mock
+    private QueryService queryService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                new DocumentController(ingestionJobService, queryService, ObservationRegistry.NOOP)).build();
+    }
+
+    @Test
+    void testUploadRejectsUnsupportedFormat() throws Exception {
+        // Arrange
+        when(ingestionJobService.submit(anyList()))
+                .thenThrow(new IllegalArgumentException("Tipo de arquivo não suportado: a.xyz"));
+
+        // Act & Assert
+        mockMvc.perform(multipart("/api/upload")
+                        .file(new MockMultipartFile("file", "a.xyz", "application/octet-stream", new byte[1])))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testAskStreamSendsSourcesWithoutEmbeddings() throws Exception {
+        // Arrange
+        RetrievedChunk source = new RetrievedChunk("doc.txt#0", "Models: estruturas de dados.",
+                Map.of("source", "doc.txt"), 0.25, new float[]{0.1f, 0.2f, 0.3f});
+        when(queryService.askStream("O que é models?")).thenReturn(Flux.just(
+                new AnswerEvent.Token("Estruturas."),
+                new AnswerEvent.Completed(List.of(source), new AnswerEvent.Timings(1, 2, 3, 4))));
+
+        // Act
+        MvcResult result = mockMvc.perform(get("/api/ask/stream").param("q", "O que é models?"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+        String body = result.getResponse().getContentAsString();
+
+        // Assert
+        String done = body.substring(body.indexOf("event:done"));
+        assertTrue(done.contains("\"id\":\"doc.txt#0\""), done);
+        assertTrue(done.contains("\"distance\":0.25"), done);
+        assertTrue(done.contains("\"timings\""), done);
+        assertFalse(done.contains("embedding"), done);
+    }
+}
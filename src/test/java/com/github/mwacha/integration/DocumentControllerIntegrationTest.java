@@ -1,6 +1,7 @@
 package com.github.mwacha.integration;
 
 import com.github.mwacha.services.DocumentStoreService;
+import com.github.mwacha.services.IngestionJob;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,6 +15,8 @@ import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 @SpringBootTest
 @AutoConfigureWebTestClient
 @Testcontainers
@@ -49,13 +52,30 @@ class DocumentControllerIntegrationTest {
         String question = "No padrão arquitetural da conta azul, o que significa models?";
 
         // Act: Upload
-        webTestClient.post()
+        IngestionJob.Status job = webTestClient.post()
                 .uri("/api/upload")
                 .contentType(MediaType.MULTIPART_FORM_DATA)
                 .bodyValue(file)
                 .exchange()
-                .expectStatus().isOk()
-                .expectBody(String.class).isEqualTo("Documento armazenado com sucesso.");
+                .expectStatus().isAccepted()
+                .expectBody(IngestionJob.Status.class)
+                .returnResult()
+                .getResponseBody();
+
+        // Aguardar o término da ingestão em segundo plano
+        IngestionJob.State state = job.state();
+        for (int attempt = 0; attempt < 120 && state != IngestionJob.State.COMPLETED; attempt++) {
+            Thread.sleep(500);
+            state = webTestClient.get()
+                    .uri("/api/upload/" + job.jobId())
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(IngestionJob.Status.class)
+                    .returnResult()
+                    .getResponseBody()
+                    .state();
+        }
+        assertEquals(IngestionJob.State.COMPLETED, state);
 
         // Act: Ask
         webTestClient.get()
@@ -0,0 +1,89 @@
+package com.github.mwacha.load;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Gera carga em circuito fechado: {@code concurrency} clientes, cada um em uma virtual thread,
+ * enviam a próxima requisição assim que recebem a resposta da anterior, até completar
+ * {@code requests} requisições.
+ */
+final class LoadDriver {
+
+    /**
+     * Uma requisição; termina com exceção se falhar.
+     */
+    @FunctionalInterface
+    interface Request {
+        void execute(int index) throws Exception;
+    }
+
+    private LoadDriver() {
+    }
+
+    static Result run(String name, int requests, int concurrency, Request request) throws InterruptedException {
+        if (requests <= 0 || concurrency <= 0) {
+            throw new IllegalArgumentException("Carga inválida: requests=" + requests + ", concurrency=" + concurrency);
+        }
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+
+        long startNanos = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int client = 0; client < concurrency; client++) {
+                clients.execute(() -> {
+                    for (int index; (index = next.getAndIncrement()) < requests; ) {
+                        long requestStart = System.nanoTime();
+                        try {
+                            request.execute(index);
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            firstError.compareAndSet(null, e);
+                        }
+                        latencies[index] = System.nanoTime() - requestStart;
+                    }
+                });
+            }
+        } // close() espera todos os clientes
+        long wallNanos = System.nanoTime() - startNanos;
+
+        Arrays.sort(latencies);
+        return new Result(name, requests, concurrency, errors.get(), firstError.get(), wallNanos, latencies);
+    }
+
+    /**
+     * Resultado de uma rodada; as latências incluem as requisições com erro.
+     *
+     * @param latencies Latências em nanossegundos, em ordem crescente.
+     */
+    record Result(String name, int requests, int concurrency, int errors, Throwable firstError, long wallNanos,
+                  long[] latencies) {
+
+        /**
+         * Percentil pelo método do posto mais próximo, em milissegundos.
+         */
+        double percentileMs(double percentile) {
+            int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+            return latencies[Math.max(rank, 1) - 1] / 1e6;
+        }
+
+        double throughput() {
+            return requests * 1e9 / wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%s: %d requisições, concorrência %d, %d erros, %.1f req/s, p50 %.0f ms, p95 %.0f ms, " +
+                            "p99 %.0f ms, máx %.0f ms",
+                    name, requests, concurrency, errors, throughput(), percentileMs(50), percentileMs(95),
+                    percentileMs(99), percentileMs(100));
+        }
+    }
+}
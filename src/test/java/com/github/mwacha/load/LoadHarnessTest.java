@@ -0,0 +1,182 @@
+package com.github.mwacha.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Carga em {@code /api/upload} e {@code /api/ask} com o Ollama e o ChromaDB simulados em processo
+ * ({@link StubOllamaServer} e {@link StubChromaServer}), para medir latência e vazão da aplicação
+ * sem GPU nem Docker.
+ * <p>
+ * Fica fora do {@code mvn test}; roda com {@code mvn -Pload test}. A carga e as latências
+ * simuladas são lidas das propriedades {@code load.*} (veja o README), e as propriedades da
+ * aplicação também podem ser trocadas com {@code -D}, por exemplo
+ * {@code -Dollama.http.max-connections=4} para reproduzir a fila do pool de conexões.
+ * Documentos, perguntas e embeddings são gerados a partir de sementes fixas, então duas rodadas
+ * com a mesma configuração enviam exatamente as mesmas requisições.
+ */
+@Tag("load")
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class LoadHarnessTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 16);
+    private static final int ASK_REQUESTS = Integer.getInteger("load.ask.requests", 200);
+    private static final int ASK_WARMUP = Integer.getInteger("load.ask.warmup", 20);
+    private static final int UPLOAD_REQUESTS = Integer.getInteger("load.upload.requests", 20);
+    private static final int UPLOAD_CONCURRENCY = Integer.getInteger("load.upload.concurrency", CONCURRENCY);
+    private static final int UPLOAD_WORDS = Integer.getInteger("load.upload.words", 5000);
+
+    private static final StubOllamaServer ollama = new StubOllamaServer(new StubOllamaServer.Settings(
+            Duration.ofMillis(Long.getLong("load.ollama.embed-latency-ms", 10)),
+            Duration.ofMillis(Long.getLong("load.ollama.first-token-ms", 200)),
+            Double.parseDouble(System.getProperty("load.ollama.tokens-per-second", "50")),
+            Integer.getInteger("load.ollama.tokens", 25)));
+    private static final StubChromaServer chroma = new StubChromaServer(
+            Duration.ofMillis(Long.getLong("load.chroma.latency-ms", 2)));
+
+    private static final String[] WORDS = (
+            "serviço controller modelo domínio repositório requisição resposta dados banco consulta índice " +
+            "vetor documento arquivo página tabela aplicação sistema módulo camada interface configuração " +
+            "cliente servidor conexão pool lote fila estágio pipeline ingestão busca cache memória latência"
+    ).split(" ");
+
+    @TempDir
+    static Path dataDir;
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("ollama.base-url", ollama::baseUrl);
+        registry.add("chroma.base-url", chroma::baseUrl);
+        registry.add("vector-store.type", () -> "chroma");
+        registry.add("retrieval.lexical.path", () -> dataDir.resolve("bm25").toString());
+        // Toda pergunta deve chegar ao Ollama
+        registry.add("answer-cache.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        ollama.close();
+        chroma.close();
+    }
+
+    @Test
+    void testUploadAndAskUnderLoad() throws Exception {
+        // Act
+        LoadDriver.Result uploads = LoadDriver.run("upload", UPLOAD_REQUESTS, UPLOAD_CONCURRENCY, this::upload);
+        LoadDriver.run("aquecimento", Math.max(ASK_WARMUP, 1), CONCURRENCY, index -> ask(-1 - index));
+        LoadDriver.Result asks = LoadDriver.run("ask", ASK_REQUESTS, CONCURRENCY, this::ask);
+        String report = String.format("%n%s%n%s", uploads, asks);
+        log.info("Resultado da carga:{}", report);
+
+        // Assert
+        assertEquals(0, uploads.errors(), () -> report + uploads.firstError());
+        assertEquals(0, asks.errors(), () -> report + asks.firstError());
+        assertTrue(chroma.size() > 0, "Nenhum chunk chegou ao ChromaDB simulado");
+    }
+
+    /**
+     * Envia um documento e espera a ingestão terminar; a latência vai do envio ao fim do job,
+     * com resolução do intervalo de consulta do status (20 ms).
+     */
+    private void upload(int index) throws Exception {
+        String boundary = "carga" + index;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(("--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"documento-" + index + ".txt\"\r\n" +
+                "Content-Type: text/plain\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(document(index).getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        HttpResponse<String> accepted = client.send(HttpRequest.newBuilder(uri("/api/upload"))
+                        .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (accepted.statusCode() != 202) {
+            throw new IllegalStateException("Upload recusado: " + accepted.statusCode() + " " + accepted.body());
+        }
+        String jobId = mapper.readTree(accepted.body()).path("jobId").asText();
+        while (true) {
+            Thread.sleep(20);
+            JsonNode status = mapper.readTree(client.send(HttpRequest.newBuilder(uri("/api/upload/" + jobId)).build(),
+                    HttpResponse.BodyHandlers.ofString()).body());
+            switch (status.path("state").asText()) {
+                case "COMPLETED" -> {
+                    return;
+                }
+                case "FAILED" -> throw new IllegalStateException("Ingestão falhou: " + status);
+                default -> {
+                }
+            }
+        }
+    }
+
+    /**
+     * Faz uma pergunta; índices negativos são as perguntas do aquecimento.
+     */
+    private void ask(int index) throws Exception {
+        String question = "Como a camada de " + WORDS[Math.floorMod(index, WORDS.length)] +
+                " trata a pergunta " + index + "?";
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                        uri("/api/ask?q=" + URLEncoder.encode(question, StandardCharsets.UTF_8))).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200 || !response.body().contains("token0")) {
+            throw new IllegalStateException("Resposta inesperada: " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    /**
+     * Documento de aproximadamente {@link #UPLOAD_WORDS} palavras, diferente para cada índice.
+     */
+    private static String document(int index) {
+        Random random = new Random(index);
+        StringBuilder text = new StringBuilder(UPLOAD_WORDS * 10);
+        for (int written = 0; written < UPLOAD_WORDS; ) {
+            int length = 5 + random.nextInt(20);
+            String first = WORDS[random.nextInt(WORDS.length)];
+            text.append(Character.toUpperCase(first.charAt(0))).append(first.substring(1));
+            for (int i = 1; i < length; i++) {
+                text.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            text.append(random.nextInt(8) == 0 ? ".\n\n" : ". ");
+            written += length;
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.mwacha.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ChromaDB simulado em memória, com os endpoints da coleção usados pelo {@code ChromaClient}:
+ * obter e criar a coleção, {@code upsert}, {@code update}, {@code delete}, {@code get} (por
+ * identificadores ou por igualdade de metadados) e {@code query} (busca exata por distância de
+ * cosseno). {@code get} e {@code query} devolvem os embeddings quando o {@code include} os pede.
+ * Cada requisição espera {@code latency} antes de responder.
+ */
+public final class StubChromaServer extends StubServer {
+
+    private static final String COLLECTION = "{\"id\":\"load\",\"name\":\"my_collection\"}";
+    private static final String COLLECTION_PATH = "/api/v1/collections/load/";
+
+    private record Entry(float[] embedding, String document, Map<String, Object> metadata) {
+    }
+
+    private final Duration latency;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    public StubChromaServer(Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Quantidade de chunks armazenados.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove todos os chunks.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        pause(latency);
+        if (path.equals("/api/v1/collections/my_collection") || path.equals("/api/v1/collections")) {
+            respond(exchange, 200, COLLECTION);
+            return;
+        }
+        if (!path.startsWith(COLLECTION_PATH)) {
+            respond(exchange, 404, "{\"error\":\"not found\"}");
+            return;
+        }
+        JsonNode request = readJson(exchange);
+        switch (path.substring(COLLECTION_PATH.length())) {
+            case "upsert" -> {
+                upsert(request, true);
+                respond(exchange, 200, "true");
+            }
+            case "update" -> {
+                upsert(request, false);
+                respond(exchange, 200, "true");
+            }
+            case "delete" -> {
+                delete(request);
+                respond(exchange, 200, "[]");
+            }
+            case "get" -> respond(exchange, 200, get(request));
+            case "query" -> respond(exchange, 200, query(request));
+            default -> respond(exchange, 404, "{\"error\":\"not found\"}");
+        }
+    }
+
+    private synchronized void upsert(JsonNode request, boolean insert) {
+        JsonNode ids = request.path("ids");
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i).asText();
+            Entry existing = entries.get(id);
+            if (existing == null && !insert) {
+                continue;
+            }
+            JsonNode embedding = request.path("embeddings").path(i);
+            JsonNode document = request.path("documents").path(i);
+            JsonNode metadata = request.path("metadatas").path(i);
+            entries.put(id, new Entry(
+                    embedding.isArray() ? MAPPER.convertValue(embedding, float[].class) : existing.embedding(),
+                    document.isTextual() ? document.asText() : existing == null ? null : existing.document(),
+                    metadata.isObject() ? metadata(metadata) : existing == null ? Map.of() : existing.metadata()));
+        }
+    }
+
+    private synchronized void delete(JsonNode request) {
+        if (request.has("ids")) {
+            request.path("ids").forEach(id -> entries.remove(id.asText()));
+        } else {
+            Map<String, Object> where = metadata(request.path("where"));
+            entries.values().removeIf(entry -> matches(entry, where));
+        }
+    }
+
+    private synchronized Map<String, Object> get(JsonNode request) {
+        List<String> ids = new ArrayList<>();
+        if (request.has("ids")) {
+            request.path("ids").forEach(id -> {
+                if (entries.containsKey(id.asText())) {
+                    ids.add(id.asText());
+                }
+            });
+        } else {
+            Map<String, Object> where = metadata(request.path("where"));
+            entries.forEach((id, entry) -> {
+                if (matches(entry, where)) {
+                    ids.add(id);
+                }
+            });
+            int offset = Math.min(request.path("offset").asInt(0), ids.size());
+            int limit = request.path("limit").asInt(ids.size());
+            ids.subList(0, offset).clear();
+            if (ids.size() > limit) {
+                ids.subList(limit, ids.size()).clear();
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("ids", ids);
+        response.put("documents", ids.stream().map(id -> entries.get(id).document()).toList());
+        response.put("metadatas", ids.stream().map(id -> entries.get(id).metadata()).toList());
+        if (includes(request, "embeddings")) {
+            response.put("embeddings", ids.stream().map(id -> entries.get(id).embedding()).toList());
+        }
+        return response;
+    }
+
+    private Map<String, Object> query(JsonNode request) {
+        float[] query = MAPPER.convertValue(request.path("query_embeddings").path(0), float[].class);
+        int limit = request.path("n_results").asInt(10);
+        List<Map.Entry<String, Entry>> snapshot;
+        synchronized (this) {
+            snapshot = List.copyOf(entries.entrySet());
+        }
+        record Hit(String id, Entry entry, double distance) {
+        }
+        List<Hit> hits = snapshot.stream()
+                .map(e -> new Hit(e.getKey(), e.getValue(), 1 - dot(query, e.getValue().embedding())))
+                .sorted(Comparator.comparingDouble(Hit::distance))
+                .limit(limit)
+                .toList();
+        Map<String, Object> response = new HashMap<>();
+        response.put("ids", List.of(hits.stream().map(Hit::id).toList()));
+        response.put("documents", List.of(hits.stream().map(hit -> hit.entry().document()).toList()));
+        response.put("metadatas", List.of(hits.stream().map(hit -> hit.entry().metadata()).toList()));
+        response.put("distances", List.of(hits.stream().map(Hit::distance).toList()));
+        if (includes(request, "embeddings")) {
+            response.put("embeddings", List.of(hits.stream().map(hit -> hit.entry().embedding()).toList()));
+        }
+        return response;
+    }
+
+    private static boolean matches(Entry entry, Map<String, Object> where) {
+        return where.entrySet().stream()
+                .allMatch(condition -> condition.getValue().equals(entry.metadata().get(condition.getKey())));
+    }
+
+    private static boolean includes(JsonNode request, String field) {
+        for (JsonNode include : request.path("include")) {
+            if (include.asText().equals(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> metadata(JsonNode node) {
+        return node.isObject() ? MAPPER.convertValue(node, Map.class) : Map.of();
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.mwacha.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Ollama simulado: {@code /api/embeddings}, {@code /api/embed} e {@code /api/generate}.
+ * <p>
+ * Os embeddings são vetores normalizados sorteados a partir do hash do texto, então o mesmo
+ * texto tem sempre o mesmo vetor. A geração emite {@link Settings#tokens()} fragmentos em NDJSON,
+ * o primeiro após {@link Settings#firstTokenLatency()} e os demais no ritmo de
+ * {@link Settings#tokensPerSecond()}, como um modelo real com a GPU ocupada.
+ */
+public final class StubOllamaServer extends StubServer {
+
+    public static final int DIMENSION = 1024;
+
+    /**
+     * @param embedLatency      Latência de cada chamada de embedding (por pergunta ou por lote).
+     * @param firstTokenLatency Tempo até o primeiro fragmento da resposta.
+     * @param tokensPerSecond   Ritmo dos fragmentos seguintes.
+     * @param tokens            Fragmentos por resposta.
+     */
+    public record Settings(Duration embedLatency, Duration firstTokenLatency, double tokensPerSecond, int tokens) {
+
+        public Settings {
+            if (tokensPerSecond <= 0 || tokens <= 0) {
+                throw new IllegalArgumentException("Configuração do Ollama simulado inválida: tokens-per-second=" +
+                        tokensPerSecond + ", tokens=" + tokens);
+            }
+        }
+    }
+
+    private final Settings settings;
+
+    public StubOllamaServer(Settings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        switch (exchange.getRequestURI().getPath()) {
+            case "/api/embeddings" -> {
+                JsonNode request = readJson(exchange);
+                pause(settings.embedLatency());
+                respond(exchange, 200, Map.of("embedding", embedding(request.path("prompt").asText())));
+            }
+            case "/api/embed" -> {
+                JsonNode request = readJson(exchange);
+                List<float[]> embeddings = new ArrayList<>();
+                request.path("input").forEach(text -> embeddings.add(embedding(text.asText())));
+                pause(settings.embedLatency());
+                respond(exchange, 200, Map.of("embeddings", embeddings));
+            }
+            case "/api/generate" -> generate(exchange, readJson(exchange).path("stream").asBoolean(true));
+            default -> respond(exchange, 404, "{\"error\":\"not found\"}");
+        }
+    }
+
+    private void generate(HttpExchange exchange, boolean stream) throws IOException {
+        long startNanos = System.nanoTime();
+        long intervalNanos = (long) (1e9 / settings.tokensPerSecond());
+        if (!stream) {
+            // Sem streaming, só o OllamaReranker chama: a resposta é a nota de relevância
+            pause(settings.firstTokenLatency().plusNanos(intervalNanos * (settings.tokens() - 1)));
+            respond(exchange, 200, Map.of("response", "8", "done", true,
+                    "eval_count", settings.tokens(), "eval_duration", System.nanoTime() - startNanos));
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            // Prazos absolutos, para que o tempo de escrita não atrase os fragmentos seguintes
+            long firstNanos = startNanos + settings.firstTokenLatency().toNanos();
+            for (int i = 0; i < settings.tokens(); i++) {
+                pause(Duration.ofNanos(firstNanos + i * intervalNanos - System.nanoTime()));
+                out.write(MAPPER.writeValueAsBytes(Map.of("response", "token" + i + " ", "done", false)));
+                out.write('\n');
+                out.flush();
+            }
+            out.write(MAPPER.writeValueAsBytes(Map.of("response", "", "done", true,
+                    "eval_count", settings.tokens(), "eval_duration", System.nanoTime() - firstNanos)));
+            out.write('\n');
+        }
+    }
+
+    static float[] embedding(String text) {
+        Random random = new Random(text.hashCode());
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
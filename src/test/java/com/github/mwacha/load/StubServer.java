@@ -0,0 +1,103 @@
+package com.github.mwacha.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Servidor HTTP em processo que substitui um serviço externo nos testes de carga.
+ * <p>
+ * Cada requisição é atendida em uma virtual thread, então a latência simulada com
+ * {@link #pause(Duration)} não limita a quantidade de requisições simultâneas: o gargalo
+ * medido é sempre a aplicação.
+ * <p>
+ * Os servidores são públicos porque os benchmarks JMH ({@code src/jmh/java}, compilados junto
+ * com os testes no perfil {@code benchmarks}) também os usam.
+ */
+@Slf4j
+public abstract class StubServer implements AutoCloseable {
+
+    static {
+        // Sem TCP_NODELAY, o servidor HTTP do JDK soma ~40 ms de ACK atrasado a cada resposta
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    protected static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpServer server;
+
+    protected StubServer() {
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                handle(exchange);
+            } catch (IOException e) {
+                log.debug("Conexão encerrada pelo cliente: {}", e.toString());
+            } catch (RuntimeException e) {
+                log.error("Erro no servidor simulado em {}", exchange.getRequestURI(), e);
+                respond(exchange, 500, "{\"error\":\"" + e + "\"}");
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Atende uma requisição; a troca é fechada ao final.
+     */
+    protected abstract void handle(HttpExchange exchange) throws IOException;
+
+    /**
+     * URL base para as propriedades {@code *.base-url} da aplicação.
+     */
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    protected static JsonNode readJson(HttpExchange exchange) throws IOException {
+        return MAPPER.readTree(exchange.getRequestBody());
+    }
+
+    protected static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = body instanceof String text ? text.getBytes(StandardCharsets.UTF_8) : MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    protected static void pause(Duration duration) {
+        if (duration.isZero() || duration.isNegative()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Servidor simulado interrompido", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
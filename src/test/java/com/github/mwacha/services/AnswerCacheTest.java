@@ -0,0 +1,110 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnswerCacheTest {
+
+    private static final float[] QUESTION = {1f, 0f, 0f};
+    private static final float[] SIMILAR_QUESTION = {0.99f, 0.05f, 0f};
+    private static final float[] OTHER_QUESTION = {0f, 1f, 0f};
+
+    @Test
+    void testLookupReturnsAnswerAboveThreshold() {
+        // Arrange
+        AnswerCache cache = new AnswerCache(true, 0.95, Duration.ofMinutes(10), 10, Clock.systemUTC());
+        cache.put(QUESTION, "Resposta", 1, 800);
+
+        // Act & Assert
+        assertEquals(Optional.of("Resposta"), cache.lookup(SIMILAR_QUESTION, 1));
+        assertEquals(Optional.empty(), cache.lookup(OTHER_QUESTION, 1));
+        AnswerCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(800, stats.savedMillis());
+    }
+
+    @Test
+    void testCollectionChangeInvalidatesEntries() {
+        // Arrange
+        AnswerCache cache = new AnswerCache(true, 0.95, Duration.ofMinutes(10), 10, Clock.systemUTC());
+        cache.put(QUESTION, "Resposta", 1, 800);
+
+        // Act & Assert
+        assertTrue(cache.lookup(QUESTION, 2).isEmpty());
+        assertEquals(0, cache.stats().entries());
+        assertEquals(1, cache.stats().invalidations());
+
+        // Respostas geradas com uma versão anterior da coleção não são armazenadas
+        cache.put(QUESTION, "Resposta antiga", 1, 800);
+        assertTrue(cache.lookup(QUESTION, 2).isEmpty());
+    }
+
+    @Test
+    void testEntriesExpireAfterTtl() {
+        // Arrange
+        MutableClock clock = new MutableClock();
+        AnswerCache cache = new AnswerCache(true, 0.95, Duration.ofMinutes(10), 10, clock);
+        cache.put(QUESTION, "Resposta", 1, 800);
+
+        // Act
+        clock.advance(Duration.ofMinutes(11));
+
+        // Assert
+        assertTrue(cache.lookup(QUESTION, 1).isEmpty());
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() {
+        // Arrange
+        AnswerCache cache = new AnswerCache(true, 0.95, Duration.ofMinutes(10), 2, Clock.systemUTC());
+        cache.put(QUESTION, "Primeira", 1, 10);
+        cache.put(OTHER_QUESTION, "Segunda", 1, 10);
+        cache.lookup(QUESTION, 1);
+
+        // Act
+        cache.put(new float[]{0f, 0f, 1f}, "Terceira", 1, 10);
+
+        // Assert
+        assertEquals(Optional.of("Primeira"), cache.lookup(QUESTION, 1));
+        assertTrue(cache.lookup(OTHER_QUESTION, 1).isEmpty());
+    }
+
+    @Test
+    void testDisabledCache() {
+        AnswerCache cache = new AnswerCache(false, 0.95, Duration.ofMinutes(10), 10, Clock.systemUTC());
+        cache.put(QUESTION, "Resposta", 1, 800);
+        assertTrue(cache.lookup(QUESTION, 1).isEmpty());
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
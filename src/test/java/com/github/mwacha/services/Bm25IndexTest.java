@@ -0,0 +1,128 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Bm25IndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testExactTermRanksFirst() {
+        // Arrange
+        Bm25Index index = new Bm25Index((Path) null);
+        index.add(List.of("a", "b", "c"), List.of(
+                "Models são estruturas de dados usadas pela aplicação.",
+                "Controllers recebem as requisições e chamam os serviços da aplicação.",
+                "A aplicação usa serviços para acessar os dados."));
+
+        // Act
+        List<Bm25Index.Hit> hits = index.search("O que é um controller? E controllers?", 3);
+
+        // Assert
+        assertEquals(List.of("b"), hits.stream().map(Bm25Index.Hit::id).toList());
+        assertEquals("c", index.search("acessar serviços", 3).get(0).id());
+    }
+
+    @Test
+    void testTermsIgnoreCaseAndAccents() {
+        assertEquals(List.of("definicao", "da", "funcao", "3"), Bm25Index.terms("Definição DA função: 3 é"));
+
+        Bm25Index index = new Bm25Index((Path) null);
+        index.add(List.of("a"), List.of("Definição de árvore binária"));
+        assertEquals("a", index.search("ARVORE binaria", 1).get(0).id());
+    }
+
+    @Test
+    void testReplaceAndDelete() {
+        // Arrange
+        Bm25Index index = new Bm25Index((Path) null);
+        index.add(List.of("a", "b"), List.of("alfa beta", "gama"));
+
+        // Act
+        index.add(List.of("a"), List.of("delta"));
+        index.delete(List.of("b", "inexistente"));
+
+        // Assert
+        assertTrue(index.search("alfa", 5).isEmpty());
+        assertTrue(index.search("gama", 5).isEmpty());
+        assertEquals("a", index.search("delta", 5).get(0).id());
+        assertEquals(1, index.size());
+        assertTrue(index.contains("a"));
+        assertFalse(index.contains("b"));
+    }
+
+    @Test
+    void testFlushCompactsAndIndexSurvivesRestart() {
+        // Arrange
+        Path file = tempDir.resolve("index.bin");
+        Bm25Index index = new Bm25Index(file);
+        List<String> ids = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            ids.add("c" + i);
+            texts.add("chunk número " + i + (i % 10 == 0 ? " raro" : " comum"));
+        }
+        index.add(ids, texts);
+        index.delete(ids.subList(0, 150));
+        List<Bm25Index.Hit> before = index.search("raro 200", 10);
+
+        // Act
+        index.flush();
+        Bm25Index reopened = new Bm25Index(file);
+
+        // Assert
+        assertEquals(150, reopened.size());
+        assertEquals("c200", before.get(0).id());
+        assertEquals("c200", reopened.search("raro 200", 10).get(0).id());
+        assertEquals(15, reopened.search("raro", 20).size());
+        assertEquals(index.search("raro 200", 10), reopened.search("raro 200", 10));
+    }
+
+    @Test
+    void testCorruptedFileStartsEmpty() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("index.bin");
+        Files.write(file, new byte[]{1, 2, 3});
+
+        // Act
+        Bm25Index index = new Bm25Index(file);
+
+        // Assert
+        assertEquals(0, index.size());
+        index.add(List.of("a"), List.of("texto"));
+        index.flush();
+        assertEquals(1, new Bm25Index(file).size());
+    }
+
+    @Test
+    void testFailedFlushIsRetriedAndLaterChangesAreSaved() throws IOException {
+        // Arrange: o diretório do índice é um arquivo comum, então a gravação falha
+        Path directory = tempDir.resolve("bm25");
+        Files.writeString(directory, "ocupado");
+        Bm25Index index = new Bm25Index(directory.resolve("index.bin"));
+        index.add(List.of("a"), List.of("primeiro texto"));
+
+        // Act
+        assertThrows(UncheckedIOException.class, index::flush);
+        Files.delete(directory);
+        index.flush();
+        index.add(List.of("b"), List.of("segundo texto"));
+        index.flush();
+
+        // Assert
+        Bm25Index reopened = new Bm25Index(directory.resolve("index.bin"));
+        assertEquals(2, reopened.size());
+        assertEquals("b", reopened.search("segundo", 10).get(0).id());
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingTokenizerTest {
+
+    @Mock
+    private Tokenizer delegate;
+
+    @Test
+    void testRepeatedWordIsCountedOnce() {
+        // Arrange
+        when(delegate.countTokens(eq("palavra"), anyInt(), anyInt())).thenReturn(3);
+        CachingTokenizer tokenizer = new CachingTokenizer(delegate, 10);
+
+        // Act
+        int first = tokenizer.countTokens("uma palavra", 4, 11);
+        int second = tokenizer.countTokens("palavra", 0, 7);
+
+        // Assert
+        assertEquals(3, first);
+        assertEquals(3, second);
+        verify(delegate, times(1)).countTokens(eq("palavra"), anyInt(), anyInt());
+    }
+
+    @Test
+    void testLeastRecentlyUsedWordIsEvicted() {
+        // Arrange
+        when(delegate.countTokens(anyString(), anyInt(), anyInt())).thenReturn(1);
+        CachingTokenizer tokenizer = new CachingTokenizer(delegate, 1);
+
+        // Act
+        tokenizer.countTokens("a", 0, 1);
+        tokenizer.countTokens("b", 0, 1);
+        tokenizer.countTokens("a", 0, 1);
+
+        // Assert
+        verify(delegate, times(2)).countTokens(eq("a"), anyInt(), anyInt());
+    }
+}
@@ -1,20 +1,25 @@
 package com.github.mwacha.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.notNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,18 +28,15 @@ class ChromaClientTest {
     @Mock(answer = org.mockito.Answers.RETURNS_DEEP_STUBS)
     private WebClient webClient;
 
-    @InjectMocks
     private ChromaClient chromaClient;
 
     @BeforeEach
     void setUp() throws Exception {
-        // Configurar mock para get() (verificar coleção)
-        when(webClient.get().uri(anyString()).retrieve().bodyToMono(Map.class))
-                .thenReturn(Mono.just(Map.of("id", "test-uuid", "name", "my_collection")));
+        chromaClient = new ChromaClient(webClient, 2, 2, 1);
 
-        // Configurar mock para post() (criar coleção)
-        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(Map.class))
-                .thenReturn(Mono.just(Map.of("id", "test-uuid", "name", "my_collection")));
+        // Configurar mock para get() (verificar coleção)
+        lenient().when(webClient.get().uri(anyString()).retrieve().bodyToMono(ChromaClient.Collection.class))
+                .thenReturn(Mono.just(new ChromaClient.Collection("test-uuid", "my_collection")));
 
         // Inicializar o ChromaClient
         chromaClient.init();
@@ -52,7 +54,13 @@ class ChromaClientTest {
         chromaClient.addDocument(text, embedding);
 
         // Assert
-        verify(webClient.post().uri(anyString()), times(1)).bodyValue(any());
+        ArgumentCaptor<Object> body = ArgumentCaptor.forClass(Object.class);
+        verify(webClient.post().uri(anyString()), atLeastOnce()).bodyValue(body.capture());
+        assertEquals(List.of(ChromaClient.contentId(text)), body.getAllValues().stream()
+                .filter(Objects::nonNull)
+                .findFirst()
+                .map(value -> ((ChromaClient.UpsertRequest) value).ids())
+                .orElseThrow());
     }
 
     @Test
@@ -63,7 +71,7 @@ class ChromaClientTest {
 
         // Act & Assert
         assertThrows(IllegalArgumentException.class, () -> chromaClient.addDocument(text, embedding));
-        verifyNoInteractions(webClient);
+        verify(webClient, never()).post();
     }
 
     @Test
@@ -71,8 +79,9 @@ class ChromaClientTest {
         // Arrange
         String query = "Test query";
         float[] embedding = new float[1024];
-        Map<String, Object> response = Map.of("documents", List.of(List.of("Relevant document")));
-        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(Map.class))
+        ChromaClient.QueryResponse response = new ChromaClient.QueryResponse(
+                null, List.of(List.of("Relevant document")), null, null, null);
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(ChromaClient.QueryResponse.class))
                 .thenReturn(Mono.just(response));
 
         // Act
@@ -81,6 +90,200 @@ class ChromaClientTest {
         // Assert
         assertEquals(1, result.size());
         assertEquals("Relevant document", result.get(0));
-        verify(webClient.post().uri(anyString()), times(1)).bodyValue(any());
+        verify(webClient.post().uri(anyString()), times(1)).bodyValue(notNull());
+    }
+
+    @Test
+    void testQueryChunks() {
+        // Arrange
+        ChromaClient.QueryResponse response = new ChromaClient.QueryResponse(
+                List.of(List.of("doc_1", "doc_2")),
+                List.of(List.of("Primeiro", "Segundo")),
+                List.of(List.of(Map.of("source", "upload"), Map.of("source", "upload"))),
+                new double[][]{{0.1, 0.4}}, null);
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(ChromaClient.QueryResponse.class))
+                .thenReturn(Mono.just(response));
+
+        // Act
+        List<RetrievedChunk> result = chromaClient.queryChunks("Test query", new float[1024]);
+
+        // Assert
+        assertEquals(List.of(
+                new RetrievedChunk("doc_1", "Primeiro", Map.of("source", "upload"), 0.1),
+                new RetrievedChunk("doc_2", "Segundo", Map.of("source", "upload"), 0.4)), result);
+    }
+
+    @Test
+    void testQueryChunksSendsLimitAndAsksForEmbeddingsOnlyWhenNeeded() {
+        // Arrange
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(ChromaClient.QueryResponse.class))
+                .thenReturn(Mono.just(new ChromaClient.QueryResponse(null, List.of(List.of()), null, null, null)));
+
+        // Act
+        chromaClient.queryChunks("Test query", new float[1024], 50, false);
+        chromaClient.queryChunks("Test query", new float[1024], 8, true);
+
+        // Assert
+        ArgumentCaptor<Object> body = ArgumentCaptor.forClass(Object.class);
+        verify(webClient.post().uri(anyString()), atLeastOnce()).bodyValue(body.capture());
+        List<ChromaClient.QueryRequest> requests = body.getAllValues().stream()
+                .filter(ChromaClient.QueryRequest.class::isInstance)
+                .map(ChromaClient.QueryRequest.class::cast)
+                .toList();
+        assertEquals(2, requests.size());
+        assertEquals(50, requests.get(0).nResults());
+        assertEquals(List.of("documents", "metadatas", "distances"), requests.get(0).include());
+        assertEquals(8, requests.get(1).nResults());
+        assertTrue(requests.get(1).include().contains("embeddings"));
+    }
+
+    @Test
+    void testAddDocumentsSplitsIntoBatches() {
+        // Arrange
+        List<String> texts = List.of("doc 1", "doc 2", "doc 3");
+        List<float[]> embeddings = List.of(new float[1024], new float[1024], new float[1024]);
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(Void.class))
+                .thenReturn(Mono.empty());
+
+        // Act
+        chromaClient.addDocuments(texts, embeddings, null);
+
+        // Assert
+        ArgumentCaptor<Object> bodies = ArgumentCaptor.forClass(Object.class);
+        verify(webClient.post().uri(anyString()), atLeastOnce()).bodyValue(bodies.capture());
+        List<Integer> batchSizes = bodies.getAllValues().stream()
+                .filter(Objects::nonNull)
+                .map(body -> ((ChromaClient.UpsertRequest) body).ids().size())
+                .sorted()
+                .toList();
+        assertEquals(List.of(1, 2), batchSizes);
+    }
+
+    @Test
+    void testAddDocumentsRetriesFailedBatch() {
+        // Arrange
+        AtomicInteger attempts = new AtomicInteger();
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(Void.class))
+                .thenReturn(Mono.defer(() -> attempts.getAndIncrement() == 0
+                        ? Mono.error(WebClientResponseException.create(503, "Service Unavailable", null, null, null))
+                        : Mono.empty()));
+
+        // Act
+        chromaClient.addDocuments(List.of("doc 1"), List.<float[]>of(new float[1024]), null);
+
+        // Assert
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void testAddDocumentsDoesNotRetryClientError() {
+        // Arrange
+        AtomicInteger attempts = new AtomicInteger();
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(Void.class))
+                .thenReturn(Mono.defer(() -> {
+                    attempts.incrementAndGet();
+                    return Mono.error(WebClientResponseException.create(400, "Bad Request", null, null, null));
+                }));
+
+        // Act & Assert
+        assertThrows(WebClientResponseException.class,
+                () -> chromaClient.addDocuments(List.of("doc 1"), List.<float[]>of(new float[1024]), null));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void testAddDocumentsMismatchedSizes() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> chromaClient.addDocuments(List.of("doc 1", "doc 2"), List.<float[]>of(new float[1024]), null));
+        verify(webClient, never()).post();
+    }
+
+    @Test
+    void testGetDocumentChunks() {
+        // Arrange
+        ChromaClient.GetResponse response = new ChromaClient.GetResponse(
+                List.of("doc_a_1", "doc_b_1"), null,
+                List.of(Map.of("chunk_index", 0), Map.of("chunk_index", 1)), null);
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(ChromaClient.GetResponse.class))
+                .thenReturn(Mono.just(response));
+
+        // Act
+        Map<String, Map<String, Object>> chunks = chromaClient.getDocumentChunks("doc");
+
+        // Assert
+        assertEquals(Map.of("doc_a_1", Map.of("chunk_index", 0), "doc_b_1", Map.of("chunk_index", 1)), chunks);
+    }
+
+    @Test
+    void testGetEmbeddings() {
+        // Arrange
+        ChromaClient.GetResponse response = new ChromaClient.GetResponse(
+                List.of("b", "a"), null, null, List.of(new float[]{1, 2}, new float[]{3, 4}));
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(ChromaClient.GetResponse.class))
+                .thenReturn(Mono.just(response));
+
+        // Act
+        Map<String, float[]> embeddings = chromaClient.getEmbeddings(List.of("a", "b"));
+
+        // Assert
+        assertArrayEquals(new float[]{3, 4}, embeddings.get("a"));
+        assertArrayEquals(new float[]{1, 2}, embeddings.get("b"));
+    }
+
+    @Test
+    void testGetChunksKeepsRequestedOrder() {
+        // Arrange
+        ChromaClient.GetResponse response = new ChromaClient.GetResponse(
+                List.of("b", "a"), List.of("Texto B", "Texto A"), List.of(Map.of("chunk_index", 1), Map.of()), null);
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(ChromaClient.GetResponse.class))
+                .thenReturn(Mono.just(response));
+
+        // Act
+        List<RetrievedChunk> chunks = chromaClient.getChunks(List.of("a", "inexistente", "b"));
+
+        // Assert
+        assertEquals(List.of("a", "b"), chunks.stream().map(RetrievedChunk::id).toList());
+        assertEquals("Texto B", chunks.get(1).text());
+        assertEquals(Map.of("chunk_index", 1), chunks.get(1).metadata());
+        assertTrue(Double.isNaN(chunks.get(0).distance()));
+    }
+
+    @Test
+    void testDeleteDocumentsSplitsIntoBatches() {
+        // Arrange
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(Void.class))
+                .thenReturn(Mono.empty());
+        long version = chromaClient.collectionVersion();
+
+        // Act
+        chromaClient.deleteDocuments(List.of("doc_1", "doc_2", "doc_3"));
+
+        // Assert
+        verify(webClient.post(), atLeastOnce()).uri("/api/v1/collections/test-uuid/delete");
+        assertTrue(chromaClient.collectionVersion() > version);
+    }
+
+    @Test
+    void testDeleteDocumentsIgnoresEmptyList() {
+        // Act
+        chromaClient.deleteDocuments(List.of());
+
+        // Assert
+        verify(webClient, never()).post();
+    }
+
+    @Test
+    void testRequestBodiesSerializeEmbeddingsAsNumberArrays() throws Exception {
+        // Arrange
+        ObjectMapper mapper = new ObjectMapper();
+        ChromaClient.QueryRequest request = new ChromaClient.QueryRequest(
+                List.of(new float[]{0.5f, -1.0f}), 20, List.of("documents"));
+
+        // Act
+        String json = mapper.writeValueAsString(request);
+
+        // Assert
+        assertEquals("{\"query_embeddings\":[[0.5,-1.0]],\"n_results\":20,\"include\":[\"documents\"]}", json);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,113 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkSegmentsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRecordsAreReadBackAfterReopen() throws IOException {
+        // Arrange
+        ChunkSegments.StoredChunk chunk = new ChunkSegments.StoredChunk("id-1", "Texto com acentuação",
+                Map.of("document_id", "doc", "chunk_index", 0));
+        try (ChunkSegments segments = new ChunkSegments(tempDir, 1024)) {
+            segments.put(0, chunk);
+            segments.put(1, new ChunkSegments.StoredChunk("id-2", "Outro texto", Map.of("source", "upload")));
+        }
+
+        // Act
+        try (ChunkSegments reopened = new ChunkSegments(tempDir, 1024)) {
+
+            // Assert
+            assertEquals(2, reopened.size());
+            assertEquals(chunk, reopened.read(0));
+            assertEquals("id-1", reopened.id(0));
+            assertEquals("doc", reopened.documentId(0));
+            assertNull(reopened.documentId(1));
+        }
+    }
+
+    @Test
+    void testUpdateAppendsNewRecordAndDeleteUnmarksNode() throws IOException {
+        try (ChunkSegments segments = new ChunkSegments(tempDir, 1024)) {
+            // Arrange
+            segments.put(0, new ChunkSegments.StoredChunk("a", "Texto", Map.of("chunk_index", 0)));
+
+            // Act
+            segments.put(0, new ChunkSegments.StoredChunk("a", "Texto", Map.of("chunk_index", 5)));
+            segments.put(3, new ChunkSegments.StoredChunk("b", "Texto", Map.of()));
+            segments.delete(3);
+
+            // Assert
+            assertEquals(Map.of("chunk_index", 5), segments.read(0).metadata());
+            assertEquals(4, segments.size());
+            assertTrue(segments.isLive(0));
+            assertFalse(segments.isLive(1));
+            assertFalse(segments.isLive(3));
+            assertFalse(segments.isLive(10));
+        }
+    }
+
+    @Test
+    void testRecordsRollOverToNewSegments() throws IOException {
+        // Arrange
+        String large = "x".repeat(3000);
+        try (ChunkSegments segments = new ChunkSegments(tempDir, 1024)) {
+
+            // Act
+            for (int node = 0; node < 5; node++) {
+                segments.put(node, new ChunkSegments.StoredChunk("id-" + node, "Texto " + node, Map.of()));
+            }
+            segments.put(5, new ChunkSegments.StoredChunk("grande", large, Map.of()));
+
+            // Assert
+            assertEquals(large, segments.read(5).text());
+            assertEquals("Texto 0", segments.read(0).text());
+        }
+        assertTrue(Files.exists(tempDir.resolve("segment-000001.seg")));
+    }
+
+    @Test
+    void testChecksumMismatchIsDetected() throws IOException {
+        // Arrange
+        try (ChunkSegments segments = new ChunkSegments(tempDir, 1024)) {
+            segments.put(0, new ChunkSegments.StoredChunk("a", "Texto original", Map.of()));
+        }
+        Path segment = tempDir.resolve("segment-000000.seg");
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[new String(bytes, StandardCharsets.ISO_8859_1).indexOf("original")] = 'O';
+        Files.write(segment, bytes);
+
+        // Act & Assert
+        try (ChunkSegments reopened = new ChunkSegments(tempDir, 1024)) {
+            assertEquals("a", reopened.id(0));
+            assertThrows(IllegalStateException.class, () -> reopened.read(0));
+        }
+    }
+
+    @Test
+    void testCorruptedSegmentHeaderIsRejected() throws IOException {
+        // Arrange
+        try (ChunkSegments segments = new ChunkSegments(tempDir, 1024)) {
+            segments.put(0, new ChunkSegments.StoredChunk("a", "Texto", Map.of()));
+        }
+        Path segment = tempDir.resolve("segment-000000.seg");
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[8] = 7; // número do segmento
+        Files.write(segment, bytes);
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> new ChunkSegments(tempDir, 1024));
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextAssemblerTest {
+
+    private final ContextAssembler assembler = new ContextAssembler(new WhitespaceTokenizer(), 10, 0.9);
+
+    @Test
+    void testChunksWithinBudgetAreKeptInOrder() {
+        // Arrange
+        List<RetrievedChunk> chunks = List.of(chunk("a", "Primeiro chunk curto."), chunk("b", "Segundo chunk curto."));
+
+        // Act & Assert
+        assertEquals(chunks, assembler.assemble(chunks));
+    }
+
+    @Test
+    void testChunkOverBudgetIsTrimmedAtSentenceEnd() {
+        // Arrange
+        RetrievedChunk first = chunk("a", "Um dois três quatro.");
+        RetrievedChunk second = chunk("b", "Cinco seis. Sete oito! Nove dez onze doze.");
+        RetrievedChunk third = chunk("c", "Treze.");
+
+        // Act
+        List<RetrievedChunk> context = assembler.assemble(List.of(first, second, third));
+
+        // Assert
+        assertEquals(List.of("Um dois três quatro.", "Cinco seis. Sete oito!"),
+                context.stream().map(RetrievedChunk::text).toList());
+        assertEquals("b", context.get(1).id());
+        assertEquals(0.5, context.get(1).distance());
+    }
+
+    @Test
+    void testChunkWithoutSentenceThatFitsIsDropped() {
+        // Arrange
+        RetrievedChunk first = chunk("a", "Um dois três quatro cinco seis sete oito.");
+        RetrievedChunk second = chunk("b", "Nove dez onze sem ponto final");
+
+        // Act & Assert
+        assertEquals(List.of(first), assembler.assemble(List.of(first, second)));
+    }
+
+    @Test
+    void testNearDuplicatesAreSkipped() {
+        // Arrange
+        ContextAssembler large = new ContextAssembler(new WhitespaceTokenizer(), 1000, 0.8);
+        String text = "O controller recebe a requisição HTTP, valida os parâmetros e chama o serviço responsável.";
+        RetrievedChunk original = chunk("a", text);
+        RetrievedChunk copy = chunk("b", text.toUpperCase().replace("HTTP, ", "HTTP "));
+        RetrievedChunk other = chunk("c", "O serviço consulta o banco de vetores.");
+
+        // Act & Assert
+        assertEquals(List.of(original, other), large.assemble(List.of(original, copy, other)));
+    }
+
+    @Test
+    void testTokensAreEstimatedFromCharacters() {
+        // Arrange: 8 caracteres por palavra, 4 por token, orçamento de 4 tokens
+        ContextAssembler estimated = new ContextAssembler(4, 4, 0.9);
+        RetrievedChunk chunk = chunk("a", "abcdefg. abcdefg. abcdefg.");
+
+        // Act & Assert
+        assertEquals("abcdefg. abcdefg.", estimated.assemble(List.of(chunk)).get(0).text());
+        assertThrows(IllegalArgumentException.class, () -> new ContextAssembler(0, 4, 0.9));
+        assertThrows(IllegalArgumentException.class, () -> new ContextAssembler(100, 0, 0.9));
+    }
+
+    private static RetrievedChunk chunk(String id, String text) {
+        return new RetrievedChunk(id, text, Map.of(), 0.5);
+    }
+}
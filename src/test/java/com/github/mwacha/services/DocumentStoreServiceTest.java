@@ -1,18 +1,39 @@
 package com.github.mwacha.services;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.mock.web.MockMultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -23,14 +44,20 @@ class DocumentStoreServiceTest {
     private EmbeddingService embeddingService;
 
     @Mock
-    private ChromaClient chromaClient;
+    private VectorStore vectorStore;
 
-    @InjectMocks
     private DocumentStoreService documentStoreService;
 
     @BeforeEach
     void setUp() {
-        // Configuração inicial, se necessário
+        documentStoreService = new DocumentStoreService(
+                new IngestionPipeline(embeddingService, vectorStore, 4, 1, 1, 32),
+                new TextChunker(new WhitespaceTokenizer(), 1000, 0), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        documentStoreService.shutdown();
     }
 
     @Test
@@ -39,14 +66,15 @@ class DocumentStoreServiceTest {
         String text = "Sample document content.";
         MockMultipartFile file = new MockMultipartFile("file", "test.txt", "text/plain", text.getBytes());
         float[] embedding = new float[1024];
-        when(embeddingService.embed(anyString())).thenReturn(embedding);
+        when(embeddingService.embedAll(List.of(text), "txt")).thenReturn(List.of(embedding));
 
         // Act
         documentStoreService.storeDocument(file);
 
         // Assert
-        verify(embeddingService, times(1)).embed(text);
-        verify(chromaClient, times(1)).addDocument(text, embedding);
+        verify(embeddingService, times(1)).embedAll(List.of(text), "txt");
+        verify(embeddingService, never()).embed(anyString());
+        verify(vectorStore, times(1)).addDocuments(anyList(), eq(List.of(text)), eq(List.of(embedding)), anyList());
     }
 
     @Test
@@ -56,22 +84,194 @@ class DocumentStoreServiceTest {
 
         // Act & Assert
         assertThrows(IllegalArgumentException.class, () -> documentStoreService.storeDocument(file));
-        verifyNoInteractions(embeddingService, chromaClient);
+        verifyNoInteractions(embeddingService);
+        verify(vectorStore, never()).addDocuments(any(), any(), any(), any());
+        verify(vectorStore, never()).deleteDocuments(anyList());
+    }
+
+    @Test
+    void testStoreDocumentTxtSpanningSeveralSegments() throws IOException {
+        // Arrange
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append("Frase número ").append(i).append(".\n");
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "grande.txt", "text/plain",
+                text.toString().getBytes(StandardCharsets.UTF_8));
+        when(embeddingService.embedAll(anyList(), anyString())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(chunk -> new float[1024]).toList();
+        });
+        List<String> stored = new ArrayList<>();
+        doAnswer(invocation -> stored.addAll(invocation.getArgument(1)))
+                .when(vectorStore).addDocuments(anyList(), anyList(), anyList(), anyList());
+
+        // Act
+        documentStoreService.storeDocument(file);
+
+        // Assert
+        assertTrue(stored.stream().allMatch(chunk -> chunk.split("\\s+").length <= 1000));
+        assertEquals(text.toString().trim().replaceAll("\\s+", " "),
+                String.join(" ", stored).replaceAll("\\s+", " "));
+    }
+
+    @Test
+    void testStoreDocumentDocx() throws IOException {
+        // Arrange
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (XWPFDocument docx = new XWPFDocument()) {
+            docx.createParagraph().createRun().setText("Primeiro parágrafo.");
+            docx.createParagraph().createRun().setText("Segundo parágrafo.");
+            docx.write(content);
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "test.docx", "application/octet-stream",
+                content.toByteArray());
+        when(embeddingService.embedAll(anyList(), anyString())).thenReturn(List.of(new float[1024]));
+
+        // Act
+        documentStoreService.storeDocument(file);
+
+        // Assert
+        verify(vectorStore).addDocuments(anyList(), argThat(texts -> texts.size() == 1 &&
+                texts.get(0).replaceAll("\\s+", " ").equals("Primeiro parágrafo. Segundo parágrafo.")), anyList(), anyList());
+    }
+
+    @Test
+    void testStoreDocumentPdfKeepsPageOrderAndNumbers() throws IOException {
+        // Arrange
+        MockMultipartFile file = new MockMultipartFile("file", "spec.pdf", "application/pdf", pdf(25));
+        DocumentStoreService service = new DocumentStoreService(
+                new IngestionPipeline(embeddingService, vectorStore, 4, 1, 1, 32),
+                new TextChunker(new WhitespaceTokenizer(), 2, 0), 3);
+        when(embeddingService.embedAll(anyList(), anyString())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(chunk -> new float[1024]).toList();
+        });
+        List<String> texts = new ArrayList<>();
+        List<Map<String, Object>> metadatas = new ArrayList<>();
+        doAnswer(invocation -> {
+            texts.addAll(invocation.getArgument(1));
+            return metadatas.addAll(invocation.getArgument(3));
+        }).when(vectorStore).addDocuments(anyList(), anyList(), anyList(), anyList());
+
+        // Act
+        try {
+            service.storeDocument(file);
+        } finally {
+            service.shutdown();
+        }
+
+        // Assert
+        assertEquals(25, texts.size());
+        for (int page = 1; page <= 25; page++) {
+            assertEquals("Pagina " + page + ".", texts.get(page - 1));
+            assertEquals(page, metadatas.get(page - 1).get("page_start"));
+            assertEquals(page, metadatas.get(page - 1).get("page_end"));
+        }
+    }
+
+    @Test
+    void testExtractPdfReusesCountingInstanceForFirstWorker() throws IOException {
+        // Arrange
+        byte[] content = pdf(25);
+        AtomicInteger loads = new AtomicInteger();
+        InputStreamSource source = () -> {
+            loads.incrementAndGet();
+            return new ByteArrayInputStream(content);
+        };
+        DocumentStoreService service = new DocumentStoreService(null, null, 2);
+        List<Integer> pages = new ArrayList<>();
+
+        // Act
+        try {
+            service.extractText(".pdf", source, segment -> pages.add(segment.page()));
+        } finally {
+            service.shutdown();
+        }
+
+        // Assert
+        assertEquals(25, pages.size());
+        assertEquals(2, loads.get());
     }
 
     @Test
-    void testChunkText() {
+    void testExtractPdfStaysWithinThreadLimit() throws IOException {
+        // Arrange: quatro workers por PDF, mas uma única thread de extração
+        byte[] content = pdf(40);
+        AtomicInteger loads = new AtomicInteger();
+        InputStreamSource source = () -> {
+            loads.incrementAndGet();
+            return new ByteArrayInputStream(content);
+        };
+        DocumentStoreService service = new DocumentStoreService(null, null, 4, 1);
+        List<Integer> pages = new ArrayList<>();
+
+        // Act
+        try {
+            service.extractText(".pdf", source, segment -> pages.add(segment.page()));
+        } finally {
+            service.shutdown();
+        }
+
+        // Assert: o primeiro worker extrai tudo; os que esperaram a thread não leem o PDF
+        assertEquals(IntStream.rangeClosed(1, 40).boxed().toList(), pages);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testExtractPdfDoesNotWaitForOtherDocuments() throws Exception {
         // Arrange
-        String text = "Sentence one. Sentence two. Sentence three.";
-        int maxTokens = 2;
+        ByteArrayResource content = new ByteArrayResource(pdf(40));
+        DocumentStoreService service = new DocumentStoreService(null, null, 1);
+        CountDownLatch secondFinished = new CountDownLatch(1);
+        ExecutorService jobs = Executors.newSingleThreadExecutor();
+        // O primeiro documento fica parado na emissão, com o seu worker esperando vaga na janela
+        Future<?> first = jobs.submit(() -> {
+            service.extractText(".pdf", content, segment -> {
+                try {
+                    secondFinished.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            return null;
+        });
+        List<Integer> pages = new ArrayList<>();
 
         // Act
-        List<String> chunks = documentStoreService.chunkText(text, maxTokens);
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> service.extractText(".pdf", content, segment -> pages.add(segment.page())));
+        } finally {
+            secondFinished.countDown();
+            first.get(10, TimeUnit.SECONDS);
+            jobs.shutdownNow();
+            service.shutdown();
+        }
 
         // Assert
-        assertEquals(3, chunks.size());
-        assertTrue(chunks.get(0).contains("Sentence one."));
-        assertTrue(chunks.get(1).contains("Sentence two."));
-        assertTrue(chunks.get(2).contains("Sentence three."));
+        assertEquals(40, pages.size());
+    }
+
+    /**
+     * PDF em que cada página contém apenas o texto {@code Pagina <n>.}.
+     */
+    private static byte[] pdf(int pages) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (PDDocument pdf = new PDDocument()) {
+            for (int page = 1; page <= pages; page++) {
+                PDPage pdPage = new PDPage();
+                pdf.addPage(pdPage);
+                try (PDPageContentStream stream = new PDPageContentStream(pdf, pdPage)) {
+                    stream.beginText();
+                    stream.setFont(PDType1Font.HELVETICA, 12);
+                    stream.newLineAtOffset(50, 700);
+                    stream.showText("Pagina " + page + ".");
+                    stream.endText();
+                }
+            }
+            pdf.save(content);
+        }
+        return content.toByteArray();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testKeyNormalizesWhitespace() {
+        assertEquals(EmbeddingCache.key("modelo", "Texto   de\nexemplo"), EmbeddingCache.key("modelo", " Texto de exemplo "));
+        assertNotEquals(EmbeddingCache.key("modelo", "Texto"), EmbeddingCache.key("outro-modelo", "Texto"));
+    }
+
+    @Test
+    void testMemoryTierEvictsLeastRecentlyUsed() {
+        // Arrange: espaço para apenas dois vetores de 1024 dimensões
+        EmbeddingCache cache = new EmbeddingCache(2 * (1024 * 4 + 160), (Path) null);
+        cache.put("a", new float[1024]);
+        cache.put("b", new float[1024]);
+        cache.get("a");
+
+        // Act
+        cache.put("c", new float[1024]);
+
+        // Assert
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        EmbeddingCache.Stats stats = cache.stats();
+        assertEquals(3, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.evictions());
+        assertEquals(2, stats.memoryEntries());
+    }
+
+    @Test
+    void testDiskTierSurvivesRestart() {
+        // Arrange
+        Path file = tempDir.resolve("cache/embeddings.bin");
+        float[] vector = {0.25f, -1.5f, 3.0f};
+        EmbeddingCache cache = new EmbeddingCache(0, file);
+        cache.put("modelo:abc", vector);
+        cache.close();
+
+        // Act
+        EmbeddingCache reopened = new EmbeddingCache(1 << 20, file);
+
+        // Assert
+        assertArrayEquals(vector, reopened.get("modelo:abc"));
+        assertEquals(1, reopened.stats().diskHits());
+        assertEquals(1, reopened.stats().diskEntries());
+        reopened.close();
+    }
+
+    @Test
+    void testDiskTierDiscardsIncompleteRecord() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("embeddings.bin");
+        EmbeddingCache cache = new EmbeddingCache(0, file);
+        cache.put("a", new float[]{1f, 2f});
+        cache.put("b", new float[]{3f, 4f});
+        cache.close();
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        // Act
+        EmbeddingCache reopened = new EmbeddingCache(0, file);
+
+        // Assert
+        assertArrayEquals(new float[]{1f, 2f}, reopened.get("a"));
+        assertNull(reopened.get("b"));
+        reopened.put("b", new float[]{5f, 6f});
+        reopened.close();
+        assertArrayEquals(new float[]{5f, 6f}, new EmbeddingCache(0, file).get("b"));
+    }
+}
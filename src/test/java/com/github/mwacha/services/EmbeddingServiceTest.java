@@ -1,20 +1,24 @@
 package com.github.mwacha.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.notNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,29 +27,28 @@ class EmbeddingServiceTest {
     @Mock(answer = org.mockito.Answers.RETURNS_DEEP_STUBS)
     private WebClient webClient;
 
-    @InjectMocks
     private EmbeddingService embeddingService;
 
     @BeforeEach
     void setUp() {
-        // Configuração inicial não necessária com RETURNS_DEEP_STUBS
+        embeddingService = new EmbeddingService(webClient, new EmbeddingCache(1 << 20, (Path) null), 2);
     }
 
     @Test
     void testEmbedSuccess() {
         // Arrange
         String text = "Test text";
-        List<Double> embedding = List.of(0.1, 0.2, 0.3); // Exemplo simplificado
-        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(Map.class))
-                .thenReturn(Mono.just(Map.of("embedding", embedding)));
+        float[] embedding = vector(0.1f);
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(EmbeddingService.EmbeddingResponse.class))
+                .thenReturn(Mono.just(new EmbeddingService.EmbeddingResponse(embedding)));
 
         // Act
         float[] result = embeddingService.embed(text);
 
         // Assert
-        assertEquals(3, result.length);
+        assertEquals(1024, result.length);
         assertEquals(0.1f, result[0]);
-        verify(webClient.post().uri(anyString()), times(1)).bodyValue(any());
+        verify(webClient.post().uri(anyString()), times(1)).bodyValue(notNull());
     }
 
     @Test
@@ -54,4 +57,96 @@ class EmbeddingServiceTest {
         assertThrows(IllegalArgumentException.class, () -> embeddingService.embed(""));
         verifyNoInteractions(webClient);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testEmbedAllSplitsIntoBatchesPreservingOrder() {
+        // Arrange
+        List<String> texts = List.of("a", "b", "c");
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(EmbeddingService.EmbedResponse.class))
+                .thenReturn(Mono.just(new EmbeddingService.EmbedResponse(new float[][]{vector(1.0f), vector(2.0f)})))
+                .thenReturn(Mono.just(new EmbeddingService.EmbedResponse(new float[][]{vector(3.0f)})));
+
+        // Act
+        List<float[]> result = embeddingService.embedAll(texts);
+
+        // Assert
+        assertEquals(3, result.size());
+        assertEquals(1.0f, result.get(0)[0]);
+        assertEquals(2.0f, result.get(1)[0]);
+        assertEquals(3.0f, result.get(2)[0]);
+        verify(webClient.post().uri(anyString()), times(2)).bodyValue(notNull());
+    }
+
+    @Test
+    void testEmbedAllRejectsMismatchedResponse() {
+        // Arrange
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(EmbeddingService.EmbedResponse.class))
+                .thenReturn(Mono.just(new EmbeddingService.EmbedResponse(new float[][]{vector(1.0f)})));
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> embeddingService.embedAll(List.of("a", "b")));
+    }
+
+    @Test
+    void testEmbedAllEmptyText() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> embeddingService.embedAll(List.of("a", " ")));
+        verifyNoInteractions(webClient);
+    }
+
+    @Test
+    void testEmbedUsesCache() {
+        // Arrange
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(EmbeddingService.EmbeddingResponse.class))
+                .thenReturn(Mono.just(new EmbeddingService.EmbeddingResponse(vector(0.5f))));
+
+        // Act
+        float[] first = embeddingService.embed("Texto  repetido ");
+        float[] second = embeddingService.embed("Texto repetido");
+
+        // Assert
+        assertSame(first, second);
+        verify(webClient.post().uri(anyString()), times(1)).bodyValue(notNull());
+    }
+
+    @Test
+    void testEmbedAllOnlySendsUncachedTexts() {
+        // Arrange
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(EmbeddingService.EmbedResponse.class))
+                .thenReturn(Mono.just(new EmbeddingService.EmbedResponse(new float[][]{vector(1.0f), vector(2.0f)})))
+                .thenReturn(Mono.just(new EmbeddingService.EmbedResponse(new float[][]{vector(3.0f)})));
+        embeddingService.embedAll(List.of("a", "b"));
+
+        // Act
+        List<float[]> result = embeddingService.embedAll(List.of("b", "c", "a", "c"));
+
+        // Assert
+        assertEquals(2.0f, result.get(0)[0]);
+        assertEquals(3.0f, result.get(1)[0]);
+        assertEquals(1.0f, result.get(2)[0]);
+        assertEquals(3.0f, result.get(3)[0]);
+        ArgumentCaptor<Object> bodies = ArgumentCaptor.forClass(Object.class);
+        verify(webClient.post().uri(anyString()), atLeastOnce()).bodyValue(bodies.capture());
+        assertEquals(List.of("c"), ((Map<?, ?>) bodies.getAllValues().get(bodies.getAllValues().size() - 1)).get("input"));
+    }
+
+    @Test
+    void testEmbedResponseIsReadIntoFloatArrays() throws Exception {
+        // Arrange
+        String json = "{\"model\":\"m\",\"embeddings\":[[0.5,-1.25],[2.0,3e-2]],\"total_duration\":10}";
+
+        // Act
+        EmbeddingService.EmbedResponse response = new ObjectMapper()
+                .readValue(json, EmbeddingService.EmbedResponse.class);
+
+        // Assert
+        assertArrayEquals(new float[]{0.5f, -1.25f}, response.embeddings()[0]);
+        assertArrayEquals(new float[]{2.0f, 0.03f}, response.embeddings()[1]);
+    }
+
+    private static float[] vector(float value) {
+        float[] vector = new float[1024];
+        Arrays.fill(vector, value);
+        return vector;
+    }
+}
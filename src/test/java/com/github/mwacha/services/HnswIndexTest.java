@@ -0,0 +1,236 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSearchFindsExactVectorFirst() throws Exception {
+        // Arrange
+        float[][] vectors = randomVectors(200, new Random(1));
+        try (HnswIndex index = new HnswIndex(tempDir, DIMENSION, 8, 64, 7)) {
+            for (float[] vector : vectors) {
+                index.add(vector);
+            }
+
+            // Act
+            List<HnswIndex.Result> results = index.search(vectors[123], 5, 32);
+
+            // Assert
+            assertEquals(5, results.size());
+            assertEquals(123, results.get(0).node());
+            assertEquals(0, results.get(0).distance(), 1e-5);
+            for (int i = 1; i < results.size(); i++) {
+                assertTrue(results.get(i - 1).distance() <= results.get(i).distance());
+            }
+        }
+    }
+
+    @Test
+    void testRecallAgainstExactSearch() throws Exception {
+        // Arrange
+        Random random = new Random(3);
+        float[][] vectors = randomVectors(2000, random);
+        float[][] queries = randomVectors(50, random);
+        int k = 10;
+        try (HnswIndex index = new HnswIndex(tempDir, DIMENSION, 16, 100, 7)) {
+            for (float[] vector : vectors) {
+                index.add(vector);
+            }
+
+            // Act
+            int found = 0;
+            for (float[] query : queries) {
+                Set<Integer> expected = exactTopK(vectors, query, k);
+                for (HnswIndex.Result result : index.search(query, k, 100)) {
+                    if (expected.contains(result.node())) {
+                        found++;
+                    }
+                }
+            }
+
+            // Assert
+            double recall = (double) found / (queries.length * k);
+            assertTrue(recall >= 0.95, "recall@10 = " + recall);
+        }
+    }
+
+    @Test
+    void testDeletedNodesAreSkippedButKeepGraphNavigable() throws Exception {
+        // Arrange
+        float[][] vectors = randomVectors(300, new Random(5));
+        try (HnswIndex index = new HnswIndex(tempDir, DIMENSION, 8, 64, 7)) {
+            for (float[] vector : vectors) {
+                index.add(vector);
+            }
+            for (int node = 0; node < 300; node += 2) {
+                index.markDeleted(node);
+            }
+
+            // Act
+            List<HnswIndex.Result> results = index.search(vectors[42], 10, 64);
+
+            // Assert
+            assertEquals(10, results.size());
+            assertTrue(results.stream().allMatch(result -> result.node() % 2 == 1));
+            assertTrue(index.isDeleted(42));
+            assertFalse(index.isDeleted(43));
+        }
+    }
+
+    @Test
+    void testIndexIsReopenedFromMappedFiles() throws Exception {
+        // Arrange
+        float[][] vectors = randomVectors(500, new Random(9));
+        List<HnswIndex.Result> before;
+        try (HnswIndex index = new HnswIndex(tempDir, DIMENSION, 8, 64, 7)) {
+            for (float[] vector : vectors) {
+                index.add(vector);
+            }
+            index.markDeleted(7);
+            before = index.search(vectors[7], 10, 64);
+        }
+
+        // Act
+        try (HnswIndex reopened = new HnswIndex(tempDir, DIMENSION, 8, 64, 7)) {
+            List<HnswIndex.Result> after = reopened.search(vectors[7], 10, 64);
+
+            // Assert
+            assertEquals(500, reopened.size());
+            assertTrue(reopened.isDeleted(7));
+            assertEquals(before, after);
+            assertEquals(500, reopened.add(vectors[7]));
+            assertEquals(500, reopened.search(vectors[7], 1, 64).get(0).node());
+        }
+    }
+
+    @Test
+    void testQuantizedSearchReturnsExactDistances() throws Exception {
+        // Arrange
+        float[][] vectors = randomVectors(300, new Random(13));
+        for (HnswIndex.Quantization quantization : List.of(HnswIndex.Quantization.INT8, HnswIndex.Quantization.BINARY)) {
+            Path directory = tempDir.resolve(quantization.name());
+            try (HnswIndex index = new HnswIndex(directory, DIMENSION, 8, 64, 7, quantization)) {
+                for (float[] vector : vectors) {
+                    index.add(vector);
+                }
+
+                // Act
+                List<HnswIndex.Result> results = index.search(vectors[123], 5, 64);
+
+                // Assert
+                assertEquals(123, results.get(0).node(), quantization.name());
+                assertEquals(0, results.get(0).distance(), 1e-5);
+                float[] query = VectorMath.normalize(vectors[123]);
+                for (int i = 1; i < results.size(); i++) {
+                    HnswIndex.Result result = results.get(i);
+                    assertTrue(results.get(i - 1).distance() <= result.distance());
+                    float[] vector = VectorMath.normalize(vectors[result.node()]);
+                    assertEquals(1 - VectorMath.dot(query, vector), result.distance(), 1e-5);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCodesAreRebuiltWhenQuantizationChanges() throws Exception {
+        // Arrange
+        float[][] vectors = randomVectors(200, new Random(17));
+        try (HnswIndex index = new HnswIndex(tempDir, DIMENSION, 8, 64, 7)) {
+            for (float[] vector : vectors) {
+                index.add(vector);
+            }
+        }
+
+        // Act & Assert
+        for (HnswIndex.Quantization quantization : List.of(HnswIndex.Quantization.INT8, HnswIndex.Quantization.BINARY)) {
+            try (HnswIndex reopened = new HnswIndex(tempDir, DIMENSION, 8, 64, 7, quantization)) {
+                assertEquals(57, reopened.search(vectors[57], 1, 64).get(0).node(), quantization.name());
+            }
+        }
+        assertEquals(HnswIndex.Quantization.INT8, HnswIndex.Quantization.parse(" int8 "));
+        assertThrows(IllegalArgumentException.class, () -> HnswIndex.Quantization.parse("pq"));
+    }
+
+    @Test
+    void testReopenWithDifferentDimensionFails() throws Exception {
+        // Arrange
+        try (HnswIndex index = new HnswIndex(tempDir, DIMENSION, 8, 64, 7)) {
+            index.add(randomVectors(1, new Random(1))[0]);
+        }
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> new HnswIndex(tempDir, 64, 8, 64, 7));
+    }
+
+    @Test
+    void testEmptyIndexReturnsNoResults() throws Exception {
+        try (HnswIndex index = new HnswIndex(tempDir, DIMENSION, 8, 64, 7)) {
+            assertTrue(index.search(new float[DIMENSION], 5, 10).isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> index.add(new float[DIMENSION + 1]));
+        }
+    }
+
+    @Test
+    void testVisitedSetGrowsWithVisitsAndClearsByEpoch() {
+        // Arrange
+        HnswIndex.VisitedSet visited = new HnswIndex.VisitedSet(16);
+        int initialCapacity = visited.capacity();
+
+        // Act
+        boolean allNew = true;
+        for (int node = 0; node < 5000; node++) {
+            allNew &= visited.add(node * 7919);
+        }
+        boolean repeated = visited.add(7919 * 42);
+        visited.clear();
+        boolean afterClear = visited.add(7919 * 42);
+
+        // Assert: a capacidade depende dos nós visitados, não dos identificadores
+        assertEquals(32, initialCapacity);
+        assertTrue(allNew);
+        assertFalse(repeated);
+        assertTrue(afterClear);
+        assertEquals(16384, visited.capacity());
+        assertFalse(visited.add(7919 * 42));
+        assertTrue(visited.add(7919 * 43));
+    }
+
+    private static float[][] randomVectors(int count, Random random) {
+        float[][] vectors = new float[count][DIMENSION];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+
+    private static Set<Integer> exactTopK(float[][] vectors, float[] query, int k) {
+        float[] q = VectorMath.normalize(query);
+        double[] similarities = new double[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            similarities[i] = VectorMath.dot(q, VectorMath.normalize(vectors[i]));
+        }
+        return new HashSet<>(IntStream.range(0, vectors.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> -similarities[i]))
+                .limit(k)
+                .toList());
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.mwacha.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compara recall@10 e tempo por consulta de cada {@link HnswIndex.Quantization} com a busca
+ * exata (força bruta), usando consultas que não fazem parte do índice. Os embeddings são
+ * sintéticos, com a dimensão dos embeddings da aplicação, e agrupados em tópicos, como os chunks
+ * de poucos documentos.
+ * <p>
+ * Como mede tempo, fica fora do {@code mvn test} e dos testes de carga, com a tag {@code report}:
+ * {@code mvn -Preport test}.
+ */
+@Tag("report")
+@Slf4j
+class HnswQuantizationReportTest {
+
+    private static final int DIMENSION = 1024; // snowflake-arctic-embed2
+    private static final int VECTORS = 4000;
+    private static final int QUERIES = 100;
+    private static final int TOPICS = 40;
+    private static final int K = 10;
+    private static final int EF = 100;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRecallAndLatencyPerQuantization() throws Exception {
+        // Arrange
+        Random random = new Random(21);
+        float[][] topics = gaussian(TOPICS, 1, random);
+        float[][] vectors = clustered(VECTORS, topics, random);
+        float[][] queries = clustered(QUERIES, topics, random);
+        // A busca exata recebe os vetores já normalizados, como estão no índice
+        float[][] normalized = Arrays.stream(vectors).map(VectorMath::normalize).toArray(float[][]::new);
+        List<Set<Integer>> expected = new ArrayList<>();
+        long exactNanos = System.nanoTime();
+        for (float[] query : queries) {
+            expected.add(exactTopK(normalized, query));
+        }
+        exactNanos = System.nanoTime() - exactNanos;
+        try (HnswIndex index = new HnswIndex(tempDir, DIMENSION, 16, 100, 7)) {
+            for (float[] vector : vectors) {
+                index.add(vector);
+            }
+        }
+
+        // Act
+        // bytes/vetor: o que fica em disco e mapeado (vectors.bin continua presente para a
+        // reordenação); bytes/passo: o que a navegação no grafo lê por vizinho visitado. A
+        // quantização reduz apenas a segunda coluna, a banda de memória da travessia.
+        StringBuilder report = new StringBuilder(String.format("%n%-8s %9s %12s %12s %12s%n",
+                "modo", "recall@10", "µs/consulta", "bytes/vetor", "bytes/passo"));
+        report.append(String.format("%-8s %9.3f %12.1f %12d %12d%n", "exata", 1.0,
+                exactNanos / 1000.0 / QUERIES, DIMENSION * Float.BYTES, DIMENSION * Float.BYTES));
+        double[] recalls = new double[HnswIndex.Quantization.values().length];
+        for (HnswIndex.Quantization quantization : HnswIndex.Quantization.values()) {
+            try (HnswIndex index = new HnswIndex(tempDir, DIMENSION, 16, 100, 7, quantization)) {
+                for (float[] query : queries) {
+                    index.search(query, K, EF); // aquecimento
+                }
+                int found = 0;
+                long nanos = System.nanoTime();
+                for (int q = 0; q < QUERIES; q++) {
+                    for (HnswIndex.Result result : index.search(queries[q], K, EF)) {
+                        if (expected.get(q).contains(result.node())) {
+                            found++;
+                        }
+                    }
+                }
+                nanos = System.nanoTime() - nanos;
+                recalls[quantization.ordinal()] = (double) found / (QUERIES * K);
+                int fullBytes = DIMENSION * Float.BYTES;
+                int codeBytes = quantization == HnswIndex.Quantization.NONE ? 0 : quantization.codeBytes(DIMENSION);
+                report.append(String.format("%-8s %9.3f %12.1f %12d %12d%n", quantization.name().toLowerCase(),
+                        recalls[quantization.ordinal()], nanos / 1000.0 / QUERIES, fullBytes + codeBytes,
+                        codeBytes == 0 ? fullBytes : codeBytes));
+            }
+        }
+        log.info("Quantização do HNSW (a economia de bytes vale só para a travessia do grafo):{}", report);
+
+        // Assert
+        assertTrue(recalls[HnswIndex.Quantization.NONE.ordinal()] >= 0.95, report.toString());
+        assertTrue(recalls[HnswIndex.Quantization.INT8.ordinal()] >= 0.9, report.toString());
+        assertTrue(recalls[HnswIndex.Quantization.BINARY.ordinal()] >= 0.8, report.toString());
+    }
+
+    private static float[][] gaussian(int count, double sigma, Random random) {
+        float[][] vectors = new float[count][DIMENSION];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = (float) (sigma * random.nextGaussian());
+            }
+        }
+        return vectors;
+    }
+
+    private static float[][] clustered(int count, float[][] topics, Random random) {
+        float[][] vectors = gaussian(count, 0.6, random);
+        for (float[] vector : vectors) {
+            float[] topic = topics[random.nextInt(topics.length)];
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] += topic[i];
+            }
+        }
+        return vectors;
+    }
+
+    private static Set<Integer> exactTopK(float[][] normalized, float[] query) {
+        float[] q = VectorMath.normalize(query);
+        double[] similarities = new double[normalized.length];
+        for (int i = 0; i < normalized.length; i++) {
+            similarities[i] = VectorMath.dot(q, normalized[i]);
+        }
+        return new HashSet<>(IntStream.range(0, normalized.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> -similarities[i]))
+                .limit(K)
+                .toList());
+    }
+}
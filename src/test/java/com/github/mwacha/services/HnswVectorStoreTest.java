@@ -0,0 +1,282 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswVectorStoreTest {
+
+    private static final int DIMENSION = 4;
+
+    @TempDir
+    Path tempDir;
+
+    private HnswVectorStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void testQueryReturnsNearestChunksWithCosineDistance() {
+        // Arrange
+        store.addDocuments(List.of("a", "b", "c"), List.of("Texto A", "Texto B", "Texto C"),
+                List.of(new float[]{1, 0, 0, 0}, new float[]{0, 1, 0, 0}, new float[]{1, 1, 0, 0}),
+                List.of(metadata("doc1"), metadata("doc1"), metadata("doc2")));
+
+        // Act
+        List<RetrievedChunk> chunks = store.queryChunks("pergunta", new float[]{2, 0, 0, 0});
+
+        // Assert
+        assertEquals(List.of("a", "c", "b"), chunks.stream().map(RetrievedChunk::id).toList());
+        assertEquals("Texto A", chunks.get(0).text());
+        assertEquals(metadata("doc1"), chunks.get(0).metadata());
+        assertEquals(0, chunks.get(0).distance(), 1e-6);
+        assertEquals(1 - Math.sqrt(0.5), chunks.get(1).distance(), 1e-6);
+        assertEquals(List.of("Texto A", "Texto C", "Texto B"), store.queryRelevant("pergunta", new float[]{2, 0, 0, 0}));
+    }
+
+    @Test
+    void testQueryHonoursLimitAndReturnsEmbeddingsOnlyWhenAsked() {
+        // Arrange
+        store.addDocuments(List.of("a", "b", "c"), List.of("Texto A", "Texto B", "Texto C"),
+                List.of(new float[]{1, 0, 0, 0}, new float[]{0, 1, 0, 0}, new float[]{1, 1, 0, 0}),
+                List.of(metadata("doc1"), metadata("doc1"), metadata("doc2")));
+
+        // Act
+        List<RetrievedChunk> withoutEmbeddings = store.queryChunks("pergunta", new float[]{2, 0, 0, 0}, 2, false);
+        List<RetrievedChunk> withEmbeddings = store.queryChunks("pergunta", new float[]{2, 0, 0, 0}, 2, true);
+
+        // Assert
+        assertEquals(List.of("a", "c"), withoutEmbeddings.stream().map(RetrievedChunk::id).toList());
+        assertNull(withoutEmbeddings.get(0).embedding());
+        assertEquals(List.of("a", "c"), withEmbeddings.stream().map(RetrievedChunk::id).toList());
+        assertEquals(DIMENSION, withEmbeddings.get(0).embedding().length);
+        assertThrows(IllegalArgumentException.class, () -> store.queryChunks("pergunta", new float[]{1, 0, 0, 0}, 0, false));
+    }
+
+    @Test
+    void testUpsertDeleteAndUpdateMetadata() {
+        // Arrange
+        store.addDocuments(List.of("a", "b"), List.of("Texto A", "Texto B"),
+                List.of(new float[]{1, 0, 0, 0}, new float[]{0, 1, 0, 0}), List.of(metadata("doc1"), metadata("doc1")));
+        long version = store.collectionVersion();
+
+        // Act
+        store.addDocuments(List.of("a"), List.of("Texto A2"), List.of(new float[]{0, 0, 1, 0}), List.of(metadata("doc1")));
+        store.deleteDocuments(List.of("b", "inexistente"));
+        store.updateMetadatas(List.of("a"), List.of(Map.of("document_id", "doc2", "chunk_index", 7)));
+
+        // Assert
+        List<RetrievedChunk> chunks = store.queryChunks("pergunta", new float[]{1, 0, 0, 0});
+        assertEquals(1, chunks.size());
+        assertEquals("Texto A2", chunks.get(0).text());
+        assertEquals(Map.of(), store.getDocumentChunks("doc1"));
+        assertEquals(Map.of("a", Map.of("document_id", "doc2", "chunk_index", 7)), store.getDocumentChunks("doc2"));
+        assertEquals(version + 3, store.collectionVersion());
+        List<RetrievedChunk> byId = store.getChunks(List.of("b", "a"));
+        assertEquals(List.of("a"), byId.stream().map(RetrievedChunk::id).toList());
+        assertEquals("Texto A2", byId.get(0).text());
+        assertTrue(Double.isNaN(byId.get(0).distance()));
+        Map<String, float[]> embeddings = store.getEmbeddings(List.of("a", "b"));
+        assertEquals(Set.of("a"), embeddings.keySet());
+        assertArrayEquals(new float[]{0, 0, 1, 0}, embeddings.get("a"), 1e-6f);
+    }
+
+    @Test
+    void testStateSurvivesRestart() {
+        // Arrange
+        store.addDocuments(List.of("a", "b", "c"), List.of("Texto A", "Texto B", "Texto C"),
+                List.of(new float[]{1, 0, 0, 0}, new float[]{0, 1, 0, 0}, new float[]{0, 0, 1, 0}),
+                List.of(metadata("doc1"), metadata("doc1"), metadata("doc2")));
+        store.deleteDocuments(List.of("b"));
+        store.updateMetadatas(List.of("c"), List.of(Map.of("document_id", "doc2", "chunk_index", 3)));
+        store.close();
+
+        // Act
+        store = open();
+
+        // Assert
+        assertEquals(Map.of("a", metadata("doc1")), store.getDocumentChunks("doc1"));
+        assertEquals(Map.of("c", Map.of("document_id", "doc2", "chunk_index", 3)), store.getDocumentChunks("doc2"));
+        assertEquals(List.of("Texto C", "Texto A"), store.queryRelevant("pergunta", new float[]{0, 0.1f, 1, 0}));
+    }
+
+    @Test
+    void testNodeWithoutChunkIsHiddenAfterRestart() throws IOException {
+        // Arrange: simula uma queda depois de gravar o nó no índice e antes da tabela de chunks
+        store.addDocuments(List.of("a"), List.of("Texto A"), List.of(new float[]{1, 0, 0, 0}), List.of(metadata("doc1")));
+        store.close();
+        Path generation = tempDir.resolve(Files.readString(tempDir.resolve("CURRENT")).strip());
+        try (HnswIndex index = new HnswIndex(generation, DIMENSION, 4, 16, 1)) {
+            index.add(new float[]{0, 1, 0, 0});
+        }
+
+        // Act
+        store = open();
+        store.addDocuments(List.of("b"), List.of("Texto B"), List.of(new float[]{0, 0, 1, 0}), List.of(metadata("doc1")));
+
+        // Assert
+        assertEquals(List.of("a", "b"), store.queryChunks("pergunta", new float[]{1, 0, 0, 0}).stream()
+                .map(RetrievedChunk::id).toList());
+        assertEquals(2, store.getDocumentChunks("doc1").size());
+    }
+
+    @Test
+    void testCompactionDropsDeletedChunksAndSwitchesGeneration() throws IOException {
+        // Arrange
+        for (int i = 0; i < 20; i++) {
+            store.addDocuments(List.of("c" + i), List.of("Texto " + i),
+                    List.of(new float[]{1, i, 0, 0}), List.of(metadata("doc" + (i % 2))));
+        }
+        store.deleteDocuments(List.of("c0", "c2", "c4", "c6", "c8"));
+        store.updateMetadatas(List.of("c1"), List.of(Map.of("document_id", "doc1", "chunk_index", 1)));
+        List<String> before = store.queryRelevant("pergunta", new float[]{1, 3, 0, 0});
+
+        // Act
+        store.compact();
+
+        // Assert
+        assertEquals("gen-000002", Files.readString(tempDir.resolve("CURRENT")).strip());
+        assertFalse(Files.exists(tempDir.resolve("gen-000001")));
+        assertEquals(before, store.queryRelevant("pergunta", new float[]{1, 3, 0, 0}));
+        assertEquals(5, store.getDocumentChunks("doc0").size());
+        assertEquals(Map.of("document_id", "doc1", "chunk_index", 1), store.getDocumentChunks("doc1").get("c1"));
+
+        store.close();
+        store = open();
+        assertEquals(before, store.queryRelevant("pergunta", new float[]{1, 3, 0, 0}));
+        assertEquals(10, store.getDocumentChunks("doc1").size());
+    }
+
+    @Test
+    void testWritesDuringCompactionAreKept() throws IOException {
+        // Arrange
+        for (int i = 0; i < 10; i++) {
+            store.addDocuments(List.of("c" + i), List.of("Texto " + i),
+                    List.of(new float[]{1, i, 0, 0}), List.of(metadata("doc" + (i % 2))));
+        }
+        store.deleteDocuments(List.of("c0", "c2"));
+
+        // Act: as gravações rodam em outra thread, enquanto a compactação já copiou os nós
+        store.compact(() -> assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            store.deleteDocuments(List.of("c4"));
+            store.updateMetadatas(List.of("c5"), List.of(Map.of("document_id", "doc1", "chunk_index", 5)));
+            store.addDocuments(List.of("c6", "novo"), List.of("Texto 6 novo", "Texto novo"),
+                    List.of(new float[]{1, 6, 0, 0}, new float[]{0, 0, 1, 0}), List.of(metadata("doc0"), metadata("doc2")));
+        }));
+
+        // Assert
+        assertEquals("gen-000002", Files.readString(tempDir.resolve("CURRENT")).strip());
+        assertEquals(Set.of("c6", "c8"), store.getDocumentChunks("doc0").keySet());
+        assertEquals(Map.of("document_id", "doc1", "chunk_index", 5), store.getDocumentChunks("doc1").get("c5"));
+        assertEquals(List.of("Texto 6 novo"), store.getChunks(List.of("c6")).stream().map(RetrievedChunk::text).toList());
+        assertEquals("novo", store.queryChunks("pergunta", new float[]{0, 0, 1, 0}).get(0).id());
+        store.close();
+        store = open();
+        assertEquals(Set.of("c6", "c8"), store.getDocumentChunks("doc0").keySet());
+        assertEquals(Set.of("c1", "c3", "c5", "c7", "c9"), store.getDocumentChunks("doc1").keySet());
+        assertEquals(Set.of("novo"), store.getDocumentChunks("doc2").keySet());
+    }
+
+    @Test
+    void testFailedCompactionRemovesPartialGeneration() throws IOException {
+        // Arrange
+        store.addDocuments(List.of("a", "b"), List.of("Texto A", "Texto B"),
+                List.of(new float[]{1, 0, 0, 0}, new float[]{0, 1, 0, 0}), List.of(metadata("doc1"), metadata("doc1")));
+        store.deleteDocuments(List.of("b"));
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> store.compact(() -> {
+            throw new IllegalStateException("Falha simulada");
+        }));
+        store.addDocuments(List.of("c"), List.of("Texto C"), List.of(new float[]{0, 0, 1, 0}), List.of(metadata("doc1")));
+
+        // Assert
+        assertEquals("gen-000001", Files.readString(tempDir.resolve("CURRENT")).strip());
+        assertFalse(Files.exists(tempDir.resolve("gen-000002")));
+        assertEquals(Set.of("a", "c"), store.getDocumentChunks("doc1").keySet());
+        store.compact();
+        assertEquals("gen-000002", Files.readString(tempDir.resolve("CURRENT")).strip());
+        assertEquals(Set.of("a", "c"), store.getDocumentChunks("doc1").keySet());
+    }
+
+    @Test
+    void testFailedChunkWriteDoesNotLeaveNodeInSearch() {
+        // Arrange
+        store.addDocuments(List.of("a"), List.of("Texto A"), List.of(new float[]{1, 0, 0, 0}), List.of(metadata("doc1")));
+        Map<String, Object> unserializable = Map.of("document_id", "doc1", "valor", new Object());
+
+        // Act
+        assertThrows(IllegalArgumentException.class, () -> store.addDocuments(List.of("b"), List.of("Texto B"),
+                List.of(new float[]{0.9f, 0.1f, 0, 0}), List.of(unserializable)));
+        List<RetrievedChunk> afterFailure = store.queryChunks("pergunta", new float[]{0.9f, 0.1f, 0, 0});
+        store.addDocuments(List.of("c"), List.of("Texto C"), List.of(new float[]{0, 1, 0, 0}), List.of(metadata("doc1")));
+
+        // Assert
+        assertEquals(List.of("a"), afterFailure.stream().map(RetrievedChunk::id).toList());
+        assertEquals(List.of("a", "c"), store.queryChunks("pergunta", new float[]{0.9f, 0.1f, 0, 0}).stream()
+                .map(RetrievedChunk::id).toList());
+        assertEquals(Set.of("a", "c"), store.getDocumentChunks("doc1").keySet());
+        store.close();
+        store = open();
+        assertEquals(List.of("a", "c"), store.queryChunks("pergunta", new float[]{0.9f, 0.1f, 0, 0}).stream()
+                .map(RetrievedChunk::id).toList());
+    }
+
+    @Test
+    void testCorruptedRecordIsSkipped() throws IOException {
+        // Arrange
+        store.addDocuments(List.of("a", "b"), List.of("Texto A", "Texto B"),
+                List.of(new float[]{1, 0, 0, 0}, new float[]{0.9f, 0.1f, 0, 0}), List.of(metadata("doc1"), metadata("doc1")));
+        store.close();
+        Path segment = tempDir.resolve("gen-000001/segment-000000.seg");
+        byte[] bytes = Files.readAllBytes(segment);
+        String content = new String(bytes, StandardCharsets.ISO_8859_1);
+        bytes[content.indexOf("Texto A")] = 'X';
+        Files.write(segment, bytes);
+
+        // Act
+        store = open();
+
+        // Assert
+        assertEquals(List.of("b"), store.queryChunks("pergunta", new float[]{1, 0, 0, 0}).stream()
+                .map(RetrievedChunk::id).toList());
+    }
+
+    @Test
+    void testInvalidInputsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> store.addDocuments(List.of("a"), List.of("Texto"),
+                List.of(new float[]{1, 0}), null));
+        assertThrows(IllegalArgumentException.class, () -> store.addDocuments(List.of("a"), List.of(" "),
+                List.of(new float[]{1, 0, 0, 0}), null));
+        assertThrows(IllegalArgumentException.class, () -> store.queryChunks("pergunta", new float[0]));
+        assertTrue(store.queryChunks("pergunta", new float[]{1, 0, 0, 0}).isEmpty());
+    }
+
+    private HnswVectorStore open() {
+        return new HnswVectorStore(tempDir, DIMENSION, 4, 16, 16, 4096, 0.3, Duration.ZERO);
+    }
+
+    private static Map<String, Object> metadata(String documentId) {
+        return Map.of("document_id", documentId, "source", "teste");
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HybridRetrieverTest {
+
+    @Mock
+    private VectorStore vectorStore;
+
+    private Bm25Index lexicalIndex;
+    private final float[] embedding = new float[1024];
+
+    @BeforeEach
+    void setUp() {
+        lexicalIndex = new Bm25Index((Path) null);
+    }
+
+    @Test
+    void testExactTermChunkIsPromotedToTopThree() {
+        // Arrange: a definição é só a 16ª na busca vetorial, mas a única com o termo exato
+        List<RetrievedChunk> dense = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String text = i == 15 ? "Idempotência: a operação pode ser repetida sem mudar o resultado."
+                    : "Texto genérico sobre operações de API número " + i;
+            dense.add(new RetrievedChunk("c" + i, text, Map.of(), 0.1 + i * 0.01));
+        }
+        dense.forEach(chunk -> lexicalIndex.add(List.of(chunk.id()), List.of(chunk.text())));
+        when(vectorStore.queryChunks("O que é idempotência?", embedding, 20, true)).thenReturn(dense);
+        HybridRetriever retriever = new HybridRetriever(vectorStore, lexicalIndex, true, 20, 20, 60, 5);
+
+        // Act
+        List<RetrievedChunk> chunks = retriever.retrieve("O que é idempotência?", embedding, true);
+
+        // Assert
+        assertEquals(5, chunks.size());
+        assertTrue(chunks.subList(0, 3).contains(dense.get(15)), chunks.toString());
+        verify(vectorStore, never()).getChunks(anyList());
+    }
+
+    @Test
+    void testLexicalOnlyHitsAreReadFromVectorStore() {
+        // Arrange
+        RetrievedChunk a = new RetrievedChunk("a", "Texto sobre filas", Map.of(), 0.2);
+        RetrievedChunk b = new RetrievedChunk("b", "Texto sobre pilhas", Map.of(), 0.3);
+        RetrievedChunk lexicalOnly = new RetrievedChunk("x", "Definição de semáforo", Map.of(), Double.NaN);
+        lexicalIndex.add(List.of("x", "removido"), List.of("Definição de semáforo", "semáforo de uma versão anterior do documento"));
+        when(vectorStore.queryChunks(any(), any(), anyInt(), anyBoolean())).thenReturn(List.of(a, b));
+        when(vectorStore.getChunks(List.of("x", "removido"))).thenReturn(List.of(lexicalOnly));
+        HybridRetriever retriever = new HybridRetriever(vectorStore, lexicalIndex, true, 20, 20, 60, 4);
+
+        // Act
+        List<RetrievedChunk> chunks = retriever.retrieve("semáforo", embedding, false);
+
+        // Assert: empates mantêm a ordem da busca vetorial; "removido" não existe mais no VectorStore
+        assertEquals(List.of(a, lexicalOnly, b), chunks);
+    }
+
+    @Test
+    void testDisabledReturnsVectorResults() {
+        // Arrange
+        List<RetrievedChunk> dense = List.of(new RetrievedChunk("a", "Texto", Map.of(), 0.2));
+        lexicalIndex.add(List.of("x"), List.of("Texto"));
+        when(vectorStore.queryChunks(any(), any(), anyInt(), anyBoolean())).thenReturn(dense);
+        HybridRetriever retriever = new HybridRetriever(vectorStore, lexicalIndex, false, 20, 20, 60, 5);
+
+        // Act & Assert
+        assertSame(dense, retriever.retrieve("Texto", embedding, false));
+        verify(vectorStore, never()).getChunks(anyList());
+    }
+
+    @Test
+    void testDenseSearchFetchesConfiguredCandidateCount() {
+        // Arrange
+        when(vectorStore.queryChunks(any(), any(), anyInt(), anyBoolean())).thenReturn(List.of());
+        HybridRetriever retriever = new HybridRetriever(vectorStore, lexicalIndex, true, 50, 20, 60, 40);
+
+        // Act
+        retriever.retrieve("Texto", embedding, false);
+
+        // Assert
+        verify(vectorStore).queryChunks("Texto", embedding, 50, false);
+    }
+
+    @Test
+    void testInvalidConfigurationIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new HybridRetriever(vectorStore, lexicalIndex, true, 20, 20, 60, 0));
+    }
+}
@@ -0,0 +1,218 @@
+package com.github.mwacha.services;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionJobServiceTest {
+
+    @Mock
+    private DocumentStoreService documentStoreService;
+
+    private IngestionJobService ingestionJobService;
+
+    @BeforeEach
+    void setUp() {
+        ingestionJobService = new IngestionJobService(documentStoreService, 1, Duration.ofHours(1));
+    }
+
+    @Test
+    void testSubmitRunsIngestionInBackground() throws Exception {
+        // Arrange
+        when(documentStoreService.storeDocument(any(), any(), any())).thenAnswer(invocation -> {
+            IngestionPipeline.Progress progress = invocation.getArgument(2);
+            progress.chunksProduced(3);
+            progress.chunksStored(3);
+            return 3;
+        });
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("file", "a.txt", "text/plain", "Texto A.".getBytes()),
+                new MockMultipartFile("file", "b.txt", "text/plain", "Texto B.".getBytes()));
+
+        // Act
+        IngestionJob job = ingestionJobService.submit(files);
+        IngestionJob.Status status = awaitFinished(job);
+
+        // Assert
+        assertEquals(IngestionJob.State.COMPLETED, status.state());
+        assertEquals(List.of("a.txt", "b.txt"), status.files());
+        assertEquals(6, status.chunksTotal());
+        assertEquals(6, status.chunksProcessed());
+        assertTrue(status.errors().isEmpty());
+        assertSame(job, ingestionJobService.find(job.getId()).orElseThrow());
+    }
+
+    @Test
+    void testSubmitRecordsErrorsAndContinues() throws Exception {
+        // Arrange
+        when(documentStoreService.storeDocument(eq("a.pdf"), any(), any()))
+                .thenThrow(new IOException("PDF corrompido"));
+        when(documentStoreService.storeDocument(eq("b.txt"), any(InputStreamSource.class), any())).thenReturn(1);
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("file", "a.pdf", "application/pdf", new byte[1]),
+                new MockMultipartFile("file", "b.txt", "text/plain", "Texto B.".getBytes()));
+
+        // Act
+        IngestionJob.Status status = awaitFinished(ingestionJobService.submit(files));
+
+        // Assert
+        assertEquals(IngestionJob.State.FAILED, status.state());
+        assertEquals(List.of("a.pdf: PDF corrompido"), status.errors());
+        verify(documentStoreService).storeDocument(eq("b.txt"), any(), any());
+    }
+
+    @Test
+    void testJobObservationIsChildOfRequestObservation() throws Exception {
+        // Arrange
+        List<Observation.Context> started = new CopyOnWriteArrayList<>();
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new ObservationHandler<>() {
+            @Override
+            public void onStart(Observation.Context context) {
+                started.add(context);
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+        });
+        IngestionJobService service = new IngestionJobService(documentStoreService, 1, Duration.ofHours(1), registry);
+        when(documentStoreService.storeDocument(eq("a.txt"), any(), any())).thenReturn(1);
+        Observation upload = Observation.createNotStarted("rag.upload", registry);
+
+        // Act
+        IngestionJob job = upload.observeChecked(() -> service.submit(List.of(
+                new MockMultipartFile("file", "a.txt", "text/plain", "Texto A.".getBytes()))));
+        awaitFinished(job);
+
+        // Assert
+        assertEquals(List.of("rag.upload", "rag.ingest.job", "rag.ingest.document"),
+                started.stream().map(Observation.Context::getName).toList());
+        assertSame(upload, started.get(1).getParentObservation());
+        assertSame(started.get(1), started.get(2).getParentObservation().getContextView());
+    }
+
+    @Test
+    void testSubmitWithoutFiles() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> ingestionJobService.submit(List.of()));
+    }
+
+    @Test
+    void testSubmitRejectsFileWithoutName() {
+        // Arrange
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("file", "a.txt", "text/plain", "Texto A.".getBytes()),
+                new MockMultipartFile("file", null, "text/plain", "Sem nome.".getBytes()));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> ingestionJobService.submit(files));
+        verifyNoInteractions(documentStoreService);
+    }
+
+    @Test
+    void testSubmitRejectsUnsupportedFormatBeforeCopying() throws Exception {
+        // Arrange
+        MultipartFile unsupported = mock(MultipartFile.class);
+        when(unsupported.getOriginalFilename()).thenReturn("a.xyz");
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("file", "b.txt", "text/plain", "Texto B.".getBytes()), unsupported);
+
+        // Act
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ingestionJobService.submit(files));
+
+        // Assert
+        assertEquals("Tipo de arquivo não suportado: a.xyz", e.getMessage());
+        verify(unsupported, never()).transferTo(any(Path.class));
+        verifyNoInteractions(documentStoreService);
+    }
+
+    @Test
+    void testSubmitDeletesCopiesWhenTransferFails() throws Exception {
+        // Arrange
+        List<Path> copies = new ArrayList<>();
+        MultipartFile first = mock(MultipartFile.class);
+        when(first.getOriginalFilename()).thenReturn("a.txt");
+        doAnswer(invocation -> {
+            Path copy = invocation.getArgument(0);
+            copies.add(copy);
+            Files.writeString(copy, "Texto A.");
+            return null;
+        }).when(first).transferTo(any(Path.class));
+        MultipartFile second = mock(MultipartFile.class);
+        when(second.getOriginalFilename()).thenReturn("b.txt");
+        doAnswer(invocation -> {
+            copies.add(invocation.getArgument(0));
+            throw new IOException("Disco cheio");
+        }).when(second).transferTo(any(Path.class));
+
+        // Act
+        assertThrows(IOException.class, () -> ingestionJobService.submit(List.of(first, second)));
+
+        // Assert
+        assertEquals(2, copies.size());
+        copies.forEach(copy -> assertFalse(Files.exists(copy), copy::toString));
+        verifyNoInteractions(documentStoreService);
+    }
+
+    @Test
+    void testRetentionCountsFromJobEnd() throws Exception {
+        // Arrange
+        IngestionJobService service = new IngestionJobService(documentStoreService, 1, Duration.ofMillis(300));
+        when(documentStoreService.storeDocument(any(), any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(invocation.<String>getArgument(0).equals("longo.txt") ? 400 : 0);
+            return 1;
+        });
+        IngestionJob longJob = awaitJob(service.submit(List.of(
+                new MockMultipartFile("file", "longo.txt", "text/plain", "Texto longo.".getBytes()))));
+
+        // Act
+        awaitJob(service.submit(List.of(new MockMultipartFile("file", "a.txt", "text/plain", "A.".getBytes()))));
+        boolean retainedAfterEnd = service.find(longJob.getId()).isPresent();
+        Thread.sleep(400);
+        awaitJob(service.submit(List.of(new MockMultipartFile("file", "b.txt", "text/plain", "B.".getBytes()))));
+
+        // Assert
+        assertTrue(retainedAfterEnd, "Job removido logo após terminar");
+        assertTrue(service.find(longJob.getId()).isEmpty());
+    }
+
+    @Test
+    void testFindUnknownJob() {
+        assertTrue(ingestionJobService.find("inexistente").isEmpty());
+    }
+
+    private static IngestionJob.Status awaitFinished(IngestionJob job) throws InterruptedException {
+        return awaitJob(job).status();
+    }
+
+    private static IngestionJob awaitJob(IngestionJob job) throws InterruptedException {
+        for (int attempt = 0; attempt < 200 && !job.isFinished(); attempt++) {
+            Thread.sleep(25);
+        }
+        return job;
+    }
+}
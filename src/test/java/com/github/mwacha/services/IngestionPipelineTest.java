@@ -0,0 +1,258 @@
+package com.github.mwacha.services;
+
+import com.github.mwacha.services.IngestionPipeline.Segment;
+import com.github.mwacha.services.IngestionPipeline.TextChunk;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@Timeout(value = 10, unit = TimeUnit.SECONDS)
+class IngestionPipelineTest {
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    @Mock
+    private VectorStore vectorStore;
+
+    private IngestionPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        // Filas e lotes pequenos para exercitar o bloqueio entre os estágios
+        pipeline = new IngestionPipeline(embeddingService, vectorStore, 1, 3, 2, 2);
+    }
+
+    @Test
+    void testIngestStoresEveryChunk() throws IOException {
+        // Arrange
+        when(embeddingService.embedAll(anyList(), anyString())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(text -> new float[1024]).toList();
+        });
+        List<String> stored = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> stored.addAll(invocation.getArgument(1)))
+                .when(vectorStore).addDocuments(anyList(), anyList(), anyList(), anyList());
+
+        // Act
+        int count = pipeline.ingest("doc.txt", sink -> {
+            for (int i = 0; i < 20; i++) {
+                sink.accept(new Segment("a" + i + " b" + i + " c" + i));
+            }
+        }, IngestionPipelineTest::words);
+
+        // Assert
+        assertEquals(60, count);
+        assertEquals(60, stored.size());
+        assertTrue(stored.containsAll(List.of("a0", "b10", "c19")));
+    }
+
+    @Test
+    void testIngestSkipsBlankChunks() throws IOException {
+        // Arrange
+        when(embeddingService.embedAll(anyList(), anyString())).thenReturn(List.of(new float[1024]));
+
+        // Act
+        int count = pipeline.ingest("doc.txt", sink -> sink.accept(new Segment("texto")),
+                segment -> List.of(new TextChunk(" "), new TextChunk(segment.text())));
+
+        // Assert
+        assertEquals(1, count);
+        verify(embeddingService).embedAll(List.of("texto"), "txt");
+    }
+
+    @Test
+    void testIngestPropagatesEmbeddingFailure() {
+        // Arrange
+        when(embeddingService.embedAll(anyList(), anyString())).thenThrow(new RuntimeException("Ollama indisponível"));
+
+        // Act & Assert
+        RuntimeException error = assertThrows(RuntimeException.class, () -> pipeline.ingest("doc.txt", sink -> {
+            for (int i = 0; i < 1000; i++) {
+                sink.accept(new Segment("segmento " + i));
+            }
+        }, segment -> List.of(new TextChunk(segment.text()))));
+        assertEquals("Ollama indisponível", error.getMessage());
+        verify(vectorStore, never()).addDocuments(any(), any(), any(), any());
+        verify(vectorStore, never()).deleteDocuments(anyList());
+    }
+
+    @Test
+    void testIngestPropagatesExtractionFailure() {
+        // Act & Assert
+        assertThrows(IOException.class, () -> pipeline.ingest("doc.txt", sink -> {
+            throw new IOException("Arquivo corrompido");
+        }, segment -> List.of(new TextChunk(segment.text()))));
+        verifyNoInteractions(embeddingService);
+        verify(vectorStore, never()).addDocuments(any(), any(), any(), any());
+        verify(vectorStore, never()).deleteDocuments(anyList());
+    }
+
+    @Test
+    void testIngestAssignsDeterministicIds() throws IOException {
+        // Arrange
+        when(embeddingService.embedAll(anyList(), anyString())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(text -> new float[1024]).toList();
+        });
+        List<String> ids = Collections.synchronizedList(new ArrayList<>());
+        List<Map<String, Object>> metadatas = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            ids.addAll(invocation.getArgument(0));
+            return metadatas.addAll(invocation.getArgument(3));
+        }).when(vectorStore).addDocuments(anyList(), anyList(), anyList(), anyList());
+
+        // Act
+        pipeline.ingest("doc.txt", sink -> sink.accept(new Segment("a a")), IngestionPipelineTest::words);
+
+        // Assert
+        String prefix = IngestionPipeline.documentId("doc.txt") + "_" + ContentHash.sha256Hex("a").substring(0, 16);
+        assertEquals(Set.of(prefix + "_1", prefix + "_2"), Set.copyOf(ids));
+        assertTrue(metadatas.contains(Map.of(
+                "document_id", IngestionPipeline.documentId("doc.txt"),
+                "source", "doc.txt",
+                "chunk_index", 1,
+                "chunk_hash", ContentHash.sha256Hex("a").substring(0, 16))));
+    }
+
+    @Test
+    void testReingestSkipsUnchangedChunksAndRemovesStaleOnes() throws IOException {
+        // Arrange
+        String documentId = IngestionPipeline.documentId("doc.txt");
+        String unchangedId = documentId + "_" + ContentHash.sha256Hex("a").substring(0, 16) + "_1";
+        when(vectorStore.getDocumentChunks(documentId)).thenReturn(Map.of(
+                unchangedId, Map.of("chunk_index", 1),
+                "antigo", Map.of("chunk_index", 0)));
+        when(embeddingService.embedAll(List.of("b"), "txt")).thenReturn(List.of(new float[1024]));
+
+        // Act
+        int count = pipeline.ingest("doc.txt", sink -> sink.accept(new Segment("a b")), IngestionPipelineTest::words);
+
+        // Assert
+        assertEquals(2, count);
+        verify(embeddingService).embedAll(List.of("b"), "txt");
+        verify(vectorStore).addDocuments(anyList(), eq(List.of("b")), anyList(), anyList());
+        verify(vectorStore).updateMetadatas(eq(List.of(unchangedId)), argThat(metadatas ->
+                metadatas.size() == 1 && metadatas.get(0).get("chunk_index").equals(0)));
+        verify(vectorStore).deleteDocuments(List.of("antigo"));
+    }
+
+    @Test
+    void testIngestKeepsLexicalIndexInSync() throws IOException {
+        // Arrange
+        Bm25Index lexicalIndex = new Bm25Index((Path) null);
+        lexicalIndex.add(List.of("antigo"), List.of("gama"));
+        pipeline = new IngestionPipeline(embeddingService, vectorStore, lexicalIndex, 1, 3, 2, 2, RagMetrics.NOOP);
+        String documentId = IngestionPipeline.documentId("doc.txt");
+        String unchangedId = documentId + "_" + ContentHash.sha256Hex("alfa").substring(0, 16) + "_1";
+        when(vectorStore.getDocumentChunks(documentId)).thenReturn(Map.of(
+                unchangedId, Map.of("chunk_index", 0),
+                "antigo", Map.of("chunk_index", 1)));
+        when(embeddingService.embedAll(List.of("beta"), "txt")).thenReturn(List.of(new float[1024]));
+
+        // Act
+        pipeline.ingest("doc.txt", sink -> sink.accept(new Segment("alfa beta")), IngestionPipelineTest::words);
+
+        // Assert
+        assertEquals(unchangedId, lexicalIndex.search("alfa", 5).get(0).id());
+        assertEquals(1, lexicalIndex.search("beta", 5).size());
+        assertTrue(lexicalIndex.search("gama", 5).isEmpty());
+        assertEquals(2, lexicalIndex.size());
+    }
+
+    @Test
+    void testIngestRecordsStageMetricsByFileType() throws IOException {
+        // Arrange
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        pipeline = new IngestionPipeline(embeddingService, vectorStore, new Bm25Index((Path) null), 1, 3, 2, 2,
+                new RagMetrics(registry));
+        when(embeddingService.embedAll(anyList(), anyString())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(text -> new float[1024]).toList();
+        });
+
+        // Act
+        pipeline.ingest("Manual.PDF", sink -> sink.accept(new Segment("a b c")), IngestionPipelineTest::words);
+
+        // Assert
+        assertEquals(1, registry.get("rag.ingest.stage").tags("stage", "extract", "file_type", "pdf").timer().count());
+        assertEquals(1, registry.get("rag.ingest.stage").tags("stage", "chunk", "file_type", "pdf").timer().count());
+        assertEquals(2, registry.get("rag.vector_store").tags("operation", "upsert", "file_type", "pdf").timer().count());
+        verify(embeddingService, times(2)).embedAll(anyList(), eq("pdf"));
+        assertEquals(3, registry.get("rag.ingest.chunks").tags("file_type", "pdf", "state", "new").counter().count());
+    }
+
+    @Test
+    void testIngestFlushesChunkerAtEnd() throws IOException {
+        // Arrange
+        when(embeddingService.embedAll(anyList(), anyString())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(text -> new float[1024]).toList();
+        });
+        List<String> stored = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> stored.addAll(invocation.getArgument(1)))
+                .when(vectorStore).addDocuments(anyList(), anyList(), anyList(), anyList());
+        IngestionPipeline.Chunker chunker = new IngestionPipeline.Chunker() {
+            private final StringBuilder pending = new StringBuilder();
+
+            @Override
+            public List<TextChunk> chunk(Segment segment) {
+                pending.append(segment.text());
+                return List.of();
+            }
+
+            @Override
+            public List<TextChunk> finish() {
+                return List.of(new TextChunk(pending.toString()));
+            }
+        };
+
+        // Act
+        int count = pipeline.ingest("doc.txt", sink -> {
+            sink.accept(new Segment("abc"));
+            sink.accept(new Segment("def"));
+        }, chunker);
+
+        // Assert
+        assertEquals(1, count);
+        assertEquals(List.of("abcdef"), stored);
+    }
+
+    @Test
+    void testIngestStoresPageNumbers() throws IOException {
+        // Arrange
+        when(embeddingService.embedAll(anyList(), anyString())).thenReturn(List.of(new float[1024]));
+
+        // Act
+        pipeline.ingest("doc.pdf", sink -> sink.accept(new Segment("texto", 3)),
+                segment -> List.of(new TextChunk(segment.text(), 3, 4)));
+
+        // Assert
+        verify(vectorStore).addDocuments(anyList(), anyList(), anyList(), argThat(metadatas ->
+                metadatas.get(0).get("page_start").equals(3) && metadatas.get(0).get("page_end").equals(4)));
+    }
+
+    private static List<TextChunk> words(Segment segment) {
+        return Arrays.stream(segment.text().split(" ")).map(TextChunk::new).toList();
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MmrRerankerTest {
+
+    @Mock
+    private VectorStore vectorStore;
+
+    private final float[] question = {1, 0, 0};
+
+    @Test
+    void testNearDuplicateIsReplacedByDiverseChunk() {
+        // Arrange: "b" repete "a"; "c" é um pouco menos relevante, mas traz outra informação
+        List<RetrievedChunk> candidates = List.of(chunk("a"), chunk("b"), chunk("c"));
+        when(vectorStore.getEmbeddings(List.of("a", "b", "c"))).thenReturn(Map.of(
+                "a", new float[]{0.9f, 0.44f, 0},
+                "b", new float[]{0.9f, 0.45f, 0},
+                "c", new float[]{0.8f, 0, 0.6f}));
+
+        // Act
+        List<RetrievedChunk> selected = new MmrReranker(vectorStore, 0.5, 0).rerank("pergunta", question, candidates, 2);
+
+        // Assert
+        assertEquals(List.of("a", "c"), ids(selected));
+    }
+
+    @Test
+    void testLambdaOneOrdersByRelevance() {
+        // Arrange
+        List<RetrievedChunk> candidates = List.of(chunk("a"), chunk("b"), chunk("c"));
+        when(vectorStore.getEmbeddings(anyList())).thenReturn(Map.of(
+                "a", new float[]{0, 1, 0},
+                "b", new float[]{1, 0.1f, 0},
+                "c", new float[]{1, 0.5f, 0}));
+
+        // Act
+        List<RetrievedChunk> selected = new MmrReranker(vectorStore, 1, 0).rerank("pergunta", question, candidates, 3);
+
+        // Assert
+        assertEquals(List.of("b", "c", "a"), ids(selected));
+    }
+
+    @Test
+    void testChunksWithoutEmbeddingAreKeptLast() {
+        // Arrange
+        List<RetrievedChunk> candidates = List.of(chunk("lexical"), chunk("a"));
+        when(vectorStore.getEmbeddings(anyList())).thenReturn(Map.of("a", new float[]{1, 0, 0}));
+
+        // Act
+        List<RetrievedChunk> selected = new MmrReranker(vectorStore, 0.7, 0).rerank("pergunta", question, candidates, 5);
+
+        // Assert
+        assertEquals(List.of("a", "lexical"), ids(selected));
+    }
+
+    @Test
+    void testLexicalOnlyHitSurvivesReranking() {
+        // Arrange: a fusão pôs em 2º lugar um chunk que só a busca lexical achou (cosseno baixo);
+        // os demais são quase iguais entre si e mais próximos da pergunta
+        List<RetrievedChunk> candidates = new ArrayList<>();
+        candidates.add(chunk("dense0", new float[]{0.8f, 0.6f, 0}));
+        candidates.add(chunk("lexical", new float[]{0.5f, 0, 0.866f}));
+        for (int i = 1; i < 9; i++) {
+            candidates.add(chunk("dense" + i, new float[]{0.8f, 0.6f, 0.01f * i}));
+        }
+
+        // Act
+        List<RetrievedChunk> fused = new MmrReranker(vectorStore, 0.7, 0.8).rerank("pergunta", question, candidates, 3);
+        List<RetrievedChunk> cosineOnly = new MmrReranker(vectorStore, 0.7, 0).rerank("pergunta", question, candidates, 3);
+
+        // Assert
+        assertEquals(List.of("dense0", "lexical", "dense1"), ids(fused));
+        assertFalse(ids(cosineOnly).contains("lexical"));
+        verifyNoInteractions(vectorStore); // os embeddings vieram com os candidatos
+    }
+
+    @Test
+    void testOnlyMissingEmbeddingsAreLookedUp() {
+        // Arrange
+        List<RetrievedChunk> candidates = List.of(chunk("a", new float[]{1, 0, 0}), chunk("b"));
+        when(vectorStore.getEmbeddings(List.of("b"))).thenReturn(Map.of("b", new float[]{0, 1, 0}));
+
+        // Act
+        List<RetrievedChunk> selected = new MmrReranker(vectorStore, 0.7, 0.8).rerank("pergunta", question, candidates, 2);
+
+        // Assert
+        assertEquals(List.of("a", "b"), ids(selected));
+        verify(vectorStore).getEmbeddings(List.of("b"));
+    }
+
+    @Test
+    void testSingleCandidateSkipsEmbeddingLookup() {
+        List<RetrievedChunk> candidates = List.of(chunk("a"));
+        assertEquals(candidates, new MmrReranker(vectorStore, 0.7, 0.8).rerank("pergunta", question, candidates, 5));
+        verifyNoInteractions(vectorStore);
+        assertThrows(IllegalArgumentException.class, () -> new MmrReranker(vectorStore, 1.5, 0.8));
+        assertThrows(IllegalArgumentException.class, () -> new MmrReranker(vectorStore, 0.7, -0.1));
+    }
+
+    private static RetrievedChunk chunk(String id) {
+        return new RetrievedChunk(id, "Texto " + id, Map.of(), 0.5);
+    }
+
+    private static RetrievedChunk chunk(String id, float[] embedding) {
+        return new RetrievedChunk(id, "Texto " + id, Map.of(), 0.5, embedding);
+    }
+
+    private static List<String> ids(List<RetrievedChunk> chunks) {
+        return chunks.stream().map(RetrievedChunk::id).toList();
+    }
+}
@@ -1,19 +1,24 @@
 package com.github.mwacha.services;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.notNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -22,39 +27,127 @@ class OllamaClientTest {
     @Mock(answer = org.mockito.Answers.RETURNS_DEEP_STUBS)
     private WebClient webClient;
 
-    @InjectMocks
     private OllamaClient ollamaClient;
 
     @BeforeEach
     void setUp() {
-        // Configuração inicial não necessária com RETURNS_DEEP_STUBS
+        ollamaClient = new OllamaClient(webClient, Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(5));
     }
 
     @Test
     void testAskSuccess() {
         // Arrange
         String prompt = "Test prompt";
-        Map<String, Object> response1 = Map.of("response", "Part1", "done", false);
-        Map<String, Object> response2 = Map.of("response", "Part2", "done", true);
-        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToFlux(Map.class))
+        OllamaClient.GenerateChunk response1 = new OllamaClient.GenerateChunk("Part1", false, null);
+        OllamaClient.GenerateChunk response2 = new OllamaClient.GenerateChunk("Part2", true, null);
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToFlux(OllamaClient.GenerateChunk.class))
                 .thenReturn(Flux.just(response1, response2));
 
         // Act
-        String result = ollamaClient.ask(prompt);
+        String result = ollamaClient.ask(prompt).block();
 
         // Assert
         assertEquals("Part1Part2", result);
-        verify(webClient.post().uri(anyString()), times(1)).bodyValue(any());
+        verify(webClient.post().uri(anyString()), times(1)).bodyValue(notNull());
+    }
+
+    @Test
+    void testCompleteSendsModelAndDeterministicOptions() {
+        // Arrange
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(OllamaClient.GenerateChunk.class))
+                .thenReturn(Mono.just(new OllamaClient.GenerateChunk("7", true, null)));
+
+        // Act
+        String result = ollamaClient.complete("reranker", "Nota?", 4).block();
+
+        // Assert
+        assertEquals("7", result);
+        verify(webClient.post().uri("/api/generate")).bodyValue(Map.of(
+                "model", "reranker",
+                "prompt", "Nota?",
+                "stream", false,
+                "options", Map.of("temperature", 0, "num_predict", 4)));
     }
 
     @Test
     void testAskError() {
         // Arrange
         String prompt = "Test prompt";
-        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToFlux(Map.class))
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToFlux(OllamaClient.GenerateChunk.class))
                 .thenThrow(new RuntimeException("Ollama error"));
 
         // Act & Assert
-        assertThrows(RuntimeException.class, () -> ollamaClient.ask(prompt));
+        assertThrows(RuntimeException.class, () -> ollamaClient.ask(prompt).block());
+    }
+
+    @Test
+    void testStreamEmitsFragmentsUntilDone() {
+        // Arrange
+        OllamaClient.GenerateChunk response1 = new OllamaClient.GenerateChunk("Part1", false, null);
+        OllamaClient.GenerateChunk response2 = new OllamaClient.GenerateChunk("", false, null);
+        OllamaClient.GenerateChunk response3 = new OllamaClient.GenerateChunk("Part2", true, null);
+        OllamaClient.GenerateChunk ignored = new OllamaClient.GenerateChunk("Extra", false, null);
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToFlux(OllamaClient.GenerateChunk.class))
+                .thenReturn(Flux.just(response1, response2, response3, ignored));
+
+        // Act
+        List<String> fragments = ollamaClient.stream("Test prompt").collectList().block();
+
+        // Assert
+        assertEquals(List.of("Part1", "Part2"), fragments);
+    }
+
+    @Test
+    void testStreamRecordsFirstTokenAndTokensPerSecond() {
+        // Arrange
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        OllamaClient client = new OllamaClient(webClient, Duration.ofSeconds(1), Duration.ofSeconds(1),
+                Duration.ofSeconds(5), new RagMetrics(registry));
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToFlux(OllamaClient.GenerateChunk.class))
+                .thenReturn(Flux.just(
+                        new OllamaClient.GenerateChunk("", false, null),
+                        new OllamaClient.GenerateChunk("Part1", false, null),
+                        new OllamaClient.GenerateChunk("Part2", true, null, 40, 500_000_000L)));
+
+        // Act
+        client.stream("Test prompt").blockLast();
+
+        // Assert
+        assertEquals(1, registry.get("rag.generate.first_token").tag("model", "gemma2").timer().count());
+        assertEquals(40, registry.get("rag.generate.tokens").counter().count());
+        assertEquals(80, registry.get("rag.generate.tokens_per_second").summary().mean(), 1e-9);
+    }
+
+    @Test
+    void testAskStreamError() {
+        // Arrange
+        OllamaClient.GenerateChunk response1 = new OllamaClient.GenerateChunk("Part1", false, null);
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToFlux(OllamaClient.GenerateChunk.class))
+                .thenReturn(Flux.concat(Flux.just(response1), Flux.error(new IllegalStateException("conexão perdida"))));
+
+        // Act & Assert
+        RuntimeException error = assertThrows(RuntimeException.class, () -> ollamaClient.ask("Test prompt").block());
+        assertEquals("conexão perdida", error.getCause().getMessage());
+    }
+
+    @Test
+    void testAskOllamaErrorMessage() {
+        // Arrange
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToFlux(OllamaClient.GenerateChunk.class))
+                .thenReturn(Flux.just(new OllamaClient.GenerateChunk(null, false, "model not found")));
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> ollamaClient.ask("Test prompt").block());
+    }
+
+    @Test
+    void testAskFirstTokenTimeout() {
+        // Arrange
+        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToFlux(OllamaClient.GenerateChunk.class))
+                .thenReturn(Flux.never());
+
+        // Act & Assert
+        RuntimeException error = assertThrows(RuntimeException.class, () -> ollamaClient.ask("Test prompt").block());
+        assertInstanceOf(TimeoutException.class, error.getCause());
     }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OllamaRerankerTest {
+
+    @Mock
+    private OllamaClient ollamaClient;
+
+    @Test
+    void testCandidatesAreOrderedByModelScore() {
+        // Arrange
+        when(ollamaClient.complete(eq("reranker"), contains("Texto a"), anyInt())).thenReturn(Mono.just("3"));
+        when(ollamaClient.complete(eq("reranker"), contains("Texto b"), anyInt())).thenReturn(Mono.just(" 9,5"));
+        when(ollamaClient.complete(eq("reranker"), contains("Texto c"), anyInt())).thenReturn(Mono.just("Nota: 7"));
+        OllamaReranker reranker = new OllamaReranker(ollamaClient, "reranker", 2, 100);
+
+        // Act
+        List<RetrievedChunk> selected = reranker.rerank("pergunta", new float[0],
+                List.of(chunk("a"), chunk("b"), chunk("c")), 2);
+
+        // Assert
+        assertEquals(List.of("b", "c"), selected.stream().map(RetrievedChunk::id).toList());
+    }
+
+    @Test
+    void testModelFailureKeepsRetrievalOrder() {
+        // Arrange
+        when(ollamaClient.complete(eq("reranker"), contains("Texto"), anyInt()))
+                .thenReturn(Mono.error(new RuntimeException("modelo não encontrado")));
+        OllamaReranker reranker = new OllamaReranker(ollamaClient, "reranker", 2, 100);
+        List<RetrievedChunk> candidates = List.of(chunk("a"), chunk("b"), chunk("c"));
+
+        // Act & Assert
+        assertEquals(candidates.subList(0, 2), reranker.rerank("pergunta", new float[0], candidates, 2));
+    }
+
+    @Test
+    void testParseScore() {
+        assertEquals(8, OllamaReranker.parseScore("8"));
+        assertEquals(6.5, OllamaReranker.parseScore("Nota 6,5."));
+        assertEquals(10, OllamaReranker.parseScore("100"));
+        assertEquals(0, OllamaReranker.parseScore("sem nota"));
+    }
+
+    private static RetrievedChunk chunk(String id) {
+        return new RetrievedChunk(id, "Texto " + id, Map.of(), 0.5);
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PayloadLogTest {
+
+    @Mock
+    private Logger logger;
+
+    @Test
+    void testSampledRequestLogsTruncatedSingleLinePayloads() {
+        // Arrange
+        when(logger.isDebugEnabled()).thenReturn(true);
+        PayloadLog payloadLog = new PayloadLog(1.0, 10, logger);
+
+        // Act
+        PayloadLog.Sample sample = payloadLog.sample();
+        sample.log("prompt", "Linha \"um\"\nlinha dois");
+        sample.log("context", List.of("a", "b"));
+
+        // Assert
+        ArgumentCaptor<String> lines = ArgumentCaptor.forClass(String.class);
+        verify(logger, times(3)).debug(lines.capture());
+        String prompt = lines.getAllValues().get(0);
+        assertTrue(prompt.startsWith("payload request="), prompt);
+        assertTrue(prompt.contains(" field=prompt chars=21 sha256="
+                + ContentHash.sha256Hex("Linha \"um\"\nlinha dois").substring(0, 16)), prompt);
+        assertTrue(prompt.endsWith(" truncated=true text=\"Linha \\\"um\\\"\""), prompt);
+        assertTrue(lines.getAllValues().get(2).contains(" field=context[1] chars=1 "));
+        String requestId = prompt.substring("payload request=".length(), prompt.indexOf(' ', "payload request=".length()));
+        assertTrue(lines.getAllValues().stream().allMatch(line -> line.startsWith("payload request=" + requestId + " ")));
+    }
+
+    @Test
+    void testNothingIsLoggedWithoutDebugOrSampling() {
+        // Arrange
+        when(logger.isDebugEnabled()).thenReturn(false);
+
+        // Act
+        PayloadLog.Sample withoutDebug = new PayloadLog(1.0, 10, logger).sample();
+        PayloadLog.Sample notSampled = new PayloadLog(0, 10, logger).sample();
+        withoutDebug.log("prompt", "texto");
+        notSampled.log("prompt", "texto");
+
+        // Assert
+        assertFalse(withoutDebug.isActive());
+        assertFalse(notSampled.isActive());
+        verify(logger, never()).debug(anyString());
+    }
+
+    @Test
+    void testDescribeHidesContent() {
+        assertEquals("[5 caracteres, sha256 " + ContentHash.sha256Hex("texto").substring(0, 16) + "]",
+                PayloadLog.describe("texto").toString());
+        assertEquals("[nulo]", PayloadLog.describe(null).toString());
+        assertThrows(IllegalArgumentException.class, () -> new PayloadLog(1.5, 10, logger));
+    }
+}
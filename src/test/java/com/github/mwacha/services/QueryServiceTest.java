@@ -0,0 +1,207 @@
+package com.github.mwacha.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QueryServiceTest {
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    @Mock
+    private VectorStore vectorStore;
+
+    @Mock
+    private OllamaClient ollamaClient;
+
+    private QueryService queryService;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        queryService = new QueryService(embeddingService, vectorStore,
+                new HybridRetriever(vectorStore, new Bm25Index((Path) null), true, 20, 20, 60, 20),
+                (question, embedding, candidates, topK) -> candidates.subList(0, Math.min(topK, candidates.size())), 2,
+                new ContextAssembler(new WhitespaceTokenizer(), 1000, 0.9), ollamaClient,
+                new AnswerCache(true, 0.95, Duration.ofMinutes(10), 10, Clock.systemUTC()),
+                new RagMetrics(registry), new PayloadLog(0, 500));
+    }
+
+    @Test
+    void testAskBuildsPromptWithContext() {
+        // Arrange
+        float[] embedding = new float[1024];
+        when(embeddingService.embed("O que é models?")).thenReturn(embedding);
+        when(vectorStore.queryChunks("O que é models?", embedding, 20, false)).thenReturn(chunks("Models: estruturas de dados."));
+        when(ollamaClient.ask(contains("Models: estruturas de dados."))).thenReturn(Mono.just("Estruturas de dados."));
+
+        // Act
+        String answer = queryService.ask("O que é models?").block();
+
+        // Assert
+        assertEquals("Estruturas de dados.", answer);
+        for (String stage : List.of("embed", "retrieve", "rerank", "assemble", "prompt")) {
+            assertEquals(1, registry.get("rag.query.stage").tag("stage", stage).timer().count(), stage);
+        }
+    }
+
+    @Test
+    void testAskSendsOnlyRerankedChunks() {
+        // Arrange
+        float[] embedding = new float[1024];
+        when(embeddingService.embed(anyString())).thenReturn(embedding);
+        when(vectorStore.queryChunks(anyString(), any(), anyInt(), anyBoolean())).thenReturn(chunks("Primeiro.", "Segundo.", "Terceiro."));
+        when(ollamaClient.ask(anyString())).thenReturn(Mono.just("Resposta."));
+
+        // Act
+        queryService.ask("Pergunta?").block();
+
+        // Assert
+        verify(ollamaClient).ask(argThat(prompt -> prompt.contains("Segundo.") && !prompt.contains("Terceiro.")));
+    }
+
+    @Test
+    void testAskEmptyQuestion() {
+        // Act
+        String answer = queryService.ask(" ").block();
+
+        // Assert
+        assertEquals("Por favor, forneça uma pergunta válida.", answer);
+        verifyNoInteractions(embeddingService, vectorStore, ollamaClient);
+    }
+
+    @Test
+    void testAskBlankResponse() {
+        // Arrange
+        when(embeddingService.embed(anyString())).thenReturn(new float[1024]);
+        when(vectorStore.queryChunks(anyString(), any(), anyInt(), anyBoolean())).thenReturn(List.of());
+        when(ollamaClient.ask(anyString())).thenReturn(Mono.just("  "));
+
+        // Act
+        String answer = queryService.ask("Pergunta?").block();
+
+        // Assert
+        assertEquals("Nenhuma informação relevante foi encontrada para a pergunta: \"Pergunta?\".", answer);
+    }
+
+    @Test
+    void testAskGenerationError() {
+        // Arrange
+        when(embeddingService.embed(anyString())).thenReturn(new float[1024]);
+        when(vectorStore.queryChunks(anyString(), any(), anyInt(), anyBoolean())).thenReturn(chunks("Contexto."));
+        when(ollamaClient.ask(anyString())).thenReturn(Mono.error(new RuntimeException("Erro ao chamar Ollama")));
+
+        // Act
+        String answer = queryService.ask("Pergunta?").block();
+
+        // Assert
+        assertEquals("Ocorreu um erro ao processar a pergunta: Erro ao chamar Ollama", answer);
+    }
+
+    @Test
+    void testAskReusesAnswerForSimilarQuestion() {
+        // Arrange
+        float[] embedding = new float[1024];
+        embedding[0] = 1f;
+        float[] similar = embedding.clone();
+        similar[1] = 0.01f;
+        when(embeddingService.embed("O que é models?")).thenReturn(embedding);
+        when(embeddingService.embed("O que significa models?")).thenReturn(similar);
+        when(vectorStore.collectionVersion()).thenReturn(1L);
+        when(vectorStore.queryChunks(anyString(), any(), anyInt(), anyBoolean())).thenReturn(chunks("Contexto."));
+        when(ollamaClient.ask(anyString())).thenReturn(Mono.just("Estruturas de dados."));
+
+        // Act
+        String first = queryService.ask("O que é models?").block();
+        String second = queryService.ask("O que significa models?").block();
+
+        // Assert
+        assertEquals("Estruturas de dados.", first);
+        assertEquals("Estruturas de dados.", second);
+        verify(ollamaClient, times(1)).ask(anyString());
+    }
+
+    @Test
+    void testAskIgnoresCacheAfterCollectionChanges() {
+        // Arrange
+        float[] embedding = new float[1024];
+        embedding[0] = 1f;
+        when(embeddingService.embed(anyString())).thenReturn(embedding);
+        when(vectorStore.collectionVersion()).thenReturn(1L, 2L);
+        when(vectorStore.queryChunks(anyString(), any(), anyInt(), anyBoolean())).thenReturn(chunks("Contexto."));
+        when(ollamaClient.ask(anyString())).thenReturn(Mono.just("Primeira."), Mono.just("Segunda."));
+
+        // Act
+        String first = queryService.ask("Pergunta?").block();
+        String second = queryService.ask("Pergunta?").block();
+
+        // Assert
+        assertEquals("Primeira.", first);
+        assertEquals("Segunda.", second);
+    }
+
+    @Test
+    void testAskStreamEmitsTokensAndCompletion() {
+        // Arrange
+        float[] embedding = new float[1024];
+        RetrievedChunk source = new RetrievedChunk("doc_1", "Models: estruturas de dados.", Map.of(), 0.12);
+        when(embeddingService.embed("O que é models?")).thenReturn(embedding);
+        when(vectorStore.queryChunks("O que é models?", embedding, 20, false)).thenReturn(List.of(source));
+        when(ollamaClient.stream(contains("Models: estruturas de dados."))).thenReturn(Flux.just("Estruturas", " de dados."));
+
+        // Act
+        List<AnswerEvent> events = queryService.askStream("O que é models?").collectList().block();
+
+        // Assert
+        assertEquals(3, events.size());
+        assertEquals(new AnswerEvent.Token("Estruturas"), events.get(0));
+        assertEquals(new AnswerEvent.Token(" de dados."), events.get(1));
+        AnswerEvent.Completed completed = assertInstanceOf(AnswerEvent.Completed.class, events.get(2));
+        assertEquals(List.of(source), completed.sources());
+        assertTrue(completed.timings().firstTokenMs() >= 0);
+        assertTrue(completed.timings().totalMs() >= completed.timings().firstTokenMs());
+    }
+
+    @Test
+    void testAskStreamPropagatesGenerationError() {
+        // Arrange
+        when(embeddingService.embed(anyString())).thenReturn(new float[1024]);
+        when(vectorStore.queryChunks(anyString(), any(), anyInt(), anyBoolean())).thenReturn(List.of());
+        when(ollamaClient.stream(anyString())).thenReturn(Flux.error(new RuntimeException("Erro ao chamar Ollama")));
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> queryService.askStream("Pergunta?").collectList().block());
+    }
+
+    @Test
+    void testAskStreamEmptyQuestion() {
+        assertThrows(IllegalArgumentException.class, () -> queryService.askStream(""));
+    }
+
+    private static List<RetrievedChunk> chunks(String... texts) {
+        return Arrays.stream(texts)
+                .map(text -> new RetrievedChunk("id_" + text.hashCode(), text, Map.of(), 0.5))
+                .toList();
+    }
+}
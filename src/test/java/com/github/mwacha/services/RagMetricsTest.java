@@ -0,0 +1,95 @@
+package com.github.mwacha.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RagMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RagMetrics metrics = new RagMetrics(registry);
+
+    @Test
+    void testStagesAreTaggedByFileType() {
+        // Act
+        metrics.recordIngestStage("extract", "pdf", 2_000_000);
+        metrics.recordIngestStage("extract", "pdf", 4_000_000);
+        metrics.recordIngestStage("extract", "txt", 1_000_000);
+
+        // Assert
+        assertEquals(2, registry.get("rag.ingest.stage").tags("stage", "extract", "file_type", "pdf").timer().count());
+        assertEquals(6, registry.get("rag.ingest.stage").tags("file_type", "pdf").timer().totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(1, registry.get("rag.ingest.stage").tags("file_type", "txt").timer().count());
+    }
+
+    @Test
+    void testEmbeddingAndVectorStoreAreTaggedByFileType() {
+        // Act
+        metrics.recordEmbedding("arctic", "batch", "pdf", 32, 5_000_000);
+        metrics.recordEmbedding("arctic", "query", RagMetrics.NO_FILE_TYPE, 1, 1_000_000);
+        metrics.recordVectorStore("chroma", "upsert", "docx", 3_000_000);
+
+        // Assert
+        assertEquals(1, registry.get("rag.embed").tags("operation", "batch", "file_type", "pdf").timer().count());
+        assertEquals(32, registry.get("rag.embed.texts").tags("file_type", "pdf").summary().totalAmount());
+        assertEquals(1, registry.get("rag.embed").tags("operation", "query", "file_type", "none").timer().count());
+        assertEquals(1, registry.get("rag.vector_store").tags("operation", "upsert", "file_type", "docx").timer().count());
+    }
+
+    @Test
+    void testGenerationRecordsTokensPerSecond() {
+        // Act: 50 tokens em 2 s
+        metrics.recordGeneration("gemma2", 50, 2_000_000_000L);
+        metrics.recordGeneration("gemma2", 0, 0);
+
+        // Assert
+        assertEquals(50, registry.get("rag.generate.tokens").tag("model", "gemma2").counter().count());
+        assertEquals(1, registry.get("rag.generate.tokens_per_second").summary().count());
+        assertEquals(25, registry.get("rag.generate.tokens_per_second").summary().mean(), 1e-9);
+    }
+
+    @Test
+    void testCacheCountersAreExposed() {
+        // Arrange
+        EmbeddingCache embeddingCache = new EmbeddingCache(1 << 20, (Path) null);
+        AnswerCache answerCache = new AnswerCache(true, 0.95, Duration.ofHours(1), 10, Clock.systemUTC());
+        new RagMetrics(registry, embeddingCache, answerCache);
+        float[] question = {1, 0, 0};
+
+        // Act
+        embeddingCache.get("a");
+        embeddingCache.put("a", new float[]{1, 2});
+        embeddingCache.get("a");
+        embeddingCache.get("a");
+        answerCache.lookup(question, 1);
+        answerCache.put(question, "Resposta.", 1, 1500);
+        answerCache.lookup(question, 1);
+
+        // Assert
+        assertEquals(2, registry.get("rag.cache.gets").tags("cache", "embedding", "result", "hit").functionCounter().count());
+        assertEquals(1, registry.get("rag.cache.gets").tags("cache", "embedding", "result", "miss").functionCounter().count());
+        assertEquals(1, registry.get("rag.cache.entries").tags("cache", "embedding", "tier", "memory").gauge().value());
+        assertTrue(registry.get("rag.cache.memory").gauge().value() > 0);
+        assertEquals(1, registry.get("rag.cache.gets").tags("cache", "answer", "result", "hit").functionCounter().count());
+        assertEquals(1, registry.get("rag.cache.gets").tags("cache", "answer", "result", "miss").functionCounter().count());
+        assertEquals(1.5, registry.get("rag.cache.saved").functionCounter().count(), 1e-9);
+    }
+
+    @Test
+    void testFileType() {
+        assertEquals("pdf", RagMetrics.fileType("Relatório.Final.PDF"));
+        assertEquals("docx", RagMetrics.fileType("contrato.DOCX"));
+        assertEquals("txt", RagMetrics.fileType("notas.txt"));
+        assertEquals("other", RagMetrics.fileType("planilha.xlsx"));
+        assertEquals("other", RagMetrics.fileType("foto.jpeg-" + System.nanoTime()));
+        assertEquals("other", RagMetrics.fileType("LEIAME"));
+        assertEquals("other", RagMetrics.fileType("arquivo."));
+        assertEquals("other", RagMetrics.fileType(null));
+    }
+}
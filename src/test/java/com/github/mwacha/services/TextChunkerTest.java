@@ -0,0 +1,123 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextChunkerTest {
+
+    @Test
+    void testChunkText() {
+        // Arrange
+        TextChunker chunker = new TextChunker(new WhitespaceTokenizer(), 2, 0);
+        String text = "Sentence one. Sentence two. Sentence three.";
+
+        // Act
+        List<String> chunks = chunker.chunk(text);
+
+        // Assert
+        assertEquals(List.of("Sentence one.", "Sentence two.", "Sentence three."), chunks);
+    }
+
+    @Test
+    void testSplitReturnsOffsetsIntoSource() {
+        // Arrange
+        TextChunker chunker = new TextChunker(new WhitespaceTokenizer(), 3, 0);
+        String text = "  Um dois. Três quatro.\n";
+
+        // Act
+        List<TextChunker.Span> spans = chunker.split(text);
+
+        // Assert
+        assertEquals(List.of(new TextChunker.Span(2, 10), new TextChunker.Span(11, 23)), spans);
+    }
+
+    @Test
+    void testSentenceLongerThanLimitIsSplitWithoutEmptyChunk() {
+        // Arrange
+        TextChunker chunker = new TextChunker(new WhitespaceTokenizer(), 2, 0);
+
+        // Act
+        List<String> chunks = chunker.chunk("um dois três quatro cinco. Seis.");
+
+        // Assert
+        assertEquals(List.of("um dois", "três quatro", "cinco. Seis."), chunks);
+    }
+
+    @Test
+    void testOverlapRepeatsLastTokens() {
+        // Arrange
+        TextChunker chunker = new TextChunker(new WhitespaceTokenizer(), 4, 2);
+
+        // Act
+        List<String> chunks = chunker.chunk("a b c d e f g h");
+
+        // Assert
+        assertEquals(List.of("a b c d", "c d e f", "e f g h"), chunks);
+    }
+
+    @Test
+    void testBlankTextProducesNoChunks() {
+        // Act & Assert
+        assertTrue(new TextChunker(new WhitespaceTokenizer(), 10, 0).chunk(" \n\t ").isEmpty());
+    }
+
+    @Test
+    void testSpecialTokensAreSubtractedFromLimit() {
+        // Arrange: 5 tokens por chunk, menos [CLS] e [SEP]
+        Tokenizer withSpecialTokens = new Tokenizer() {
+            @Override
+            public int countTokens(CharSequence text, int start, int end) {
+                return 1;
+            }
+
+            @Override
+            public int specialTokens() {
+                return 2;
+            }
+        };
+        TextChunker chunker = new TextChunker(withSpecialTokens, 5, 0);
+
+        // Act
+        List<String> chunks = chunker.chunk("um dois tres quatro cinco seis");
+
+        // Assert
+        assertEquals(List.of("um dois tres", "quatro cinco seis"), chunks);
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(withSpecialTokens, 2, 0));
+    }
+
+    @Test
+    void testInvalidConfiguration() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(new WhitespaceTokenizer(), 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(new WhitespaceTokenizer(), 10, 10));
+    }
+
+    @Test
+    void testChunksAreFilledUsingTokenizerCounts() {
+        // Arrange
+        Tokenizer charsAsTokens = (text, start, end) -> end - start;
+        TextChunker chunker = new TextChunker(charsAsTokens, 6, 0);
+
+        // Act
+        List<String> chunks = chunker.chunk("abc de f ghijk lm");
+
+        // Assert
+        assertEquals(List.of("abc de f", "ghijk", "lm"), chunks);
+    }
+
+    @Test
+    void testOverlapCountsTokensNotWords() {
+        // Arrange
+        Tokenizer charsAsTokens = (text, start, end) -> end - start;
+        TextChunker chunker = new TextChunker(charsAsTokens, 6, 2);
+
+        // Act
+        List<String> chunks = chunker.chunk("aa bb cc dd");
+
+        // Assert
+        assertEquals(List.of("aa bb cc", "cc dd"), chunks);
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorMathTest {
+
+    @Test
+    void testDotMatchesScalarForAllTailLengths() {
+        Random random = new Random(11);
+        for (int length = 0; length <= 70; length++) {
+            // Arrange
+            float[] a = new float[length];
+            float[] b = new float[length];
+            double expected = 0;
+            for (int i = 0; i < length; i++) {
+                a[i] = (float) random.nextGaussian();
+                b[i] = (float) random.nextGaussian();
+                expected += (double) a[i] * b[i];
+            }
+
+            // Act & Assert
+            assertEquals(expected, VectorMath.dot(a, b), 1e-4, "tamanho " + length);
+            assertEquals(expected, VectorMath.scalarDot(a, b), 1e-4, "tamanho " + length);
+        }
+    }
+
+    @Test
+    void testSimdIsUsedWhenModuleIsPresent() {
+        boolean modulePresent = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        assertEquals(modulePresent, VectorMath.simd());
+    }
+
+    @Test
+    void testQuantizedDistancesApproximateDotProduct() {
+        // Arrange
+        Random random = new Random(5);
+        int dimension = 70;
+        float[] a = new float[dimension];
+        float[] b = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            a[i] = (float) random.nextGaussian();
+            b[i] = a[i] + 0.5f * (float) random.nextGaussian();
+        }
+        a = VectorMath.normalize(a);
+        b = VectorMath.normalize(b);
+        byte[] codeA = new byte[HnswIndex.Quantization.INT8.codeBytes(dimension)];
+        byte[] codeB = new byte[codeA.length];
+        long[] bitsA = new long[2];
+        long[] bitsB = new long[2];
+
+        // Act
+        VectorMath.quantizeInt8(a, codeA);
+        VectorMath.quantizeInt8(b, codeB);
+        VectorMath.binarize(a, bitsA);
+        VectorMath.binarize(b, bitsB);
+
+        // Assert
+        assertEquals(VectorMath.dot(a, b), VectorMath.int8Dot(codeA, codeB), 0.01);
+        assertEquals(0, VectorMath.hamming(bitsA, bitsA));
+        int expected = 0;
+        for (int i = 0; i < dimension; i++) {
+            expected += (a[i] > 0) != (b[i] > 0) ? 1 : 0;
+        }
+        assertEquals(expected, VectorMath.hamming(bitsA, bitsB));
+        assertEquals(0, VectorMath.int8Dot(codeA, new byte[codeA.length]));
+    }
+
+    @Test
+    void testNormalize() {
+        // Act
+        float[] normalized = VectorMath.normalize(new float[]{3, 4});
+
+        // Assert
+        assertArrayEquals(new float[]{0.6f, 0.8f}, normalized, 1e-6f);
+        assertArrayEquals(new float[]{0, 0}, VectorMath.normalize(new float[]{0, 0}));
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.mwacha.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WordPieceTokenizerTest {
+
+    private final WordPieceTokenizer tokenizer = new WordPieceTokenizer(Set.of("embed", "##ding", "##s", "token", "."));
+
+    @Test
+    void testCountsLongestMatchPieces() {
+        // Act & Assert
+        assertEquals(1, count("token"));
+        assertEquals(2, count("embedding"));
+        assertEquals(3, count("embeddings"));
+    }
+
+    @Test
+    void testSplitsPunctuation() {
+        // Act & Assert
+        assertEquals(2, count("token."));
+        assertEquals(4, count("(token)."));
+    }
+
+    @Test
+    void testUnknownPieceCountsAsOneToken() {
+        // Act & Assert
+        assertEquals(1, count("xyz"));
+        assertEquals(1, count("embedxyz"));
+    }
+
+    @Test
+    void testNormalizesCaseAndAccents() {
+        // Act & Assert
+        assertEquals(1, count("Token"));
+        assertEquals(2, count("EMBEDDING"));
+        assertEquals(1, count("tóken"));
+        assertEquals("acao e configuracao", WordPieceTokenizer.normalize("Ação e Configuração", 0, 19));
+    }
+
+    @Test
+    void testReservesClsAndSep() {
+        // Act & Assert
+        assertEquals(2, tokenizer.specialTokens());
+        assertEquals(2, new CachingTokenizer(tokenizer, 10).specialTokens());
+    }
+
+    @Test
+    void testLoadReadsVocabularyFile(@TempDir Path dir) throws IOException {
+        // Arrange
+        Path vocabulary = dir.resolve("vocab.txt");
+        Files.write(vocabulary, List.of("[UNK]", "chunk", "##ing"));
+
+        // Act
+        WordPieceTokenizer loaded = WordPieceTokenizer.load(vocabulary);
+
+        // Assert
+        assertEquals(2, loaded.countTokens("chunking", 0, 8));
+    }
+
+    @Test
+    void testLoadMissingFile(@TempDir Path dir) {
+        // Act & Assert
+        assertThrows(UncheckedIOException.class, () -> WordPieceTokenizer.load(dir.resolve("nao-existe.txt")));
+    }
+
+    private int count(String word) {
+        return tokenizer.countTokens(word, 0, word.length());
+    }
+}